@@ -0,0 +1,417 @@
+package kr.poturns.blink.db;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import kr.poturns.blink.db.archive.App;
+import kr.poturns.blink.db.archive.BlinkAppInfo;
+import kr.poturns.blink.db.archive.CallbackData;
+import kr.poturns.blink.db.archive.Device;
+import kr.poturns.blink.db.archive.Function;
+import kr.poturns.blink.db.archive.Measurement;
+import kr.poturns.blink.db.archive.MeasurementData;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * {@link JsonManager#gson}에 등록되는 DB 객체들의 TypeAdapter.
+ *
+ * <p>Reflection 없이 필드를 직접 읽고 쓰며, 필드 이름과 null 필드를 생략하는 방식은
+ * 기존의 Gson 기본 변환과 같으므로 이전 버전의 디바이스와 JSON을 주고받을 수 있다.
+ * 알 수 없는 필드와 null 값은 무시하며, 이 경우 생성자에서 설정된 기본값이 유지된다.
+ */
+final class JsonAdapters {
+
+	private JsonAdapters() {
+	}
+
+	/**
+	 * null 값이면 읽고 true를 반환한다.
+	 */
+	private static boolean skipNull(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return true;
+		}
+		return false;
+	}
+
+
+
+	static final TypeAdapter<MeasurementData> MEASUREMENT_DATA = new TypeAdapter<MeasurementData>() {
+		@Override
+		public void write(JsonWriter out, MeasurementData value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("MeasurementId").value(value.MeasurementId);
+			out.name("MeasurementDataId").value(value.MeasurementDataId);
+			out.name("GroupId").value(value.GroupId);
+			out.name("Data").value(value.Data);
+			out.name("MeasurementKey").value(value.MeasurementKey);
+			out.name("DateTime").value(value.DateTime);
+			out.endObject();
+		}
+
+		@Override
+		public MeasurementData read(JsonReader in) throws IOException {
+			if (skipNull(in))
+				return null;
+
+			MeasurementData value = new MeasurementData();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (skipNull(in))
+					continue;
+
+				if ("MeasurementId".equals(name))
+					value.MeasurementId = in.nextInt();
+				else if ("MeasurementDataId".equals(name))
+					value.MeasurementDataId = in.nextInt();
+				else if ("GroupId".equals(name))
+					value.GroupId = in.nextInt();
+				else if ("Data".equals(name))
+					value.Data = in.nextString();
+				else if ("MeasurementKey".equals(name))
+					value.MeasurementKey = in.nextString();
+				else if ("DateTime".equals(name))
+					value.DateTime = in.nextString();
+				else
+					in.skipValue();
+			}
+			in.endObject();
+			return value;
+		}
+	};
+
+	static final TypeAdapter<Measurement> MEASUREMENT = new TypeAdapter<Measurement>() {
+		@Override
+		public void write(JsonWriter out, Measurement value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("AppId").value(value.AppId);
+			out.name("MeasurementId").value(value.MeasurementId);
+			out.name("MeasurementName").value(value.MeasurementName);
+			out.name("Measurement").value(value.Measurement);
+			out.name("Type").value(value.Type);
+			out.name("Description").value(value.Description);
+			out.name("MeasurementKey").value(value.MeasurementKey);
+			out.endObject();
+		}
+
+		@Override
+		public Measurement read(JsonReader in) throws IOException {
+			if (skipNull(in))
+				return null;
+
+			Measurement value = new Measurement();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (skipNull(in))
+					continue;
+
+				if ("AppId".equals(name))
+					value.AppId = in.nextInt();
+				else if ("MeasurementId".equals(name))
+					value.MeasurementId = in.nextInt();
+				else if ("MeasurementName".equals(name))
+					value.MeasurementName = in.nextString();
+				else if ("Measurement".equals(name))
+					value.Measurement = in.nextString();
+				else if ("Type".equals(name))
+					value.Type = in.nextString();
+				else if ("Description".equals(name))
+					value.Description = in.nextString();
+				else if ("MeasurementKey".equals(name))
+					value.MeasurementKey = in.nextString();
+				else
+					in.skipValue();
+			}
+			in.endObject();
+			return value;
+		}
+	};
+
+	static final TypeAdapter<Function> FUNCTION = new TypeAdapter<Function>() {
+		@Override
+		public void write(JsonWriter out, Function value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("AppId").value(value.AppId);
+			out.name("Function").value(value.Function);
+			out.name("Description").value(value.Description);
+			out.name("Action").value(value.Action);
+			out.name("Type").value(value.Type);
+			out.endObject();
+		}
+
+		@Override
+		public Function read(JsonReader in) throws IOException {
+			if (skipNull(in))
+				return null;
+
+			Function value = new Function();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (skipNull(in))
+					continue;
+
+				if ("AppId".equals(name))
+					value.AppId = in.nextInt();
+				else if ("Function".equals(name))
+					value.Function = in.nextString();
+				else if ("Description".equals(name))
+					value.Description = in.nextString();
+				else if ("Action".equals(name))
+					value.Action = in.nextString();
+				else if ("Type".equals(name))
+					value.Type = in.nextInt();
+				else
+					in.skipValue();
+			}
+			in.endObject();
+			return value;
+		}
+	};
+
+	static final TypeAdapter<CallbackData> CALLBACK_DATA = new TypeAdapter<CallbackData>() {
+		@Override
+		public void write(JsonWriter out, CallbackData value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("InDeviceData").value(value.InDeviceData);
+			out.name("OutDeviceData").value(value.OutDeviceData);
+			out.name("Result").value(value.Result);
+			out.name("ResultDetail").value(value.ResultDetail);
+			out.endObject();
+		}
+
+		@Override
+		public CallbackData read(JsonReader in) throws IOException {
+			if (skipNull(in))
+				return null;
+
+			CallbackData value = new CallbackData();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (skipNull(in))
+					continue;
+
+				if ("InDeviceData".equals(name))
+					value.InDeviceData = in.nextString();
+				else if ("OutDeviceData".equals(name))
+					value.OutDeviceData = in.nextString();
+				else if ("Result".equals(name))
+					value.Result = in.nextBoolean();
+				else if ("ResultDetail".equals(name))
+					value.ResultDetail = in.nextInt();
+				else
+					in.skipValue();
+			}
+			in.endObject();
+			return value;
+		}
+	};
+
+	/**
+	 * BlinkAppInfo와, 그에 포함된 Device, App, Function, Measurement를 변환한다.
+	 */
+	static final TypeAdapter<BlinkAppInfo> BLINK_APP_INFO = new TypeAdapter<BlinkAppInfo>() {
+		@Override
+		public void write(JsonWriter out, BlinkAppInfo value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("isExist").value(value.isExist);
+
+			if (value.mDevice != null) {
+				out.name("mDevice");
+				writeDevice(out, value.mDevice);
+			}
+			if (value.mApp != null) {
+				out.name("mApp");
+				writeApp(out, value.mApp);
+			}
+			if (value.mFunctionList != null) {
+				out.name("mFunctionList").beginArray();
+				for (Function function : value.mFunctionList)
+					FUNCTION.write(out, function);
+				out.endArray();
+			}
+			if (value.mMeasurementList != null) {
+				out.name("mMeasurementList").beginArray();
+				for (Measurement measurement : value.mMeasurementList)
+					MEASUREMENT.write(out, measurement);
+				out.endArray();
+			}
+			out.endObject();
+		}
+
+		@Override
+		public BlinkAppInfo read(JsonReader in) throws IOException {
+			if (skipNull(in))
+				return null;
+
+			BlinkAppInfo value = new BlinkAppInfo();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (skipNull(in))
+					continue;
+
+				if ("isExist".equals(name)) {
+					value.isExist = in.nextBoolean();
+
+				} else if ("mDevice".equals(name)) {
+					value.mDevice = readDevice(in);
+
+				} else if ("mApp".equals(name)) {
+					value.mApp = readApp(in);
+
+				} else if ("mFunctionList".equals(name)) {
+					value.mFunctionList = new ArrayList<Function>();
+					in.beginArray();
+					while (in.hasNext())
+						value.mFunctionList.add(FUNCTION.read(in));
+					in.endArray();
+
+				} else if ("mMeasurementList".equals(name)) {
+					value.mMeasurementList = new ArrayList<Measurement>();
+					in.beginArray();
+					while (in.hasNext())
+						value.mMeasurementList.add(MEASUREMENT.read(in));
+					in.endArray();
+
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return value;
+		}
+	};
+
+	private static void writeDevice(JsonWriter out, Device value) throws IOException {
+		out.beginObject();
+		out.name("DeviceId").value(value.DeviceId);
+		out.name("Device").value(value.Device);
+		out.name("UUID").value(value.UUID);
+		out.name("MacAddress").value(value.MacAddress);
+		out.name("DateTime").value(value.DateTime);
+		out.endObject();
+	}
+
+	private static Device readDevice(JsonReader in) throws IOException {
+		if (skipNull(in))
+			return null;
+
+		Device value = new Device();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (skipNull(in))
+				continue;
+
+			if ("DeviceId".equals(name))
+				value.DeviceId = in.nextInt();
+			else if ("Device".equals(name))
+				value.Device = in.nextString();
+			else if ("UUID".equals(name))
+				value.UUID = in.nextString();
+			else if ("MacAddress".equals(name))
+				value.MacAddress = in.nextString();
+			else if ("DateTime".equals(name))
+				value.DateTime = in.nextString();
+			else
+				in.skipValue();
+		}
+		in.endObject();
+		return value;
+	}
+
+	/**
+	 * AppIcon은 기존의 Gson 변환과 같이 숫자 배열로 쓴다.
+	 */
+	private static void writeApp(JsonWriter out, App value) throws IOException {
+		out.beginObject();
+		out.name("AppId").value(value.AppId);
+		out.name("DeviceId").value(value.DeviceId);
+		out.name("PackageName").value(value.PackageName);
+		out.name("AppName").value(value.AppName);
+		if (value.AppIcon != null) {
+			out.name("AppIcon").beginArray();
+			for (byte b : value.AppIcon)
+				out.value(b);
+			out.endArray();
+		}
+		out.name("Version").value(value.Version);
+		out.name("DateTime").value(value.DateTime);
+		out.endObject();
+	}
+
+	private static App readApp(JsonReader in) throws IOException {
+		if (skipNull(in))
+			return null;
+
+		App value = new App();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (skipNull(in))
+				continue;
+
+			if ("AppId".equals(name)) {
+				value.AppId = in.nextInt();
+
+			} else if ("DeviceId".equals(name)) {
+				value.DeviceId = in.nextInt();
+
+			} else if ("PackageName".equals(name)) {
+				value.PackageName = in.nextString();
+
+			} else if ("AppName".equals(name)) {
+				value.AppName = in.nextString();
+
+			} else if ("AppIcon".equals(name)) {
+				ByteArrayOutputStream icon = new ByteArrayOutputStream();
+				in.beginArray();
+				while (in.hasNext())
+					icon.write(in.nextInt());
+				in.endArray();
+				value.AppIcon = icon.toByteArray();
+
+			} else if ("Version".equals(name)) {
+				value.Version = in.nextInt();
+
+			} else if ("DateTime".equals(name)) {
+				value.DateTime = in.nextString();
+
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return value;
+	}
+}
@@ -4,9 +4,11 @@ import java.lang.reflect.Type;
 import java.util.ArrayList;
 
 import kr.poturns.blink.db.archive.BlinkAppInfo;
+import kr.poturns.blink.db.archive.CallbackData;
 import kr.poturns.blink.db.archive.Function;
 import kr.poturns.blink.db.archive.Measurement;
 import kr.poturns.blink.db.archive.MeasurementData;
+import kr.poturns.blink.internal.comm.BlinkDevice;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -15,50 +17,52 @@ import com.google.gson.reflect.TypeToken;
 /**
  * DB에서 사용되는 여러 객체들을 Json으로 만들어주는 전역 함수들을 선언하고 있다.
  * 
+ * <p>라이브러리 전체에서 사용하는 {@link Gson} 인스턴스를 관리한다. Gson은 Thread-safe하므로
+ * 필요할 때마다 생성하지 않고 {@link #gson}을 사용한다.
+ * 주요 DB 객체와 {@link BlinkDevice}는 {@link JsonAdapters}의 TypeAdapter로 변환되며,
+ * 전송량을 줄이기 위해 Pretty-Printing을 사용하지 않는다.
+ * 
  * @author Jiwon
  *
  */
 public class JsonManager {
 	//private final String tag = "JsonManager";
-	public static Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	public static final Gson gson = new GsonBuilder()
+			.registerTypeAdapter(BlinkAppInfo.class, JsonAdapters.BLINK_APP_INFO)
+			.registerTypeAdapter(Measurement.class, JsonAdapters.MEASUREMENT)
+			.registerTypeAdapter(MeasurementData.class, JsonAdapters.MEASUREMENT_DATA)
+			.registerTypeAdapter(Function.class, JsonAdapters.FUNCTION)
+			.registerTypeAdapter(CallbackData.class, JsonAdapters.CALLBACK_DATA)
+			.registerTypeAdapter(BlinkDevice.class, new BlinkDevice.GsonAdapter())
+			.create();
+	
+	private static final Type BLINKAPPINFO_LIST = new TypeToken<ArrayList<BlinkAppInfo>>(){}.getType();
+	private static final Type MEASUREMENT_LIST = new TypeToken<ArrayList<Measurement>>(){}.getType();
+	private static final Type MEASUREMENTDATA_LIST = new TypeToken<ArrayList<MeasurementData>>(){}.getType();
 	
 	public static String obtainJsonBlinkAppInfo(ArrayList<BlinkAppInfo> mList){
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		String ret = gson.toJson(mList);
-		return ret;
+		return gson.toJson(mList, BLINKAPPINFO_LIST);
 	}
 	public static ArrayList<BlinkAppInfo> obtainJsonBlinkAppInfo(String json){
-		Type Type = new TypeToken<ArrayList<BlinkAppInfo>>(){}.getType();
-		ArrayList<BlinkAppInfo> ret = new Gson().fromJson(json, Type);
-		return ret;
+		return gson.fromJson(json, BLINKAPPINFO_LIST);
 	}
 	public static String obtainJsonMeasurement(ArrayList<Measurement> mMeasurement){
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		String ret = gson.toJson(mMeasurement);
-		return ret;
+		return gson.toJson(mMeasurement, MEASUREMENT_LIST);
 	}
 	
 	public static ArrayList<Measurement> obtainJsonMeasurement(String Json){
-		Type MeasurementType = new TypeToken<ArrayList<Measurement>>(){}.getType();
-		ArrayList<Measurement> ret = new Gson().fromJson(Json, MeasurementType);
-		return ret;
+		return gson.fromJson(Json, MEASUREMENT_LIST);
 	}
 	
 	public static String obtainJsonMeasurementData(ArrayList<MeasurementData> mMeasurementData){
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		String ret = gson.toJson(mMeasurementData);
-		return ret;
+		return gson.toJson(mMeasurementData, MEASUREMENTDATA_LIST);
 	}
 	
 	public static ArrayList<MeasurementData> obtainJsonMeasurementData(String json){
-		Type MeasurementDataType = new TypeToken<ArrayList<MeasurementData>>(){}.getType();
-		ArrayList<MeasurementData> ret = new Gson().fromJson(json, MeasurementDataType);
-		return ret;
+		return gson.fromJson(json, MEASUREMENTDATA_LIST);
 	}
 	
 	public static Function obtainJsonFunction(String jsonFunction){
-	      Type FunctionType = new TypeToken<Function>(){}.getType();
-	      Function ret = new Gson().fromJson(jsonFunction, FunctionType);
-	      return ret;
-	   }
+		return gson.fromJson(jsonFunction, Function.class);
+	}
 }
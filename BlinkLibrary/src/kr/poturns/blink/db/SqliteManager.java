@@ -1,6 +1,9 @@
 package kr.poturns.blink.db;
 
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -13,6 +16,7 @@ import kr.poturns.blink.db.archive.Device;
 import kr.poturns.blink.db.archive.Function;
 import kr.poturns.blink.db.archive.Measurement;
 import kr.poturns.blink.db.archive.MeasurementData;
+import kr.poturns.blink.db.archive.MeasurementDigest;
 import kr.poturns.blink.util.ClassUtil;
 import android.content.ContentResolver;
 import android.content.ContentValues;
@@ -24,7 +28,6 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 /**
  * Sqlite에 직접 쿼리를 날리는 클래스 또한 여러 Sqlite 쿼리와 DB 변경에 관한 URI, 몇 가지 TYPE, DB경로를 정의하고
@@ -43,7 +46,7 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 	protected final String SQL_SELECT_APP = "SELECT * FROM App ";
 	protected final String SQL_SELECT_FUNCTION = "SELECT * FROM Function ";
 	protected final String SQL_SELECT_MEASUREMENT = "SELECT * FROM Measurement ";
-	protected final String SQL_SELECT_MEASUREMENTDATA = "SELECT * FROM MeasurementData ";
+	protected final String SQL_SELECT_MEASUREMENTDATA = "SELECT MeasurementData.*, Measurement.MeasurementKey FROM MeasurementData LEFT JOIN Measurement USING (MeasurementId) ";
 	protected final String SQL_SELECT_SYNCMEASUREMENTDATA = "SELECT * FROM SyncMeasurementData ";
 	protected final String SQL_SELECT_GROUPID = "SELECT max(GroupId) FROM MeasurementData ";
 	protected final String SQL_SELECT_MEASUREMENTDATAID = "SELECT max(MeasurementId) FROM MeasurementData ";
@@ -54,6 +57,13 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 	protected final String SQL_DELETE_MEASUREMENTDATA = "delete from MeasurementData ";
 	protected final String SQL_SELECT_LOG = "SELECT * FROM BlinkLog ";
 
+	/**
+	 * Database 버전<br>
+	 * 2 : Measurement 테이블에 MeasurementKey 칼럼 추가<br>
+	 * 3 : MeasurementDigest 테이블 추가
+	 */
+	private static final int DATABASE_VERSION = 3;
+
 	Context CONTEXT;
 	SQLiteDatabase mSQLiteDatabase;
 	Gson gson;
@@ -65,14 +75,15 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 	}
 
 	/**
-	 * SQLiteOpenHelper의 생성자에 기본적인 버전(1), DB 경로를 지정하여 호출한다.
+	 * SQLiteOpenHelper의 생성자에 기본적인 버전(DATABASE_VERSION), DB 경로를 지정하여 호출한다.
 	 * 
 	 * @param context
 	 */
 	public SqliteManager(Context context) {
-		super(context, EXTERNAL_DB_FILE_PATH + EXTERNAL_DB_FILE_NAME, null, 1);
+		super(context, EXTERNAL_DB_FILE_PATH + EXTERNAL_DB_FILE_NAME, null,
+				DATABASE_VERSION);
 		mSQLiteDatabase = this.getWritableDatabase();
-		gson = new GsonBuilder().setPrettyPrinting().create();
+		gson = JsonManager.gson;
 		CONTEXT = context;
 	}
 
@@ -83,7 +94,17 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-		updateBlinkDatabase(db);
+		switch (oldVersion) {
+		case 1:
+			upgradeMeasurementKey(db);
+			// 다음 버전의 변경사항도 적용한다.
+		case 2:
+			upgradeMeasurementDigest(db);
+			break;
+
+		default:
+			updateBlinkDatabase(db);
+		}
 	}
 
 	/**
@@ -122,7 +143,9 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 				+ "'MeasurementName' TEXT NOT NULL,"
 				+ "'Measurement' TEXT NOT NULL," + "'Type' TEXT NOT NULL,"
 				+ "'Description' TEXT NOT NULL,"
+				+ "'MeasurementKey' TEXT,"
 				+ "UNIQUE ('AppId','Measurement'),"
+				+ "UNIQUE ('MeasurementKey'),"
 				+ "FOREIGN KEY('AppId') REFERENCES App('AppId')" + ");";
 		// sql문 실행하기
 		db.execSQL(sql);
@@ -170,6 +193,17 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 		db.execSQL(sql);
 
 		Log.i(tag, "SynchronizeDatabase ok");
+
+		sql = "create table 'MeasurementDigest' ("
+				+ "'MeasurementKey' TEXT NOT NULL,"
+				+ "'Bucket' TEXT NOT NULL,"
+				+ "'Digest' INTEGER NOT NULL DEFAULT (0),"
+				+ "'Count' INTEGER NOT NULL DEFAULT (0),"
+				+ "PRIMARY KEY ('MeasurementKey','Bucket')"
+				+ ");";
+		db.execSQL(sql);
+
+		Log.i(tag, "MeasurementDigest ok");
 	}
 
 	/**
@@ -184,11 +218,236 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 		db.execSQL("DROP TABLE IF EXISTS Function");
 		db.execSQL("DROP TABLE IF EXISTS Data");
 		db.execSQL("DROP TABLE IF EXISTS MeasurementData");
-		db.execSQL("DROP TABLE IF EXISTS Log");
+		db.execSQL("DROP TABLE IF EXISTS BlinkLog");
+		db.execSQL("DROP TABLE IF EXISTS SyncMeasurementData");
+		db.execSQL("DROP TABLE IF EXISTS MeasurementDigest");
 		// 새로 생성될 수 있도록 onCreate() 메소드를 생성한다.
 		createBlinkDatabase(db);
 	}
 
+	/**
+	 * 버전 1의 Database에 MeasurementKey 칼럼을 추가하고, 기존 Measurement의 Key를 채워넣는다.<br>
+	 * 측정 데이터는 그대로 유지된다. MacAddress가 없는 Device의 Measurement는 Key 없이 남는다.
+	 * (UNIQUE 칼럼은 여러 NULL을 허용하므로, 이런 Device들끼리 같은 Key를 가지게 되면 Index를 만들 수 없다.)
+	 * 
+	 * @param db
+	 */
+	private void upgradeMeasurementKey(SQLiteDatabase db) {
+		db.beginTransaction();
+		try {
+			db.execSQL("ALTER TABLE Measurement ADD COLUMN 'MeasurementKey' TEXT");
+
+			Cursor mCursor = db.rawQuery(
+					"SELECT Measurement.MeasurementId, Measurement.Measurement, App.PackageName, Device.MacAddress "
+							+ "FROM Measurement JOIN App USING (AppId) JOIN Device USING (DeviceId) "
+							+ "WHERE Device.MacAddress IS NOT NULL",
+					null);
+			try {
+				ContentValues values = new ContentValues();
+				while (mCursor.moveToNext()) {
+					values.put("MeasurementKey", Measurement.obtainMeasurementKey(
+							mCursor.getString(3), mCursor.getString(2),
+							mCursor.getString(1)));
+					db.update("Measurement", values, "MeasurementId=?",
+							new String[] { mCursor.getString(0) });
+				}
+			} finally {
+				mCursor.close();
+			}
+
+			db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS 'MeasurementKeyIndex' ON Measurement ('MeasurementKey')");
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		Log.i(tag, "upgradeMeasurementKey ok");
+	}
+
+	/**
+	 * 버전 2의 Database에 MeasurementDigest 테이블을 추가하고, 기존 측정 데이터로부터 Digest를 계산한다.
+	 * 
+	 * @param db
+	 */
+	private void upgradeMeasurementDigest(SQLiteDatabase db) {
+		db.beginTransaction();
+		try {
+			db.execSQL("create table 'MeasurementDigest' ("
+					+ "'MeasurementKey' TEXT NOT NULL,"
+					+ "'Bucket' TEXT NOT NULL,"
+					+ "'Digest' INTEGER NOT NULL DEFAULT (0),"
+					+ "'Count' INTEGER NOT NULL DEFAULT (0),"
+					+ "PRIMARY KEY ('MeasurementKey','Bucket')" + ");");
+			rebuildMeasurementDigest(db, null);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		Log.i(tag, "upgradeMeasurementDigest ok");
+	}
+
+	/**
+	 * MeasurementData 한 행의 Hash를 계산한다. <br>
+	 * 디바이스마다 다른 MeasurementId, MeasurementDataId 대신 MeasurementKey와 GroupId를 사용하므로,
+	 * 같은 데이터는 어느 디바이스에서든 같은 Hash를 가진다.
+	 * 
+	 * @param MeasurementKey
+	 * @param GroupId
+	 * @param Data
+	 * @param DateTime
+	 * @return
+	 */
+	protected static long obtainRowDigest(String MeasurementKey, int GroupId,
+			String Data, String DateTime) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			md.update((MeasurementKey + "/" + GroupId + "/" + Data + "/" + DateTime)
+					.getBytes("UTF-8"));
+			byte[] byteData = md.digest();
+
+			long digest = 0;
+			for (int i = 0; i < 8; i++)
+				digest = (digest << 8) | (byteData[i] & 0xff);
+			return digest;
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * DateTime이 속한 가장 작은 단위의 Bucket을 얻는다.
+	 * 
+	 * @param DateTime
+	 * @return
+	 */
+	protected static String obtainDigestBucket(String DateTime) {
+		return DateTime.substring(0,
+				MeasurementDigest.BUCKET_LENGTH[MeasurementDigest.LEVEL_LEAF]);
+	}
+
+	/**
+	 * 새로 등록된 MeasurementData의 Hash를 해당 Bucket의 Digest에 반영한다.
+	 * 
+	 * @param db
+	 * @param MeasurementKey
+	 * @param GroupId
+	 * @param Data
+	 * @param DateTime
+	 */
+	protected static void addMeasurementDigest(SQLiteDatabase db,
+			String MeasurementKey, int GroupId, String Data, String DateTime) {
+		if (MeasurementKey == null || DateTime == null)
+			return;
+
+		String Bucket = obtainDigestBucket(DateTime);
+		long digest = obtainRowDigest(MeasurementKey, GroupId, Data, DateTime);
+		int count = 1;
+
+		String[] args = { MeasurementKey, Bucket };
+		Cursor mCursor = db.rawQuery(
+				"SELECT Digest, Count FROM MeasurementDigest where MeasurementKey=? and Bucket=?",
+				args);
+		if (mCursor.moveToNext()) {
+			digest ^= mCursor.getLong(0);
+			count += mCursor.getInt(1);
+		}
+		mCursor.close();
+
+		ContentValues values = new ContentValues();
+		values.put("MeasurementKey", MeasurementKey);
+		values.put("Bucket", Bucket);
+		values.put("Digest", digest);
+		values.put("Count", count);
+		db.insertWithOnConflict("MeasurementDigest", null, values,
+				SQLiteDatabase.CONFLICT_REPLACE);
+	}
+
+	/**
+	 * 측정 데이터로부터 MeasurementDigest를 다시 계산한다. 측정 데이터가 삭제되었을 때 호출된다.
+	 * 
+	 * @param db
+	 * @param where
+	 *            다시 계산할 MeasurementData의 조건, null이면 전체
+	 */
+	protected static void rebuildMeasurementDigest(SQLiteDatabase db,
+			String where) {
+		String sql = "SELECT Measurement.MeasurementKey, MeasurementData.GroupId, MeasurementData.Data, MeasurementData.DateTime "
+				+ "FROM MeasurementData JOIN Measurement USING (MeasurementId) where Measurement.MeasurementKey is not null";
+		if (where == null || where.equals("")) {
+			db.delete("MeasurementDigest", null, null);
+		} else {
+			db.delete("MeasurementDigest",
+					"MeasurementKey in (SELECT MeasurementKey FROM Measurement where "
+							+ where + ")", null);
+			sql += " and " + where;
+		}
+
+		HashMap<String, MeasurementDigest> mDigestMap = new HashMap<String, MeasurementDigest>();
+		MeasurementDigest mMeasurementDigest;
+		String MeasurementKey, DateTime;
+		Cursor mCursor = db.rawQuery(sql, null);
+		while (mCursor.moveToNext()) {
+			MeasurementKey = mCursor.getString(0);
+			DateTime = mCursor.getString(3);
+			mMeasurementDigest = new MeasurementDigest(MeasurementKey,
+					obtainDigestBucket(DateTime));
+
+			MeasurementDigest prev = mDigestMap.get(mMeasurementDigest
+					.obtainNodeKey());
+			if (prev == null)
+				mDigestMap.put(mMeasurementDigest.obtainNodeKey(),
+						mMeasurementDigest);
+			else
+				mMeasurementDigest = prev;
+
+			mMeasurementDigest.Digest ^= obtainRowDigest(MeasurementKey,
+					mCursor.getInt(1), mCursor.getString(2), DateTime);
+			mMeasurementDigest.Count++;
+		}
+		mCursor.close();
+
+		for (MeasurementDigest digest : mDigestMap.values()) {
+			ContentValues values = new ContentValues();
+			values.put("MeasurementKey", digest.MeasurementKey);
+			values.put("Bucket", digest.Bucket);
+			values.put("Digest", digest.Digest);
+			values.put("Count", digest.Count);
+			db.insert("MeasurementDigest", null, values);
+		}
+	}
+
+	/**
+	 * 주어진 MeasurementId에 해당하는 MeasurementDigest를 모두 삭제한다. Measurement의 측정 데이터를 모두
+	 * 삭제할 때 호출된다.
+	 * 
+	 * @param MeasurementId
+	 */
+	protected void removeMeasurementDigest(int MeasurementId) {
+		mSQLiteDatabase.delete("MeasurementDigest",
+				"MeasurementKey in (SELECT MeasurementKey FROM Measurement where MeasurementId=?)",
+				new String[] { String.valueOf(MeasurementId) });
+	}
+
+	/**
+	 * 주어진 MeasurementId의 MeasurementKey를 얻는다.
+	 * 
+	 * @param MeasurementId
+	 * @return
+	 */
+	protected String obtainMeasurementKey(int MeasurementId) {
+		String[] args = { String.valueOf(MeasurementId) };
+		Cursor mCursor = mSQLiteDatabase.rawQuery(
+				"SELECT MeasurementKey FROM Measurement where MeasurementId=?",
+				args);
+		String MeasurementKey = null;
+		if (mCursor.moveToNext())
+			MeasurementKey = mCursor.getString(0);
+		mCursor.close();
+		return MeasurementKey;
+	}
+
 	/**
 	 * 주어진 파라미터의 BlinkAppInfo를 Database에 등록한다. 등록하면서 자동적으로 부여되는 데이터를 얻기 위해 등록 후
 	 * 다시 obtain- 매소드를 호출한다. 등록이 완료될 때 URI_OBSERVER_BLINKAPP에 notifyChange를
@@ -477,6 +736,9 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 		for (int i = 0; i < mMeasurementList.size(); i++) {
 			mMeasurement = mMeasurementList.get(i);
 			mMeasurement.AppId = mApp.AppId;
+			mMeasurement.MeasurementKey = Measurement.obtainMeasurementKey(
+					mBlinkAppInfo.mDevice.MacAddress, mApp.PackageName,
+					mMeasurement.Measurement);
 			// if(mMeasurement.Measurement.endsWith("/DateTime"))continue;
 			ContentValues values = new ContentValues();
 			values.put("AppId", "" + mMeasurement.AppId);
@@ -484,6 +746,7 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 			values.put("Measurement", "" + mMeasurement.Measurement);
 			values.put("Type", "" + mMeasurement.Type);
 			values.put("Description", "" + mMeasurement.Description);
+			values.put("MeasurementKey", mMeasurement.MeasurementKey);
 			mSQLiteDatabase.insert("Measurement", null, values);
 			Log.i(tag, "registerMeasurement OK");
 		}
@@ -573,6 +836,8 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 					.getColumnIndex("Type"));
 			mMeasurement.Description = mCursor.getString(mCursor
 					.getColumnIndex("Description"));
+			mMeasurement.MeasurementKey = mCursor.getString(mCursor
+					.getColumnIndex("MeasurementKey"));
 			mBlinkAppInfo.mMeasurementList.add(mMeasurement);
 		}
 	}
@@ -662,6 +927,8 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 					.getColumnIndex("MeasurementId"));
 			mMeasurement.Type = mCursor.getString(mCursor
 					.getColumnIndex("Type"));
+			mMeasurement.MeasurementKey = mCursor.getString(mCursor
+					.getColumnIndex("MeasurementKey"));
 			mMeasurementList.add(mMeasurement);
 		}
 		return mMeasurementList;
@@ -695,6 +962,8 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 			//TODO review
 			mMeasurementData.setDateTime(mCursor.getString(mCursor
 					.getColumnIndex("DateTime")));
+			mMeasurementData.MeasurementKey = mCursor.getString(mCursor
+					.getColumnIndex("MeasurementKey"));
 			mMeasurementDataList.add(mMeasurementData);
 		}
 		return mMeasurementDataList;
@@ -702,7 +971,8 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 
 	/**
 	 * mMeasurementList에 속한 MeasurementData의 리스트를 반환한다. <br>
-	 * 조건으로 시간을 받으며 시간이 null일 경우 조건에 추가되지 않는다.
+	 * 조건으로 시간을 받으며 시간이 null일 경우 조건에 추가되지 않는다.<br>
+	 * MeasurementKey가 있는 Measurement는 Key로, 그렇지 않으면 MeasurementId로 검색한다.
 	 * 
 	 * @param mMeasurementList
 	 * @param DateTimeFrom
@@ -717,14 +987,22 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 		String where = "where ";
 		ArrayList<String> condition = new ArrayList<String>();
 		String MeasurementIdcondition = "";
+		String MeasurementKeycondition = "";
 		ArrayList<MeasurementData> mMeasurementDataList = new ArrayList<MeasurementData>();
 		if (mMeasurementList.size() == 0)
 			return mMeasurementDataList;
 
+		Measurement mMeasurement;
 		for (int i = 0; i < mMeasurementList.size(); i++) {
-			MeasurementIdcondition += mMeasurementList.get(i).MeasurementId;
-			if (i != mMeasurementList.size() - 1) {
-				MeasurementIdcondition += ",";
+			mMeasurement = mMeasurementList.get(i);
+			if (mMeasurement.MeasurementKey != null) {
+				if (MeasurementKeycondition.length() > 0)
+					MeasurementKeycondition += ",";
+				MeasurementKeycondition += "'" + mMeasurement.MeasurementKey + "'";
+			} else {
+				if (MeasurementIdcondition.length() > 0)
+					MeasurementIdcondition += ",";
+				MeasurementIdcondition += mMeasurement.MeasurementId;
 			}
 		}
 
@@ -732,7 +1010,8 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 			condition.add("DateTime >= '" + DateTimeFrom + "'");
 		if (DateTimeTo != null && !DateTimeTo.equals(""))
 			condition.add("DateTime <= '" + DateTimeTo + "'");
-		condition.add("MeasurementId in (" + MeasurementIdcondition + ")");
+		condition.add("(MeasurementId in (" + MeasurementIdcondition
+				+ ") or MeasurementKey in (" + MeasurementKeycondition + "))");
 
 		for (int i = 0; i < condition.size(); i++) {
 			where += condition.get(i);
@@ -754,6 +1033,8 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 			//TODO review
 			mMeasurementData.setDateTime(mCursor.getString(mCursor
 					.getColumnIndex("DateTime")));
+			mMeasurementData.MeasurementKey = mCursor.getString(mCursor
+					.getColumnIndex("MeasurementKey"));
 			mMeasurementDataList.add(mMeasurementData);
 		}
 		return mMeasurementDataList;
@@ -793,24 +1074,39 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 		ArrayList<Measurement> mMeasurementList = mBlinkAppInfo.mMeasurementList;
 		Field[] mFields = obj.getClass().getFields();
 		int GroupId = obtainMeasurementDataGroupId() + 1;
+		// 같은 객체의 데이터는 같은 시간으로 등록한다.
+		String DateTime = mMeasurementData.obtainDateTime();
 		Log.i(tag, "GroupId : " + GroupId + " Fields Length : "+mFields.length + " Measurement Size : "+mMeasurementList.size());
-		for (int i = 0; i < mFields.length; i++) {
-			for (int j = 0; j < mMeasurementList.size(); j++) {
-				if (mMeasurementList.get(j).Measurement.contentEquals(ClassUtil
-						.obtainFieldSchema(mFields[i]))) {
-					mMeasurementData.MeasurementId = mMeasurementList.get(j).MeasurementId;
-					mMeasurementData.Data = mFields[i].get(obj).toString();
-					// GroupId, MeasurementId, Data 등록
-					values.put("GroupId", GroupId);
-					values.put("MeasurementId", ""
-							+ mMeasurementData.MeasurementId);
-					values.put("Data", mMeasurementData.Data);
-					mSQLiteDatabase.insert("MeasurementData", null, values);
-					Log.i(tag, "registerMeasurementData OK : " + GroupId + "/"
-							+ mMeasurementData.MeasurementId + "/"
-							+ mMeasurementData.Data);
+		mSQLiteDatabase.beginTransaction();
+		try {
+			for (int i = 0; i < mFields.length; i++) {
+				for (int j = 0; j < mMeasurementList.size(); j++) {
+					if (mMeasurementList.get(j).Measurement.contentEquals(ClassUtil
+							.obtainFieldSchema(mFields[i]))) {
+						mMeasurementData.MeasurementId = mMeasurementList.get(j).MeasurementId;
+						mMeasurementData.MeasurementKey = mMeasurementList.get(j).MeasurementKey;
+						if (mMeasurementData.MeasurementKey == null)
+							mMeasurementData.MeasurementKey = obtainMeasurementKey(mMeasurementData.MeasurementId);
+						mMeasurementData.Data = mFields[i].get(obj).toString();
+						// GroupId, MeasurementId, Data 등록
+						values.put("GroupId", GroupId);
+						values.put("MeasurementId", ""
+								+ mMeasurementData.MeasurementId);
+						values.put("Data", mMeasurementData.Data);
+						values.put("DateTime", DateTime);
+						if (mSQLiteDatabase.insert("MeasurementData", null, values) != -1)
+							addMeasurementDigest(mSQLiteDatabase,
+									mMeasurementData.MeasurementKey, GroupId,
+									mMeasurementData.Data, DateTime);
+						Log.i(tag, "registerMeasurementData OK : " + GroupId + "/"
+								+ mMeasurementData.MeasurementId + "/"
+								+ mMeasurementData.Data);
+					}
 				}
 			}
+			mSQLiteDatabase.setTransactionSuccessful();
+		} finally {
+			mSQLiteDatabase.endTransaction();
 		}
 		CONTEXT.getContentResolver().notifyChange(URI_OBSERVER_MEASUREMENTDATA,
 				null);
@@ -1048,6 +1344,8 @@ public class SqliteManager extends SQLiteOpenHelper implements IBlinkDatabase {
 				where += " and ";
 		}
 		int ret = mSQLiteDatabase.delete("MeasurementData", where, null);
+		rebuildMeasurementDigest(mSQLiteDatabase, "MeasurementId in ("
+				+ MeasurementIdcondition + ")");
 		CONTEXT.getContentResolver().notifyChange(URI_OBSERVER_BLINKAPP, null);
 		return ret;
 	}
@@ -1,23 +1,19 @@
 package kr.poturns.blink.db;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.Set;
-import kr.poturns.blink.db.archive.App;
 import kr.poturns.blink.db.archive.BlinkAppInfo;
-import kr.poturns.blink.db.archive.Device;
-import kr.poturns.blink.db.archive.Function;
-import kr.poturns.blink.db.archive.Measurement;
 import kr.poturns.blink.db.archive.MeasurementData;
+import kr.poturns.blink.db.archive.MeasurementDigest;
 import kr.poturns.blink.db.archive.SyncMeasurementData;
 import kr.poturns.blink.internal.comm.BlinkDevice;
-import android.annotation.SuppressLint;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 /**
@@ -39,66 +35,12 @@ public class SyncDatabaseManager extends BlinkDatabaseManager {
 	 */
 	public final Center center;
 
-	private static final int TEMP_MEASUREMENT_ID = 999999;
-
 	public SyncDatabaseManager(Context context) {
 		super(context);
 		wearable = new Wearable();
 		center = new Center();
 	}
 
-	/**
-	 * 기존 MeasurementId와 변경된 MeasurementId가 저장된 HashMap을 얻는다.
-	 * 
-	 * @return
-	 */
-	@SuppressLint("UseSparseArrays")
-	private HashMap<Integer, Integer> obtainMeasurementMap(
-			List<BlinkAppInfo> SystemDatabaseObjctList) {
-		List<BlinkAppInfo> oldSystemDatabaseObject = obtainBlinkApp();
-		List<BlinkAppInfo> newSystemDatabaseObject = SystemDatabaseObjctList;
-
-		List<Measurement> oldMeasurementList;
-		List<Measurement> newMeasurementList;
-
-		Measurement oldMeasurement;
-		Measurement newMeasurement;
-
-		HashMap<Integer, Integer> MeasurementMap = new HashMap<Integer, Integer>();
-
-		// 새로운 BlinkAppInfo 리스트의 인덱스
-		for (int i = 0; i < newSystemDatabaseObject.size(); i++) {
-			// 기존 BlinkAppInfo 리스트의 인덱스
-			for (int j = 0; j < oldSystemDatabaseObject.size(); j++) {
-				// 동일한 systemDatabaseObject 검색
-				if (newSystemDatabaseObject.get(i).mDevice.MacAddress
-						.contentEquals(oldSystemDatabaseObject.get(j).mDevice.MacAddress)
-						&& newSystemDatabaseObject.get(i).mApp.PackageName
-								.contentEquals(oldSystemDatabaseObject.get(j).mApp.PackageName)) {
-					oldMeasurementList = oldSystemDatabaseObject.get(j).mMeasurementList;
-					newMeasurementList = newSystemDatabaseObject.get(i).mMeasurementList;
-
-					// 동일한 Measurement 검색
-					for (int k = 0; k < newMeasurementList.size(); k++) {
-						newMeasurement = newMeasurementList.get(k);
-						for (int l = 0; l < oldMeasurementList.size(); l++) {
-							oldMeasurement = oldMeasurementList.get(l);
-							if (newMeasurement.Measurement
-									.contentEquals(oldMeasurement.Measurement)) {
-								if (oldMeasurement.MeasurementId != newMeasurement.MeasurementId)
-									MeasurementMap.put(
-											oldMeasurement.MeasurementId,
-											newMeasurement.MeasurementId);
-							}
-						}
-					}
-				}
-			}
-		}
-
-		return MeasurementMap;
-	}
-
 	/**
 	 * DB에 저장되어 있는 데이터와 비교하여 추가된 BlinkAppInfo 리스트를 얻는다.
 	 * 
@@ -136,92 +78,6 @@ public class SyncDatabaseManager extends BlinkDatabaseManager {
 		return AddedBlinkAppInfoList;
 	}
 
-	/**
-	 * BlinkAppInfo에 있는 정보들을 모두 입력한다. <br>
-	 * register는 id값을 sqlite에서 만들어서 BlinkAppInfo에 변경해주지만 여기서는 있는 그대로 입력된다.
-	 * 
-	 * @param mBlinkAppInfo
-	 */
-	private void insertBlinkApp(BlinkAppInfo mBlinkAppInfo) {
-		insertDevice(mBlinkAppInfo);
-		insertApp(mBlinkAppInfo);
-		insertFunction(mBlinkAppInfo);
-		insertMeasurement(mBlinkAppInfo);
-	}
-
-	/**
-	 * BlinkAppInfo에 있는 Device 정보를 입력한다.<br>
-	 * ID, DateTime도 그대로 입력된다. insertBlinkApp()에서 호출된다.
-	 * 
-	 * @param mBlinkAppInfo
-	 */
-	private void insertDevice(BlinkAppInfo mBlinkAppInfo) {
-		Device mDevice = mBlinkAppInfo.mDevice;
-		ContentValues values = new ContentValues();
-		values.put("DeviceId", mDevice.DeviceId);
-		values.put("Device", mDevice.Device);
-		values.put("UUID", mDevice.UUID);
-		values.put("MacAddress", mDevice.MacAddress);
-		values.put("DateTime", mDevice.DateTime);
-		mSQLiteDatabase.insert("Device", null, values);
-	}
-
-	/**
-	 * BlinkAppInfo에 있는 App 정보를 입력한다. <br>
-	 * ID, DateTime도 그대로 입력된다. insertBlinkApp()에서 호출된다.
-	 * 
-	 * @param mBlinkAppInfo
-	 */
-	private void insertApp(BlinkAppInfo mBlinkAppInfo) {
-		App mApp = mBlinkAppInfo.mApp;
-		ContentValues values = new ContentValues();
-		values.put("AppId", mApp.AppId);
-		values.put("DeviceId", mApp.DeviceId);
-		values.put("PackageName", mApp.PackageName);
-		values.put("AppName", mApp.AppName);
-		values.put("AppIcon", mApp.AppIcon);
-		values.put("Version", mApp.Version);
-		values.put("DateTime", mApp.DateTime);
-		mSQLiteDatabase.insert("App", null, values);
-	}
-
-	/**
-	 * BlinkAppInfo에 있는 Measurement 정보를 입력한다.<br>
-	 * ID, DateTime도 그대로 입력된다. insertBlinkApp()에서 호출된다.
-	 * 
-	 * @param mBlinkAppInfo
-	 */
-	private void insertMeasurement(BlinkAppInfo mBlinkAppInfo) {
-		for (Measurement mMeasurement : mBlinkAppInfo.mMeasurementList) {
-			ContentValues values = new ContentValues();
-			values.put("AppId", mMeasurement.AppId);
-			values.put("MeasurementId", mMeasurement.MeasurementId);
-			values.put("MeasurementName", mMeasurement.MeasurementName);
-			values.put("Measurement", mMeasurement.Measurement);
-			values.put("Type", mMeasurement.Type);
-			values.put("Description", mMeasurement.Description);
-			mSQLiteDatabase.insert("Measurement", null, values);
-		}
-	}
-
-	/**
-	 * BlinkAppInfo에 있는Function 정보를 입력한다.<br>
-	 * ID, DateTime도 그대로 입력된다. insertBlinkApp()에서 호출된다.
-	 * 
-	 * @param mBlinkAppInfo
-	 */
-	private void insertFunction(BlinkAppInfo mBlinkAppInfo) {
-		for (Function mFunction : mBlinkAppInfo.mFunctionList) {
-			ContentValues values = new ContentValues();
-			values.put("AppId", mFunction.AppId);
-			values.put("Function", mFunction.Function);
-			values.put("Description", mFunction.Description);
-			values.put("Action", mFunction.Action);
-			values.put("Type", mFunction.Type);
-			mSQLiteDatabase.insert("Function", null, values);
-		}
-	}
-
 	/**
 	 * SyncMeasurementData를 DB에 저장한다. <br>
 	 * SyncMeasurementData가 기존에 저장되어 있지 않을 경우에 호출된다.
@@ -268,74 +124,111 @@ public class SyncDatabaseManager extends BlinkDatabaseManager {
 	}
 
 	/**
-	 * SystemDatabase 테이블을 모두 삭제한다.<br>
-	 * Device,App,Function,Measurement 테이블을 삭제한다. wearable 디바이스에서 center로부터 받은
-	 * BlinkAppInfo를 입력하기 전에 호출된다.
+	 * DB에 저장된 MeasurementKey와 MeasurementId의 맵을 얻는다. 다른 디바이스로부터 받은 MeasurementData의
+	 * MeasurementId를 현재 디바이스의 MeasurementId로 바꾸기 위해 사용된다.
+	 * 
+	 * @return
 	 */
-	private void removeBlinkAppAll() {
-		mSQLiteDatabase.delete("Device", null, null);
-		mSQLiteDatabase.delete("App", null, null);
-		mSQLiteDatabase.delete("Function", null, null);
-		mSQLiteDatabase.delete("Measurement", null, null);
+	private HashMap<String, Integer> obtainMeasurementKeyMap() {
+		HashMap<String, Integer> MeasurementKeyMap = new HashMap<String, Integer>();
+		Cursor mCursor = mSQLiteDatabase.rawQuery(
+				"SELECT MeasurementKey, MeasurementId FROM Measurement where MeasurementKey is not null",
+				null);
+		while (mCursor.moveToNext()) {
+			MeasurementKeyMap.put(mCursor.getString(0), mCursor.getInt(1));
+		}
+		mCursor.close();
+		return MeasurementKeyMap;
 	}
 
 	/**
-	 * 주어진 MeasurementMap으로 MeasurementData 테이블에서 기존의 Id를 새로운 Id로 변경한다.
+	 * 조건에 맞는 MeasurementDigest를 주어진 단계의 Bucket 단위로 합쳐서 얻는다.
 	 * 
-	 * @param MeasurementMap
+	 * @param where
+	 * @param args
+	 * @param level
+	 *            {@link MeasurementDigest#BUCKET_LENGTH}의 인덱스
+	 * @return
 	 */
-	private void SyncMeasurementData(HashMap<Integer, Integer> MeasurementMap) {
-		String set = "MeasurementId=";
-		String where = "MeasurementId=";
-		int tempKey, tempValue, tempMeasurementId = TEMP_MEASUREMENT_ID;
-
-		Set<Entry<Integer, Integer>> mapSet = MeasurementMap.entrySet();
-		Iterator<Entry<Integer, Integer>> mapIterator;
-		Entry<Integer, Integer> mapEntry;
-		while (mapSet.size() > 0) {
-			mapIterator = mapSet.iterator();
-			if (mapIterator.hasNext()) {
-				mapEntry = mapIterator.next();
-
-				set = "MeasurementId=";
-				where = "MeasurementId=";
-
-				int key = mapEntry.getKey();
-				int value = mapEntry.getValue();
-
-				// 현재 바꾸려는 Id가 이미 존재하면 바꾸려는 Id를 가진 값을 먼저 임시 값으로 변경하고 Map을 셋팅한다.
-				if (MeasurementMap.get(value) != null) {
-					tempKey = value;
-					tempValue = MeasurementMap.get(tempKey);
-
-					// 임시 MeasurementId 값 구하기
-					while (MeasurementMap.get(tempMeasurementId) != null)
-						tempMeasurementId++;
-
-					// 변경할 조건 설정
-					set += tempMeasurementId;
-					where += tempKey;
-
-					// 업데이트
-					updateMeasurementData(set, where);
-
-					// 기존 키로 되어 있는 값을 지우고 임시로 할당한 아이디로 저장한다.
-					MeasurementMap.remove(tempKey);
-					MeasurementMap.put(tempMeasurementId, tempValue);
-
-					set = "MeasurementId=";
-					where = "MeasurementId=";
-				}
+	private List<MeasurementDigest> obtainMeasurementDigest(String where,
+			String[] args, int level) {
+		LinkedHashMap<String, MeasurementDigest> mDigestMap = new LinkedHashMap<String, MeasurementDigest>();
+		int length = MeasurementDigest.BUCKET_LENGTH[level];
+		Cursor mCursor = mSQLiteDatabase.rawQuery(
+				"SELECT MeasurementKey, Bucket, Digest, Count FROM MeasurementDigest where "
+						+ where + " order by MeasurementKey, Bucket", args);
+		MeasurementDigest mMeasurementDigest;
+		while (mCursor.moveToNext()) {
+			mMeasurementDigest = new MeasurementDigest(mCursor.getString(0),
+					mCursor.getString(1).substring(0, length));
+
+			MeasurementDigest prev = mDigestMap.get(mMeasurementDigest
+					.obtainNodeKey());
+			if (prev == null)
+				mDigestMap.put(mMeasurementDigest.obtainNodeKey(),
+						mMeasurementDigest);
+			else
+				mMeasurementDigest = prev;
+
+			mMeasurementDigest.Digest ^= mCursor.getLong(2);
+			mMeasurementDigest.Count += mCursor.getInt(3);
+		}
+		mCursor.close();
+		return new ArrayList<MeasurementDigest>(mDigestMap.values());
+	}
 
-				set += value;
-				where += key;
+	/**
+	 * 해당 디바이스에서 측정된 Measurement들의 최상위 단계 MeasurementDigest를 얻는다.
+	 * 
+	 * @param mBlinkDevice
+	 * @return
+	 */
+	public List<MeasurementDigest> obtainMeasurementDigest(
+			BlinkDevice mBlinkDevice) {
+		String[] args = { mBlinkDevice.getAddress() };
+		return obtainMeasurementDigest(
+				"MeasurementKey in (SELECT Measurement.MeasurementKey FROM Measurement "
+						+ "JOIN App USING (AppId) JOIN Device USING (DeviceId) where Device.MacAddress=?)",
+				args, 0);
+	}
 
-				updateMeasurementData(set, where);
-				MeasurementMap.remove(key);
-			}
+	/**
+	 * 주어진 MeasurementDigest들에 속한 MeasurementDigest를 주어진 단계의 Bucket 단위로 얻는다. <br>
+	 * level이 주어진 MeasurementDigest와 같은 단계면 현재 디바이스의 같은 MeasurementDigest를 얻게 된다.
+	 * 
+	 * @param mMeasurementDigestList
+	 * @param level
+	 * @return
+	 */
+	public List<MeasurementDigest> obtainMeasurementDigest(
+			List<MeasurementDigest> mMeasurementDigestList, int level) {
+		List<MeasurementDigest> mResultList = new ArrayList<MeasurementDigest>();
+		for (MeasurementDigest mMeasurementDigest : mMeasurementDigestList) {
+			String[] args = { mMeasurementDigest.MeasurementKey,
+					mMeasurementDigest.Bucket + "%" };
+			mResultList.addAll(obtainMeasurementDigest(
+					"MeasurementKey=? and Bucket like ?", args, level));
+		}
+		return mResultList;
+	}
 
-			mapSet = MeasurementMap.entrySet();
+	/**
+	 * 주어진 MeasurementDigest들에 속한 MeasurementData를 얻는다.
+	 * 
+	 * @param mMeasurementDigestList
+	 * @return
+	 */
+	public List<MeasurementData> obtainMeasurementDataInDigest(
+			List<MeasurementDigest> mMeasurementDigestList) {
+		List<MeasurementData> mMeasurementDataList = new ArrayList<MeasurementData>();
+		for (MeasurementDigest mMeasurementDigest : mMeasurementDigestList) {
+			if (!mMeasurementDigest.checkIntegrity())
+				continue;
+			mMeasurementDataList.addAll(obtainMeasurementDataList("MeasurementKey='"
+					+ mMeasurementDigest.MeasurementKey + "' and DateTime like '"
+					+ mMeasurementDigest.Bucket + "%'"));
 		}
+		return mMeasurementDataList;
 	}
 
 	/**
@@ -354,24 +247,6 @@ public class SyncDatabaseManager extends BlinkDatabaseManager {
 		return 0;
 	}
 
-	/**
-	 * MeausrmentData 테이블을 업데이트하는 매소드 <br>
-	 * Center로부터 받은 BlinkAppInfo에서 MeasurementId 변경 될 값을 확인 후 해당 데이터들의 Id를
-	 * 업데이트한다.
-	 * 
-	 * @param set
-	 * @param where
-	 */
-	private void updateMeasurementData(String set, String where) {
-		if (set == null || set.equals(""))
-			return;
-		if (where == null || where.equals(""))
-			return;
-
-		String query = "update MeasurementData set " + set + " where " + where;
-		mSQLiteDatabase.execSQL(query);
-	}
-
 	/**
 	 * Wearable 디바이스일 경우에 동기화를 위해 호출해야 할 매소드를 정의한 클래스
 	 * 
@@ -380,26 +255,21 @@ public class SyncDatabaseManager extends BlinkDatabaseManager {
 	 */
 	public class Wearable {
 		/**
-		 * 주어진 BlinkDatabaseList로 BlinkDatabase를 업데이트한다.
+		 * 주어진 BlinkDatabaseList로 BlinkDatabase를 업데이트한다. <br>
+		 * Measurement는 MeasurementKey로 구분되므로 기존의 MeasurementId는 변경하지 않고, 추가된 부분만
+		 * 등록한다.
 		 * 
 		 * @return
 		 */
 		public boolean syncBlinkDatabase(List<BlinkAppInfo> BlinkAppList) {
 			mSQLiteDatabase.beginTransaction();
 			try {
-				// 변경해야할 MeasurementId 맵을 가진 HashMap을 얻는다.
-				HashMap<Integer, Integer> MeasurementMap = obtainMeasurementMap(BlinkAppList);
-				// MeasurementData 테이블을 동기화한다.
-				SyncMeasurementData(MeasurementMap);
-
-				// SystemDatabase를 동기화한다.
-				// 기존 SystemDatabase삭제 (Device,App,Function,Measurement)
-				removeBlinkAppAll();
-
 				Log.i(TAG, "syncSystemDatabase");
 
-				for (BlinkAppInfo mBlinkAppInfo : BlinkAppList) {
-					insertBlinkApp(mBlinkAppInfo);
+				// 현재 디바이스에 저장되어 있지 않은 BlinkAppInfo를 추가한다.
+				List<BlinkAppInfo> AddedBlinkAppList = obtainAddedBlinkAppInfo(BlinkAppList);
+				for (BlinkAppInfo mBlinkAppInfo : AddedBlinkAppList) {
+					registerBlinkAppSync(mBlinkAppInfo);
 				}
 				mSQLiteDatabase.setTransactionSuccessful();
 			} catch (Exception e) {
@@ -483,35 +353,117 @@ public class SyncDatabaseManager extends BlinkDatabaseManager {
 		}
 
 		/**
-		 * Wearable로부터 받은 MeasurementData를 등록한다.
+		 * Wearable로부터 받은 MeasurementData를 등록한다. <br>
+		 * MeasurementId는 MeasurementKey를 통해 현재 디바이스의 MeasurementId로 바꾸어 등록하며, 아직
+		 * 동기화되지 않은 Measurement의 데이터는 등록하지 않는다. <br>
+		 * 이미 등록된 데이터는 무시되므로, 같은 데이터를 여러 번 받아도 된다.
 		 * 
 		 * @param mMeasurementDataList
 		 * @return
 		 */
 		public int insertMeasurementData(
 				List<MeasurementData> mMeasurementDataList) {
-			int MaxId = 0;
+			List<List<MeasurementData>> mBatchList = new ArrayList<List<MeasurementData>>();
+			mBatchList.add(mMeasurementDataList);
+			return insertMeasurementDataGroup(mBatchList)[0];
+		}
+
+		/**
+		 * 여러 Wearable로부터 받은 MeasurementData 묶음들을 하나의 트랜잭션으로 등록한다. <br>
+		 * 등록 방식은 {@link #insertMeasurementData(List)}와 같다.
+		 * 
+		 * 트랜잭션이 실패하면 각 묶음을 별도의 트랜잭션으로 다시 등록하여, 실패한 묶음만 실패로 처리한다.
+		 * 
+		 * @param mBatchList
+		 * @return 각 묶음별 가장 큰 MeasurementDataId, 실패한 묶음은 -1
+		 */
+		public int[] insertMeasurementDataGroup(
+				List<List<MeasurementData>> mBatchList) {
+			int[] MaxIds = new int[mBatchList.size()];
+			HashMap<String, Integer> MeasurementKeyMap = null;
 			mSQLiteDatabase.beginTransaction();
 			try {
-				for (MeasurementData mMeasurementData : mMeasurementDataList) {
-					ContentValues values = new ContentValues();
-					values.put("MeasurementId", mMeasurementData.MeasurementId);
-					values.put("GroupId", mMeasurementData.GroupId);
-					values.put("Data", mMeasurementData.Data);
-					// TODO review plz
-					values.put("DateTime", mMeasurementData.obtainDateTime());
-					mSQLiteDatabase.insert("MeasurementData", null, values);
-					if (MaxId < mMeasurementData.MeasurementDataId) {
-						MaxId = mMeasurementData.MeasurementDataId;
-					}
+				MeasurementKeyMap = obtainMeasurementKeyMap();
+				for (int i = 0; i < mBatchList.size(); i++) {
+					MaxIds[i] = insertMeasurementData(mBatchList.get(i),
+							MeasurementKeyMap);
 				}
 				mSQLiteDatabase.setTransactionSuccessful();
+				return MaxIds;
+
 			} catch (Exception e) {
-				e.printStackTrace();
-				return -1;
+				Log.w(TAG, "Group commit failed : " + mBatchList.size()
+						+ " batch(es)", e);
+				Arrays.fill(MaxIds, -1);
 			} finally {
 				mSQLiteDatabase.endTransaction();
 			}
+
+			if (MeasurementKeyMap == null || mBatchList.size() == 1)
+				return MaxIds;
+
+			// 어떤 묶음이 실패했는지 알 수 없으므로, 묶음마다 따로 등록한다.
+			for (int i = 0; i < mBatchList.size(); i++) {
+				mSQLiteDatabase.beginTransaction();
+				try {
+					MaxIds[i] = insertMeasurementData(mBatchList.get(i),
+							MeasurementKeyMap);
+					mSQLiteDatabase.setTransactionSuccessful();
+				} catch (Exception e) {
+					Log.w(TAG, "Batch " + i + " failed", e);
+					MaxIds[i] = -1;
+				} finally {
+					mSQLiteDatabase.endTransaction();
+				}
+			}
+			return MaxIds;
+		}
+
+		/**
+		 * 트랜잭션 안에서 MeasurementData 묶음 하나를 등록한다.
+		 * 
+		 * @param mMeasurementDataList
+		 * @param MeasurementKeyMap
+		 * @return 가장 큰 MeasurementDataId
+		 */
+		private int insertMeasurementData(
+				List<MeasurementData> mMeasurementDataList,
+				HashMap<String, Integer> MeasurementKeyMap) {
+			int MaxId = 0;
+			Integer MeasurementId;
+			for (MeasurementData mMeasurementData : mMeasurementDataList) {
+				if (mMeasurementData.MeasurementKey == null) {
+					MeasurementId = mMeasurementData.MeasurementId;
+				} else {
+					MeasurementId = MeasurementKeyMap
+							.get(mMeasurementData.MeasurementKey);
+					if (MeasurementId == null) {
+						Log.w(TAG, "Unknown MeasurementKey : "
+								+ mMeasurementData.MeasurementKey);
+						continue;
+					}
+				}
+
+				ContentValues values = new ContentValues();
+				values.put("MeasurementId", MeasurementId);
+				values.put("GroupId", mMeasurementData.GroupId);
+				values.put("Data", mMeasurementData.Data);
+				// TODO review plz
+				values.put("DateTime", mMeasurementData.obtainDateTime());
+				if (mSQLiteDatabase.insertWithOnConflict("MeasurementData",
+						null, values, SQLiteDatabase.CONFLICT_IGNORE) != -1) {
+					addMeasurementDigest(mSQLiteDatabase,
+							mMeasurementData.MeasurementKey != null
+									? mMeasurementData.MeasurementKey
+									: obtainMeasurementKey(MeasurementId),
+							mMeasurementData.GroupId,
+							mMeasurementData.Data,
+							mMeasurementData.obtainDateTime());
+				}
+				if (MaxId < mMeasurementData.MeasurementDataId) {
+					MaxId = mMeasurementData.MeasurementDataId;
+				}
+			}
 			return MaxId;
 		}
 	}
@@ -29,6 +29,14 @@ public class CallbackData implements Parcelable {
 	 * 디바이스에 데이터가 없는데 호출한 경우
 	 */
 	public static final int ERROR_CONNECT_FAIL = 0x03;
+	/**
+	 * 요청 메세지를 외부 디바이스로 전송하지 못한 경우 (전송 대기열 초과, 연결 오류)
+	 */
+	public static final int ERROR_SEND_FAIL = 0x04;
+	/**
+	 * 정해진 시간 안에 외부 디바이스로부터 응답이 오지 않은 경우
+	 */
+	public static final int ERROR_TIMEOUT = 0x05;
 
 	public String InDeviceData;
 	public String OutDeviceData;
@@ -1,6 +1,7 @@
 package kr.poturns.blink.db.archive;
 
 import kr.poturns.blink.db.JsonManager;
+import kr.poturns.blink.util.EncryptionUtil;
 import android.os.Parcel;
 import android.os.Parcelable;
 
@@ -34,6 +35,13 @@ public class Measurement implements IDatabaseObject, Parcelable {
 	public String Type;
 	/** Measurement의 설명 */
 	public String Description;
+	/**
+	 * 디바이스간에 동일한 Measurement를 가리키는 Key.<br>
+	 * MeasurementId는 각 디바이스의 DB마다 다르게 부여되므로, 동기화할 때는 이 Key를 기준으로 한다.
+	 * 
+	 * @see #obtainMeasurementKey(String, String, String)
+	 */
+	public String MeasurementKey;
 
 	public Measurement() {
 		this.AppId = -1;
@@ -48,6 +56,24 @@ public class Measurement implements IDatabaseObject, Parcelable {
 		this.Description = Description;
 	}
 
+	/**
+	 * Device의 MacAddress, App의 PackageName, Measurement의 Schema로부터 Measurement Key를 생성한다.
+	 * <br>
+	 * 같은 내용으로부터는 어느 디바이스에서든 같은 Key가 생성된다.
+	 * 
+	 * @param MacAddress
+	 * @param PackageName
+	 * @param Measurement
+	 * @return MacAddress가 없으면 디바이스를 구분할 수 없으므로 null.
+	 */
+	public static String obtainMeasurementKey(String MacAddress,
+			String PackageName, String Measurement) {
+		if (MacAddress == null)
+			return null;
+		return EncryptionUtil.grantHashMessage(MacAddress + "/" + PackageName
+				+ "/" + Measurement);
+	}
+
 	/**
 	 * 현재 {@code Measurement}의 {@code MeasurementData} prototype을 만든다. <br>
 	 * <br>
@@ -56,6 +82,7 @@ public class Measurement implements IDatabaseObject, Parcelable {
 	public MeasurementData obtainMeasurementData() {
 		MeasurementData mMeasurementData = new MeasurementData();
 		mMeasurementData.MeasurementId = this.MeasurementId;
+		mMeasurementData.MeasurementKey = this.MeasurementKey;
 		return mMeasurementData;
 	}
 
@@ -66,6 +93,7 @@ public class Measurement implements IDatabaseObject, Parcelable {
 		ret += "Measurement : " + Measurement + "\r\n";
 		ret += "Type : " + Type + "\r\n";
 		ret += "Description : " + Description + "\r\n";
+		ret += "MeasurementKey : " + MeasurementKey + "\r\n";
 		return ret;
 	}
 
@@ -120,5 +148,6 @@ public class Measurement implements IDatabaseObject, Parcelable {
 		this.Measurement = mMeasurement.Measurement;
 		this.Type = mMeasurement.Type;
 		this.Description = mMeasurement.Description;
+		this.MeasurementKey = mMeasurement.MeasurementKey;
 	}
 }
@@ -28,6 +28,8 @@ public class MeasurementData extends DefaultSchema.Base implements
 	public int GroupId;
 	/** 실제 측정된 데이터 */
 	public String Data;
+	/** MeasurementData가 속한 Measurement의 Key. 디바이스간 동기화에 사용된다. */
+	public String MeasurementKey;
 
 	public MeasurementData() {
 	}
@@ -89,5 +91,6 @@ public class MeasurementData extends DefaultSchema.Base implements
 		this.GroupId = mMeasurementData.GroupId;
 		this.Data = mMeasurementData.Data;
 		this.DateTime = mMeasurementData.DateTime;
+		this.MeasurementKey = mMeasurementData.MeasurementKey;
 	}
 }
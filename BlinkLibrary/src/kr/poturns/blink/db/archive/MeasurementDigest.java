@@ -0,0 +1,92 @@
+package kr.poturns.blink.db.archive;
+
+/**
+ * MeasurementDigest 테이블과 맵핑되는 클래스
+ *
+ * <br>
+ * <br>
+ *
+ * Measurement의 한 시간 단위(Bucket)에 속한 MeasurementData들의 Hash를 XOR로 합친 값을 가진다. <br>
+ * 디바이스간 측정 데이터가 일치하는지 비교할 때 사용한다. <br>
+ * <br>
+ * Bucket은 DateTime의 앞부분으로, 길이에 따라 트리의 단계를 나타낸다.
+ * <li>"" : Measurement 전체</li>
+ * <li>"yyyy-MM" : 월</li>
+ * <li>"yyyy-MM-dd" : 일</li>
+ * <li>"yyyy-MM-dd HH" : 시간 (테이블에 저장되는 단위)</li>
+ */
+public class MeasurementDigest implements IDatabaseObject {
+	/** 각 단계별 Bucket의 길이 */
+	public static final int[] BUCKET_LENGTH = { 0, 7, 10, 13 };
+	/** 테이블에 저장되는 가장 작은 단위의 단계 */
+	public static final int LEVEL_LEAF = BUCKET_LENGTH.length - 1;
+
+	/** Digest가 속한 Measurement의 Key */
+	public String MeasurementKey;
+	/** DateTime의 앞부분 */
+	public String Bucket;
+	/** Bucket에 속한 MeasurementData Hash들의 XOR 값 */
+	public long Digest;
+	/** Bucket에 속한 MeasurementData의 개수 */
+	public int Count;
+
+	public MeasurementDigest() {
+	}
+
+	public MeasurementDigest(String MeasurementKey, String Bucket) {
+		this.MeasurementKey = MeasurementKey;
+		this.Bucket = Bucket;
+	}
+
+	/**
+	 * Bucket의 길이로부터 단계를 얻는다.
+	 *
+	 * @return
+	 */
+	public int obtainLevel() {
+		for (int i = 0; i < BUCKET_LENGTH.length; i++) {
+			if (Bucket.length() == BUCKET_LENGTH[i])
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * 같은 Measurement, 같은 Bucket을 가리키는지 확인할 때 사용되는 Key
+	 *
+	 * @return
+	 */
+	public String obtainNodeKey() {
+		return MeasurementKey + "/" + Bucket;
+	}
+
+	/**
+	 * 다른 디바이스의 Digest와 내용이 일치하는지 확인한다.
+	 *
+	 * @param other
+	 * @return
+	 */
+	public boolean isSame(MeasurementDigest other) {
+		return other != null && Digest == other.Digest && Count == other.Count;
+	}
+
+	/**
+	 * MeasurementKey와 Bucket이 올바른 형식인지 확인한다. 다른 디바이스로부터 받은 Digest를 조건으로 사용하기 전에
+	 * 호출해야 한다.
+	 */
+	@Override
+	public boolean checkIntegrity() {
+		return MeasurementKey != null && Bucket != null
+				&& MeasurementKey.matches("^[0-9a-f]+$")
+				&& Bucket.matches("^[0-9: -]*$") && obtainLevel() >= 0;
+	}
+
+	public String toString() {
+		String ret = "";
+		ret += "MeasurementKey : " + MeasurementKey + "\r\n";
+		ret += "Bucket : " + Bucket + "\r\n";
+		ret += "Digest : " + Digest + "\r\n";
+		ret += "Count : " + Count + "\r\n";
+		return ret;
+	}
+}
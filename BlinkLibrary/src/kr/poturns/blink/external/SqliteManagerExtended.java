@@ -267,6 +267,7 @@ class SqliteManagerExtended extends SqliteManager {
 				args[0] = String.valueOf(measurement.MeasurementId);
 				mSQLiteDatabase.delete("MeasurementData", "MeasurementId=?",
 						args);
+				removeMeasurementDigest(measurement.MeasurementId);
 			}
 			for (App app : appList) {
 				args[0] = String.valueOf(app.AppId);
@@ -308,6 +309,7 @@ class SqliteManagerExtended extends SqliteManager {
 				args[0] = String.valueOf(measurement.MeasurementId);
 				mSQLiteDatabase.delete("MeasurementData", "MesurementId=?",
 						args);
+				removeMeasurementDigest(measurement.MeasurementId);
 			}
 
 			args[0] = String.valueOf(app.AppId);
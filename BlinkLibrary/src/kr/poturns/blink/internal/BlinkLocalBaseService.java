@@ -4,6 +4,7 @@ import kr.poturns.blink.internal.comm.BlinkDevice;
 import kr.poturns.blink.util.FileUtil;
 import android.app.Service;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.res.Configuration;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
@@ -53,6 +54,9 @@ abstract class BlinkLocalBaseService extends Service {
 		super.onCreate();
 		// For Service Debugging... 
 		android.os.Debug.waitForDebugger();
+		
+		// 디버그 빌드에서는 반환되지 않은 링크 Buffer를 추적한다.
+		BufferPool.setLeakDetection((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
 
 		initiatate();
 		
@@ -104,6 +108,7 @@ abstract class BlinkLocalBaseService extends Service {
 		case TRIM_MEMORY_RUNNING_CRITICAL:
 			Log.e("BlinkLocalBaseService", "onTrimMemory() : CLEAR CACHE");
 			BlinkDevice.clearAllCache();
+			BufferPool.trim();
 			break;
 			
 		case TRIM_MEMORY_MODERATE:
@@ -133,6 +138,8 @@ abstract class BlinkLocalBaseService extends Service {
 		
 		if (SERVICE_KEEPER != null)
 			SERVICE_KEEPER.destroy();
+		
+		Log.d("BlinkLocalBaseService", MessageDispatcher.dumpMetrics());
 	}
 	
 	/**
@@ -3,6 +3,7 @@ package kr.poturns.blink.internal;
 import java.util.List;
 
 import kr.poturns.blink.R;
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.SqliteManager;
 import kr.poturns.blink.db.SyncDatabaseManager;
 import kr.poturns.blink.db.archive.DatabaseMessage;
@@ -24,7 +25,6 @@ import android.os.IBinder;
 import android.util.Log;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 /**
@@ -43,8 +43,9 @@ public final class BlinkLocalService extends BlinkLocalBaseService {
 
 	private SyncDatabaseManager mSyncDatabaseManager;
 	public MessageProcessor mMessageProcessor;
-	Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	Gson gson = JsonManager.gson;
 	ServiceKeeper mServiceKeeper;
+	SyncScheduler mSyncScheduler;
 
 	@Override
 	public void onCreate() {
@@ -53,6 +54,18 @@ public final class BlinkLocalService extends BlinkLocalBaseService {
 		initiate();
 	}
 
+	@Override
+	public void onDestroy() {
+		if (mSyncScheduler != null)
+			mSyncScheduler.destroy();
+
+		SyncCoordinator mSyncCoordinator = SyncCoordinator.getInstance(null);
+		if (mSyncCoordinator != null)
+			mSyncCoordinator.destroy();
+
+		super.onDestroy();
+	}
+
 	@Override
 	public IBinder onBind(Intent intent) {
 		String packageName = intent.getStringExtra(INTENT_EXTRA_SOURCE_PACKAGE);
@@ -91,6 +104,7 @@ public final class BlinkLocalService extends BlinkLocalBaseService {
 		mSyncDatabaseManager = new SyncDatabaseManager(this);
 		mMessageProcessor = new MessageProcessor(this);
 		mServiceKeeper = ServiceKeeper.getInstance(this);
+		mSyncScheduler = new SyncScheduler(this);
 
 		Notification mBlinkNotification = new Notification.Builder(this)
 				.setSmallIcon(R.drawable.res_blink_ic_launcher)
@@ -155,6 +169,37 @@ public final class BlinkLocalService extends BlinkLocalBaseService {
 			sendBroadcast(new Intent(function.Action));
 	}
 
+	/**
+	 * 센터 디바이스로 아직 동기화되지 않은 MeasurementData를 전송한다.
+	 * {@link SyncScheduler}로부터 호출된다.
+	 * 
+	 * @param centerDevice
+	 * @return 전송할 데이터가 있어 동기화 메시지를 보냈으면 true
+	 */
+	boolean transferMeasurementDataSync(BlinkDevice centerDevice) {
+		if (centerDevice == null || centerDevice == BlinkDevice.HOST)
+			return false;
+
+		List<MeasurementData> mMeasurementDataList = mSyncDatabaseManager.wearable
+				.obtainMeasurementDatabase(centerDevice);
+		if (mMeasurementDataList == null || mMeasurementDataList.isEmpty())
+			return false;
+
+		// BlinkMessage 생성
+		BlinkMessage mBlinkMessage = new BlinkMessage.Builder()
+				.setDestinationDevice(centerDevice)
+				.setDestinationApplication(null)
+				.setSourceDevice(BlinkDevice.HOST)
+				.setSourceApplication(
+						"kr.poturns.blink.internal.BlinkLocalService")
+				.setMessage(gson.toJson(mMeasurementDataList))
+				.setType(
+						IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC)
+				.setCode(0).build();
+		mMessageProcessor.sendBlinkMessageTo(mBlinkMessage, null);
+		return true;
+	}
+
 	/**
 	 * 서비스에서 Database 변경에 대한 Observer 이벤트를 받으면 관련 기능을 호출한다.
 	 */
@@ -210,25 +255,8 @@ public final class BlinkLocalService extends BlinkLocalBaseService {
 					// 암것도 안함
 				} else {
 					Log.i(NAME, "ContentObserver : Not Center Device");
-					// DatabaseMessage 생성
-					BlinkDevice CenterDevice = mServiceKeeper
-							.obtainCurrentCenterDevice();
-					List<MeasurementData> mMeasurementDataList = mSyncDatabaseManager.wearable
-							.obtainMeasurementDatabase(CenterDevice);
-					String SendData = gson.toJson(mMeasurementDataList);
-
-					// BlinkMessage 생성
-					BlinkMessage mBlinkMessage = new BlinkMessage.Builder()
-							.setDestinationDevice((String) null)
-							.setDestinationApplication(null)
-							.setSourceDevice(BlinkDevice.HOST)
-							.setSourceApplication(
-									"kr.poturns.blink.internal.BlinkLocalService")
-							.setMessage(SendData)
-							.setType(
-									IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC)
-							.setCode(0).build();
-					mMessageProcessor.sendBlinkMessageTo(mBlinkMessage, null);
+					// 바로 전송하지 않고, SyncScheduler를 통해 모아서 전송한다.
+					mSyncScheduler.requestSync(mServiceKeeper.obtainCurrentCenterDevice());
 				}
 			}
 
@@ -2,7 +2,9 @@ package kr.poturns.blink.internal;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import kr.poturns.blink.internal.comm.BlinkDevice;
 import kr.poturns.blink.internal.comm.BlinkProfile;
@@ -90,15 +92,21 @@ class BluetoothAssistant extends Handler {
 	// *** FIELD DECLARATION *** //
 	final InterDeviceManager INTER_DEV_MANAGER;
 	final ThreadGroup CONNECTION_GROUP;
+	/**
+	 * 디바이스 주소별 GATT 링크. GATT 콜백을 해당 링크로 전달하는데 사용한다.
+	 */
+	private final ConcurrentHashMap<String, GattLink> GATT_LINK_MAP;
 	
 	public BluetoothAssistant(InterDeviceManager manager) {
 		INTER_DEV_MANAGER = manager;
 		CONNECTION_GROUP = new ThreadGroup(TAG);
+		GATT_LINK_MAP = new ConcurrentHashMap<String, GattLink>();
 	}
 	
 	private BluetoothManager mBluetoothManager;
 	private ServiceKeeper mServiceKeeper;
 	private boolean isLeSupported;
+	private boolean isWifiSupported;
 	
 	/**
 	 * BluetoothAssistant를 초기화한다.
@@ -110,6 +118,7 @@ class BluetoothAssistant extends Handler {
 		mServiceKeeper = ServiceKeeper.getInstance(mContext);
 		
 		isLeSupported = DeviceAnalyzer.getInstance(mContext).isAvailableBluetoothLE();
+		isWifiSupported = DeviceAnalyzer.getInstance(mContext).isAvailableWifi();
 		
 		int state = BluetoothAdapter.getDefaultAdapter().getState();
 		switch (state) {
@@ -176,10 +185,18 @@ class BluetoothAssistant extends Handler {
 	public void startListeningServer(boolean secure) {
 		startClassicServer(BlinkProfile.UUID_BLINK, secure);
 		
-		// TODO : BLE 
-//		if (isLeSupported)
-//			startLeServer(new BluetoothGattService(
-//					BlinkProfile.UUID_BLINK, BluetoothGattService.SERVICE_TYPE_PRIMARY));
+		if (isLeSupported && mGattServer == null)
+			startLeServer(GattLink.createBlinkService());
+		
+		// 대량 전송용 TCP 서버. 주소는 Bluetooth 연결 시 LinkCapability로 알린다.
+		if (isWifiSupported) {
+			try {
+				TcpLinkSelector.getInstance().listen(0);
+				
+			} catch (IOException e) {
+				Log.w(TAG, "TCP server is not available : " + e);
+			}
+		}
 	}
 	
 	/**
@@ -188,9 +205,10 @@ class BluetoothAssistant extends Handler {
 	public void stopListeningServer() {
 		stopClassicServer();
 		
-		// TODO : BLE
-//		if (isLeSupported) 
-//			stopLeServer();
+		if (isLeSupported) 
+			stopLeServer();
+		
+		TcpLinkSelector.getInstance().stopListening();
 	}
 	
 	/**
@@ -427,9 +445,42 @@ class BluetoothAssistant extends Handler {
 	 */
 	public void disconnectDevice(BlinkDevice device) {
 		Log.d("InterDeviceManager_disconnectFromDeviceAsClient()", "Disconnect");
+		mServiceKeeper.cancelReconnect(device);
 		mServiceKeeper.removeConnection(device);
 	}
 	
+	/**
+	 * GATT 연결이 성립되었을 때 링크를 등록하고 시작한다.
+	 * 
+	 * @param device
+	 * @param link
+	 */
+	private void openGattLink(BlinkDevice device, GattLink link) {
+		GattLink prev = GATT_LINK_MAP.put(device.getAddress(), link);
+		if (prev != null)
+			prev.close();
+		
+		device.setConnected(true);
+		mServiceKeeper.addConnection(device, link);
+		link.open();
+	}
+	
+	/**
+	 * GATT 연결이 해제되었을 때 링크를 제거하고 종료한다.
+	 * 
+	 * @param device
+	 */
+	private void closeGattLink(BlinkDevice device) {
+		GattLink link = GATT_LINK_MAP.remove(device.getAddress());
+		if (!mServiceKeeper.removeConnection(device) && link != null)
+			link.close();
+		device.setConnected(false);
+	}
+	
+	private GattLink obtainGattLink(BluetoothDevice origin) {
+		return GATT_LINK_MAP.get(origin.getAddress());
+	}
+	
 	
 	
 	// *** CALLBACK FIELD DECLARATION *** //
@@ -441,8 +492,9 @@ class BluetoothAssistant extends Handler {
 		@Override
 		public void onCharacteristicChanged(BluetoothGatt gatt,
 				BluetoothGattCharacteristic characteristic) {
-			// TODO Auto-generated method stub
-			super.onCharacteristicChanged(gatt, characteristic);
+			GattLink link = obtainGattLink(gatt.getDevice());
+			if (link != null && BlinkProfile.UUID_BLINK_TX.equals(characteristic.getUuid()))
+				link.onPacket(characteristic.getValue());
 		}
 		
 		@Override
@@ -455,8 +507,9 @@ class BluetoothAssistant extends Handler {
 		@Override
 		public void onCharacteristicWrite(BluetoothGatt gatt,
 				BluetoothGattCharacteristic characteristic, int status) {
-			// TODO Auto-generated method stub
-			super.onCharacteristicWrite(gatt, characteristic, status);
+			GattLink link = obtainGattLink(gatt.getDevice());
+			if (link != null)
+				link.onWriteCompleted(status);
 		}
 		
 		@Override 
@@ -469,13 +522,14 @@ class BluetoothAssistant extends Handler {
 				Intent mIntent; 
 				switch (newState) {
 				case BluetoothGatt.STATE_CONNECTED:
-					mServiceKeeper.addConnection(device, gatt);
+					openGattLink(device, new GattLink(BluetoothAssistant.this, device, gatt));
+					gatt.discoverServices();
 
 					mIntent = new Intent(IBlinkEventBroadcast.BROADCAST_DEVICE_CONNECTED);
 					break;
 						
 				case BluetoothGatt.STATE_DISCONNECTED:
-					mServiceKeeper.removeConnection(device);
+					closeGattLink(device);
 
 					mIntent = new Intent(IBlinkEventBroadcast.BROADCAST_DEVICE_DISCONNECTED);
 					break;
@@ -488,6 +542,11 @@ class BluetoothAssistant extends Handler {
 				INTER_DEV_MANAGER.MANAGER_CONTEXT.sendBroadcast(mIntent, IBlinkEventBroadcast.PERMISSION_LISTEN_STATE_MESSAGE);
 					
 			} else {
+				if (GATT_LINK_MAP.containsKey(device.getAddress()))
+					closeGattLink(device);
+				else
+					gatt.close();
+				
 				switch (newState) {
 				//case BluetoothGatt.STATE_CONNECTED:
 				case BluetoothGatt.STATE_CONNECTING:
@@ -509,8 +568,9 @@ class BluetoothAssistant extends Handler {
 		@Override
 		public void onDescriptorWrite(BluetoothGatt gatt,
 				BluetoothGattDescriptor descriptor, int status) {
-			// TODO Auto-generated method stub
-			super.onDescriptorWrite(gatt, descriptor, status);
+			GattLink link = obtainGattLink(gatt.getDevice());
+			if (link != null)
+				link.onDescriptorWrite(descriptor, status);
 		}
 		
 		@Override
@@ -527,8 +587,18 @@ class BluetoothAssistant extends Handler {
 		
 		@Override
 		public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-			// TODO Auto-generated method stub
-			super.onServicesDiscovered(gatt, status);
+			GattLink link = obtainGattLink(gatt.getDevice());
+			if (link != null)
+				link.onServicesDiscovered(status);
+		}
+		
+		/**
+		 * API 21부터 호출된다.
+		 */
+		public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+			GattLink link = obtainGattLink(gatt.getDevice());
+			if (link != null)
+				link.onMtuChanged(mtu, status);
 		}
 	}; 
 	
@@ -550,9 +620,14 @@ class BluetoothAssistant extends Handler {
 				int requestId, BluetoothGattCharacteristic characteristic,
 				boolean preparedWrite, boolean responseNeeded, int offset,
 				byte[] value) {
-			// TODO Auto-generated method stub
-			super.onCharacteristicWriteRequest(device, requestId, characteristic,
-					preparedWrite, responseNeeded, offset, value);
+			GattLink link = obtainGattLink(device);
+			boolean accepted = (link != null && BlinkProfile.UUID_BLINK_RX.equals(characteristic.getUuid()));
+			if (accepted)
+				link.onPacket(value);
+			
+			if (responseNeeded && mGattServer != null)
+				mGattServer.sendResponse(device, requestId, 
+						accepted? BluetoothGatt.GATT_SUCCESS : BluetoothGatt.GATT_FAILURE, offset, null);
 		}
 		
 		@Override
@@ -564,15 +639,15 @@ class BluetoothAssistant extends Handler {
 				Intent mIntent; 
 				switch (newState) {
 				case BluetoothGatt.STATE_CONNECTED:
-					// TODO : Gatt == null??
-					BluetoothGatt gatt = null;
-					mServiceKeeper.addConnection(device, gatt);
+					if (mGattServer == null)
+						return;
+					openGattLink(device, new GattLink(BluetoothAssistant.this, device, mGattServer, origin));
 
 					mIntent = new Intent(IBlinkEventBroadcast.BROADCAST_DEVICE_CONNECTED);
 					break;
 						
 				case BluetoothGatt.STATE_DISCONNECTED:
-					mServiceKeeper.removeConnection(device);
+					closeGattLink(device);
 
 					mIntent = new Intent(IBlinkEventBroadcast.BROADCAST_DEVICE_DISCONNECTED);
 					break;
@@ -585,6 +660,9 @@ class BluetoothAssistant extends Handler {
 				INTER_DEV_MANAGER.MANAGER_CONTEXT.sendBroadcast(mIntent, IBlinkEventBroadcast.PERMISSION_LISTEN_STATE_MESSAGE);
 					
 			} else {
+				if (GATT_LINK_MAP.containsKey(device.getAddress()))
+					closeGattLink(device);
+				
 				switch (newState) {
 				//case BluetoothGatt.STATE_CONNECTED:
 				case BluetoothGatt.STATE_CONNECTING:
@@ -608,9 +686,15 @@ class BluetoothAssistant extends Handler {
 				int requestId, BluetoothGattDescriptor descriptor,
 				boolean preparedWrite, boolean responseNeeded, int offset,
 				byte[] value) {
-			// TODO Auto-generated method stub
-			super.onDescriptorWriteRequest(device, requestId, descriptor, preparedWrite,
-					responseNeeded, offset, value);
+			GattLink link = obtainGattLink(device);
+			boolean accepted = (link != null 
+					&& BlinkProfile.UUID_CLIENT_CHARACTERISTIC_CONFIG.equals(descriptor.getUuid()));
+			if (accepted)
+				link.onNotificationEnabled(Arrays.equals(value, BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE));
+			
+			if (responseNeeded && mGattServer != null)
+				mGattServer.sendResponse(device, requestId, 
+						accepted? BluetoothGatt.GATT_SUCCESS : BluetoothGatt.GATT_FAILURE, offset, null);
 		}
 		
 		@Override
@@ -624,6 +708,24 @@ class BluetoothAssistant extends Handler {
 			// TODO Auto-generated method stub
 			super.onServiceAdded(status, service);
 		}
+		
+		/**
+		 * API 22부터 호출된다.
+		 */
+		public void onMtuChanged(BluetoothDevice device, int mtu) {
+			GattLink link = obtainGattLink(device);
+			if (link != null)
+				link.onMtuChanged(mtu, BluetoothGatt.GATT_SUCCESS);
+		}
+		
+		/**
+		 * API 21부터 호출된다.
+		 */
+		public void onNotificationSent(BluetoothDevice device, int status) {
+			GattLink link = obtainGattLink(device);
+			if (link != null)
+				link.onWriteCompleted(status);
+		}
 	};
 
 }
@@ -0,0 +1,238 @@
+package kr.poturns.blink.internal;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.WeakHashMap;
+
+import android.util.Log;
+
+/**
+ * 링크의 송수신에 사용하는 Byte 배열을 재사용하는 Pool.
+ *
+ * <p>요청한 크기 이상인 가장 작은 크기 등급의 배열을 반환하므로, 배열의 길이가 아닌 요청한 크기만큼만 사용해야 한다.
+ * {@link #MAX_POOLED_SIZE}보다 큰 배열은 Pool에 보관하지 않는다.
+ * 사용이 끝난 배열은 {@link #release(byte[])}로 반환하며, 반환한 후에는 참조를 유지해서는 안 된다.
+ *
+ * <p>디버그 빌드에서는 반환되지 않고 GC된 배열(누수)과 두 번 반환된 배열을 검출하여,
+ * 배열을 가져간 위치와 함께 경고를 남긴다. 검출은 추적 비용이 들기 때문에 디버그 빌드에서만 수행한다.
+ */
+final class BufferPool {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "BufferPool";
+
+	/**
+	 * 크기 등급. 각 등급은 이전 등급의 4배이다.
+	 */
+	static final int[] SIZE_CLASSES = { 256, 1024, 4 * 1024, 16 * 1024, 64 * 1024 };
+	/**
+	 * Pool에 보관하는 배열의 최대 크기
+	 */
+	static final int MAX_POOLED_SIZE = SIZE_CLASSES[SIZE_CLASSES.length - 1];
+	/**
+	 * 등급별로 보관하는 배열의 최대 개수. 큰 등급일수록 적게 보관한다.
+	 */
+	private static final int[] MAX_POOLED_COUNT = { 64, 32, 16, 8, 4 };
+
+	private static final BufferPool sInstance = new BufferPool();
+
+	/**
+	 * 공유 Pool에서 length 이상의 배열을 가져온다.
+	 *
+	 * @param length
+	 * @return
+	 */
+	static byte[] obtain(int length) {
+		return sInstance.obtainBuffer(length);
+	}
+
+	/**
+	 * 공유 Pool에 배열을 반환한다. null이거나 Pool의 크기 등급이 아닌 배열은 무시한다.
+	 *
+	 * @param buffer
+	 */
+	static void release(byte[] buffer) {
+		sInstance.releaseBuffer(buffer);
+	}
+
+	/**
+	 * 누수 검출 여부를 설정한다. 디버그 빌드일 때 서비스가 시작하면서 설정한다.
+	 *
+	 * @param enabled
+	 */
+	static void setLeakDetection(boolean enabled) {
+		sInstance.setLeakDetectionEnabled(enabled);
+	}
+
+	/**
+	 * 보관하고 있는 배열을 모두 버린다. 메모리가 부족할 때 호출한다.
+	 */
+	static void trim() {
+		sInstance.clear();
+	}
+
+	static String dump() {
+		return sInstance.toString();
+	}
+
+	/**
+	 * 가져간 배열이 반환되기 전에 GC되었는지 확인하기 위한 기록.
+	 */
+	private static class LeakRecord extends WeakReference<byte[]> {
+		/** 배열을 가져간 위치 */
+		final Throwable Site;
+
+		LeakRecord(byte[] buffer, ReferenceQueue<byte[]> queue) {
+			super(buffer, queue);
+			Site = new Throwable("Buffer obtained here (" + buffer.length + "B)");
+		}
+	}
+
+	private static int classIndexOf(int length) {
+		for (int i = 0; i < SIZE_CLASSES.length; i++) {
+			if (length <= SIZE_CLASSES[i])
+				return i;
+		}
+		return -1;
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final ArrayDeque<byte[]>[] FREE_LISTS;
+
+	private final ReferenceQueue<byte[]> LEAK_QUEUE;
+	/** 가져간 배열과 그 기록. 배열의 equals/hashCode는 객체 식별자이다. */
+	private final WeakHashMap<byte[], LeakRecord> TRACKED;
+	/** GC되기 전까지 기록을 유지한다. */
+	private final HashSet<LeakRecord> LIVE_RECORDS;
+	private volatile boolean isLeakDetectionEnabled;
+
+	private long mObtained;
+	private long mReused;
+	private long mReleased;
+	private long mLeaked;
+	private long mDoubleReleased;
+
+	@SuppressWarnings("unchecked")
+	BufferPool() {
+		FREE_LISTS = new ArrayDeque[SIZE_CLASSES.length];
+		for (int i = 0; i < SIZE_CLASSES.length; i++)
+			FREE_LISTS[i] = new ArrayDeque<byte[]>(MAX_POOLED_COUNT[i]);
+
+		LEAK_QUEUE = new ReferenceQueue<byte[]>();
+		TRACKED = new WeakHashMap<byte[], LeakRecord>();
+		LIVE_RECORDS = new HashSet<LeakRecord>();
+	}
+
+	byte[] obtainBuffer(int length) {
+		int index = classIndexOf(length);
+		byte[] buffer = null;
+
+		synchronized (this) {
+			mObtained++;
+			if (index >= 0) {
+				buffer = FREE_LISTS[index].poll();
+				if (buffer != null)
+					mReused++;
+			}
+		}
+
+		if (buffer == null)
+			buffer = new byte[(index >= 0)? SIZE_CLASSES[index] : length];
+
+		if (isLeakDetectionEnabled && index >= 0)
+			track(buffer);
+		return buffer;
+	}
+
+	void releaseBuffer(byte[] buffer) {
+		if (buffer == null)
+			return;
+
+		int index = classIndexOf(buffer.length);
+		if (index < 0 || SIZE_CLASSES[index] != buffer.length)
+			return;
+
+		if (isLeakDetectionEnabled && !untrack(buffer))
+			return;
+
+		synchronized (this) {
+			mReleased++;
+			if (FREE_LISTS[index].size() < MAX_POOLED_COUNT[index])
+				FREE_LISTS[index].offer(buffer);
+		}
+	}
+
+	void setLeakDetectionEnabled(boolean enabled) {
+		synchronized (TRACKED) {
+			isLeakDetectionEnabled = enabled;
+			if (!enabled) {
+				TRACKED.clear();
+				LIVE_RECORDS.clear();
+			}
+		}
+	}
+
+	synchronized void clear() {
+		for (ArrayDeque<byte[]> list : FREE_LISTS)
+			list.clear();
+	}
+
+	private void track(byte[] buffer) {
+		synchronized (TRACKED) {
+			drainLeaks();
+
+			LeakRecord record = new LeakRecord(buffer, LEAK_QUEUE);
+			TRACKED.put(buffer, record);
+			LIVE_RECORDS.add(record);
+		}
+	}
+
+	/**
+	 * @param buffer
+	 * @return 가져간 기록이 있으면 true. 없으면 두 번 반환되었거나, 검출을 켜기 전에 가져간 배열이다.
+	 */
+	private boolean untrack(byte[] buffer) {
+		synchronized (TRACKED) {
+			LeakRecord record = TRACKED.remove(buffer);
+			if (record == null) {
+				// 이미 Pool에 들어가 있을 수 있으므로 다시 넣지 않는다.
+				synchronized (this) {
+					mDoubleReleased++;
+				}
+				Log.w(TAG, "Released a buffer not obtained from the pool, or released twice", new Throwable());
+				return false;
+			}
+
+			LIVE_RECORDS.remove(record);
+			record.clear();
+			return true;
+		}
+	}
+
+	private void drainLeaks() {
+		LeakRecord record;
+		while ((record = (LeakRecord) LEAK_QUEUE.poll()) != null) {
+			if (LIVE_RECORDS.remove(record)) {
+				synchronized (this) {
+					mLeaked++;
+				}
+				Log.w(TAG, "Buffer was garbage-collected without release()", record.Site);
+			}
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder("BufferPool [obtained=").append(mObtained)
+				.append(", reused=").append(mReused).append(", released=").append(mReleased)
+				.append(", leaked=").append(mLeaked).append(", doubleReleased=").append(mDoubleReleased)
+				.append(", free=");
+		for (int i = 0; i < SIZE_CLASSES.length; i++)
+			builder.append((i == 0)? "" : "/").append(FREE_LISTS[i].size());
+		return builder.append(']').toString();
+	}
+}
@@ -4,15 +4,30 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.internal.comm.BlinkDevice;
 import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.internal.comm.BlinkMessageCodec;
 import kr.poturns.blink.internal.comm.IBlinkEventBroadcast;
 import kr.poturns.blink.internal.comm.IBlinkMessagable;
 import android.bluetooth.BluetoothSocket;
 import android.content.Intent;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
 /**
  * 
  * 스레드를 시작할 때는 start() 대신 startThread()을 사용한다.
@@ -23,12 +38,161 @@ import android.util.Log;
  * @since 2014. 08. 01
  *
  */
-public class ClassicLinkThread extends Thread {
+public class ClassicLinkThread extends Thread implements ILinkTransport {
+
+	private static final Charset MESSAGE_CHARSET = Charset.forName("UTF-8");
+	private static final Gson FRAME_GSON = JsonManager.gson;
+	/**
+	 * 송신 대기열에서 Ack 전송을 나타내는 객체. 실제 Ack는 전송하는 시점의 수신 상태로 만든다.
+	 */
+	private static final Object ACK_REQUEST = new Object();
+	/**
+	 * 송신 대기열에서 Keepalive 전송을 나타내는 객체. Timestamp는 전송하는 시점에 기록한다.
+	 */
+	private static final Object KEEPALIVE_REQUEST = new Object();
+	/**
+	 * 송신 대기열에서 흐름 제어 Credit 전송을 나타내는 객체. 전송하는 시점까지 모인 Credit을 돌려준다.
+	 */
+	private static final Object CREDIT_REQUEST = new Object();
+	/**
+	 * 송신 대기열에서 흐름 제어 동기화 전송을 나타내는 객체. 전송하는 시점까지 보낸 메세지 수를 알린다.
+	 */
+	private static final Object CREDIT_SYNC_REQUEST = new Object();
+	/**
+	 * 받은 것이 없는 상태가 이만큼 지속되면 Keepalive를 보낸다 (ms). Keepalive 확인 주기이기도 하다.
+	 * <br>응답을 기다리는 Keepalive도 이만큼 지나면 응답받지 못한 것으로 본다.
+	 */
+	private static final long KEEPALIVE_INTERVAL = 2000;
+	/**
+	 * 연속으로 이만큼의 Keepalive에 응답이 없으면 연결이 끊어진 것으로 본다.
+	 */
+	private static final int MAX_MISSED_KEEPALIVES = 3;
+	/**
+	 * 송신 대기열에 넣은 Keepalive가 이만큼 전송되지 못하면 연결이 멈춘 것으로 본다 (ms).
+	 */
+	private static final long LINK_STALL_TIMEOUT = 30000;
+	/**
+	 * 메세지를 주고받는 중에도 이 주기로 Keepalive를 보내 RTT를 측정한다 (ms).
+	 */
+	private static final long RTT_SAMPLE_INTERVAL = 15000;
+	/**
+	 * 이 크기 이상의 메세지 내용은 TCP 연결이 있으면 TCP 연결로 전송한다.
+	 */
+	private static final int BULK_MESSAGE_LENGTH = 16 * 1024;
+	private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+	
+	/**
+	 * 송신 대기열에서 받은 Keepalive에 대한 응답을 나타내는 객체.
+	 */
+	private static final class KeepaliveAck {
+		/** 상대 디바이스가 보낸 Keepalive의 시각. 그대로 돌려보낸다. */
+		final long Timestamp;
+		
+		KeepaliveAck(long timestamp) {
+			Timestamp = timestamp;
+		}
+	}
+	
+	/**
+	 * TCP 연결로 보낼 메세지인지 판단한다.
+	 * <br>Reliable 메세지는 Sequence와 Ack를 이 링크에서 관리하므로 TCP 연결로 보내지 않는다.
+	 * 
+	 * @param msg
+	 * @return
+	 */
+	static boolean isBulkMessage(BlinkMessage msg) {
+		if (msg.isReliable())
+			return false;
+		
+		switch (msg.getType()) {
+		case IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC:
+		case IBlinkMessagable.TYPE_REQUEST_RECONCILE_DATA:
+			return true;
+		}
+		
+		String content = msg.getMessage();
+		return content != null && content.length() >= BULK_MESSAGE_LENGTH;
+	}
 
 	private final InterDeviceManager INTER_DEV_MANAGER;
 	private final BluetoothAssistant ASSISTANT;
 	private final MessageProcessor MSG_PROCESSOR;
 	private final BlinkDevice DEVICE;
+	private final LinkStatistics STATISTICS;
+	private final LinkQuality QUALITY;
+	private final LinkCapability HOST_CAPABILITY;
+	/**
+	 * 이 링크에서 사용하는 Binary Codec. 패키지명 등의 ID 사전을 링크별로 가진다.
+	 */
+	private final BlinkMessageCodec CODEC;
+	/**
+	 * 송신 대기열. 실제 전송은 대기열의 Writer 스레드에서 수행된다.
+	 */
+	private final LinkOutboundQueue OUTBOUND_QUEUE;
+	/**
+	 * Frame 전송 시 작은 메세지를 모은다. 송신 대기열의 Writer 스레드에서만 사용된다.
+	 */
+	private final LinkFrameBatcher BATCHER;
+	/**
+	 * 큰 메세지를 조각으로 나누어 보낸다. 송신 대기열의 Writer 스레드에서만 사용된다.
+	 */
+	private final LinkFragmenter FRAGMENTER;
+	/**
+	 * 받은 조각을 조립한다. 수신 스레드에서만 사용된다.
+	 */
+	private final LinkReassembler REASSEMBLER;
+	/**
+	 * 상대 디바이스와의 Reliable 메세지 상태. 링크가 다시 연결되어도 유지된다.
+	 */
+	private final LinkReliability RELIABILITY;
+	/**
+	 * 재전송과 Keepalive 확인을 수행하는 링크 전용 스레드. 연결 정리가 Main 스레드에서 실행되지 않도록 한다.
+	 */
+	private final HandlerThread TIMER_THREAD;
+	private final Handler RETRANSMIT_HANDLER;
+	private final Runnable RETRANSMIT_TASK;
+	/**
+	 * Ack 전송이 송신 대기열에 들어가 있는지 여부
+	 */
+	private final AtomicBoolean ACK_SCHEDULED;
+	private final Runnable KEEPALIVE_TASK;
+	/**
+	 * Keepalive 전송이 송신 대기열에 들어가 있는지 여부
+	 */
+	private final AtomicBoolean KEEPALIVE_SCHEDULED;
+	/**
+	 * Keepalive 전송을 송신 대기열에 넣은 시각
+	 */
+	private volatile long mKeepaliveQueuedAt;
+	/**
+	 * Keepalive의 시각을 담는 Buffer. 송신 대기열의 Writer 스레드에서만 사용된다.
+	 */
+	private final byte[] TIMESTAMP_BUFFER = new byte[8];
+	/**
+	 * Reliable 메세지를 등록할 때 보관 한도를 넘어 버려진 메세지를 받는다. Writer 스레드에서만 사용된다.
+	 */
+	private final ArrayList<BlinkMessage> DROPPED_MESSAGES = new ArrayList<BlinkMessage>(0);
+	/**
+	 * 상대 디바이스와의 흐름 제어 상태. 송신 대기열의 Lane을 Credit에 따라 열고 닫는다.
+	 */
+	private final LinkFlowControl FLOW_CONTROL;
+	/**
+	 * Credit 전송이 송신 대기열에 들어가 있는지 여부
+	 */
+	private final AtomicBoolean CREDIT_SCHEDULED;
+	/**
+	 * 흐름 제어 동기화 전송이 송신 대기열에 들어가 있는지 여부
+	 */
+	private final AtomicBoolean CREDIT_SYNC_SCHEDULED;
+	/**
+	 * Lane별로, 받은 메세지의 처리가 끝나면 Credit을 돌려주는 Callback
+	 */
+	private final Runnable[] CREDIT_RETURN;
+	
+	/**
+	 * ObjectStream과 Frame 전송 간의 전환이 메세지 전송과 섞이지 않도록 하는 Lock.
+	 */
+	private final Object SEND_LOCK = new Object();
 	
 	private boolean isClient;
 	private BluetoothSocket mBluetoothSocket;
@@ -36,7 +200,26 @@ public class ClassicLinkThread extends Thread {
 	private ObjectInputStream mInputStream;
 	private ObjectOutputStream mOutputStream;
 	
-	private boolean isRunning;
+	/**
+	 * 상대 디바이스와 합의된 링크 기능
+	 */
+	private volatile LinkCapability mCapability;
+	
+	/**
+	 * 상대 디바이스가 Frame 형식으로 전환한 이후에 사용된다.
+	 */
+	private LinkFrameReader mFrameReader;
+	/**
+	 * 상대 디바이스와 Frame 형식이 합의된 이후에 사용된다.
+	 */
+	private LinkFrameWriter mFrameWriter;
+	
+	/**
+	 * 상대 디바이스와의 TCP 연결. 양쪽 모두 지원하는 경우에만 열린다.
+	 */
+	private volatile TcpTransport mBulkTransport;
+	
+	private volatile boolean isRunning;
 	private boolean isPaused;
 	
 	public ClassicLinkThread(BluetoothAssistant assistant, BlinkDevice device, BluetoothSocket socket, boolean client) {
@@ -45,6 +228,7 @@ public class ClassicLinkThread extends Thread {
 		this.isClient =  client;
 		
 		init();
+		OUTBOUND_QUEUE.start();
 		
 		// Connection Broadcasting...
 		BlinkLocalBaseService mContext = INTER_DEV_MANAGER.MANAGER_CONTEXT;
@@ -63,11 +247,89 @@ public class ClassicLinkThread extends Thread {
 		INTER_DEV_MANAGER = ASSISTANT.INTER_DEV_MANAGER;
 		MSG_PROCESSOR = new MessageProcessor(INTER_DEV_MANAGER.MANAGER_CONTEXT);
 		DEVICE = device;
+		STATISTICS = new LinkStatistics(device.getAddress());
+		QUALITY = new LinkQuality(device.getAddress());
+		HOST_CAPABILITY = LinkCapability.obtainHostCapability();
+		CODEC = new BlinkMessageCodec();
+		mCapability = HOST_CAPABILITY.negotiate(null);
+		BATCHER = new LinkFrameBatcher();
+		FRAGMENTER = new LinkFragmenter();
+		REASSEMBLER = new LinkReassembler(device.getAddress());
+		
+		RELIABILITY = LinkReliability.obtain(device.getAddress());
+		HOST_CAPABILITY.ReliableEpoch = RELIABILITY.obtainSendEpoch();
+		
+		// TCP 연결을 받고 있으면, 상대가 연결할 수 있도록 주소를 알린다.
+		int tcpPort = TcpLinkSelector.getInstance().obtainListeningPort();
+		String tcpAddress = (tcpPort > 0)? TcpLinkSelector.obtainLocalAddress() : null;
+		if (tcpAddress != null) {
+			HOST_CAPABILITY.Flags |= LinkCapability.FLAG_BULK_TCP;
+			HOST_CAPABILITY.TcpAddress = tcpAddress;
+			HOST_CAPABILITY.TcpPort = tcpPort;
+			HOST_CAPABILITY.TcpToken = TOKEN_RANDOM.nextLong();
+			HOST_CAPABILITY.TcpKey = LinkCipher.obtainKey();
+		}
+		TIMER_THREAD = new HandlerThread(device.getName() + "-LinkTimer");
+		TIMER_THREAD.start();
+		RETRANSMIT_HANDLER = new Handler(TIMER_THREAD.getLooper());
+		RETRANSMIT_TASK = new Runnable() {
+			@Override
+			public void run() {
+				retransmitExpired();
+			}
+		};
+		ACK_SCHEDULED = new AtomicBoolean(false);
+		KEEPALIVE_TASK = new Runnable() {
+			@Override
+			public void run() {
+				checkKeepalive();
+			}
+		};
+		KEEPALIVE_SCHEDULED = new AtomicBoolean(false);
+		
+		OUTBOUND_QUEUE = new LinkOutboundQueue(device.getName(), LinkOutboundQueue.DEFAULT_CAPACITY,
+				new LinkOutboundQueue.Sender() {
+					@Override
+					public int send(Object obj) throws IOException {
+						return writeMessage(obj);
+					}
+
+					@Override
+					public long obtainFlushDelayNanos() {
+						// 나누어 보내는 중인 메세지는 대기열이 비는 즉시 이어서 보낸다.
+						return FRAGMENTER.hasRemaining()? 0 : BATCHER.obtainFlushDelayNanos();
+					}
+
+					@Override
+					public int flush() throws IOException {
+						return writePending();
+					}
+				},
+				new LinkOutboundQueue.OnSendFailedListener() {
+					@Override
+					public void onSendFailed(Object obj, int reason) {
+						handleSendFailure(obj, reason);
+					}
+				});
+		
+		FLOW_CONTROL = new LinkFlowControl(device.getAddress());
+		CREDIT_SCHEDULED = new AtomicBoolean(false);
+		CREDIT_SYNC_SCHEDULED = new AtomicBoolean(false);
+		CREDIT_RETURN = new Runnable[LinkOutboundQueue.LANE_COUNT];
+		for (int i = 0; i < CREDIT_RETURN.length; i++) {
+			final int lane = i;
+			CREDIT_RETURN[i] = new Runnable() {
+				@Override
+				public void run() {
+					returnCredit(lane);
+				}
+			};
+		}
+		OUTBOUND_QUEUE.setLaneGate(FLOW_CONTROL);
 	}
 	
 	private void init() {
 		Log.d("ClassicLinkThread_init()", "");
-		// TODO : ObjectStream을 Reader/Writer로 바꿀 것... (JSON String 교환)
 		try {
 			if (isClient) {
 				mOutputStream = new ObjectOutputStream(mBluetoothSocket.getOutputStream());
@@ -78,6 +340,11 @@ public class ClassicLinkThread extends Thread {
 				mOutputStream = new ObjectOutputStream(mBluetoothSocket.getOutputStream());
 			}
 			
+			// 상대의 응답은 기다리지 않는다. 이전 버전의 디바이스는 BlinkMessage가 아닌 객체를 무시하므로,
+			// 응답이 없으면 기존의 ObjectStream으로 계속 통신한다.
+			mOutputStream.writeObject(HOST_CAPABILITY);
+			mOutputStream.flush();
+			
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -85,6 +352,88 @@ public class ClassicLinkThread extends Thread {
 		isRunning = false;
 	}
 	
+	/**
+	 * 상대 디바이스의 LinkCapability를 받아, 이 링크에서 사용할 기능을 정한다.
+	 * <br>Frame 형식이 합의되면 확인 객체를 보낸 뒤 전송을 Frame 형식으로 전환한다.
+	 * 
+	 * @param peer
+	 * @throws IOException
+	 */
+	private void handleCapability(LinkCapability peer) throws IOException {
+		if (peer.Confirmed) {
+			// 상대 디바이스는 이 객체 다음부터 Frame 형식으로 전송한다.
+			mFrameReader = new LinkFrameReader(mBluetoothSocket.getInputStream());
+			return;
+		}
+		
+		LinkCapability agreed = HOST_CAPABILITY.negotiate(peer);
+		Log.d("ClassicLinkThread_handleCapability()", DEVICE.getName() + " : " + agreed);
+		
+		boolean reliable = agreed.isSupported(LinkCapability.FLAG_FRAMING | LinkCapability.FLAG_RELIABLE);
+		if (reliable)
+			RELIABILITY.onPeerEpoch(peer.ReliableEpoch);
+		
+		// Frame을 보내기 전에 상대가 알린 Window로 Credit을 설정한다.
+		if (agreed.isSupported(LinkCapability.FLAG_FRAMING | LinkCapability.FLAG_FLOW_CONTROL))
+			FLOW_CONTROL.enable(peer.CreditWindow, HOST_CAPABILITY.CreditWindow);
+		
+		synchronized (SEND_LOCK) {
+			mCapability = agreed;
+			if (agreed.isSupported(LinkCapability.FLAG_FRAMING)) {
+				mOutputStream.writeObject(agreed.obtainConfirmation());
+				mOutputStream.flush();
+				mFrameWriter = new LinkFrameWriter(mBluetoothSocket.getOutputStream());
+			}
+		}
+		
+		if (reliable) {
+			// 이전 연결에서 Ack를 받지 못한 메세지를 다시 전송한다.
+			for (LinkReliability.Pending pending : RELIABILITY.obtainForResend())
+				OUTBOUND_QUEUE.offer(pending);
+		}
+		
+		if (agreed.isSupported(LinkCapability.FLAG_BULK_TCP) && peer.TcpAddress != null && peer.TcpKey != null)
+			openBulkTransport(peer);
+		
+		if (agreed.isSupported(LinkCapability.FLAG_FRAMING | LinkCapability.FLAG_KEEPALIVE))
+			RETRANSMIT_HANDLER.postDelayed(KEEPALIVE_TASK, KEEPALIVE_INTERVAL);
+	}
+	
+	/**
+	 * 상대 디바이스와 TCP 연결을 연다. Bluetooth 연결을 요청한 쪽이 상대의 주소로 연결한다.
+	 * <br>TCP 연결로 보내지 못한 메세지는 이 링크로 다시 보낸다.
+	 * <br>Frame은 이 링크로 주고받은 키로 암호화하며, 암호화할 수 없으면 TCP 연결을 열지 않는다.
+	 * 
+	 * @param peer
+	 */
+	private void openBulkTransport(LinkCapability peer) {
+		LinkCipher cipher;
+		try {
+			cipher = new LinkCipher(HOST_CAPABILITY.TcpKey, peer.TcpKey);
+			
+		} catch (GeneralSecurityException e) {
+			Log.w("ClassicLinkThread_openBulkTransport()", DEVICE.getName() + " : " + e.getMessage());
+			return;
+		}
+		
+		TcpLinkSelector selector = TcpLinkSelector.getInstance();
+		TcpTransport transport = new TcpTransport(selector, DEVICE, cipher, MSG_PROCESSOR,
+				new LinkOutboundQueue.OnSendFailedListener() {
+					@Override
+					public void onSendFailed(Object obj, int reason) {
+						OUTBOUND_QUEUE.offer(obj);
+					}
+				});
+		
+		if (isClient)
+			selector.connect(transport, new InetSocketAddress(peer.TcpAddress, peer.TcpPort), peer.TcpToken);
+		else
+			selector.expect(HOST_CAPABILITY.TcpToken, transport);
+		
+		mBulkTransport = transport;
+		Log.d("ClassicLinkThread_openBulkTransport()", DEVICE.getName() + " : " + peer.TcpAddress + ":" + peer.TcpPort);
+	}
+	
 	@Override
 	public void run() {
 		Log.d("ClassicLinkThread_run()", "START : " + DEVICE.toString());
@@ -96,19 +445,41 @@ public class ClassicLinkThread extends Thread {
 		// Read Operation
 		while (isRunning) {
 			try {
-				Object obj = mInputStream.readObject();
-				
-				if (obj instanceof BlinkMessage) {
-					BlinkMessage msg = (BlinkMessage) obj;
-					MSG_PROCESSOR.acceptBlinkMessage(msg, DEVICE);
+				if (mFrameReader != null) {
+					LinkFrame frame = mFrameReader.readFrame();
+					try {
+						handleFrame(frame);
+						
+					} finally {
+						if (frame != null)
+							frame.recycle();
+					}
+					
+				} else {
+					Object obj = mInputStream.readObject();
 					
-					Intent intent = new Intent(IBlinkEventBroadcast.BROADCAST_MESSAGE_RECEIVED_FOR_TEST);
-					intent.putExtra("content", msg.getMessage());
-					INTER_DEV_MANAGER.MANAGER_CONTEXT.sendBroadcast(intent);
+					if (obj instanceof LinkCapability) {
+						handleCapability((LinkCapability) obj);
+						
+					} else if (obj instanceof BlinkMessage) {
+						BlinkMessage msg = (BlinkMessage) obj;
+						STATISTICS.onReceived();
+						if (msg.isCompressed() && !decompressMessage(msg))
+							Log.w("ClassicLinkThread_run()", "Corrupted message from " + DEVICE.getName());
+						else
+							acceptMessage(msg);
+					}
 				}
 				
-			} catch (IOException e) {
+			} catch (StreamCorruptedException e) {
+				// 다음 메세지의 위치를 알 수 없거나, Binary Codec의 ID 사전이 어긋났으므로 연결을 해제한다.
+				// 다시 연결되면 새 Codec을 사용한다.
 				e.printStackTrace();
+				handleLinkLost(e);
+				
+			} catch (IOException e) {
+				// EOF 또는 소켓 오류. 다시 읽어도 같은 예외가 발생한다.
+				handleLinkLost(e);
 				
 			} catch (ClassNotFoundException e) {
 				e.printStackTrace();
@@ -119,6 +490,58 @@ public class ClassicLinkThread extends Thread {
 		}
 		Log.d("ClassicLinkThread_run()", "END");
 	}
+	
+	/**
+	 * 상대 디바이스와의 연결이 끊어졌을 때 링크를 정리한다.
+	 * <br>연결 해제를 알리고, 자동 연결이 설정된 디바이스이면 다시 연결을 예약한다.
+	 * {@link #destroyThread()}로 이미 닫힌 링크에서 발생한 예외는 무시한다.
+	 * 
+	 * @param cause
+	 */
+	private void handleLinkLost(IOException cause) {
+		if (!isRunning)
+			return;
+		
+		Log.w("ClassicLinkThread_run()", "LINK LOST : " + DEVICE.getName() + " (" + cause + ")");
+		
+		// 맵에서 제거되면서 destroyThread()가 호출된다.
+		BlinkLocalBaseService mContext = INTER_DEV_MANAGER.MANAGER_CONTEXT;
+		if (!ServiceKeeper.getInstance(mContext).onLinkLost(DEVICE, this))
+			destroyThread();
+		
+		if (DEVICE.isConnected()) {
+			// Broadcasting...
+			Intent mActionDisconnected = new Intent(IBlinkEventBroadcast.BROADCAST_DEVICE_DISCONNECTED);
+			mActionDisconnected.putExtra(IBlinkEventBroadcast.EXTRA_DEVICE, (Serializable) DEVICE);
+			mContext.sendBroadcast(mActionDisconnected, IBlinkEventBroadcast.PERMISSION_LISTEN_STATE_MESSAGE);
+		}
+		DEVICE.setConnected(false);
+	}
+	
+	/**
+	 * 받은 BlinkMessage를 처리한다.
+	 * 
+	 * @param msg
+	 */
+	private void acceptMessage(BlinkMessage msg) {
+		acceptMessage(msg, null);
+	}
+	
+	/**
+	 * @param msg
+	 * @param onProcessed 메세지의 처리가 끝나면 호출된다. null 가능.
+	 */
+	private void acceptMessage(BlinkMessage msg, Runnable onProcessed) {
+		if (msg == null)
+			return;
+		
+		QUALITY.onReceived(0, 1);
+		MSG_PROCESSOR.acceptBlinkMessage(msg, DEVICE, onProcessed);
+		
+		Intent intent = new Intent(IBlinkEventBroadcast.BROADCAST_MESSAGE_RECEIVED_FOR_TEST);
+		intent.putExtra("content", msg.getMessage());
+		INTER_DEV_MANAGER.MANAGER_CONTEXT.sendBroadcast(intent);
+	}
 
 	/**
 	 * 이 메소드는 아무런 기능을 수행하지 않는다.
@@ -158,6 +581,27 @@ public class ClassicLinkThread extends Thread {
 		}
 	}
 
+	@Override
+	public BlinkDevice obtainDevice() {
+		return DEVICE;
+	}
+	
+	/**
+	 * {@link #startThread()}와 같다.
+	 */
+	@Override
+	public void open() {
+		startThread();
+	}
+	
+	/**
+	 * {@link #destroyThread()}와 같다.
+	 */
+	@Override
+	public void close() {
+		destroyThread();
+	}
+	
 	/**
 	 * 이 메소드는 아무런 기능을 수행하지 않는다.
 	 * <br> {@link #destroyThread()}로 기능을 수행한다.
@@ -172,9 +616,21 @@ public class ClassicLinkThread extends Thread {
 	 * 본 스레드를 파괴하고, 해당 디바이스와의 연결을 해제한다.
 	 */
 	void destroyThread() {
-		Log.d("ClassicLinkThread_destroy()", "DESTROY");
+		Log.d("ClassicLinkThread_destroy()", "DESTROY : " + STATISTICS + " " + QUALITY + " " + OUTBOUND_QUEUE + " " + RELIABILITY + " " + REASSEMBLER + " " + FLOW_CONTROL);
 		isRunning = false;
 		interrupt();
+		OUTBOUND_QUEUE.close();
+		RETRANSMIT_HANDLER.removeCallbacks(RETRANSMIT_TASK);
+		RETRANSMIT_HANDLER.removeCallbacks(KEEPALIVE_TASK);
+		TIMER_THREAD.quit();
+		RELIABILITY.persist();
+		
+		TcpTransport bulk = mBulkTransport;
+		if (bulk != null) {
+			mBulkTransport = null;
+			TcpLinkSelector.getInstance().cancel(HOST_CAPABILITY.TcpToken);
+			bulk.close();
+		}
 		
 		try {
 			if (mInputStream != null)
@@ -202,23 +658,1039 @@ public class ClassicLinkThread extends Thread {
 		} finally {
 			mBluetoothSocket = null;
 		}
+		
+		// 소켓이 닫혔으므로 Writer 스레드가 쓰기 중이었더라도 Lock을 곧 놓는다.
+		synchronized (SEND_LOCK) {
+			abortTransfers(LinkOutboundQueue.FAILURE_CLOSED);
+		}
 	}
 
 	/**
 	 * 연결되어있는 상대 디바이스에게 Object 메세지를 전송한다.
+	 * <br>메세지는 송신 대기열에 들어가며, 전송을 기다리지 않고 바로 반환한다.
+	 * 
+	 * @param obj
+	 * @return 대기열에 들어가지 못한 경우 false. 
+	 * 		이 경우와 전송에 실패한 경우는 {@link #handleSendFailure(Object, int)}로 처리된다.
+	 */
+	@Override
+	public boolean sendMessageToDevice(Object obj) {
+		// 큰 메세지는 TCP 연결이 있으면 그쪽으로 보내고, 연결되지 않았으면 이 링크로 보낸다.
+		TcpTransport bulk = mBulkTransport;
+		BlinkMessage msg = SharedMessage.unwrap(obj);
+		if (bulk != null && msg != null && isBulkMessage(msg)
+				&& bulk.sendMessageToDevice(obj))
+			return true;
+		
+		return OUTBOUND_QUEUE.offer(obj);
+	}
+	
+	/**
+	 * 송신 대기열의 Writer 스레드에서 호출되어, 메세지를 실제로 전송한다.
 	 * 
 	 * @param obj
+	 * @throws IOException
 	 */
-	void sendMessageToDevice(Object obj) {
-		if ((mOutputStream != null) && (obj != null)) {
+	private int writeMessage(Object obj) throws IOException {
+		synchronized (SEND_LOCK) {
+			if (mOutputStream == null)
+				throw new IOException("Link is not connected : " + DEVICE.getName());
+			
+			if (mFrameWriter == null) {
+				writeObject(obj);
+				return 0;
+			}
+			
 			try {
-				Log.d("InterDeviceManager_sendBlinkMessage()", DEVICE.getName() + " : " + ((BlinkMessage)obj).getMessage());
-				mOutputStream.writeObject(obj);
-				mOutputStream.flush();
+				int held = writeFrame(obj);
+				// 메세지 하나를 보낼 때마다 나누어 보내는 중인 메세지의 조각을 하나씩 보낸다.
+				if (FRAGMENTER.hasRemaining())
+					writeNextFragment();
+				return held;
+				
+			} catch (IOException e) {
+				abortTransfers(LinkOutboundQueue.FAILURE_IO);
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * 송신 대기열이 비어 있을 때 Writer 스레드에서 호출되어, 전송 시각이 된 Batch와 다음 조각을 전송한다.
+	 * 
+	 * @return 아직 전송되지 않고 Batch에 모여있는 메세지 수
+	 * @throws IOException
+	 */
+	private int writePending() throws IOException {
+		synchronized (SEND_LOCK) {
+			if (mFrameWriter == null)
+				return 0;
+			
+			try {
+				if (BATCHER.obtainFlushDelayNanos() == 0)
+					flushBatch();
+				if (FRAGMENTER.hasRemaining())
+					writeNextFragment();
+				return BATCHER.obtainCount();
 				
 			} catch (IOException e) {
+				abortTransfers(LinkOutboundQueue.FAILURE_IO);
+				throw e;
 			}
 		}
 	}
+	
+	/**
+	 * 전송하지 못한 메세지를 처리한다.
+	 * <br>Reliable 메세지는 재전송을 예약하고, 그 외의 메세지는 {@link MessageProcessor#handleSendFailure(BlinkMessage, BlinkDevice)}로 넘긴다.
+	 * 
+	 * @param obj
+	 * @param reason {@link LinkOutboundQueue}의 FAILURE 상수
+	 */
+	private void handleSendFailure(Object obj, int reason) {
+		if (obj == ACK_REQUEST) {
+			ACK_SCHEDULED.set(false);
+			return;
+		}
+		
+		if (obj == KEEPALIVE_REQUEST) {
+			KEEPALIVE_SCHEDULED.set(false);
+			return;
+		}
+		
+		if (obj == CREDIT_REQUEST) {
+			// 모인 Credit은 다음 Credit 전송에 포함된다.
+			CREDIT_SCHEDULED.set(false);
+			return;
+		}
+		
+		if (obj == CREDIT_SYNC_REQUEST) {
+			// Lane이 계속 멈춰 있으면 다음 Keepalive 확인 때 다시 보낸다.
+			CREDIT_SYNC_SCHEDULED.set(false);
+			return;
+		}
+		
+		if (obj instanceof LinkReliability.Pending) {
+			RELIABILITY.onSendFailed((LinkReliability.Pending) obj);
+			scheduleRetransmit();
+			return;
+		}
+		
+		BlinkMessage msg = SharedMessage.unwrap(obj);
+		if (msg == null)
+			return;
+		
+		if (msg.isReliable() && RELIABILITY.isPending(msg)) {
+			// Ack를 받을 때까지 재전송되며, 연결이 끊어진 경우 다시 연결된 후에 전송된다.
+			return;
+		}
+		
+		Log.w("ClassicLinkThread_handleSendFailure()", DEVICE.getName() + " : type=" + msg.getType() + ", reason=" + reason);
+		
+		MSG_PROCESSOR.handleSendFailure(msg, DEVICE);
+	}
+	
+	/**
+	 * Frame 형식이 합의되지 않은 상대 디바이스에게 ObjectStream으로 전송한다.
+	 * 
+	 * @param obj
+	 * @throws IOException
+	 */
+	private void writeObject(Object obj) throws IOException {
+		if (obj instanceof SharedMessage)
+			obj = ((SharedMessage) obj).Message;
+		
+		boolean compressed = false;
+		if (obj instanceof BlinkMessage) {
+			BlinkMessage msg = (BlinkMessage) obj;
+			Log.d("InterDeviceManager_sendBlinkMessage()", DEVICE.getName() + " : " + msg.getMessage());
+			
+			obj = compressMessage(msg);
+			compressed = (obj != msg);
+		}
+		
+		mOutputStream.writeObject(obj);
+		// 전송한 객체의 참조 테이블이 계속 커지지 않도록 비운다.
+		mOutputStream.reset();
+		mOutputStream.flush();
+		STATISTICS.onSent(compressed);
+		QUALITY.onSent(0, 1);
+	}
+	
+	/**
+	 * BlinkMessage를 Frame으로 전송한다.
+	 * <br>Reliable이 합의된 경우, Reliable 메세지에는 Sequence를 붙이고 Ack를 받을 때까지 보관한다.
+	 * 
+	 * @param obj BlinkMessage, {@link SharedMessage}, 재전송할 {@link LinkReliability.Pending}, 또는 {@link #ACK_REQUEST}
+	 * @return 아직 전송되지 않고 Batch에 모여있는 메세지 수
+	 * @throws IOException
+	 */
+	private int writeFrame(Object obj) throws IOException {
+		Object source = obj;
+		
+		if (obj == ACK_REQUEST) {
+			ACK_SCHEDULED.set(false);
+			return writeEntry(LinkFrame.TYPE_RELIABLE_ACK, RELIABILITY.obtainAck().encode(),
+					LinkFrameBatcher.PRIORITY_NORMAL);
+		}
+		
+		if (obj == KEEPALIVE_REQUEST) {
+			// 대기열에서 기다린 시간은 RTT에 포함하지 않는다.
+			KEEPALIVE_SCHEDULED.set(false);
+			writeLong(TIMESTAMP_BUFFER, 0, System.nanoTime());
+			QUALITY.onProbeSent();
+			return writeEntry(LinkFrame.TYPE_KEEPALIVE, TIMESTAMP_BUFFER, LinkFrameBatcher.PRIORITY_CONTROL);
+		}
+		
+		if (obj instanceof KeepaliveAck) {
+			writeLong(TIMESTAMP_BUFFER, 0, ((KeepaliveAck) obj).Timestamp);
+			return writeEntry(LinkFrame.TYPE_KEEPALIVE_ACK, TIMESTAMP_BUFFER, LinkFrameBatcher.PRIORITY_CONTROL);
+		}
+		
+		if (obj == CREDIT_REQUEST) {
+			CREDIT_SCHEDULED.set(false);
+			return writeEntry(LinkFrame.TYPE_CREDIT, FLOW_CONTROL.obtainGrant(), LinkFrameBatcher.PRIORITY_CONTROL);
+		}
+		
+		if (obj == CREDIT_SYNC_REQUEST) {
+			CREDIT_SYNC_SCHEDULED.set(false);
+			// 나누어 보내는 중인 메세지는 이미 보낸 것으로 기록되었으므로, 모두 보낸 후에 알린다.
+			if (FRAGMENTER.hasRemaining())
+				return BATCHER.obtainCount();
+			// Batch에 모아둔 메세지는 이 Entry보다 먼저 전송된다.
+			return writeEntry(LinkFrame.TYPE_CREDIT_SYNC, FLOW_CONTROL.obtainSync(), LinkFrameBatcher.PRIORITY_CONTROL);
+		}
+		
+		LinkReliability.Pending pending = null;
+		if (obj instanceof LinkReliability.Pending) {
+			pending = (LinkReliability.Pending) obj;
+			obj = pending.Message;
+		}
+		
+		SharedMessage shared = null;
+		if (obj instanceof SharedMessage) {
+			shared = (SharedMessage) obj;
+			obj = shared.Message;
+		}
+		
+		if (!(obj instanceof BlinkMessage)) {
+			// ObjectStream에서도 상대 디바이스는 BlinkMessage 외의 객체를 무시한다.
+			Log.w("ClassicLinkThread_writeFrame()", "Unsupported object : " + obj.getClass().getName());
+			return BATCHER.obtainCount();
+		}
+		
+		BlinkMessage msg = (BlinkMessage) obj;
+		Log.d("InterDeviceManager_sendBlinkMessage()", DEVICE.getName() + " : " + msg.getMessage());
+		
+		// 조각으로 나누어 보내는 메세지는 뒤의 메세지보다 늦게 도착할 수 있으므로,
+		// 순서에 의존하는 Binary Codec의 ID 사전을 사용하지 않는다.
+		String content = msg.getMessage();
+		boolean fragmented = mCapability.isSupported(LinkCapability.FLAG_FRAGMENTATION)
+				&& content != null && FRAGMENTER.requires(content.length());
+		
+		// Binary Codec의 결과는 Codec의 Buffer에 담기며, 앞의 length Byte만 유효하다.
+		int type;
+		byte[] payload;
+		int length;
+		if (shared != null) {
+			// 다른 링크들과 같은 Payload를 사용한다.
+			type = LinkFrame.TYPE_BLINK_MESSAGE_JSON;
+			payload = shared.obtainJsonPayload();
+			length = payload.length;
+			
+		} else if (mCapability.isSupported(LinkCapability.FLAG_BINARY_CODEC) && !fragmented) {
+			type = LinkFrame.TYPE_BLINK_MESSAGE_BINARY;
+			length = CODEC.encodeInPlace(msg);
+			payload = CODEC.obtainEncodedBuffer();
+			
+		} else {
+			type = LinkFrame.TYPE_BLINK_MESSAGE_JSON;
+			payload = FRAME_GSON.toJson(msg).getBytes(MESSAGE_CHARSET);
+			length = payload.length;
+		}
+		
+		if (fragmented && length > LinkReassembler.MAX_MESSAGE_LENGTH) {
+			Log.w("ClassicLinkThread_writeFrame()", "Too large message : " + length + "B");
+			handleSendFailure(source, LinkOutboundQueue.FAILURE_OVERFLOW);
+			return BATCHER.obtainCount();
+		}
+		
+		// 상대 디바이스는 이 메세지의 처리가 끝나면 Credit을 돌려준다.
+		FLOW_CONTROL.onSent(LinkOutboundQueue.obtainLane(msg));
+		
+		if (pending == null && msg.isReliable() && mCapability.isSupported(LinkCapability.FLAG_RELIABLE)) {
+			pending = RELIABILITY.register(msg, DROPPED_MESSAGES);
+			QUALITY.onReliableSent();
+			
+			for (BlinkMessage given : DROPPED_MESSAGES)
+				handleSendFailure(given, LinkOutboundQueue.FAILURE_OVERFLOW);
+			DROPPED_MESSAGES.clear();
+		}
+		
+		// 전송이 끝나면 BufferPool에 반환할 배열
+		byte[] pooled = null;
+		if (pending != null) {
+			// 조각으로 나누어 보내는 Payload는 전송이 끝날 때까지 보관되므로 Pool의 배열을 사용하지 않는다.
+			byte[] sequenced = fragmented? new byte[length + 5] : (pooled = BufferPool.obtain(length + 5));
+			writeInt(sequenced, 0, pending.Sequence);
+			sequenced[4] = (byte) type;
+			System.arraycopy(payload, 0, sequenced, 5, length);
+			
+			type = LinkFrame.TYPE_RELIABLE_MESSAGE;
+			payload = sequenced;
+			length += 5;
+			// Sequence가 붙은 Payload는 이 링크에서만 사용된다.
+			shared = null;
+		}
+		
+		if (fragmented) {
+			// 먼저 모아둔 메세지보다 앞서 전송되지 않도록 한다.
+			flushBatch();
+			startTransfer(type, payload, shared, source, pending);
+			return 0;
+		}
+		
+		try {
+			if (pending != null) {
+				RELIABILITY.onSent(pending);
+				scheduleRetransmit();
+			}
+			
+			byte[] deflated = (shared != null)? obtainSharedDeflated(shared) : null;
+			if (deflated != null) {
+				// 압축할 만큼 큰 메세지는 Batch에 모으지 않고, 공유된 압축 결과를 그대로 전송한다.
+				flushBatch();
+				writeLinkFrame(type, LinkFrame.FLAG_DEFLATED, deflated, 1);
+				STATISTICS.onSent(true);
+				return 0;
+			}
+			return writeEntry(type, payload, 0, length, LinkFrameBatcher.obtainPriority(msg));
+			
+		} finally {
+			BufferPool.release(pooled);
+		}
+	}
+	
+	/**
+	 * Payload를 필요하면 압축한 후, 조각으로 나누어 보내기 시작한다.
+	 * <br>조각은 {@link #writeNextFragment()}로 하나씩 전송된다.
+	 * 
+	 * @param type
+	 * @param payload
+	 * @param shared payload가 {@link SharedMessage}의 JSON Payload이면 그 메세지. 압축 결과를 공유한다.
+	 * @param source 송신 대기열에서 꺼낸 원래 객체
+	 * @param pending Reliable 메세지가 아니면 null.
+	 */
+	private void startTransfer(int type, byte[] payload, SharedMessage shared, Object source, LinkReliability.Pending pending) {
+		int flags = 0;
+		byte[] deflated = (shared != null)? obtainSharedDeflated(shared) : deflatePayload(payload);
+		if (deflated != null) {
+			payload = deflated;
+			flags |= LinkFrame.FLAG_DEFLATED;
+		}
+		
+		FRAGMENTER.add(type, flags, payload, source, pending);
+	}
+	
+	/**
+	 * 나누어 보내는 중인 메세지들 중 다음 차례의 조각 하나를 전송한다.
+	 * <br>Reliable 메세지는 마지막 조각을 보낸 후부터 재전송 시각을 계산한다.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeNextFragment() throws IOException {
+		LinkFragmenter.Transfer transfer = FRAGMENTER.next();
+		if (transfer == null)
+			return;
+		
+		writeLinkFrame(LinkFrame.TYPE_FRAGMENT, 0, transfer.LastFragment, transfer.isCompleted()? 1 : 0);
+		if (!transfer.isCompleted())
+			return;
+		
+		STATISTICS.onSentFragments(transfer.Fragments, (transfer.Flags & LinkFrame.FLAG_DEFLATED) != 0);
+		if (transfer.Pending != null) {
+			RELIABILITY.onSent(transfer.Pending);
+			scheduleRetransmit();
+		}
+	}
+	
+	/**
+	 * 나누어 보내는 중인 메세지를 모두 전송 실패로 처리한다. Reliable 메세지는 RTO 이후에 다시 전송된다.
+	 * 
+	 * @param reason {@link LinkOutboundQueue}의 FAILURE 상수
+	 */
+	private void abortTransfers(int reason) {
+		boolean reliable = false;
+		for (LinkFragmenter.Transfer transfer : FRAGMENTER.clear()) {
+			if (transfer.Pending != null) {
+				RELIABILITY.onSendFailed(transfer.Pending);
+				reliable = true;
+				
+			} else {
+				handleSendFailure(transfer.Source, reason);
+			}
+		}
+		
+		if (reliable)
+			scheduleRetransmit();
+	}
+	
+	/**
+	 * Payload를 전송한다. Batch가 합의된 경우, 작은 Payload는 {@link LinkFrameBatcher}에 모았다가 함께 전송한다.
+	 * 
+	 * @param type
+	 * @param payload
+	 * @param priority
+	 * @return 아직 전송되지 않고 Batch에 모여있는 메세지 수
+	 * @throws IOException
+	 */
+	private int writeEntry(int type, byte[] payload, int priority) throws IOException {
+		return writeEntry(type, payload, 0, payload.length, priority);
+	}
+	
+	/**
+	 * 배열의 일부를 Payload로 전송한다. Batch에 모으는 경우에도 복사되므로, 반환 후 배열을 재사용해도 된다.
+	 * 
+	 * @param type
+	 * @param payload
+	 * @param offset
+	 * @param length
+	 * @param priority
+	 * @return 아직 전송되지 않고 Batch에 모여있는 메세지 수
+	 * @throws IOException
+	 */
+	private int writeEntry(int type, byte[] payload, int offset, int length, int priority) throws IOException {
+		if (mCapability.isSupported(LinkCapability.FLAG_BATCHING)) {
+			if (BATCHER.accepts(priority, length)) {
+				if (!BATCHER.fits(length))
+					flushBatch();
+				if (BATCHER.add(type, payload, offset, length, priority))
+					flushBatch();
+				return BATCHER.obtainCount();
+			}
+			
+			// 먼저 모아둔 메세지보다 앞서 전송되지 않도록 한다.
+			flushBatch();
+		}
+		
+		STATISTICS.onSent(writePayload(type, payload, offset, length, carriesMessage(type)? 1 : 0));
+		return 0;
+	}
+	
+	/**
+	 * 가장 먼저 재전송해야 하는 메세지의 시각에 맞춰 재전송을 예약한다.
+	 */
+	private void scheduleRetransmit() {
+		RETRANSMIT_HANDLER.removeCallbacks(RETRANSMIT_TASK);
+		
+		long delay = RELIABILITY.obtainNextRetransmitDelay();
+		if (delay >= 0 && isRunning)
+			RETRANSMIT_HANDLER.postDelayed(RETRANSMIT_TASK, delay);
+	}
+	
+	/**
+	 * 재전송 시각이 지난 Reliable 메세지를 송신 대기열에 넣는다.
+	 */
+	private void retransmitExpired() {
+		if (!isRunning)
+			return;
+		
+		ArrayList<LinkReliability.Pending> expired = RELIABILITY.obtainExpired();
+		QUALITY.onRetransmitted(expired.size());
+		for (LinkReliability.Pending pending : expired)
+			OUTBOUND_QUEUE.offer(pending);
+		scheduleRetransmit();
+	}
+	
+	/**
+	 * Keepalive 확인 주기마다 호출되어, 필요하면 Keepalive를 보내고 응답이 없는 링크를 정리한다.
+	 * <br>받은 것이 없는 시간이 아니라 응답받지 못한 Keepalive의 수로 판단하므로,
+	 * 상대 디바이스가 보낼 것이 없거나 현재 디바이스의 처리가 늦어진 것만으로는 연결을 정리하지 않는다.
+	 */
+	private void checkKeepalive() {
+		if (!isRunning)
+			return;
+		
+		long now = System.currentTimeMillis();
+		long unanswered = QUALITY.obtainUnansweredMillis(now);
+		int missed = QUALITY.obtainConsecutiveMisses() + (unanswered >= KEEPALIVE_INTERVAL? 1 : 0);
+		if (missed >= MAX_MISSED_KEEPALIVES) {
+			handleLinkLost(new IOException(missed + " keepalives unanswered"));
+			return;
+		}
+		
+		long queued = now - mKeepaliveQueuedAt;
+		if (KEEPALIVE_SCHEDULED.get() && queued >= LINK_STALL_TIMEOUT) {
+			handleLinkLost(new IOException("Keepalive not sent for " + queued + "ms"));
+			return;
+		}
+		
+		boolean probe = (QUALITY.obtainIdleMillis(now) >= KEEPALIVE_INTERVAL
+				&& (unanswered < 0 || unanswered >= KEEPALIVE_INTERVAL))
+				|| QUALITY.obtainProbeAgeMillis(now) >= RTT_SAMPLE_INTERVAL;
+		if (probe && KEEPALIVE_SCHEDULED.compareAndSet(false, true)) {
+			mKeepaliveQueuedAt = now;
+			OUTBOUND_QUEUE.offer(KEEPALIVE_REQUEST);
+		}
+		
+		// 상대 디바이스가 버린 메세지의 Credit은 돌아오지 않으므로, Lane이 오래 멈춰 있으면 보낸 메세지 수를 알린다.
+		if (FLOW_CONTROL.obtainStalledMillis(now) >= KEEPALIVE_INTERVAL
+				&& CREDIT_SYNC_SCHEDULED.compareAndSet(false, true))
+			OUTBOUND_QUEUE.offer(CREDIT_SYNC_REQUEST);
+		
+		RETRANSMIT_HANDLER.postDelayed(KEEPALIVE_TASK, KEEPALIVE_INTERVAL);
+	}
+	
+	/**
+	 * Keepalive 응답으로 측정한 RTT를 반영하고, 디바이스 정보에 기록한다.
+	 * 
+	 * @param rttNanos
+	 */
+	private void handleKeepaliveAck(long rttNanos) {
+		QUALITY.onProbeAnswered(rttNanos);
+		DEVICE.setLinkQuality(QUALITY.obtainRttMillis(), QUALITY.obtainLossRate());
+	}
+	
+	/**
+	 * 수신 상태에 대한 Ack 전송을 송신 대기열에 넣는다. 이미 들어가 있으면 다시 넣지 않는다.
+	 */
+	private void scheduleAck() {
+		if (ACK_SCHEDULED.compareAndSet(false, true))
+			OUTBOUND_QUEUE.offer(ACK_REQUEST);
+	}
+	
+	/**
+	 * 받은 메세지의 처리가 끝났으므로 Credit을 돌려준다. 충분히 모였으면 Credit 전송을 송신 대기열에 넣는다.
+	 * <br>메세지를 처리한 스레드에서 호출된다.
+	 * 
+	 * @param lane
+	 */
+	private void returnCredit(int lane) {
+		if (FLOW_CONTROL.onProcessed(lane))
+			scheduleCredit();
+	}
+	
+	private void scheduleCredit() {
+		if (CREDIT_SCHEDULED.compareAndSet(false, true))
+			OUTBOUND_QUEUE.offer(CREDIT_REQUEST);
+	}
+	
+	/**
+	 * Batch에 모아둔 메세지를 전송한다. 메세지가 하나뿐이면 Batch 없이 보낸다.
+	 * 
+	 * @throws IOException
+	 */
+	private void flushBatch() throws IOException {
+		int count = BATCHER.obtainCount();
+		if (count == 0)
+			return;
+		
+		byte[] batch = BATCHER.obtainBatch();
+		int length = BATCHER.obtainLength();
+		try {
+			if (count > 1) {
+				STATISTICS.onSentBatch(count, writePayload(LinkFrame.TYPE_BLINK_MESSAGE_BATCH, batch, 0, length, count));
+				return;
+			}
+			
+			int type = batch[0] & 0xFF;
+			STATISTICS.onSent(writePayload(type, batch, LinkFrameBatcher.ENTRY_HEADER_LENGTH,
+					length - LinkFrameBatcher.ENTRY_HEADER_LENGTH, carriesMessage(type)? 1 : 0));
+			
+		} finally {
+			BATCHER.clear();
+		}
+	}
+	
+	/**
+	 * Payload를 필요하면 압축하여 하나의 Frame으로 쓴다.
+	 * 
+	 * @param type
+	 * @param payload
+	 * @param offset
+	 * @param length
+	 * @param messages Frame에 담긴 BlinkMessage 수
+	 * @return 압축하였으면 true.
+	 * @throws IOException
+	 */
+	private boolean writePayload(int type, byte[] payload, int offset, int length, int messages) throws IOException {
+		if (isCompressible(length)) {
+			byte[] deflated = BufferPool.obtain(length + 4);
+			try {
+				int deflatedLength = deflatePayload(payload, offset, length, deflated);
+				if (deflatedLength >= 0) {
+					writeLinkFrame(type, LinkFrame.FLAG_DEFLATED, deflated, 0, deflatedLength, messages);
+					return true;
+				}
+				
+			} finally {
+				BufferPool.release(deflated);
+			}
+		}
+		
+		writeLinkFrame(type, 0, payload, offset, length, messages);
+		return false;
+	}
+	
+	/**
+	 * Frame 하나를 쓰고, 보낸 크기를 {@link LinkQuality}에 기록한다.
+	 * 
+	 * @param type
+	 * @param flags
+	 * @param payload
+	 * @param messages Frame에 담긴 BlinkMessage 수
+	 * @throws IOException
+	 */
+	private void writeLinkFrame(int type, int flags, byte[] payload, int messages) throws IOException {
+		writeLinkFrame(type, flags, payload, 0, payload.length, messages);
+	}
+	
+	private void writeLinkFrame(int type, int flags, byte[] payload, int offset, int length, int messages) throws IOException {
+		mFrameWriter.writeFrame(type, flags, payload, offset, length);
+		QUALITY.onSent(LinkFrame.HEADER_LENGTH + length, messages);
+	}
+	
+	private static boolean carriesMessage(int type) {
+		return type == LinkFrame.TYPE_BLINK_MESSAGE_JSON || type == LinkFrame.TYPE_BLINK_MESSAGE_BINARY
+				|| type == LinkFrame.TYPE_RELIABLE_MESSAGE;
+	}
+	
+	/**
+	 * Payload를 {@link LinkFrame#FLAG_DEFLATED} 형식으로 압축한다.
+	 * 
+	 * @param payload
+	 * @return 압축하지 않은 경우 null.
+	 */
+	private byte[] deflatePayload(byte[] payload) {
+		if (!isCompressible(payload.length))
+			return null;
+		
+		byte[] buffer = BufferPool.obtain(payload.length + 4);
+		try {
+			int length = deflatePayload(payload, 0, payload.length, buffer);
+			if (length < 0)
+				return null;
+			
+			byte[] deflated = new byte[length];
+			System.arraycopy(buffer, 0, deflated, 0, length);
+			return deflated;
+			
+		} finally {
+			BufferPool.release(buffer);
+		}
+	}
+	
+	/**
+	 * 배열의 일부를 {@link LinkFrame#FLAG_DEFLATED} 형식으로 out에 압축한다.
+	 * 
+	 * @param payload
+	 * @param offset
+	 * @param length
+	 * @param out length + 4 이상의 배열
+	 * @return out에 쓴 크기. 압축하지 않은 경우 -1.
+	 */
+	private int deflatePayload(byte[] payload, int offset, int length, byte[] out) {
+		int compressed = deflate(payload, offset, length, out, 4);
+		if (compressed < 0)
+			return -1;
+		
+		writeInt(out, 0, length);
+		return compressed + 4;
+	}
+	
+	/**
+	 * 이 링크에서 압축해야 하는 크기이면, {@link SharedMessage}의 압축된 Payload를 반환한다.
+	 * 
+	 * @param shared
+	 * @return 압축하지 않는 경우 null.
+	 */
+	private byte[] obtainSharedDeflated(SharedMessage shared) {
+		if (!mCapability.isSupported(LinkCapability.FLAG_COMPRESSION)
+				|| shared.obtainJsonPayload().length < mCapability.CompressionThreshold)
+			return null;
+		return shared.obtainDeflatedPayload();
+	}
+	
+	/**
+	 * 받은 Frame을 BlinkMessage로 변환하여 처리한다.
+	 * <br>손상되었거나 알 수 없는 Frame은 무시한다. 단, Binary Codec이 합의된 링크에서는 {@link #dropFrame(String)}을 참고한다.
+	 * 
+	 * @param frame
+	 * @throws StreamCorruptedException Binary Codec의 ID 사전이 어긋났을 수 있는 경우
+	 */
+	private void handleFrame(LinkFrame frame) throws StreamCorruptedException {
+		if (frame != null)
+			QUALITY.onReceived(LinkFrame.HEADER_LENGTH + frame.Length, 0);
+		
+		if (frame != null && frame.Type == LinkFrame.TYPE_FRAGMENT) {
+			// 조각으로 나누어 보내는 메세지는 Binary Codec을 사용하지 않으므로, 조립하지 못해도 ID 사전과 관계없다.
+			frame = REASSEMBLER.add(frame.Payload, frame.Length);
+			if (frame == null)
+				return;
+		}
+		
+		STATISTICS.onReceived();
+		if (frame == null) {
+			dropFrame("Corrupted frame");
+			return;
+		}
+		
+		byte[] payload = frame.Payload;
+		int size = frame.Length;
+		// 해제한 Payload를 담은 BufferPool의 배열
+		byte[] inflated = null;
+		if (frame.hasFlag(LinkFrame.FLAG_DEFLATED)) {
+			if (size < 4) {
+				dropFrame("Truncated deflated frame");
+				return;
+			}
+			
+			// 조립된 Payload는 Frame 하나의 최대 크기보다 클 수 있다.
+			int originalLength = readInt(payload, 0);
+			if (originalLength < 0 || originalLength > LinkReassembler.MAX_MESSAGE_LENGTH) {
+				dropFrame("Invalid deflated length");
+				return;
+			}
+			
+			inflated = BufferPool.obtain(originalLength);
+			if (!inflate(payload, 4, size - 4, inflated, originalLength)) {
+				BufferPool.release(inflated);
+				dropFrame("Undeflatable frame");
+				return;
+			}
+			payload = inflated;
+			size = originalLength;
+		}
+		
+		try {
+			if (frame.Type != LinkFrame.TYPE_BLINK_MESSAGE_BATCH) {
+				handleEntry(frame.Type, payload, 0, size);
+				return;
+			}
+			
+			int offset = 0;
+			while (offset + LinkFrameBatcher.ENTRY_HEADER_LENGTH <= size) {
+				int type = payload[offset] & 0xFF;
+				int length = readInt(payload, offset + 1);
+				offset += LinkFrameBatcher.ENTRY_HEADER_LENGTH;
+				if (length < 0 || length > size - offset) {
+					dropFrame("Truncated batch");
+					return;
+				}
+				
+				handleEntry(type, payload, offset, length);
+				offset += length;
+			}
+			
+		} finally {
+			BufferPool.release(inflated);
+		}
+	}
+	
+	/**
+	 * 처리하지 못한 Frame을 버린다.
+	 * <br>Binary Codec이 합의된 링크에서는 버린 Frame에 ID의 정의가 있었는지 알 수 없다.
+	 * 정의를 잃으면 이후 그 ID를 사용하는 Binary Frame을 모두 변환할 수 없으므로, 연결을 해제하여 새 Codec으로 다시 연결되게 한다.
+	 * 
+	 * @param reason
+	 * @throws StreamCorruptedException Binary Codec이 합의된 경우
+	 */
+	private void dropFrame(String reason) throws StreamCorruptedException {
+		Log.w("ClassicLinkThread_handleFrame()", reason + " from " + DEVICE.getName());
+		if (mCapability.isSupported(LinkCapability.FLAG_BINARY_CODEC))
+			throw new StreamCorruptedException(reason + " on binary codec link");
+	}
+	
+	/**
+	 * Frame 하나, 또는 Batch Entry 하나를 처리한다.
+	 * 
+	 * @param type
+	 * @param payload 처리가 끝나면 재사용되므로 참조를 유지해서는 안 된다.
+	 * @param offset
+	 * @param length
+	 * @throws StreamCorruptedException Binary Codec의 ID 사전이 어긋난 경우
+	 */
+	private void handleEntry(int type, byte[] payload, int offset, int length) throws StreamCorruptedException {
+		if (type == LinkFrame.TYPE_KEEPALIVE) {
+			if (length == 8)
+				OUTBOUND_QUEUE.offer(new KeepaliveAck(readLong(payload, offset)));
+			return;
+		}
+		
+		if (type == LinkFrame.TYPE_KEEPALIVE_ACK) {
+			if (length == 8)
+				handleKeepaliveAck(System.nanoTime() - readLong(payload, offset));
+			return;
+		}
+		
+		if (type == LinkFrame.TYPE_CREDIT) {
+			if (FLOW_CONTROL.onGranted(payload, offset, length))
+				OUTBOUND_QUEUE.onLaneOpened();
+			return;
+		}
+		
+		if (type == LinkFrame.TYPE_CREDIT_SYNC) {
+			if (FLOW_CONTROL.onSync(payload, offset, length))
+				scheduleCredit();
+			return;
+		}
+		
+		if (type == LinkFrame.TYPE_RELIABLE_ACK) {
+			LinkAck ack = LinkAck.decode(payload, offset, length);
+			if (ack == null) {
+				Log.w("ClassicLinkThread_handleEntry()", "Malformed ack from " + DEVICE.getName());
+				return;
+			}
+			
+			RELIABILITY.onAck(ack);
+			scheduleRetransmit();
+			return;
+		}
+		
+		if (type != LinkFrame.TYPE_RELIABLE_MESSAGE) {
+			acceptCredited(decodePayload(type, payload, offset, length), false);
+			return;
+		}
+		
+		if (length < 5) {
+			dropFrame("Truncated reliable message");
+			return;
+		}
+		
+		int sequence = readInt(payload, offset);
+		
+		// 중복된 메세지라도 Binary Codec의 ID 사전을 맞추기 위해 변환은 수행한다.
+		BlinkMessage msg = decodePayload(payload[offset + 4] & 0xFF, payload, offset + 5, length - 5);
+		if (msg == null) {
+			acceptCredited(null, false);
+			return;
+		}
+		
+		boolean received = RELIABILITY.onReceived(sequence);
+		scheduleAck();
+		acceptCredited(msg, !received);
+	}
+	
+	/**
+	 * Frame으로 받은 메세지를 처리하고, 처리가 끝나면 흐름 제어 Credit을 돌려준다.
+	 * 
+	 * @param msg 변환하지 못했으면 null. Lane을 알 수 없으므로, 상대 디바이스가 흐름 제어를 동기화할 때 Credit을 돌려준다.
+	 * @param duplicate 이미 받은 Reliable 메세지이면 true. 처리하지 않고 Credit만 돌려준다.
+	 */
+	private void acceptCredited(BlinkMessage msg, boolean duplicate) {
+		if (msg == null)
+			return;
+		
+		int lane = LinkOutboundQueue.obtainLane(msg);
+		FLOW_CONTROL.onReceived(lane);
+		if (duplicate)
+			returnCredit(lane);
+		else
+			acceptMessage(msg, CREDIT_RETURN[lane]);
+	}
+	
+	/**
+	 * Frame Payload를 BlinkMessage로 변환한다.
+	 * 
+	 * @param type
+	 * @param payload
+	 * @param offset
+	 * @param length
+	 * @return 변환할 수 없는 경우 null.
+	 * @throws StreamCorruptedException Binary 메세지를 변환하지 못한 경우. ID 사전이 어긋났을 수 있다.
+	 */
+	private BlinkMessage decodePayload(int type, byte[] payload, int offset, int length) throws StreamCorruptedException {
+		if (type == LinkFrame.TYPE_BLINK_MESSAGE_JSON) {
+			try {
+				return FRAME_GSON.fromJson(new String(payload, offset, length, MESSAGE_CHARSET), BlinkMessage.class);
+				
+			} catch (JsonParseException e) {
+				Log.w("ClassicLinkThread_decodePayload()", "Undecodable frame : " + e.getMessage());
+				return null;
+			}
+		}
+		
+		if (type == LinkFrame.TYPE_BLINK_MESSAGE_BINARY) {
+			try {
+				return CODEC.decode(payload, offset, length);
+				
+			} catch (IllegalArgumentException e) {
+				// 앞선 Frame이 버려져 ID 사전이 맞지 않거나, 이 Frame의 정의를 읽기 전에 실패한 경우.
+				// 이후의 Binary Frame도 변환할 수 없으므로 연결을 해제한다.
+				StreamCorruptedException desync = new StreamCorruptedException("Undecodable binary frame : " + e.getMessage());
+				desync.initCause(e);
+				throw desync;
+			}
+		}
+		
+		Log.w("ClassicLinkThread_decodePayload()", "Unknown frame type : " + type);
+		return null;
+	}
+	
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+	
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+	
+	private static void writeLong(byte[] buffer, int offset, long value) {
+		writeInt(buffer, offset, (int) (value >>> 32));
+		writeInt(buffer, offset + 4, (int) value);
+	}
+	
+	private static long readLong(byte[] buffer, int offset) {
+		return ((long) readInt(buffer, offset) << 32) | (readInt(buffer, offset + 4) & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * 합의된 크기 이상의 메세지 내용을 압축한다.
+	 * 
+	 * @param msg
+	 * @return 압축된 복사본. 압축하지 않을 경우 msg를 그대로 반환한다.
+	 */
+	private BlinkMessage compressMessage(BlinkMessage msg) {
+		String message = msg.getMessage();
+		if (message == null || !mCapability.isSupported(LinkCapability.FLAG_COMPRESSION)
+				|| message.length() < mCapability.CompressionThreshold)
+			return msg;
+		
+		byte[] data = message.getBytes(MESSAGE_CHARSET);
+		byte[] compressed = deflate(data);
+		if (compressed == null)
+			return msg;
+		return msg.obtainCompressed(compressed, data.length);
+	}
+	
+	/**
+	 * 압축된 메세지 내용을 해제한다.
+	 * 
+	 * @param msg
+	 * @return 데이터가 손상된 경우 false
+	 */
+	private boolean decompressMessage(BlinkMessage msg) {
+		byte[] data = inflate(msg.getCompressedMessage(), msg.getOriginalLength());
+		if (data == null)
+			return false;
+		
+		msg.restoreMessage(new String(data, MESSAGE_CHARSET));
+		return true;
+	}
+	
+	/**
+	 * 압축이 합의되었고 데이터가 합의된 크기 이상이면 압축한다.
+	 * 
+	 * @param data
+	 * @return 압축하지 않았거나, 압축해도 크기가 줄지 않을 경우 null.
+	 */
+	private byte[] deflate(byte[] data) {
+		if (!isCompressible(data.length))
+			return null;
+		
+		long started = Debug.threadCpuTimeNanos();
+		byte[] compressed = PayloadCompressor.deflate(data);
+		STATISTICS.onDeflated(data.length, compressed.length, Debug.threadCpuTimeNanos() - started);
+		
+		return (compressed.length < data.length)? compressed : null;
+	}
+	
+	/**
+	 * 배열의 일부를 압축하여 out에 쓴다.
+	 * 
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @param out
+	 * @param outOffset out에는 outOffset부터 length Byte의 공간이 있어야 한다.
+	 * @return 압축된 크기. 압축하지 않았거나, 압축해도 크기가 줄지 않을 경우 -1.
+	 */
+	private int deflate(byte[] data, int offset, int length, byte[] out, int outOffset) {
+		if (!isCompressible(length))
+			return -1;
+		
+		long started = Debug.threadCpuTimeNanos();
+		int compressed = PayloadCompressor.deflate(data, offset, length, out, outOffset, length - 1);
+		STATISTICS.onDeflated(length, (compressed < 0)? length : compressed, Debug.threadCpuTimeNanos() - started);
+		return compressed;
+	}
+	
+	private boolean isCompressible(int length) {
+		return mCapability.isSupported(LinkCapability.FLAG_COMPRESSION) && length >= mCapability.CompressionThreshold;
+	}
+	
+	private byte[] inflate(byte[] data, int originalLength) {
+		long started = Debug.threadCpuTimeNanos();
+		byte[] inflated = PayloadCompressor.inflate(data, originalLength);
+		if (inflated != null)
+			STATISTICS.onInflated(inflated.length, Debug.threadCpuTimeNanos() - started);
+		return inflated;
+	}
+	
+	private boolean inflate(byte[] data, int offset, int length, byte[] out, int originalLength) {
+		long started = Debug.threadCpuTimeNanos();
+		if (!PayloadCompressor.inflate(data, offset, length, out, originalLength))
+			return false;
+		
+		STATISTICS.onInflated(originalLength, Debug.threadCpuTimeNanos() - started);
+		return true;
+	}
+	
+	/**
+	 * 이 링크에서 주고받은 메세지의 압축 통계를 반환한다.
+	 * 
+	 * @return
+	 */
+	@Override
+	public LinkStatistics obtainStatistics() {
+		return STATISTICS;
+	}
+	
+	@Override
+	public LinkQuality obtainQuality() {
+		return QUALITY;
+	}
+	
+	/**
+	 * 상대 디바이스와 합의된 링크 기능을 반환한다.
+	 * 
+	 * @return
+	 */
+	LinkCapability obtainCapability() {
+		return mCapability;
+	}
+	
+	/**
+	 * 이 링크의 송신 대기열을 반환한다. 대기열 크기 초과 시의 정책을 설정할 수 있다.
+	 * 
+	 * @return
+	 */
+	LinkOutboundQueue obtainOutboundQueue() {
+		return OUTBOUND_QUEUE;
+	}
+	
+	/**
+	 * 이 링크의 Batch 설정을 반환한다. 우선순위별 지연 시간 상한과 Byte 예산을 설정할 수 있다.
+	 * <br>설정은 Writer 스레드와 동기화되지 않으므로, 연결 직후에 변경해야 한다.
+	 * 
+	 * @return
+	 */
+	LinkFrameBatcher obtainBatcher() {
+		return BATCHER;
+	}
+	
+	/**
+	 * 이 링크의 조각 설정을 반환한다. 조각 하나의 크기를 설정할 수 있다.
+	 * <br>설정은 Writer 스레드와 동기화되지 않으므로, 연결 직후에 변경해야 한다.
+	 * 
+	 * @return
+	 */
+	LinkFragmenter obtainFragmenter() {
+		return FRAGMENTER;
+	}
 
 }
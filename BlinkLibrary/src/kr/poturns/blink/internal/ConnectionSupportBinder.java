@@ -1,5 +1,6 @@
 package kr.poturns.blink.internal;
 
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.external.ServiceControlActivity;
 import kr.poturns.blink.internal.comm.BlinkDevice;
 import kr.poturns.blink.internal.comm.BlinkProfile;
@@ -8,6 +9,8 @@ import android.bluetooth.BluetoothDevice;
 import android.content.Intent;
 import android.os.RemoteException;
 
+import com.google.gson.JsonObject;
+
 /**
  * 
  * @author Yeonho.Kim
@@ -96,6 +99,18 @@ public abstract class ConnectionSupportBinder extends IInternalOperationSupport.
 		return ServiceKeeper.getInstance(CONTEXT).obtainConnectedDevices();
 	}
 
+	@Override
+	public String obtainLinkStatistics(BlinkDevice device) throws RemoteException {
+		LinkQuality mQuality = ServiceKeeper.getInstance(CONTEXT).obtainLinkQuality(device);
+		if (mQuality == null)
+			return null;
+
+		// 받은 메세지는 모든 링크가 공유하는 Lane에서 처리되므로, 처리 지표를 링크 지표에 함께 담는다.
+		JsonObject mStatistics = JsonManager.gson.toJsonTree(mQuality.obtainSnapshot()).getAsJsonObject();
+		mStatistics.add("Dispatcher", JsonManager.gson.toJsonTree(MessageDispatcher.obtainSnapshot()));
+		return JsonManager.gson.toJson(mStatistics);
+	}
+
 	@Override
 	public void openControlActivity() throws RemoteException {
 		Intent intent = new Intent(CONTEXT, ServiceControlActivity.class);
@@ -364,6 +364,15 @@ public class DeviceAnalyzer {
 		return isAvailable(IDENTITY_POINTLINE_WIFIDIRECT);
 	}
 
+	/**
+	 * 현 디바이스가 WiFi를 지원하는지 여부를 반환한다.
+	 * 
+	 * @return
+	 */
+	public boolean isAvailableWifi() {
+		return isAvailable(IDENTITY_POINTLINE_WIFI);
+	}
+
 	/**
 	 * 현 디바이스가 Internet 연결을 지원하는지 여부를 반환한다.
 	 * 
@@ -0,0 +1,593 @@
+package kr.poturns.blink.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import kr.poturns.blink.db.JsonManager;
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.internal.comm.BlinkProfile;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattServer;
+import android.bluetooth.BluetoothGattService;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+/**
+ * Bluetooth LE GATT 연결 하나로 BlinkMessage를 주고받는 링크.
+ *
+ * <p>Blink GATT 서비스({@link BlinkProfile#UUID_BLINK})는 두 개의 Characteristic을 가진다.
+ * <li>{@link BlinkProfile#UUID_BLINK_RX} : Central → Peripheral. Write Without Response</li>
+ * <li>{@link BlinkProfile#UUID_BLINK_TX} : Peripheral → Central. Notification</li>
+ *
+ * <p>Central은 연결 후 서비스를 검색하고 TX의 Notification을 설정한 뒤, 더 큰 MTU를 요청한다.
+ * MTU 요청은 API 21부터 지원되므로 Reflection으로 호출하며, 지원되지 않으면 기본 MTU(23)를 사용한다.
+ * Peripheral은 Central이 Notification을 설정하면 전송을 시작한다.
+ *
+ * <p>메세지는 {@link GattPacketizer}로 나누어 송신 대기열의 Writer 스레드에서 전송된다.
+ * Android는 한 번에 하나의 GATT 작업만 받으므로, 이전 Packet의 완료 콜백을 받은 후에 다음 Packet을 보낸다.
+ * Write Without Response와 Notification의 완료 콜백은 Packet이 Bluetooth 스택의 송신 Buffer에 들어가면 호출되므로,
+ * Buffer가 찰 때까지는 Connection Event마다 여러 Packet이 이어서 전송된다.
+ * onNotificationSent 콜백이 없는 API 21 미만의 Peripheral은, 스택이 Notification을 거절하면 잠시 후 다시 시도한다.
+ *
+ * <p>GATT 콜백은 {@link BluetoothAssistant}가 받아 해당 링크로 전달한다.
+ * Packet의 전송은 {@link PacketChannel}을 통하므로, 시험에서는 Bluetooth 없이 가상의 상대 디바이스와 연결할 수 있다.
+ */
+class GattLink implements ILinkTransport {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "GattLink";
+	private static final Charset MESSAGE_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * 요청하는 MTU. 실제 MTU는 양쪽 디바이스가 지원하는 값 중 작은 값으로 정해진다.
+	 */
+	static final int PREFERRED_MTU = 517;
+	private static final int ATT_HEADER_LENGTH = 3;
+
+	/** 연결 후 서비스 검색과 Notification 설정이 끝나기를 기다리는 시간 (ms) */
+	private static final long READY_TIMEOUT = 10000;
+	/** Packet 하나의 완료 콜백을 기다리는 시간 (ms) */
+	private static final long WRITE_TIMEOUT = 2000;
+	/** 스택이 바빠 Packet을 거절했을 때 다시 시도하는 간격 (ms) */
+	private static final long BUSY_RETRY_INTERVAL = 5;
+	private static final int MAX_BUSY_RETRIES = 400;
+
+	/**
+	 * Peripheral에서 onNotificationSent 콜백이 호출되는지 여부 (API 21)
+	 */
+	private static final boolean HAS_NOTIFICATION_SENT_CALLBACK = Build.VERSION.SDK_INT >= 21;
+
+	/**
+	 * Peripheral 역할에서 등록할 Blink GATT 서비스를 생성한다.
+	 *
+	 * @return
+	 */
+	static BluetoothGattService createBlinkService() {
+		BluetoothGattService service = new BluetoothGattService(BlinkProfile.UUID_BLINK,
+				BluetoothGattService.SERVICE_TYPE_PRIMARY);
+
+		BluetoothGattCharacteristic rx = new BluetoothGattCharacteristic(BlinkProfile.UUID_BLINK_RX,
+				BluetoothGattCharacteristic.PROPERTY_WRITE | BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE,
+				BluetoothGattCharacteristic.PERMISSION_WRITE);
+
+		BluetoothGattCharacteristic tx = new BluetoothGattCharacteristic(BlinkProfile.UUID_BLINK_TX,
+				BluetoothGattCharacteristic.PROPERTY_NOTIFY, BluetoothGattCharacteristic.PERMISSION_READ);
+		tx.addDescriptor(new BluetoothGattDescriptor(BlinkProfile.UUID_CLIENT_CHARACTERISTIC_CONFIG,
+				BluetoothGattDescriptor.PERMISSION_READ | BluetoothGattDescriptor.PERMISSION_WRITE));
+
+		service.addCharacteristic(rx);
+		service.addCharacteristic(tx);
+		return service;
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+
+	/**
+	 * 링크가 Packet 하나를 상대 디바이스로 보내는 방법.
+	 * <br>Central은 RX Characteristic에 Write하고, Peripheral은 TX Characteristic을 Notify한다.
+	 */
+	interface PacketChannel {
+		/**
+		 * Packet 하나를 스택에 넘긴다. 전송이 끝나면 {@link GattLink#onWriteCompleted(int)}가 호출되어야 한다.
+		 *
+		 * @param packet
+		 * @return 스택이 바빠 Packet을 받지 않았으면 false.
+		 * @throws IOException
+		 */
+		boolean dispatchPacket(byte[] packet) throws IOException;
+
+		/**
+		 * @return Packet마다 완료 콜백이 호출되면 true.
+		 */
+		boolean hasCompletionCallback();
+
+		/**
+		 * 상대 디바이스와의 연결을 해제한다.
+		 */
+		void disconnect();
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final BlinkDevice DEVICE;
+	/** 받은 메세지를 전달받는다. */
+	private final OnMessageReceivedListener LISTENER;
+	/** 전송에 실패한 메세지를 처리한다. 시험용 링크이면 null. */
+	private final MessageProcessor MSG_PROCESSOR;
+	private final LinkStatistics STATISTICS;
+	private final LinkQuality QUALITY;
+	private final GattPacketizer PACKETIZER;
+	private final LinkOutboundQueue OUTBOUND_QUEUE;
+
+	/** Central 역할의 연결. Peripheral 역할이면 null. */
+	private final BluetoothGatt GATT;
+	/** Peripheral 역할의 서버. Central 역할이면 null. */
+	private final BluetoothGattServer SERVER;
+	/** Peripheral 역할에서 연결된 Central */
+	private final BluetoothDevice REMOTE;
+	private final PacketChannel CHANNEL;
+
+	/** 서비스 검색과 Notification 설정이 끝나면 열린다. */
+	private final CountDownLatch READY;
+	/** Packet의 완료 콜백마다 하나씩 주어진다. */
+	private final Semaphore WRITE_COMPLETED;
+
+	private final HandlerThread RECEIVE_THREAD;
+	/** 조립된 메세지를 GATT 콜백 스레드가 아닌 별도의 스레드에서 처리한다. */
+	private final Handler RECEIVE_HANDLER;
+
+	/** Central 역할에서는 상대의 RX, Peripheral 역할에서는 자신의 TX */
+	private volatile BluetoothGattCharacteristic mWriteCharacteristic;
+	/** Packet의 최대 크기 (MTU - 3) */
+	private volatile int mPacketSize;
+	private volatile boolean isClosed;
+
+	/**
+	 * Central 역할의 링크를 생성한다. 연결이 성립된 후 {@link #open()}을 호출해야 한다.
+	 *
+	 * @param assistant
+	 * @param device
+	 * @param gatt
+	 */
+	GattLink(BluetoothAssistant assistant, BlinkDevice device, BluetoothGatt gatt) {
+		this(device, gatt, null, null, null, new MessageProcessor(assistant.INTER_DEV_MANAGER.MANAGER_CONTEXT));
+	}
+
+	/**
+	 * Peripheral 역할의 링크를 생성한다. 연결이 성립된 후 {@link #open()}을 호출해야 한다.
+	 *
+	 * @param assistant
+	 * @param device
+	 * @param server
+	 * @param remote
+	 */
+	GattLink(BluetoothAssistant assistant, BlinkDevice device, BluetoothGattServer server, BluetoothDevice remote) {
+		this(device, null, server, remote, null, new MessageProcessor(assistant.INTER_DEV_MANAGER.MANAGER_CONTEXT));
+
+		BluetoothGattService service = server.getService(BlinkProfile.UUID_BLINK);
+		if (service != null)
+			mWriteCharacteristic = service.getCharacteristic(BlinkProfile.UUID_BLINK_TX);
+	}
+
+	/**
+	 * 주어진 Channel로 Packet을 보내는 링크를 생성한다. 시험에서 가상의 상대 디바이스와 연결할 때 사용한다.
+	 * <br>{@link #onNotificationEnabled(boolean)}가 호출되면 전송을 시작한다.
+	 *
+	 * @param device
+	 * @param channel
+	 * @param listener
+	 */
+	GattLink(BlinkDevice device, PacketChannel channel, OnMessageReceivedListener listener) {
+		this(device, null, null, null, channel, listener);
+	}
+
+	private GattLink(BlinkDevice device, BluetoothGatt gatt, BluetoothGattServer server, BluetoothDevice remote,
+			PacketChannel channel, OnMessageReceivedListener listener) {
+		DEVICE = device;
+		LISTENER = listener;
+		MSG_PROCESSOR = (listener instanceof MessageProcessor)? (MessageProcessor) listener : null;
+		STATISTICS = new LinkStatistics(device.getAddress());
+		QUALITY = new LinkQuality(device.getAddress());
+		PACKETIZER = new GattPacketizer(device.getAddress());
+		GATT = gatt;
+		SERVER = server;
+		REMOTE = remote;
+		CHANNEL = (channel != null)? channel : new BluetoothChannel();
+		READY = new CountDownLatch(1);
+		WRITE_COMPLETED = new Semaphore(0);
+		mPacketSize = GattPacketizer.DEFAULT_PACKET_SIZE;
+
+		RECEIVE_THREAD = new HandlerThread(device.getName() + "-GattReceiver");
+		RECEIVE_THREAD.start();
+		RECEIVE_HANDLER = new Handler(RECEIVE_THREAD.getLooper());
+
+		OUTBOUND_QUEUE = new LinkOutboundQueue(device.getName(), LinkOutboundQueue.DEFAULT_CAPACITY,
+				new LinkOutboundQueue.Sender() {
+					@Override
+					public int send(Object obj) throws IOException {
+						writeMessage(obj);
+						return 0;
+					}
+
+					@Override
+					public long obtainFlushDelayNanos() {
+						return -1;
+					}
+
+					@Override
+					public int flush() {
+						return 0;
+					}
+				},
+				new LinkOutboundQueue.OnSendFailedListener() {
+					@Override
+					public void onSendFailed(Object obj, int reason) {
+						BlinkMessage msg = SharedMessage.unwrap(obj);
+						if (msg != null) {
+							Log.w(TAG, DEVICE.getName() + " : type=" + msg.getType() + ", reason=" + reason);
+							if (MSG_PROCESSOR != null)
+								MSG_PROCESSOR.handleSendFailure(msg, DEVICE);
+						}
+					}
+				});
+	}
+
+	@Override
+	public BlinkDevice obtainDevice() {
+		return DEVICE;
+	}
+
+	/**
+	 * 송신 대기열의 Writer 스레드를 시작한다. 전송은 링크가 준비된 후에 시작된다.
+	 */
+	@Override
+	public void open() {
+		OUTBOUND_QUEUE.start();
+	}
+
+	@Override
+	public void close() {
+		if (isClosed)
+			return;
+
+		Log.d(TAG, "CLOSE : " + STATISTICS + " " + OUTBOUND_QUEUE + " " + PACKETIZER);
+		isClosed = true;
+		OUTBOUND_QUEUE.close();
+		READY.countDown();
+		WRITE_COMPLETED.release();
+		RECEIVE_THREAD.quit();
+		CHANNEL.disconnect();
+	}
+
+	@Override
+	public boolean sendMessageToDevice(Object obj) {
+		return OUTBOUND_QUEUE.offer(obj);
+	}
+
+
+
+	// *** GATT CALLBACK *** //
+	/**
+	 * (Central) 서비스 검색이 끝나면, TX의 Notification을 설정한다.
+	 *
+	 * @param status
+	 */
+	void onServicesDiscovered(int status) {
+		BluetoothGattService service = (status == BluetoothGatt.GATT_SUCCESS)?
+				GATT.getService(BlinkProfile.UUID_BLINK) : null;
+		if (service == null) {
+			Log.w(TAG, DEVICE.getName() + " : Blink service is not found (" + status + ")");
+			return;
+		}
+
+		BluetoothGattCharacteristic rx = service.getCharacteristic(BlinkProfile.UUID_BLINK_RX);
+		BluetoothGattCharacteristic tx = service.getCharacteristic(BlinkProfile.UUID_BLINK_TX);
+		if (rx == null || tx == null) {
+			Log.w(TAG, DEVICE.getName() + " : Blink characteristics are not found");
+			return;
+		}
+
+		rx.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+		mWriteCharacteristic = rx;
+
+		GATT.setCharacteristicNotification(tx, true);
+		BluetoothGattDescriptor config = tx.getDescriptor(BlinkProfile.UUID_CLIENT_CHARACTERISTIC_CONFIG);
+		if (config == null || !config.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE)
+				|| !GATT.writeDescriptor(config)) {
+			Log.w(TAG, DEVICE.getName() + " : failed to enable notification");
+			requestMtu();
+		}
+	}
+
+	/**
+	 * (Central) Notification 설정이 끝나면 MTU를 요청한다.
+	 *
+	 * @param descriptor
+	 * @param status
+	 */
+	void onDescriptorWrite(BluetoothGattDescriptor descriptor, int status) {
+		if (BlinkProfile.UUID_CLIENT_CHARACTERISTIC_CONFIG.equals(descriptor.getUuid()))
+			requestMtu();
+	}
+
+	/**
+	 * (Central) {@link #PREFERRED_MTU}를 요청한다. 요청할 수 없으면 기본 MTU로 전송을 시작한다.
+	 */
+	private void requestMtu() {
+		try {
+			Method requestMtu = BluetoothGatt.class.getMethod("requestMtu", int.class);
+			if ((Boolean) requestMtu.invoke(GATT, PREFERRED_MTU))
+				return;		// onMtuChanged에서 전송을 시작한다.
+
+		} catch (NoSuchMethodException e) {
+			// API 21 미만
+		} catch (Exception e) {
+			Log.w(TAG, DEVICE.getName() + " : requestMtu failed : " + e);
+		}
+		onReady();
+	}
+
+	/**
+	 * MTU가 변경되었을 때 호출된다.
+	 *
+	 * @param mtu
+	 * @param status
+	 */
+	void onMtuChanged(int mtu, int status) {
+		if (status == BluetoothGatt.GATT_SUCCESS && mtu - ATT_HEADER_LENGTH > GattPacketizer.DEFAULT_PACKET_SIZE)
+			mPacketSize = mtu - ATT_HEADER_LENGTH;
+
+		Log.d(TAG, DEVICE.getName() + " : MTU=" + mtu + ", status=" + status + ", PacketSize=" + mPacketSize);
+		if (GATT != null)
+			onReady();
+	}
+
+	/**
+	 * (Peripheral) Central이 TX의 Notification을 설정하였을 때 호출된다.
+	 *
+	 * @param enabled
+	 */
+	void onNotificationEnabled(boolean enabled) {
+		if (enabled)
+			onReady();
+	}
+
+	private void onReady() {
+		if (READY.getCount() > 0)
+			Log.d(TAG, DEVICE.getName() + " : READY (PacketSize=" + mPacketSize + ")");
+		READY.countDown();
+	}
+
+	/**
+	 * Packet 하나의 전송이 끝났을 때 호출된다. (onCharacteristicWrite, onNotificationSent)
+	 *
+	 * @param status
+	 */
+	void onWriteCompleted(int status) {
+		if (status != BluetoothGatt.GATT_SUCCESS)
+			Log.w(TAG, DEVICE.getName() + " : write status=" + status);
+		WRITE_COMPLETED.release();
+	}
+
+	/**
+	 * 상대 디바이스가 보낸 Packet을 받았을 때 호출된다. (onCharacteristicChanged, onCharacteristicWriteRequest)
+	 *
+	 * @param packet
+	 */
+	void onPacket(byte[] packet) {
+		final LinkFrame frame;
+		synchronized (PACKETIZER) {
+			frame = PACKETIZER.add(packet);
+		}
+
+		if (frame != null && !isClosed) {
+			RECEIVE_HANDLER.post(new Runnable() {
+				@Override
+				public void run() {
+					acceptFrame(frame);
+				}
+			});
+		}
+	}
+
+
+
+	// *** SEND / RECEIVE *** //
+	/**
+	 * 송신 대기열의 Writer 스레드에서 호출되어, 메세지를 Packet으로 나누어 전송한다.
+	 *
+	 * @param obj
+	 * @throws IOException
+	 */
+	private void writeMessage(Object obj) throws IOException {
+		if (SharedMessage.unwrap(obj) == null) {
+			Log.w(TAG, "Unsupported object : " + obj.getClass().getName());
+			return;
+		}
+		awaitReady();
+
+		byte[] payload = SharedMessage.encodeJson(obj);
+		int flags = 0;
+		if (obj instanceof SharedMessage && payload.length >= LinkCapability.DEFAULT_COMPRESSION_THRESHOLD) {
+			byte[] deflated = ((SharedMessage) obj).obtainDeflatedPayload();
+			if (deflated != null) {
+				payload = deflated;
+				flags |= LinkFrame.FLAG_DEFLATED;
+			}
+
+		} else if (payload.length >= LinkCapability.DEFAULT_COMPRESSION_THRESHOLD) {
+			byte[] compressed = PayloadCompressor.deflate(payload);
+			if (compressed.length + 4 < payload.length) {
+				byte[] deflated = new byte[compressed.length + 4];
+				deflated[0] = (byte) (payload.length >>> 24);
+				deflated[1] = (byte) (payload.length >>> 16);
+				deflated[2] = (byte) (payload.length >>> 8);
+				deflated[3] = (byte) payload.length;
+				System.arraycopy(compressed, 0, deflated, 4, compressed.length);
+
+				payload = deflated;
+				flags |= LinkFrame.FLAG_DEFLATED;
+			}
+		}
+
+		for (byte[] packet : PACKETIZER.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, flags, payload, mPacketSize))
+			writePacket(packet);
+		STATISTICS.onSent(flags != 0);
+		QUALITY.onSent(LinkFrame.HEADER_LENGTH + payload.length, 1);
+	}
+
+	private void awaitReady() throws IOException {
+		try {
+			if (!READY.await(READY_TIMEOUT, TimeUnit.MILLISECONDS))
+				throw new IOException("GATT link is not ready : " + DEVICE.getName());
+
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted : " + DEVICE.getName());
+		}
+
+		if (isClosed)
+			throw new IOException("GATT link is closed : " + DEVICE.getName());
+	}
+
+	/**
+	 * Packet 하나를 전송하고 완료 콜백을 기다린다.
+	 *
+	 * @param packet
+	 * @throws IOException
+	 */
+	private void writePacket(byte[] packet) throws IOException {
+		// 시간이 지나 늦게 도착한 이전 Packet의 완료 콜백을 무시한다.
+		WRITE_COMPLETED.drainPermits();
+
+		try {
+			int retries = 0;
+			while (!CHANNEL.dispatchPacket(packet)) {
+				if (isClosed || ++retries > MAX_BUSY_RETRIES)
+					throw new IOException("GATT is busy : " + DEVICE.getName());
+				Thread.sleep(BUSY_RETRY_INTERVAL);
+			}
+
+			if (!CHANNEL.hasCompletionCallback())
+				return;
+
+			if (!WRITE_COMPLETED.tryAcquire(WRITE_TIMEOUT, TimeUnit.MILLISECONDS))
+				throw new IOException("GATT write timeout : " + DEVICE.getName());
+
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted : " + DEVICE.getName());
+		}
+
+		if (isClosed)
+			throw new IOException("GATT link is closed : " + DEVICE.getName());
+	}
+
+	/**
+	 * 역할에 따라 Blink Characteristic으로 Packet을 보내는 Channel.
+	 */
+	private class BluetoothChannel implements PacketChannel {
+		@Override
+		public boolean dispatchPacket(byte[] packet) throws IOException {
+			BluetoothGattCharacteristic characteristic = mWriteCharacteristic;
+			if (characteristic == null)
+				throw new IOException("Blink characteristic is not found : " + DEVICE.getName());
+
+			if (GATT != null) {
+				characteristic.setValue(packet);
+				return GATT.writeCharacteristic(characteristic);
+			}
+
+			// Peripheral의 TX Characteristic은 연결된 모든 Central의 링크가 공유한다.
+			synchronized (characteristic) {
+				characteristic.setValue(packet);
+				return SERVER.notifyCharacteristicChanged(REMOTE, characteristic, false);
+			}
+		}
+
+		@Override
+		public boolean hasCompletionCallback() {
+			return GATT != null || HAS_NOTIFICATION_SENT_CALLBACK;
+		}
+
+		@Override
+		public void disconnect() {
+			if (GATT != null) {
+				GATT.disconnect();
+				GATT.close();
+
+			} else if (SERVER != null) {
+				SERVER.cancelConnection(REMOTE);
+			}
+		}
+	}
+
+	/**
+	 * 조립된 Frame을 BlinkMessage로 변환하여 처리한다.
+	 *
+	 * @param frame
+	 */
+	private void acceptFrame(LinkFrame frame) {
+		STATISTICS.onReceived();
+		QUALITY.onReceived(LinkFrame.HEADER_LENGTH + frame.Payload.length, 1);
+
+		byte[] payload = frame.Payload;
+		if (frame.hasFlag(LinkFrame.FLAG_DEFLATED)) {
+			if (payload.length < 4)
+				return;
+
+			int originalLength = readInt(payload, 0);
+			if (originalLength < 0 || originalLength > LinkReassembler.MAX_MESSAGE_LENGTH)
+				return;
+
+			byte[] compressed = new byte[payload.length - 4];
+			System.arraycopy(payload, 4, compressed, 0, compressed.length);
+			payload = PayloadCompressor.inflate(compressed, originalLength);
+			if (payload == null) {
+				Log.w(TAG, "Corrupted message from " + DEVICE.getName());
+				return;
+			}
+		}
+
+		if (frame.Type != LinkFrame.TYPE_BLINK_MESSAGE_JSON) {
+			Log.w(TAG, "Unknown frame type : " + frame.Type);
+			return;
+		}
+
+		BlinkMessage msg = JsonManager.gson.fromJson(new String(payload, MESSAGE_CHARSET), BlinkMessage.class);
+		if (msg != null && LISTENER != null)
+			LISTENER.onMessageReceived(msg, DEVICE);
+	}
+
+	@Override
+	public LinkStatistics obtainStatistics() {
+		return STATISTICS;
+	}
+
+	@Override
+	public LinkQuality obtainQuality() {
+		return QUALITY;
+	}
+
+	/**
+	 * 현재 Packet의 최대 크기 (MTU - 3)를 반환한다.
+	 *
+	 * @return
+	 */
+	int obtainPacketSize() {
+		return mPacketSize;
+	}
+}
@@ -0,0 +1,190 @@
+package kr.poturns.blink.internal;
+
+import java.util.ArrayList;
+
+import android.util.Log;
+
+/**
+ * GATT Characteristic 값 하나(MTU - 3 Byte)에 담기도록 Payload를 Packet으로 나누고, 받은 Packet을 조립하는 클래스.
+ *
+ * <p>GATT의 Write와 Notification은 값 단위로 구분되므로 {@link LinkFrame}의 Header를 사용하지 않으며,
+ * 기본 MTU(23)에서도 쓸 수 있도록 Packet마다 1 Byte의 Header만 붙인다.
+ * <pre>
+ * | Header (1) | Body |
+ * Header : | First (1 bit) | Last (1 bit) | Sequence (6 bit) |
+ * 첫 Packet의 Body : | Length (4) | Type (1) | Flags (1) | Data |
+ * </pre>
+ * Type과 Flags는 {@link LinkFrame}의 값을 그대로 사용한다.
+ * Sequence는 Packet마다 1씩 증가하며, 중간에 Packet이 빠진 메세지는 버린다.
+ *
+ * <p>나누기는 송신 스레드에서만, 조립은 수신 콜백에서만 호출되어야 한다.
+ */
+class GattPacketizer {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "GattPacketizer";
+
+	static final int HEADER_FIRST = 0x80;
+	static final int HEADER_LAST = 0x40;
+	static final int SEQUENCE_MASK = 0x3F;
+
+	static final int HEADER_LENGTH = 1;
+	static final int FIRST_HEADER_LENGTH = HEADER_LENGTH + 6;
+
+	/**
+	 * 기본 MTU(23)에서 Characteristic 값의 최대 크기
+	 */
+	static final int DEFAULT_PACKET_SIZE = 20;
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final String ADDRESS;
+
+	private int mSendSequence;
+
+	/** 조립 중인 메세지. 없으면 null. */
+	private byte[] mAssembly;
+	private int mAssemblyType;
+	private int mAssemblyFlags;
+	private int mReceived;
+	/** 다음에 받아야 하는 Sequence. 아직 받은 Packet이 없으면 -1. */
+	private int mExpectedSequence;
+	private long mDiscarded;
+
+	GattPacketizer(String address) {
+		ADDRESS = address;
+		mExpectedSequence = -1;
+	}
+
+	/**
+	 * Payload를 Packet으로 나눈다.
+	 *
+	 * @param type {@link LinkFrame}의 Type
+	 * @param flags {@link LinkFrame}의 Flags
+	 * @param payload
+	 * @param packetSize Packet의 최대 크기 (MTU - 3)
+	 * @return
+	 */
+	ArrayList<byte[]> split(int type, int flags, byte[] payload, int packetSize) {
+		if (packetSize <= FIRST_HEADER_LENGTH)
+			throw new IllegalArgumentException("Packet size too small : " + packetSize);
+
+		ArrayList<byte[]> packets = new ArrayList<byte[]>(payload.length / (packetSize - HEADER_LENGTH) + 1);
+		int offset = 0;
+		do {
+			boolean first = (offset == 0);
+			int headerLength = first? FIRST_HEADER_LENGTH : HEADER_LENGTH;
+			int length = Math.min(packetSize - headerLength, payload.length - offset);
+			boolean last = (offset + length == payload.length);
+
+			byte[] packet = new byte[headerLength + length];
+			packet[0] = (byte) ((first? HEADER_FIRST : 0) | (last? HEADER_LAST : 0)
+					| (mSendSequence++ & SEQUENCE_MASK));
+			if (first) {
+				writeInt(packet, 1, payload.length);
+				packet[5] = (byte) type;
+				packet[6] = (byte) flags;
+			}
+			System.arraycopy(payload, offset, packet, headerLength, length);
+
+			packets.add(packet);
+			offset += length;
+		} while (offset < payload.length);
+
+		return packets;
+	}
+
+	/**
+	 * 받은 Packet을 조립한다.
+	 *
+	 * @param packet
+	 * @return 마지막 Packet이면 조립된 Frame. 그 외에는 null.
+	 */
+	LinkFrame add(byte[] packet) {
+		if (packet == null || packet.length < HEADER_LENGTH)
+			return null;
+
+		int header = packet[0] & 0xFF;
+		int sequence = header & SEQUENCE_MASK;
+		boolean missed = (mExpectedSequence >= 0 && sequence != mExpectedSequence);
+		mExpectedSequence = (sequence + 1) & SEQUENCE_MASK;
+
+		if ((header & HEADER_FIRST) != 0) {
+			if (mAssembly != null)
+				discard("interrupted");
+
+			if (packet.length < FIRST_HEADER_LENGTH) {
+				discard("truncated header");
+				return null;
+			}
+
+			int length = readInt(packet, 1);
+			if (length < 0 || length > LinkReassembler.MAX_MESSAGE_LENGTH) {
+				discard("invalid length " + length);
+				return null;
+			}
+
+			mAssembly = new byte[length];
+			mAssemblyType = packet[5] & 0xFF;
+			mAssemblyFlags = packet[6] & 0xFF;
+			mReceived = 0;
+			return append(packet, FIRST_HEADER_LENGTH, header);
+		}
+
+		if (mAssembly == null)
+			return null;
+
+		if (missed) {
+			discard("missed packet before #" + sequence);
+			return null;
+		}
+		return append(packet, HEADER_LENGTH, header);
+	}
+
+	private LinkFrame append(byte[] packet, int offset, int header) {
+		int length = packet.length - offset;
+		if (length > mAssembly.length - mReceived) {
+			discard("overflow");
+			return null;
+		}
+
+		System.arraycopy(packet, offset, mAssembly, mReceived, length);
+		mReceived += length;
+
+		if ((header & HEADER_LAST) == 0)
+			return null;
+
+		if (mReceived != mAssembly.length) {
+			discard("truncated");
+			return null;
+		}
+
+		LinkFrame frame = new LinkFrame(LinkFrame.VERSION, mAssemblyType, mAssemblyFlags, mAssembly);
+		mAssembly = null;
+		return frame;
+	}
+
+	private void discard(String reason) {
+		mAssembly = null;
+		mDiscarded++;
+		Log.w(TAG, ADDRESS + " : discard message (" + reason + ")");
+	}
+
+	@Override
+	public String toString() {
+		return "GattPacketizer [Sent=" + mSendSequence + " packets, Discarded=" + mDiscarded + "]";
+	}
+}
@@ -0,0 +1,64 @@
+package kr.poturns.blink.internal;
+
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+
+/**
+ * 상대 디바이스 하나와 BlinkMessage를 주고받는 링크.
+ *
+ * <p>{@link ServiceKeeper}와 {@link NetworkMap}은 연결 객체를 이 인터페이스로만 다루므로,
+ * Bluetooth Classic({@link ClassicLinkThread}), Bluetooth LE({@link GattLink}) 외의 전송 방식도
+ * 구현하여 같은 방식으로 등록할 수 있다.
+ *
+ * <p>받은 메세지는 {@link OnMessageReceivedListener}로 전달한다. 실제 링크는 {@link MessageProcessor}에 전달한다.
+ *
+ * @see LoopbackTransport
+ */
+interface ILinkTransport {
+
+	/**
+	 * 링크가 받은 메세지를 전달받는다. 링크의 수신 스레드에서 호출된다.
+	 */
+	interface OnMessageReceivedListener {
+		void onMessageReceived(BlinkMessage message, BlinkDevice fromDevice);
+	}
+
+	/**
+	 * 링크로 연결된 상대 디바이스를 반환한다.
+	 *
+	 * @return
+	 */
+	BlinkDevice obtainDevice();
+
+	/**
+	 * 메세지 송수신을 시작한다.
+	 */
+	void open();
+
+	/**
+	 * 상대 디바이스에게 메세지를 전송한다. 전송을 기다리지 않고 바로 반환한다.
+	 *
+	 * @param obj
+	 * @return 전송 대기열에 들어가지 못한 경우 false.
+	 */
+	boolean sendMessageToDevice(Object obj);
+
+	/**
+	 * 링크를 종료하고, 상대 디바이스와의 연결을 해제한다.
+	 */
+	void close();
+
+	/**
+	 * 이 링크에서 주고받은 메세지의 통계를 반환한다.
+	 *
+	 * @return
+	 */
+	LinkStatistics obtainStatistics();
+
+	/**
+	 * 이 링크의 RTT, 처리량, 손실률 등의 지표를 반환한다.
+	 *
+	 * @return
+	 */
+	LinkQuality obtainQuality();
+}
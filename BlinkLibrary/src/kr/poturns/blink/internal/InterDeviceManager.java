@@ -243,7 +243,9 @@ public class InterDeviceManager extends BroadcastReceiver implements LeScanCallb
 			BluetoothDevice origin = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
 			BlinkDevice device = BlinkDevice.load(origin);
 
-			mServiceKeeper.removeConnection(device);
+			// 사용자가 해제한 연결은 이미 정리되어 있으므로, 다시 연결하지 않는다.
+			// ACL 이벤트로는 어느 링크가 끊어졌는지 알 수 없으므로, 맵에 등록된 링크로 판단한다.
+			mServiceKeeper.onLinkLost(device, null);
 			mConnectionRequest.remove(device);
 			
 			MANAGER_CONTEXT.getTopView().hide();
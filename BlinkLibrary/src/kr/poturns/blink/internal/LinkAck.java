@@ -0,0 +1,84 @@
+package kr.poturns.blink.internal;
+
+/**
+ * {@link LinkFrame#TYPE_RELIABLE_ACK} Frame의 내용.
+ *
+ * <p>Cumulative 이하의 모든 Sequence와, Selective에 포함된 Sequence를 받았음을 알린다.
+ * <pre>
+ * | Cumulative (4) | Count (1) | Selective (4 * Count) |
+ * </pre>
+ *
+ * @see LinkReliability
+ */
+class LinkAck {
+
+	// *** CONSTANT DECLARATION *** //
+	/**
+	 * 한 번에 알릴 수 있는 Selective Ack의 최대 개수
+	 */
+	static final int MAX_SELECTIVE = 32;
+
+	/**
+	 * Payload를 LinkAck으로 변환한다.
+	 *
+	 * @param payload
+	 * @return 형식이 맞지 않으면 null.
+	 */
+	static LinkAck decode(byte[] payload) {
+		return decode(payload, 0, payload.length);
+	}
+
+	/**
+	 * 배열의 일부를 LinkAck으로 변환한다.
+	 *
+	 * @param payload
+	 * @param offset
+	 * @param length
+	 * @return 형식이 맞지 않으면 null.
+	 */
+	static LinkAck decode(byte[] payload, int offset, int length) {
+		if (length < 5)
+			return null;
+
+		int count = payload[offset + 4] & 0xFF;
+		if (count > MAX_SELECTIVE || length != 5 + 4 * count)
+			return null;
+
+		int[] selective = new int[count];
+		for (int i = 0; i < count; i++)
+			selective[i] = readInt(payload, offset + 5 + 4 * i);
+		return new LinkAck(readInt(payload, offset), selective);
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	final int Cumulative;
+	final int[] Selective;
+
+	LinkAck(int cumulative, int[] selective) {
+		Cumulative = cumulative;
+		Selective = selective;
+	}
+
+	byte[] encode() {
+		byte[] payload = new byte[5 + 4 * Selective.length];
+		writeInt(payload, 0, Cumulative);
+		payload[4] = (byte) Selective.length;
+		for (int i = 0; i < Selective.length; i++)
+			writeInt(payload, 5 + 4 * i, Selective[i]);
+		return payload;
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+}
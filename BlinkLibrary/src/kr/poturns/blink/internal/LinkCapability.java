@@ -0,0 +1,175 @@
+package kr.poturns.blink.internal;
+
+import java.io.Serializable;
+
+/**
+ * 연결이 성립될 때 두 디바이스가 주고받는 링크 기능 정보.
+ *
+ * <p>{@link ClassicLinkThread}는 Stream을 연 직후 자신의 LinkCapability를 보내고 상대의 것을 받아,
+ * 양쪽 모두 지원하는 기능만 해당 링크에서 사용한다.
+ * LinkCapability를 보내지 않는 이전 버전의 디바이스와는 기존의 ObjectStream으로 통신한다.
+ *
+ * <p>{@link #FLAG_FRAMING}이 합의되면, 각 디바이스는 {@link #Confirmed}가 설정된 LinkCapability를
+ * ObjectStream의 마지막 객체로 보내고, 이후부터는 {@link LinkFrame} 형식으로 전송한다.
+ */
+class LinkCapability implements Serializable {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final long serialVersionUID = -3047563512295838161L;
+
+	/**
+	 * 링크 프로토콜 버전
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * 일정 크기 이상의 메세지 내용을 Deflate로 압축하여 전송한다.
+	 */
+	static final int FLAG_COMPRESSION = 0x1;
+
+	/**
+	 * ObjectStream 대신 {@link LinkFrame} 형식으로 전송한다.
+	 */
+	static final int FLAG_FRAMING = 0x2;
+
+	/**
+	 * Frame의 Payload로 JSON 대신 {@link kr.poturns.blink.internal.comm.BlinkMessageCodec}의 Binary 형식을 사용한다.
+	 * <br>{@link #FLAG_FRAMING}과 함께 합의되어야 한다.
+	 */
+	static final int FLAG_BINARY_CODEC = 0x4;
+
+	/**
+	 * 작은 메세지들을 하나의 Frame으로 모아서 전송한다. {@link LinkFrameBatcher} 참고.
+	 * <br>{@link #FLAG_FRAMING}과 함께 합의되어야 한다.
+	 */
+	static final int FLAG_BATCHING = 0x8;
+
+	/**
+	 * Reliable 메세지에 Sequence를 붙이고, Ack를 받을 때까지 재전송한다. {@link LinkReliability} 참고.
+	 * <br>{@link #FLAG_FRAMING}과 함께 합의되어야 한다.
+	 */
+	static final int FLAG_RELIABLE = 0x10;
+
+	/**
+	 * 큰 메세지를 조각으로 나누어, 다른 메세지의 전송과 번갈아 보낸다. {@link LinkFragmenter} 참고.
+	 * <br>{@link #FLAG_FRAMING}과 함께 합의되어야 한다.
+	 */
+	static final int FLAG_FRAGMENTATION = 0x20;
+
+	/**
+	 * 큰 메세지를 Wi-Fi 등의 TCP 연결로 전송한다. {@link TcpTransport} 참고.
+	 * <br>연결을 받을 수 있는 디바이스만 {@link #TcpAddress}, {@link #TcpPort}, {@link #TcpToken}, {@link #TcpKey}와 함께 알린다.
+	 * 상대가 {@link #TcpKey}를 알리지 않으면 암호화할 수 없으므로 TCP 연결을 열지 않는다.
+	 */
+	static final int FLAG_BULK_TCP = 0x40;
+
+	/**
+	 * 주고받는 메세지가 없을 때 Keepalive Frame으로 상대 디바이스가 살아있는지 확인하고 RTT를 측정한다.
+	 * <br>{@link #FLAG_FRAMING}과 함께 합의되어야 한다.
+	 */
+	static final int FLAG_KEEPALIVE = 0x80;
+
+	/**
+	 * 받는 디바이스가 돌려주는 Credit만큼만 메세지를 보낸다. {@link LinkFlowControl} 참고.
+	 * <br>{@link #FLAG_FRAMING}과 함께 합의되어야 한다. 각 디바이스는 {@link #CreditWindow}를 함께 알린다.
+	 */
+	static final int FLAG_FLOW_CONTROL = 0x100;
+
+	/**
+	 * 압축을 시작하는 메세지 내용의 기본 크기 (Byte).
+	 * <br>이보다 작은 메세지는 압축에 드는 비용이 더 크다.
+	 */
+	static final int DEFAULT_COMPRESSION_THRESHOLD = 512;
+
+	/**
+	 * 현재 디바이스가 지원하는 LinkCapability를 생성한다.
+	 *
+	 * @return
+	 */
+	static LinkCapability obtainHostCapability() {
+		LinkCapability capability = new LinkCapability();
+		capability.Version = VERSION;
+		capability.Flags = FLAG_COMPRESSION | FLAG_FRAMING | FLAG_BINARY_CODEC | FLAG_BATCHING
+				| FLAG_RELIABLE | FLAG_FRAGMENTATION | FLAG_KEEPALIVE | FLAG_FLOW_CONTROL;
+		capability.CompressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+		capability.CreditWindow = LinkFlowControl.obtainHostWindow();
+		return capability;
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	int Version;
+	int Flags;
+	int CompressionThreshold;
+	/**
+	 * 합의된 LinkCapability임을 알린다. 이 객체 다음부터 상대 디바이스는 Frame 형식으로 전송한다.
+	 */
+	boolean Confirmed;
+	/**
+	 * 보내는 디바이스의 Reliable 송신 상태의 Epoch. {@link LinkReliability#obtainSendEpoch()}
+	 */
+	long ReliableEpoch;
+	/**
+	 * 보내는 디바이스가 TCP 연결을 받는 주소와 Port. {@link #FLAG_BULK_TCP}를 알릴 때만 설정된다.
+	 */
+	String TcpAddress;
+	int TcpPort;
+	/**
+	 * 상대 디바이스가 TCP 연결을 열 때 HELLO Frame에 담아야 하는 값
+	 */
+	long TcpToken;
+	/**
+	 * TCP 연결로 보내는 Frame을 암호화할 때 사용하는 값. {@link LinkCipher} 참고
+	 */
+	byte[] TcpKey;
+	/**
+	 * 보내는 디바이스가 Lane별로 받아둘 수 있는 메세지 수. {@link LinkOutboundQueue}의 LANE 상수 순서이다.
+	 */
+	int[] CreditWindow;
+
+	private LinkCapability() {
+	}
+
+	/**
+	 * 상대 디바이스의 LinkCapability와 합의된 LinkCapability를 반환한다.
+	 * <br>상대가 LinkCapability를 보내지 않은 경우(null), 아무 기능도 사용하지 않는다.
+	 *
+	 * @param peer
+	 * @return
+	 */
+	LinkCapability negotiate(LinkCapability peer) {
+		LinkCapability agreed = new LinkCapability();
+		if (peer == null)
+			return agreed;
+
+		agreed.Version = Math.min(Version, peer.Version);
+		agreed.Flags = Flags & peer.Flags;
+		agreed.CompressionThreshold = Math.max(CompressionThreshold, peer.CompressionThreshold);
+		return agreed;
+	}
+
+	/**
+	 * 합의된 LinkCapability를 상대 디바이스에게 알리기 위한 복사본을 반환한다.
+	 *
+	 * @return
+	 */
+	LinkCapability obtainConfirmation() {
+		LinkCapability confirmation = new LinkCapability();
+		confirmation.Version = Version;
+		confirmation.Flags = Flags;
+		confirmation.CompressionThreshold = CompressionThreshold;
+		confirmation.Confirmed = true;
+		return confirmation;
+	}
+
+	boolean isSupported(int flag) {
+		return (Flags & flag) == flag;
+	}
+
+	@Override
+	public String toString() {
+		return "LinkCapability [Version=" + Version + ", Flags=0x" + Integer.toHexString(Flags)
+				+ ", CompressionThreshold=" + CompressionThreshold + ", Confirmed=" + Confirmed + "]";
+	}
+}
@@ -0,0 +1,173 @@
+package kr.poturns.blink.internal;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * {@link TcpTransport}로 주고받는 Frame의 Payload를 암호화하고 인증하는 모듈.
+ *
+ * <p>각 디바이스는 {@link LinkCapability#TcpKey}에 임의의 키를 담아 Bluetooth 링크로 보낸다.
+ * 두 키로부터 보내는 방향마다 AES-CTR 암호화 키와 HMAC-SHA256 인증 키를 만든다.
+ * 따라서 TCP 연결의 기밀성은 LinkCapability를 주고받은 Bluetooth 링크의 기밀성과 같다.
+ *
+ * <p>방향별 Sequence를 IV와 인증 값에 포함하므로, Frame이 바뀌거나 순서가 바뀌거나 반복되면 {@link #open(byte[])}이 실패한다.
+ * 보내는 쪽과 받는 쪽의 상태가 따로 있으며, 각각 한 스레드에서 순서대로 호출되어야 한다.
+ */
+final class LinkCipher {
+
+	// *** CONSTANT DECLARATION *** //
+	/**
+	 * 각 디바이스가 알리는 키의 길이 (Byte)
+	 */
+	static final int KEY_LENGTH = 32;
+
+	/**
+	 * Payload 뒤에 붙는 인증 값의 길이 (Byte)
+	 */
+	static final int TAG_LENGTH = 16;
+
+	private static final String CIPHER_ALGORITHM = "AES/CTR/NoPadding";
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	private static final int AES_KEY_LENGTH = 16;
+	private static final int IV_LENGTH = 16;
+
+	private static final SecureRandom KEY_RANDOM = new SecureRandom();
+
+	private static class Direction {
+		final Cipher CIPHER;
+		final Mac MAC;
+		final SecretKeySpec KEY;
+		long mSequence;
+
+		Direction(byte[] master, byte[] label) throws GeneralSecurityException {
+			byte[] material = derive(master, label);
+			KEY = new SecretKeySpec(material, 0, AES_KEY_LENGTH, "AES");
+			CIPHER = Cipher.getInstance(CIPHER_ALGORITHM);
+			MAC = Mac.getInstance(MAC_ALGORITHM);
+			MAC.init(new SecretKeySpec(material, AES_KEY_LENGTH, material.length - AES_KEY_LENGTH, MAC_ALGORITHM));
+		}
+
+		/**
+		 * 현재 Sequence로 Cipher를 초기화하고, 인증 값에 Sequence를 넣는다.
+		 */
+		void begin(int mode) throws GeneralSecurityException {
+			byte[] iv = new byte[IV_LENGTH];
+			writeLong(iv, 0, mSequence);
+			CIPHER.init(mode, KEY, new IvParameterSpec(iv));
+
+			byte[] sequence = new byte[8];
+			writeLong(sequence, 0, mSequence);
+			MAC.reset();
+			MAC.update(sequence);
+		}
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final Direction SEND;
+	private final Direction RECEIVE;
+
+	/**
+	 * @param hostKey 현재 디바이스가 알린 키
+	 * @param peerKey 상대 디바이스가 알린 키
+	 * @throws GeneralSecurityException 키가 올바르지 않거나 알고리즘을 지원하지 않는 경우
+	 */
+	LinkCipher(byte[] hostKey, byte[] peerKey) throws GeneralSecurityException {
+		if (hostKey == null || peerKey == null || hostKey.length != KEY_LENGTH || peerKey.length != KEY_LENGTH)
+			throw new GeneralSecurityException("Invalid link key");
+		if (Arrays.equals(hostKey, peerKey))
+			throw new GeneralSecurityException("Link keys must differ");
+
+		// 양쪽이 같은 값을 얻도록 두 키를 정해진 순서로 합친다.
+		byte[] master = new byte[KEY_LENGTH * 2];
+		boolean hostFirst = compare(hostKey, peerKey) < 0;
+		System.arraycopy(hostFirst? hostKey : peerKey, 0, master, 0, KEY_LENGTH);
+		System.arraycopy(hostFirst? peerKey : hostKey, 0, master, KEY_LENGTH, KEY_LENGTH);
+
+		// 보내는 디바이스의 키를 Label로 사용하므로, 방향마다 다른 키를 사용한다.
+		SEND = new Direction(master, hostKey);
+		RECEIVE = new Direction(master, peerKey);
+	}
+
+	/**
+	 * 링크마다 새로 알릴 임의의 키를 생성한다.
+	 *
+	 * @return
+	 */
+	static byte[] obtainKey() {
+		byte[] key = new byte[KEY_LENGTH];
+		KEY_RANDOM.nextBytes(key);
+		return key;
+	}
+
+	/**
+	 * Payload를 암호화하고 인증 값을 붙인다. 보내는 순서대로 호출되어야 한다.
+	 *
+	 * @param payload
+	 * @return 암호화된 Payload와 {@link #TAG_LENGTH}의 인증 값
+	 * @throws GeneralSecurityException
+	 */
+	byte[] seal(byte[] payload) throws GeneralSecurityException {
+		SEND.begin(Cipher.ENCRYPT_MODE);
+		byte[] sealed = new byte[payload.length + TAG_LENGTH];
+		SEND.CIPHER.doFinal(payload, 0, payload.length, sealed, 0);
+		SEND.MAC.update(sealed, 0, payload.length);
+		System.arraycopy(SEND.MAC.doFinal(), 0, sealed, payload.length, TAG_LENGTH);
+		SEND.mSequence++;
+		return sealed;
+	}
+
+	/**
+	 * 인증 값을 확인하고 Payload를 복호화한다. 받은 순서대로 호출되어야 한다.
+	 *
+	 * @param sealed {@link #seal(byte[])}의 결과
+	 * @return
+	 * @throws GeneralSecurityException 인증에 실패한 경우. 이후의 Frame도 복호화할 수 없으므로 연결을 끊어야 한다.
+	 */
+	byte[] open(byte[] sealed) throws GeneralSecurityException {
+		int length = sealed.length - TAG_LENGTH;
+		if (length < 0)
+			throw new GeneralSecurityException("Sealed payload too short : " + sealed.length);
+
+		RECEIVE.begin(Cipher.DECRYPT_MODE);
+		RECEIVE.MAC.update(sealed, 0, length);
+		byte[] tag = RECEIVE.MAC.doFinal();
+
+		int diff = 0;
+		for (int i = 0; i < TAG_LENGTH; i++)
+			diff |= tag[i] ^ sealed[length + i];
+		if (diff != 0)
+			throw new GeneralSecurityException("Frame authentication failed at " + RECEIVE.mSequence);
+
+		byte[] payload = RECEIVE.CIPHER.doFinal(sealed, 0, length);
+		RECEIVE.mSequence++;
+		return payload;
+	}
+
+	private static byte[] derive(byte[] master, byte[] label) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance(MAC_ALGORITHM);
+		mac.init(new SecretKeySpec(master, MAC_ALGORITHM));
+		return mac.doFinal(label);
+	}
+
+	private static int compare(byte[] a, byte[] b) {
+		for (int i = 0; i < a.length; i++) {
+			int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (diff != 0)
+				return diff;
+		}
+		return 0;
+	}
+
+	private static void writeLong(byte[] buffer, int offset, long value) {
+		for (int i = offset + 7; i >= offset; i--, value >>>= 8)
+			buffer[i] = (byte) value;
+	}
+}
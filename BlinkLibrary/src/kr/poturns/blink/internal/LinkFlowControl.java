@@ -0,0 +1,298 @@
+package kr.poturns.blink.internal;
+
+import android.util.Log;
+
+/**
+ * 링크 하나의 Credit 기반 흐름 제어 상태.
+ *
+ * <p>각 디바이스는 연결할 때 {@link LinkCapability#CreditWindow}로 Lane별로 처리를 기다리게 둘 수 있는
+ * 메세지 수를 알린다. 보내는 쪽은 메세지 Frame 하나를 보낼 때마다 해당 Lane의 Credit을 하나 쓰며,
+ * Credit이 없는 Lane의 메세지는 송신 대기열에서 꺼내지 않는다.
+ * 받는 쪽은 메세지의 처리가 끝나면 ({@link MessageDispatcher}의 Handler가 반환하거나, 다른 디바이스로 넘기면)
+ * Credit을 돌려주고, 모인 Credit을 {@link LinkFrame#TYPE_CREDIT} Frame으로 알린다.
+ * 따라서 전송 속도는 받는 쪽의 가장 느린 처리 단계에 맞춰지며, 받는 쪽에 쌓이는 메세지 수는 Window를 넘지 않는다.
+ *
+ * <p>{@link LinkOutboundQueue#LANE_CONTROL}은 흐름 제어에서 제외된다.
+ * Ack, Keepalive와 Credit Frame 자신은 상대의 처리 속도와 관계없이 전송되어야 하기 때문이다.
+ *
+ * <p>Credit은 연결된 후의 누적 값으로 주고받는다. Credit Frame의 Payload는 Lane 순서대로,
+ * 상대 디바이스가 연결된 후 보낼 수 있는 메세지 수의 합 (Window + 처리가 끝난 메세지 수)이다.
+ * 따라서 Credit Frame이 손상되어 버려져도 다음 Credit Frame이 이를 대신한다.
+ * <pre>
+ * | Control (4) | Interactive (4) | Bulk (4) |
+ * </pre>
+ *
+ * <p>손상되었거나, 조립하지 못했거나, 변환하지 못해 받는 쪽에서 버려진 메세지는 Credit을 돌려받지 못한다.
+ * 보내는 쪽은 Lane이 오래 멈춰 있으면 {@link LinkFrame#TYPE_CREDIT_SYNC} Frame으로 Lane별로 보낸 메세지 수의 합을 알리고,
+ * 받는 쪽은 받은 메세지 수와의 차이를 버려진 메세지로 보고 처리가 끝난 것으로 기록한 후 Credit을 다시 알린다.
+ * 링크는 순서를 보장하므로, 이 Frame보다 먼저 보낸 메세지는 모두 이 Frame보다 먼저 도착했거나 버려진 것이다.
+ * Payload의 형식은 Credit Frame과 같다.
+ */
+class LinkFlowControl implements LinkOutboundQueue.LaneGate {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "LinkFlowControl";
+
+	/**
+	 * 현재 디바이스가 Lane별로 받아둘 수 있는 메세지 수.
+	 * <li>Interactive : 요청은 {@link MessageDispatcher}의 조회 Lane에서 처리된다.
+	 * 조회 Lane은 모든 링크가 공유하므로, 링크 하나가 쌓을 수 있는 요청을 조회 스레드 수의 몇 배로 제한한다.</li>
+	 * <li>Bulk : 동기화 메세지는 크고 하나의 스레드에서 차례대로 처리되므로,
+	 * 스레드가 쉬지 않을 만큼만 받아둔다.</li>
+	 */
+	private static final int[] DEFAULT_WINDOW = {
+		0,		// LANE_CONTROL
+		16,		// LANE_INTERACTIVE
+		4		// LANE_BULK
+	};
+
+	static int[] obtainHostWindow() {
+		return DEFAULT_WINDOW.clone();
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final String ADDRESS;
+	/** 상대 디바이스에게 보낸 메세지 수의 합 */
+	private final int[] SENT;
+	/** 상대 디바이스가 알린, 보낼 수 있는 메세지 수의 합 */
+	private final int[] SEND_LIMIT;
+	/** Credit을 모두 쓴 시각. Credit이 남아 있으면 0. */
+	private final long[] STALLED_AT;
+	/** 현재 디바이스가 알린 Window */
+	private final int[] RECEIVE_WINDOW;
+	/** 받은 메세지 수의 합. 버려진 것으로 확인된 메세지를 포함한다. */
+	private final int[] RECEIVED;
+	/** 처리가 끝난 메세지 수의 합. 버려진 것으로 확인된 메세지를 포함한다. */
+	private final int[] PROCESSED;
+	/** 마지막으로 알린, 상대 디바이스가 보낼 수 있는 메세지 수의 합 */
+	private final int[] GRANTED;
+
+	private boolean isEnabled;
+
+	private long mStalls;
+	private long mViolations;
+	private long mLost;
+
+	LinkFlowControl(String address) {
+		ADDRESS = address;
+		SENT = new int[LinkOutboundQueue.LANE_COUNT];
+		SEND_LIMIT = new int[LinkOutboundQueue.LANE_COUNT];
+		STALLED_AT = new long[LinkOutboundQueue.LANE_COUNT];
+		RECEIVE_WINDOW = new int[LinkOutboundQueue.LANE_COUNT];
+		RECEIVED = new int[LinkOutboundQueue.LANE_COUNT];
+		PROCESSED = new int[LinkOutboundQueue.LANE_COUNT];
+		GRANTED = new int[LinkOutboundQueue.LANE_COUNT];
+	}
+
+	/**
+	 * 흐름 제어를 시작한다. 흐름 제어가 합의된 후에 호출한다.
+	 *
+	 * @param peerWindow 상대 디바이스가 알린 Window
+	 * @param hostWindow 현재 디바이스가 알린 Window
+	 */
+	synchronized void enable(int[] peerWindow, int[] hostWindow) {
+		if (peerWindow == null || peerWindow.length < LinkOutboundQueue.LANE_COUNT) {
+			Log.w(TAG, ADDRESS + " : invalid credit window");
+			return;
+		}
+
+		for (int i = 0; i < LinkOutboundQueue.LANE_COUNT; i++) {
+			SENT[i] = 0;
+			SEND_LIMIT[i] = peerWindow[i];
+			STALLED_AT[i] = 0;
+			RECEIVE_WINDOW[i] = hostWindow[i];
+			RECEIVED[i] = 0;
+			PROCESSED[i] = 0;
+			GRANTED[i] = hostWindow[i];
+		}
+		isEnabled = true;
+	}
+
+	private boolean isCredited(int lane) {
+		return isEnabled && lane != LinkOutboundQueue.LANE_CONTROL;
+	}
+
+	/**
+	 * 누적 값은 int 범위를 넘어 돌아갈 수 있으므로, 항상 차이로 비교한다.
+	 */
+	private int obtainCredit(int lane) {
+		return SEND_LIMIT[lane] - SENT[lane];
+	}
+
+	/**
+	 * 송신 대기열의 Writer 스레드가 Lane에서 메세지를 꺼낼 수 있는지 확인한다.
+	 */
+	@Override
+	public synchronized boolean isOpen(int lane) {
+		return !isCredited(lane) || obtainCredit(lane) > 0;
+	}
+
+	/**
+	 * 메세지 Frame 하나를 보낸 것을 기록한다.
+	 *
+	 * @param lane
+	 */
+	synchronized void onSent(int lane) {
+		if (!isCredited(lane))
+			return;
+
+		SENT[lane]++;
+		if (obtainCredit(lane) == 0) {
+			mStalls++;
+			STALLED_AT[lane] = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * 상대 디바이스가 알린 Credit을 반영한다. 이미 반영한 것보다 작은 값은 무시한다.
+	 *
+	 * @param payload {@link LinkFrame#TYPE_CREDIT} Frame의 Payload
+	 * @param offset
+	 * @param length
+	 * @return 멈춰 있던 Lane을 다시 보낼 수 있게 되었으면 true.
+	 */
+	synchronized boolean onGranted(byte[] payload, int offset, int length) {
+		if (!isEnabled || length != 4 * LinkOutboundQueue.LANE_COUNT)
+			return false;
+
+		boolean reopened = false;
+		for (int i = 0; i < LinkOutboundQueue.LANE_COUNT; i++) {
+			int limit = readInt(payload, offset + 4 * i);
+			if (!isCredited(i) || limit - SEND_LIMIT[i] <= 0)
+				continue;
+
+			if (obtainCredit(i) <= 0)
+				reopened = true;
+			SEND_LIMIT[i] = limit;
+			STALLED_AT[i] = 0;
+		}
+		return reopened;
+	}
+
+	/**
+	 * Credit을 모두 쓴 Lane이 멈춰 있는 시간을 반환한다.
+	 *
+	 * @param now {@link System#currentTimeMillis()}
+	 * @return 가장 오래 멈춰 있는 Lane의 시간 (ms). 멈춰 있는 Lane이 없으면 -1.
+	 */
+	synchronized long obtainStalledMillis(long now) {
+		long stalled = -1;
+		for (int i = 0; i < LinkOutboundQueue.LANE_COUNT; i++) {
+			if (isCredited(i) && STALLED_AT[i] != 0)
+				stalled = Math.max(stalled, now - STALLED_AT[i]);
+		}
+		return stalled;
+	}
+
+	/**
+	 * 지금까지 보낸 메세지 수를 {@link LinkFrame#TYPE_CREDIT_SYNC} Frame의 Payload로 만든다.
+	 * <br>이보다 먼저 기록된 메세지 Frame이 모두 전송된 후에 보내야 한다.
+	 *
+	 * @return
+	 */
+	synchronized byte[] obtainSync() {
+		byte[] payload = new byte[4 * LinkOutboundQueue.LANE_COUNT];
+		for (int i = 0; i < LinkOutboundQueue.LANE_COUNT; i++)
+			writeInt(payload, 4 * i, SENT[i]);
+		return payload;
+	}
+
+	/**
+	 * 메세지 Frame 하나를 받은 것을 기록한다.
+	 *
+	 * @param lane
+	 */
+	synchronized void onReceived(int lane) {
+		if (!isCredited(lane))
+			return;
+
+		if (++RECEIVED[lane] - GRANTED[lane] > 0) {
+			mViolations++;
+			Log.w(TAG, ADDRESS + " : peer exceeded credit on lane " + lane);
+		}
+	}
+
+	/**
+	 * 받은 메세지의 처리가 끝났으므로 Credit을 돌려준다. 처리하지 않고 버린 메세지도 포함한다.
+	 *
+	 * @param lane
+	 * @return Credit Frame을 보내야 하면 true.
+	 */
+	synchronized boolean onProcessed(int lane) {
+		if (!isCredited(lane))
+			return false;
+
+		if (RECEIVED[lane] - PROCESSED[lane] > 0)
+			PROCESSED[lane]++;
+
+		// Window의 1/4씩 모아서 돌려주되, 처리를 기다리는 메세지가 없으면 바로 돌려준다.
+		int pending = RECEIVE_WINDOW[lane] + PROCESSED[lane] - GRANTED[lane];
+		return pending >= Math.max(1, RECEIVE_WINDOW[lane] / 4)
+				|| (pending > 0 && RECEIVED[lane] == PROCESSED[lane]);
+	}
+
+	/**
+	 * 상대 디바이스가 알린 보낸 메세지 수와 받은 메세지 수를 비교하여,
+	 * 도착하지 않은 메세지는 버려진 것으로 보고 처리가 끝난 것으로 기록한다.
+	 *
+	 * @param payload {@link LinkFrame#TYPE_CREDIT_SYNC} Frame의 Payload
+	 * @param offset
+	 * @param length
+	 * @return Credit Frame을 보내야 하면 true. 이전 Credit Frame이 버려졌을 수 있으므로, 버려진 메세지가 없어도 보낸다.
+	 */
+	synchronized boolean onSync(byte[] payload, int offset, int length) {
+		if (!isEnabled || length != 4 * LinkOutboundQueue.LANE_COUNT)
+			return false;
+
+		for (int i = 0; i < LinkOutboundQueue.LANE_COUNT; i++) {
+			int lost = readInt(payload, offset + 4 * i) - RECEIVED[i];
+			if (!isCredited(i) || lost <= 0)
+				continue;
+
+			Log.w(TAG, ADDRESS + " : " + lost + " messages lost on lane " + i);
+			mLost += lost;
+			RECEIVED[i] += lost;
+			PROCESSED[i] += lost;
+		}
+		return true;
+	}
+
+	/**
+	 * 상대 디바이스가 보낼 수 있는 메세지 수의 합을 Credit Frame의 Payload로 만든다.
+	 *
+	 * @return
+	 */
+	synchronized byte[] obtainGrant() {
+		byte[] payload = new byte[4 * LinkOutboundQueue.LANE_COUNT];
+		for (int i = 0; i < LinkOutboundQueue.LANE_COUNT; i++) {
+			GRANTED[i] = RECEIVE_WINDOW[i] + PROCESSED[i];
+			writeInt(payload, 4 * i, GRANTED[i]);
+		}
+		return payload;
+	}
+
+	@Override
+	public synchronized String toString() {
+		final int interactive = LinkOutboundQueue.LANE_INTERACTIVE;
+		final int bulk = LinkOutboundQueue.LANE_BULK;
+		return "LinkFlowControl [Enabled=" + isEnabled
+				+ ", Credit=" + obtainCredit(interactive) + "/" + obtainCredit(bulk)
+				+ ", Outstanding=" + (RECEIVED[interactive] - PROCESSED[interactive])
+				+ "/" + (RECEIVED[bulk] - PROCESSED[bulk])
+				+ ", Stalls=" + mStalls + ", Violations=" + mViolations + ", Lost=" + mLost + "]";
+	}
+}
@@ -0,0 +1,203 @@
+package kr.poturns.blink.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * 큰 Payload를 여러 개의 {@link LinkFrame#TYPE_FRAGMENT} Frame으로 나누어 보내는 클래스.
+ *
+ * <p>나누어 보내는 중인 Payload는 {@link Transfer}로 보관되며, {@link #next()}가 호출될 때마다
+ * Transfer들을 돌아가며 조각을 하나씩 만든다. 링크의 Writer 스레드는 송신 대기열의 메세지 하나를 보낼 때마다
+ * 조각 하나를 보내므로, 뒤에 들어온 작은 메세지가 큰 메세지의 전송이 끝나기를 기다리지 않는다.
+ *
+ * <p>받는 쪽의 {@link LinkReassembler}는 정해진 개수와 크기까지만 조립하고, 넘치면 가장 오래된 조립을 버린다.
+ * 따라서 동시에 보내는 Transfer는 {@link LinkReassembler#MAX_ASSEMBLIES}개,
+ * 합쳐서 {@link LinkReassembler#MAX_BUFFERED_LENGTH} Byte를 넘지 않으며, 나머지는 들어온 순서대로 기다린다.
+ *
+ * <p>조각 Payload는 다음과 같다. Type과 Flags는 조립된 Payload를 하나의 Frame으로 보았을 때의 값이다.
+ * <pre>
+ * | Id (4) | Total Length (4) | Offset (4) | Type (1) | Flags (1) | Data |
+ * </pre>
+ *
+ * <p>링크의 Writer 스레드에서만 사용된다.
+ *
+ * @see LinkReassembler
+ */
+class LinkFragmenter {
+
+	// *** CONSTANT DECLARATION *** //
+	static final int HEADER_LENGTH = 14;
+
+	/**
+	 * 조각 하나의 기본 Data 크기. 작은 메세지가 기다리는 시간은 최대 조각 하나를 전송하는 시간이다.
+	 */
+	static final int DEFAULT_FRAGMENT_SIZE = 4096;
+
+	/**
+	 * 나누어 보내는 중인 Payload.
+	 */
+	static class Transfer {
+		final int Id;
+		final int Type;
+		final int Flags;
+		final byte[] Payload;
+		/** 송신 대기열에서 꺼낸 원래 객체. 전송에 실패하면 이 객체로 알린다. */
+		final Object Source;
+		/** Reliable 메세지인 경우, 마지막 조각을 보낸 후에 전송한 것으로 기록한다. */
+		final LinkReliability.Pending Pending;
+
+		int Offset;
+		int Fragments;
+		/** 가장 최근에 만든 조각 Payload */
+		byte[] LastFragment;
+
+		Transfer(int id, int type, int flags, byte[] payload, Object source, LinkReliability.Pending pending) {
+			Id = id;
+			Type = type;
+			Flags = flags;
+			Payload = payload;
+			Source = source;
+			Pending = pending;
+		}
+
+		boolean isCompleted() {
+			return Offset >= Payload.length;
+		}
+
+		private void advance(int fragmentSize) {
+			int length = Math.min(fragmentSize, Payload.length - Offset);
+
+			byte[] fragment = new byte[HEADER_LENGTH + length];
+			writeInt(fragment, 0, Id);
+			writeInt(fragment, 4, Payload.length);
+			writeInt(fragment, 8, Offset);
+			fragment[12] = (byte) Type;
+			fragment[13] = (byte) Flags;
+			System.arraycopy(Payload, Offset, fragment, HEADER_LENGTH, length);
+
+			Offset += length;
+			Fragments++;
+			LastFragment = fragment;
+		}
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	/** 조각을 번갈아 보내는 중인 Transfer */
+	private final ArrayDeque<Transfer> TRANSFERS;
+	/** 받는 쪽의 조립 한도를 넘지 않도록 시작을 기다리는 Transfer */
+	private final ArrayDeque<Transfer> WAITING;
+
+	private int mNextId;
+	private int mFragmentSize;
+	/** 보내는 중인 Transfer의 Payload 크기의 합 */
+	private long mActiveLength;
+
+	LinkFragmenter() {
+		TRANSFERS = new ArrayDeque<Transfer>();
+		WAITING = new ArrayDeque<Transfer>();
+		mFragmentSize = DEFAULT_FRAGMENT_SIZE;
+	}
+
+	/**
+	 * 해당 크기의 데이터를 나누어 보내야 하는지 확인한다.
+	 *
+	 * @param length
+	 * @return
+	 */
+	boolean requires(int length) {
+		return length > mFragmentSize;
+	}
+
+	/**
+	 * Payload를 나누어 보내기 시작한다. 받는 쪽의 조립 한도에 여유가 없으면 앞의 Transfer가 끝날 때까지 기다린다.
+	 *
+	 * @param type 조립된 Payload의 Frame Type
+	 * @param flags 조립된 Payload의 Frame Flags
+	 * @param payload
+	 * @param source 전송에 실패했을 때 알릴 객체
+	 * @param pending Reliable 메세지가 아니면 null.
+	 * @return
+	 */
+	Transfer add(int type, int flags, byte[] payload, Object source, LinkReliability.Pending pending) {
+		Transfer transfer = new Transfer(mNextId++, type, flags, payload, source, pending);
+		WAITING.add(transfer);
+		promote();
+		return transfer;
+	}
+
+	boolean hasRemaining() {
+		return !TRANSFERS.isEmpty() || !WAITING.isEmpty();
+	}
+
+	/**
+	 * 받는 쪽의 조립 한도 안에서, 기다리는 Transfer를 순서대로 시작한다.
+	 * <br>보내는 중인 Transfer가 없으면 크기와 관계없이 시작한다.
+	 */
+	private void promote() {
+		Transfer transfer;
+		while ((transfer = WAITING.peek()) != null) {
+			if (!TRANSFERS.isEmpty() && (TRANSFERS.size() >= LinkReassembler.MAX_ASSEMBLIES
+					|| mActiveLength + transfer.Payload.length > LinkReassembler.MAX_BUFFERED_LENGTH))
+				return;
+
+			WAITING.poll();
+			TRANSFERS.add(transfer);
+			mActiveLength += transfer.Payload.length;
+		}
+	}
+
+	/**
+	 * 다음 차례의 Transfer에서 조각 하나를 만든다. 만든 조각은 {@link Transfer#LastFragment}에 담긴다.
+	 * <br>마지막 조각을 만든 Transfer는 목록에서 제거된다.
+	 *
+	 * @return 나누어 보내는 중인 Payload가 없으면 null.
+	 */
+	Transfer next() {
+		Transfer transfer = TRANSFERS.poll();
+		if (transfer == null)
+			return null;
+
+		transfer.advance(mFragmentSize);
+		if (!transfer.isCompleted()) {
+			TRANSFERS.add(transfer);
+
+		} else {
+			mActiveLength -= transfer.Payload.length;
+			promote();
+		}
+		return transfer;
+	}
+
+	/**
+	 * 나누어 보내는 중인 모든 Transfer를 제거하고 반환한다.
+	 *
+	 * @return
+	 */
+	ArrayList<Transfer> clear() {
+		ArrayList<Transfer> remaining = new ArrayList<Transfer>(TRANSFERS);
+		remaining.addAll(WAITING);
+		TRANSFERS.clear();
+		WAITING.clear();
+		mActiveLength = 0;
+		return remaining;
+	}
+
+	void setFragmentSize(int bytes) {
+		if (bytes <= 0)
+			throw new IllegalArgumentException("Fragment size too small : " + bytes);
+		mFragmentSize = bytes;
+	}
+
+	int obtainFragmentSize() {
+		return mFragmentSize;
+	}
+}
@@ -0,0 +1,95 @@
+package kr.poturns.blink.internal;
+
+/**
+ * 링크에서 주고받는 하나의 Frame.
+ *
+ * <p>Frame은 고정 길이의 Header와 Payload로 구성된다.
+ * <pre>
+ * | Magic (2) | Version (1) | Type (1) | Flags (1) | Length (4) | CRC32 (4) | Payload (Length) |
+ * </pre>
+ * 모든 정수는 Big-Endian이며, CRC32는 Payload에 대해 계산한다.
+ *
+ * @see LinkFrameReader
+ * @see LinkFrameWriter
+ * @see LinkFrameDecoder
+ */
+class LinkFrame {
+
+	// *** CONSTANT DECLARATION *** //
+	static final int MAGIC = 0xB14C;
+	static final int VERSION = 1;
+	static final int HEADER_LENGTH = 13;
+
+	/**
+	 * Payload의 최대 크기. 이보다 큰 Length를 가진 Header는 손상된 것으로 본다.
+	 */
+	static final int MAX_PAYLOAD_LENGTH = 4 * 1024 * 1024;
+
+	/** Payload : JSON으로 변환된 BlinkMessage */
+	static final int TYPE_BLINK_MESSAGE_JSON = 0x1;
+	/** Payload : {@link kr.poturns.blink.internal.comm.BlinkMessageCodec}로 변환된 BlinkMessage */
+	static final int TYPE_BLINK_MESSAGE_BINARY = 0x2;
+	/** Payload : 여러 BlinkMessage Payload의 묶음. {@link LinkFrameBatcher} 참고 */
+	static final int TYPE_BLINK_MESSAGE_BATCH = 0x3;
+	/** Payload : | Sequence (4) | Type (1) | BlinkMessage Payload |. {@link LinkReliability} 참고 */
+	static final int TYPE_RELIABLE_MESSAGE = 0x4;
+	/** Payload : {@link LinkAck} */
+	static final int TYPE_RELIABLE_ACK = 0x5;
+	/** Payload : 큰 Payload의 조각. {@link LinkFragmenter} 참고 */
+	static final int TYPE_FRAGMENT = 0x6;
+	/** Payload : | Token (8) |. TCP 연결을 연 쪽이 처음 보내는 Frame. {@link TcpLinkSelector} 참고 */
+	static final int TYPE_TCP_HELLO = 0x7;
+	/** Payload : | Timestamp (8) |. 받은 디바이스는 같은 Payload로 {@link #TYPE_KEEPALIVE_ACK}를 보낸다. */
+	static final int TYPE_KEEPALIVE = 0x8;
+	/** Payload : 받은 {@link #TYPE_KEEPALIVE}의 Payload */
+	static final int TYPE_KEEPALIVE_ACK = 0x9;
+	/** Payload : Lane별로 상대 디바이스가 보낼 수 있는 메세지 수의 합. {@link LinkFlowControl} 참고 */
+	static final int TYPE_CREDIT = 0xA;
+	/** Payload : Lane별로 보낸 메세지 수의 합. 받은 디바이스는 {@link #TYPE_CREDIT}로 응답한다. {@link LinkFlowControl} 참고 */
+	static final int TYPE_CREDIT_SYNC = 0xB;
+
+	/** Payload가 압축되어 있음. Payload의 앞 4 Byte는 압축 전 크기이다. */
+	static final int FLAG_DEFLATED = 0x1;
+
+
+
+	// *** FIELD DECLARATION *** //
+	final int Version;
+	final int Type;
+	final int Flags;
+	/**
+	 * {@link BufferPool}에서 가져온 배열이면 Length보다 길 수 있다.
+	 */
+	final byte[] Payload;
+	final int Length;
+	private final boolean isPooled;
+
+	LinkFrame(int version, int type, int flags, byte[] payload) {
+		this(version, type, flags, payload, payload.length, false);
+	}
+
+	/**
+	 * @param payload {@link BufferPool}에서 가져온 배열. {@link #recycle()}로 반환된다.
+	 * @param length
+	 */
+	LinkFrame(int version, int type, int flags, byte[] payload, int length, boolean pooled) {
+		Version = version;
+		Type = type;
+		Flags = flags;
+		Payload = payload;
+		Length = length;
+		isPooled = pooled;
+	}
+
+	/**
+	 * Payload를 {@link BufferPool}에 반환한다. 이후에는 Payload를 사용해서는 안 된다.
+	 */
+	void recycle() {
+		if (isPooled)
+			BufferPool.release(Payload);
+	}
+
+	boolean hasFlag(int flag) {
+		return (Flags & flag) == flag;
+	}
+}
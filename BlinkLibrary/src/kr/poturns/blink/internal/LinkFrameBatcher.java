@@ -0,0 +1,232 @@
+package kr.poturns.blink.internal;
+
+import java.io.ByteArrayOutputStream;
+
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.internal.comm.IBlinkMessagable;
+
+/**
+ * 작은 메세지들을 하나의 {@link LinkFrame#TYPE_BLINK_MESSAGE_BATCH} Frame으로 모으는 클래스.
+ *
+ * <p>메세지는 우선순위마다 정해진 지연 시간 상한({@link #setLatencyCap(int, long)}) 안에서 모이며,
+ * Batch가 Byte 예산({@link #setByteBudget(int)})을 넘거나 가장 먼저 만료되는 메세지의 상한에
+ * 도달하면 전송된다. 상한이 0인 우선순위(기본값 : {@link #PRIORITY_CONTROL})는 모으지 않는다.
+ *
+ * <p>Batch Payload는 다음 Entry의 반복이다.
+ * <pre>
+ * | Type (1) | Length (4) | Payload (Length) |
+ * </pre>
+ *
+ * <p>링크의 Writer 스레드에서만 사용된다.
+ */
+class LinkFrameBatcher {
+
+	// *** CONSTANT DECLARATION *** //
+	/** 연결 및 네트워크 제어 메세지. 모으지 않고 바로 보낸다. */
+	static final int PRIORITY_CONTROL = 0;
+	/** 어플리케이션 요청/응답 메세지 */
+	static final int PRIORITY_NORMAL = 1;
+	/** 동기화와 같은 대량 전송 메세지 */
+	static final int PRIORITY_BULK = 2;
+
+	static final int ENTRY_HEADER_LENGTH = 5;
+
+	/**
+	 * Batch의 기본 Byte 예산. RFCOMM 패킷 몇 개 분량이다.
+	 */
+	static final int DEFAULT_BYTE_BUDGET = 2048;
+
+	private static final long[] DEFAULT_LATENCY_CAP = {
+		0,			// PRIORITY_CONTROL
+		2000,		// PRIORITY_NORMAL (us)
+		20000		// PRIORITY_BULK (us)
+	};
+
+	/**
+	 * 메세지 종류에 따른 우선순위를 반환한다.
+	 * <br>{@link #PRIORITY_CONTROL}은 흐름 제어를 받지 않으므로, 받는 쪽에서 {@link MessageDispatcher#LANE_INLINE}으로
+	 * 바로 처리되는 짧은 연결, 라우팅 메세지에만 사용한다. 작업 스레드의 대기열에 들어가는 메세지는
+	 * 받는 쪽의 처리 속도에 맞춰지도록 Credit을 쓰는 우선순위로 보낸다. 알 수 없는 Type도 마찬가지이다.
+	 *
+	 * @param msg
+	 * @return
+	 */
+	static int obtainPriority(BlinkMessage msg) {
+		switch (msg.getType()) {
+		case IBlinkMessagable.TYPE_ACCEPT_CONNECTION:
+		case IBlinkMessagable.TYPE_REQUEST_IDENTITY_SYNC:
+		case IBlinkMessagable.TYPE_RESPONSE_IDENTITY_SUCCESS:
+		case IBlinkMessagable.TYPE_RESPONSE_IDENTITY_SYNC_FAIL:
+		case IBlinkMessagable.TYPE_REQUEST_REDIRECT_CONNECTION:
+		case IBlinkMessagable.TYPE_REQUEST_ROUTE_UPDATE:
+		case IBlinkMessagable.TYPE_REQUEST_SHORTCUT_LINK:
+			return PRIORITY_CONTROL;
+
+		case IBlinkMessagable.TYPE_REQUEST_BlinkAppInfo_SYNC:
+		case IBlinkMessagable.TYPE_RESPONSE_BlinkAppInfo_SYNC_SUCCESS:
+		case IBlinkMessagable.TYPE_RESPONSE_BlinkAppInfo_SYNC_FAIL:
+		case IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC:
+		case IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_SUCCESS:
+		case IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_FAIL:
+		case IBlinkMessagable.TYPE_REQUEST_RECONCILE_DIGEST:
+		case IBlinkMessagable.TYPE_REQUEST_RECONCILE_DATA:
+		case IBlinkMessagable.TYPE_RESPONSE_RECONCILE_SUCCESS:
+		case IBlinkMessagable.TYPE_RESPONSE_RECONCILE_FAIL:
+			return PRIORITY_BULK;
+
+		default:
+			// 함수 실행, 데이터 조회와 응답, 네트워크 동기화
+			return PRIORITY_NORMAL;
+		}
+	}
+
+
+
+	/**
+	 * 모인 Entry들을 복사하지 않고 전송하기 위해 내부 배열을 노출한다.
+	 */
+	private static class BatchBuffer extends ByteArrayOutputStream {
+		BatchBuffer(int size) {
+			super(size);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final BatchBuffer BUFFER;
+	private final long[] LATENCY_CAP_NANOS;
+
+	private int mByteBudget;
+	private int mCount;
+	/** Batch를 전송해야 하는 시각 (System.nanoTime) */
+	private long mDeadline;
+
+	LinkFrameBatcher() {
+		BUFFER = new BatchBuffer(DEFAULT_BYTE_BUDGET);
+		LATENCY_CAP_NANOS = new long[DEFAULT_LATENCY_CAP.length];
+		for (int i = 0; i < DEFAULT_LATENCY_CAP.length; i++)
+			LATENCY_CAP_NANOS[i] = DEFAULT_LATENCY_CAP[i] * 1000;
+		mByteBudget = DEFAULT_BYTE_BUDGET;
+	}
+
+	/**
+	 * 해당 우선순위와 크기의 메세지를 Batch에 담을 수 있는지 확인한다.
+	 * <br>지연 시간 상한이 0이거나, 혼자서도 예산을 넘는 메세지는 담지 않는다.
+	 *
+	 * @param priority
+	 * @param length
+	 * @return
+	 */
+	boolean accepts(int priority, int length) {
+		return LATENCY_CAP_NANOS[priority] > 0 && ENTRY_HEADER_LENGTH + length <= mByteBudget;
+	}
+
+	/**
+	 * 현재 Batch에 메세지를 추가해도 예산을 넘지 않는지 확인한다.
+	 *
+	 * @param length
+	 * @return
+	 */
+	boolean fits(int length) {
+		return BUFFER.size() + ENTRY_HEADER_LENGTH + length <= mByteBudget;
+	}
+
+	/**
+	 * Batch에 메세지를 추가한다. {@link #accepts(int, int)}와 {@link #fits(int)}를 먼저 확인해야 한다.
+	 *
+	 * @param type Payload의 Frame Type
+	 * @param payload
+	 * @param priority
+	 * @return Batch를 바로 전송해야 하면 true.
+	 */
+	boolean add(int type, byte[] payload, int priority) {
+		return add(type, payload, 0, payload.length, priority);
+	}
+
+	/**
+	 * 배열의 일부를 Payload로 Batch에 추가한다. Payload는 복사되므로, 반환 후 배열을 재사용해도 된다.
+	 *
+	 * @param type Payload의 Frame Type
+	 * @param payload
+	 * @param offset
+	 * @param length
+	 * @param priority
+	 * @return Batch를 바로 전송해야 하면 true.
+	 */
+	boolean add(int type, byte[] payload, int offset, int length, int priority) {
+		long now = System.nanoTime();
+		long deadline = now + LATENCY_CAP_NANOS[priority];
+		if (mCount == 0 || deadline - mDeadline < 0)
+			mDeadline = deadline;
+
+		BUFFER.write(type);
+		BUFFER.write(length >>> 24);
+		BUFFER.write(length >>> 16);
+		BUFFER.write(length >>> 8);
+		BUFFER.write(length);
+		BUFFER.write(payload, offset, length);
+		mCount++;
+
+		return BUFFER.size() + ENTRY_HEADER_LENGTH >= mByteBudget || mDeadline - now <= 0;
+	}
+
+	/**
+	 * Batch를 전송하기까지 남은 시간을 반환한다.
+	 *
+	 * @return 모인 메세지가 없으면 -1.
+	 */
+	long obtainFlushDelayNanos() {
+		if (mCount == 0)
+			return -1;
+		return Math.max(0, mDeadline - System.nanoTime());
+	}
+
+	int obtainCount() {
+		return mCount;
+	}
+
+	/**
+	 * 모인 Entry들을 담은 내부 배열을 반환한다. 앞의 {@link #obtainLength()} Byte만 유효하며,
+	 * {@link #clear()}하기 전까지만 사용해야 한다.
+	 *
+	 * @return
+	 */
+	byte[] obtainBatch() {
+		return BUFFER.array();
+	}
+
+	int obtainLength() {
+		return BUFFER.size();
+	}
+
+	/**
+	 * 전송한 Batch를 비운다. 내부 배열은 다음 Batch에 재사용된다.
+	 */
+	void clear() {
+		BUFFER.reset();
+		mCount = 0;
+	}
+
+	/**
+	 * 해당 우선순위의 메세지가 Batch에서 기다릴 수 있는 최대 시간을 설정한다.
+	 *
+	 * @param priority
+	 * @param micros 0이면 모으지 않고 바로 전송한다.
+	 */
+	void setLatencyCap(int priority, long micros) {
+		if (micros < 0)
+			throw new IllegalArgumentException("Negative latency cap : " + micros);
+		LATENCY_CAP_NANOS[priority] = micros * 1000;
+	}
+
+	void setByteBudget(int bytes) {
+		if (bytes <= ENTRY_HEADER_LENGTH)
+			throw new IllegalArgumentException("Byte budget too small : " + bytes);
+		mByteBudget = bytes;
+	}
+}
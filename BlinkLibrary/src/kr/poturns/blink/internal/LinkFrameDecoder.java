@@ -0,0 +1,86 @@
+package kr.poturns.blink.internal;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Non-blocking Channel에서 읽은 Byte들로부터 {@link LinkFrame}을 조립하는 클래스.
+ * <br>{@link LinkFrameReader}와 같은 형식을 읽지만, Frame이 여러 번에 나누어 도착해도 대기하지 않는다.
+ * 하나의 Thread에서만 사용해야 한다.
+ */
+class LinkFrameDecoder {
+
+	// *** FIELD DECLARATION *** //
+	private final byte[] HEADER;
+	private final CRC32 CHECKSUM;
+
+	private int mHeaderReceived;
+	/** 읽고 있는 Frame의 Payload. Header를 읽는 중이면 null. */
+	private byte[] mPayload;
+	private int mPayloadReceived;
+
+	LinkFrameDecoder() {
+		HEADER = new byte[LinkFrame.HEADER_LENGTH];
+		CHECKSUM = new CRC32();
+	}
+
+	/**
+	 * Buffer에서 Frame 하나를 완성하는 데 필요한 만큼만 읽는다.
+	 * <br>Buffer에 여러 Frame이 있을 수 있으므로, Buffer가 빌 때까지 반복하여 호출한다.
+	 *
+	 * @param buffer 읽기 모드의 Buffer
+	 * @return 완성된 Frame. 아직 완성되지 않았거나, Payload의 CRC32가 일치하지 않으면 null.
+	 * @throws StreamCorruptedException Header가 손상되어 다음 Frame의 위치를 알 수 없을 때
+	 */
+	LinkFrame decode(ByteBuffer buffer) throws StreamCorruptedException {
+		while (buffer.hasRemaining()) {
+			if (mPayload == null) {
+				int length = Math.min(buffer.remaining(), HEADER.length - mHeaderReceived);
+				buffer.get(HEADER, mHeaderReceived, length);
+				mHeaderReceived += length;
+				if (mHeaderReceived < HEADER.length)
+					return null;
+
+				int magic = ((HEADER[0] & 0xFF) << 8) | (HEADER[1] & 0xFF);
+				if (magic != LinkFrame.MAGIC)
+					throw new StreamCorruptedException("Invalid frame magic : 0x" + Integer.toHexString(magic));
+
+				int payloadLength = readInt(HEADER, 5);
+				if (payloadLength < 0 || payloadLength > LinkFrame.MAX_PAYLOAD_LENGTH)
+					throw new StreamCorruptedException("Invalid frame length : " + payloadLength);
+
+				mPayload = new byte[payloadLength];
+				mPayloadReceived = 0;
+			}
+
+			int length = Math.min(buffer.remaining(), mPayload.length - mPayloadReceived);
+			buffer.get(mPayload, mPayloadReceived, length);
+			mPayloadReceived += length;
+			if (mPayloadReceived == mPayload.length)
+				return complete();
+		}
+		return null;
+	}
+
+	private LinkFrame complete() {
+		byte[] payload = mPayload;
+		mPayload = null;
+		mHeaderReceived = 0;
+
+		int version = HEADER[2] & 0xFF;
+		long checksum = readInt(HEADER, 9) & 0xFFFFFFFFL;
+
+		CHECKSUM.reset();
+		CHECKSUM.update(payload, 0, payload.length);
+		if (CHECKSUM.getValue() != checksum || version > LinkFrame.VERSION)
+			return null;
+
+		return new LinkFrame(version, HEADER[3] & 0xFF, HEADER[4] & 0xFF, payload);
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+}
@@ -0,0 +1,70 @@
+package kr.poturns.blink.internal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.zip.CRC32;
+
+/**
+ * InputStream으로부터 {@link LinkFrame}을 하나씩 읽는 클래스.
+ * <br>하나의 Thread에서만 사용해야 한다.
+ *
+ * <p>Payload는 {@link BufferPool}의 배열에 읽으므로, 처리가 끝난 Frame은 {@link LinkFrame#recycle()}해야 한다.
+ */
+class LinkFrameReader {
+
+	// *** FIELD DECLARATION *** //
+	private final DataInputStream INPUT;
+	private final CRC32 CHECKSUM;
+
+	LinkFrameReader(InputStream in) {
+		INPUT = new DataInputStream(new BufferedInputStream(in));
+		CHECKSUM = new CRC32();
+	}
+
+	/**
+	 * 다음 Frame을 읽는다. Frame이 도착할 때까지 대기한다.
+	 *
+	 * @return Payload의 CRC32가 일치하지 않거나, 지원하지 않는 Version일 경우 null.
+	 * @throws StreamCorruptedException Header가 손상되어 다음 Frame의 위치를 알 수 없을 때
+	 * @throws IOException
+	 */
+	LinkFrame readFrame() throws IOException {
+		int magic = INPUT.readUnsignedShort();
+		if (magic != LinkFrame.MAGIC)
+			throw new StreamCorruptedException("Invalid frame magic : 0x" + Integer.toHexString(magic));
+
+		int version = INPUT.readUnsignedByte();
+		int type = INPUT.readUnsignedByte();
+		int flags = INPUT.readUnsignedByte();
+		int length = INPUT.readInt();
+		long checksum = INPUT.readInt() & 0xFFFFFFFFL;
+
+		if (length < 0 || length > LinkFrame.MAX_PAYLOAD_LENGTH)
+			throw new StreamCorruptedException("Invalid frame length : " + length);
+
+		byte[] payload = BufferPool.obtain(length);
+		try {
+			INPUT.readFully(payload, 0, length);
+
+		} catch (IOException e) {
+			BufferPool.release(payload);
+			throw e;
+		}
+
+		CHECKSUM.reset();
+		CHECKSUM.update(payload, 0, length);
+		if (CHECKSUM.getValue() != checksum || version > LinkFrame.VERSION) {
+			BufferPool.release(payload);
+			return null;
+		}
+
+		return new LinkFrame(version, type, flags, payload, length, true);
+	}
+
+	void close() throws IOException {
+		INPUT.close();
+	}
+}
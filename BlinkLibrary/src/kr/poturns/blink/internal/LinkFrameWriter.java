@@ -0,0 +1,106 @@
+package kr.poturns.blink.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * OutputStream으로 {@link LinkFrame}을 쓰는 클래스.
+ * <br>여러 Thread에서 동시에 호출되어도 Frame이 섞이지 않는다.
+ */
+class LinkFrameWriter {
+
+	// *** FIELD DECLARATION *** //
+	private final OutputStream OUTPUT;
+	private final CRC32 CHECKSUM;
+	private final byte[] HEADER;
+
+	LinkFrameWriter(OutputStream out) {
+		OUTPUT = new BufferedOutputStream(out);
+		CHECKSUM = new CRC32();
+		HEADER = new byte[LinkFrame.HEADER_LENGTH];
+	}
+
+	/**
+	 * Frame을 쓰고 즉시 전송한다.
+	 *
+	 * @param type
+	 * @param flags
+	 * @param payload
+	 * @throws IOException
+	 */
+	synchronized void writeFrame(int type, int flags, byte[] payload) throws IOException {
+		writeFrame(type, flags, payload, 0, payload.length);
+	}
+
+	/**
+	 * 배열의 일부를 Payload로 하는 Frame을 쓰고 즉시 전송한다.
+	 *
+	 * @param type
+	 * @param flags
+	 * @param payload
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 */
+	synchronized void writeFrame(int type, int flags, byte[] payload, int offset, int length) throws IOException {
+		if (length > LinkFrame.MAX_PAYLOAD_LENGTH)
+			throw new IOException("Frame payload too large : " + length);
+
+		CHECKSUM.reset();
+		CHECKSUM.update(payload, offset, length);
+		long checksum = CHECKSUM.getValue();
+
+		HEADER[0] = (byte) (LinkFrame.MAGIC >>> 8);
+		HEADER[1] = (byte) LinkFrame.MAGIC;
+		HEADER[2] = (byte) LinkFrame.VERSION;
+		HEADER[3] = (byte) type;
+		HEADER[4] = (byte) flags;
+		writeInt(HEADER, 5, length);
+		writeInt(HEADER, 9, (int) checksum);
+
+		OUTPUT.write(HEADER);
+		OUTPUT.write(payload, offset, length);
+		OUTPUT.flush();
+	}
+
+	void close() throws IOException {
+		OUTPUT.close();
+	}
+
+	/**
+	 * Header와 Payload를 하나의 Byte 배열로 만든다. Stream이 아닌 Channel로 전송할 때 사용한다.
+	 *
+	 * @param type
+	 * @param flags
+	 * @param payload
+	 * @return
+	 * @throws IOException
+	 */
+	static byte[] encode(int type, int flags, byte[] payload) throws IOException {
+		if (payload.length > LinkFrame.MAX_PAYLOAD_LENGTH)
+			throw new IOException("Frame payload too large : " + payload.length);
+
+		CRC32 checksum = new CRC32();
+		checksum.update(payload, 0, payload.length);
+
+		byte[] frame = new byte[LinkFrame.HEADER_LENGTH + payload.length];
+		frame[0] = (byte) (LinkFrame.MAGIC >>> 8);
+		frame[1] = (byte) LinkFrame.MAGIC;
+		frame[2] = (byte) LinkFrame.VERSION;
+		frame[3] = (byte) type;
+		frame[4] = (byte) flags;
+		writeInt(frame, 5, payload.length);
+		writeInt(frame, 9, (int) checksum.getValue());
+		System.arraycopy(payload, 0, frame, LinkFrame.HEADER_LENGTH, payload.length);
+		return frame;
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+}
@@ -0,0 +1,451 @@
+package kr.poturns.blink.internal;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import android.util.Log;
+
+/**
+ * 링크 하나의 송신 대기열과, 이를 전송하는 Writer 스레드.
+ *
+ * <p>{@link #offer(Object)}는 대기열에 넣기만 하고 바로 반환하므로, Binder 스레드나
+ * 다른 링크의 수신 스레드가 느린 디바이스로의 전송 때문에 멈추지 않는다.
+ * 대기열이 가득 찬 경우 {@link #setOverflowPolicy(int)}에 따라 새 메세지나 가장 오래된 메세지를 버린다.
+ *
+ * <p>대기열은 메세지 종류에 따라 세 개의 Lane으로 나뉜다 ({@link #obtainLane(Object)}).
+ * <li>{@link #LANE_CONTROL} : 연결, 라우팅 등의 제어 메세지와 Ack, Keepalive</li>
+ * <li>{@link #LANE_INTERACTIVE} : 함수 실행, 데이터 조회 등의 요청/응답</li>
+ * <li>{@link #LANE_BULK} : DB 동기화와 같은 대량 전송</li>
+ * <br>Writer 스레드는 한 차례에 각 Lane에서 가중치({@link #setLaneWeight(int, int)})만큼까지,
+ * 우선순위가 높은 Lane부터 꺼낸다. 모든 Lane이 비었거나 가중치를 다 쓰면 다음 차례가 시작된다.
+ * 따라서 대량 전송이 쌓여 있어도 제어 메세지와 요청은 앞서 전송되며, 대량 전송도 매 차례 전송된다.
+ * 같은 Lane 안에서는 들어온 순서대로 전송된다. 대기열의 크기와 넘칠 때의 처리는 Lane마다 적용되므로,
+ * 대량 전송이 대기열을 채워도 다른 Lane의 메세지는 버려지지 않는다.
+ * {@link LaneGate}가 닫은 Lane은 다시 열릴 때까지 꺼내지 않는다.
+ *
+ * <p>버려지거나 전송에 실패한 메세지는 {@link OnSendFailedListener}로 알린다.
+ * {@link Sender}가 메세지를 모아서 보내는 경우, 모인 메세지 중 하나라도 실패하면 모두 실패로 알린다.
+ */
+class LinkOutboundQueue {
+
+	// *** CONSTANT DECLARATION *** //
+	/**
+	 * 대기열의 기본 크기
+	 */
+	static final int DEFAULT_CAPACITY = 64;
+
+	/** 대기열이 가득 차면 새로 들어온 메세지를 버린다. */
+	static final int OVERFLOW_REJECT_NEWEST = 0x1;
+	/** 대기열이 가득 차면 가장 오래된 메세지를 버리고 새 메세지를 넣는다. */
+	static final int OVERFLOW_DROP_OLDEST = 0x2;
+
+	/** 대기열이 가득 차서 버려짐 */
+	static final int FAILURE_OVERFLOW = 0x1;
+	/** 연결 및 네트워크 제어 메세지, Ack, Keepalive */
+	static final int LANE_CONTROL = LinkFrameBatcher.PRIORITY_CONTROL;
+	/** 어플리케이션 요청/응답 메세지 */
+	static final int LANE_INTERACTIVE = LinkFrameBatcher.PRIORITY_NORMAL;
+	/** 동기화와 같은 대량 전송 메세지 */
+	static final int LANE_BULK = LinkFrameBatcher.PRIORITY_BULK;
+	static final int LANE_COUNT = 3;
+
+	/**
+	 * 한 차례에 각 Lane에서 꺼내는 메세지 수의 기본값
+	 */
+	private static final int[] DEFAULT_LANE_WEIGHT = {
+		8,		// LANE_CONTROL
+		4,		// LANE_INTERACTIVE
+		1		// LANE_BULK
+	};
+
+	/** 전송 중 IOException 발생 */
+	static final int FAILURE_IO = 0x2;
+	/** 링크가 종료되어 전송되지 못함 */
+	static final int FAILURE_CLOSED = 0x3;
+
+	/**
+	 * 대기열의 메세지를 실제로 전송한다. Writer 스레드에서만 호출된다.
+	 */
+	interface Sender {
+		/**
+		 * 메세지를 전송하거나, 모아둔다.
+		 *
+		 * @param obj
+		 * @return 아직 전송되지 않고 모아둔 메세지 수. 모두 전송되었으면 0.
+		 * @throws IOException
+		 */
+		int send(Object obj) throws IOException;
+
+		/**
+		 * 다음 {@link #flush()}를 호출해야 하기까지 남은 시간을 반환한다.
+		 *
+		 * @return 모아둔 메세지가 없으면 -1.
+		 */
+		long obtainFlushDelayNanos();
+
+		/**
+		 * 전송할 시각이 된 메세지를 전송한다. 대기열이 비어 있을 때 호출된다.
+		 *
+		 * @return 아직 전송되지 않고 모아둔 메세지 수.
+		 * @throws IOException
+		 */
+		int flush() throws IOException;
+	}
+
+	/**
+	 * 메세지가 전송되지 못했음을 알린다.
+	 * <br>{@link #FAILURE_OVERFLOW}는 offer()를 호출한 스레드에서, 나머지는 Writer 스레드에서 호출된다.
+	 */
+	interface OnSendFailedListener {
+		void onSendFailed(Object obj, int reason);
+	}
+
+	/**
+	 * Lane에서 메세지를 꺼낼 수 있는지 결정한다. 상대 디바이스의 흐름 제어 등에 사용된다.
+	 * <br>대기열의 Lock을 잡은 채로 호출되므로, 대기열의 메소드를 호출해서는 안 된다.
+	 */
+	interface LaneGate {
+		boolean isOpen(int lane);
+	}
+
+	/**
+	 * 대기열에 넣을 객체의 Lane을 반환한다. BlinkMessage가 아닌 객체는 링크의 제어용으로 간주한다.
+	 *
+	 * @param obj BlinkMessage, {@link SharedMessage}, {@link LinkReliability.Pending} 또는 링크의 제어 객체
+	 * @return
+	 */
+	static int obtainLane(Object obj) {
+		BlinkMessage msg = (obj instanceof LinkReliability.Pending)?
+				((LinkReliability.Pending) obj).Message : SharedMessage.unwrap(obj);
+		return (msg == null)? LANE_CONTROL : LinkFrameBatcher.obtainPriority(msg);
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final ArrayDeque<Object>[] LANES;
+	private final int[] LANE_WEIGHT;
+	private final int CAPACITY;
+	private final ReentrantLock LOCK;
+	private final Condition NOT_EMPTY;
+	private final Sender SENDER;
+	private final OnSendFailedListener LISTENER;
+	private final Thread WRITER;
+	/**
+	 * Sender에 전달되었지만 아직 전송이 끝나지 않은 메세지. Writer 스레드에서만 사용된다.
+	 */
+	private final ArrayList<Object> IN_FLIGHT;
+
+	private volatile int mOverflowPolicy;
+	private volatile boolean isClosed;
+	private volatile LaneGate mLaneGate;
+
+	/** 이번 차례에 Lane마다 더 꺼낼 수 있는 메세지 수. LOCK으로 보호된다. */
+	private final int[] LANE_CREDIT;
+
+	private long mDroppedMessages;
+	private long mFailedMessages;
+
+	/**
+	 * @param name
+	 * @param capacity Lane 하나의 크기
+	 * @param sender
+	 * @param listener
+	 */
+	@SuppressWarnings("unchecked")
+	LinkOutboundQueue(String name, int capacity, Sender sender, OnSendFailedListener listener) {
+		LANES = new ArrayDeque[LANE_COUNT];
+		for (int i = 0; i < LANE_COUNT; i++)
+			LANES[i] = new ArrayDeque<Object>();
+		LANE_WEIGHT = DEFAULT_LANE_WEIGHT.clone();
+		CAPACITY = capacity;
+		LOCK = new ReentrantLock();
+		NOT_EMPTY = LOCK.newCondition();
+		LANE_CREDIT = DEFAULT_LANE_WEIGHT.clone();
+		SENDER = sender;
+		LISTENER = listener;
+		IN_FLIGHT = new ArrayList<Object>();
+		mOverflowPolicy = OVERFLOW_DROP_OLDEST;
+
+		WRITER = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, name + "-Writer");
+		WRITER.setDaemon(true);
+	}
+
+	/**
+	 * Writer 스레드를 시작한다.
+	 */
+	void start() {
+		WRITER.start();
+	}
+
+	/**
+	 * Writer 스레드를 종료하고, 대기 중이던 메세지를 모두 {@link #FAILURE_CLOSED}로 알린다.
+	 */
+	void close() {
+		isClosed = true;
+		WRITER.interrupt();
+
+		ArrayList<Object> remaining = new ArrayList<Object>();
+		LOCK.lock();
+		try {
+			for (ArrayDeque<Object> lane : LANES) {
+				remaining.addAll(lane);
+				lane.clear();
+			}
+
+		} finally {
+			LOCK.unlock();
+		}
+
+		for (Object obj : remaining)
+			notifyFailed(obj, FAILURE_CLOSED);
+	}
+
+	/**
+	 * 메세지를 대기열에 넣는다. 대기열이 가득 차도 기다리지 않는다.
+	 *
+	 * @param obj
+	 * @return 메세지가 대기열에 들어갔으면 true.
+	 */
+	boolean offer(Object obj) {
+		if (obj == null)
+			return false;
+
+		if (isClosed) {
+			notifyFailed(obj, FAILURE_CLOSED);
+			return false;
+		}
+
+		ArrayDeque<Object> lane = LANES[obtainLane(obj)];
+		Object dropped = null;
+		LOCK.lock();
+		try {
+			if (lane.size() >= CAPACITY) {
+				if (mOverflowPolicy == OVERFLOW_REJECT_NEWEST)
+					dropped = obj;
+				else
+					dropped = lane.poll();
+			}
+
+			if (dropped != obj) {
+				lane.offer(obj);
+				NOT_EMPTY.signal();
+			}
+
+		} finally {
+			LOCK.unlock();
+		}
+
+		if (dropped != null)
+			onDropped(dropped);
+		return dropped != obj;
+	}
+
+	/**
+	 * 다음에 전송할 메세지를 꺼낸다. 메세지가 없으면 주어진 시간만큼 기다린다.
+	 *
+	 * @param timeoutNanos 음수이면 메세지가 들어올 때까지 기다린다.
+	 * @return 시간 안에 메세지가 들어오지 않으면 null.
+	 * @throws InterruptedException
+	 */
+	private Object take(long timeoutNanos) throws InterruptedException {
+		LOCK.lockInterruptibly();
+		try {
+			Object obj;
+			while ((obj = pollLocked()) == null) {
+				if (timeoutNanos < 0) {
+					NOT_EMPTY.await();
+
+				} else {
+					if (timeoutNanos == 0)
+						return null;
+					timeoutNanos = NOT_EMPTY.awaitNanos(timeoutNanos);
+					if (timeoutNanos < 0)
+						timeoutNanos = 0;
+				}
+			}
+			return obj;
+
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 이번 차례에 꺼낼 수 있는 Lane 중 우선순위가 가장 높은 Lane에서 다음 메세지를 꺼낸다.
+	 *
+	 * @return 모든 Lane이 비어 있으면 null.
+	 */
+	private Object pollLocked() {
+		LaneGate gate = mLaneGate;
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < LANE_COUNT; i++) {
+				if (LANE_CREDIT[i] > 0 && !LANES[i].isEmpty() && (gate == null || gate.isOpen(i))) {
+					LANE_CREDIT[i]--;
+					return LANES[i].poll();
+				}
+			}
+
+			// 메세지가 남은 Lane은 모두 가중치를 다 썼거나 닫혀 있으므로, 다음 차례를 시작한다.
+			System.arraycopy(LANE_WEIGHT, 0, LANE_CREDIT, 0, LANE_COUNT);
+		}
+		return null;
+	}
+
+	private void drain() {
+		while (!isClosed) {
+			Object obj;
+			try {
+				obj = take(SENDER.obtainFlushDelayNanos());
+
+			} catch (InterruptedException e) {
+				break;
+			}
+
+			try {
+				int held;
+				if (obj == null) {
+					// 모아둔 메세지를 전송할 시각이 되었다.
+					held = SENDER.flush();
+
+				} else {
+					IN_FLIGHT.add(obj);
+					held = SENDER.send(obj);
+				}
+
+				// Sender는 전달받은 순서대로 전송하므로, 앞에서부터 제거한다.
+				if (held < IN_FLIGHT.size())
+					IN_FLIGHT.subList(0, IN_FLIGHT.size() - held).clear();
+
+			} catch (IOException e) {
+				Log.w("LinkOutboundQueue_drain()", WRITER.getName() + " : " + e.getMessage());
+				synchronized (this) {
+					mFailedMessages += IN_FLIGHT.size();
+				}
+				for (Object failed : IN_FLIGHT)
+					notifyFailed(failed, FAILURE_IO);
+				IN_FLIGHT.clear();
+			}
+		}
+
+		for (Object pending : IN_FLIGHT)
+			notifyFailed(pending, FAILURE_CLOSED);
+		IN_FLIGHT.clear();
+	}
+
+	private void onDropped(Object obj) {
+		synchronized (this) {
+			mDroppedMessages++;
+		}
+		notifyFailed(obj, FAILURE_OVERFLOW);
+	}
+
+	private void notifyFailed(Object obj, int reason) {
+		if (LISTENER == null)
+			return;
+
+		try {
+			LISTENER.onSendFailed(obj, reason);
+
+		} catch (RuntimeException e) {
+			// Listener의 오류로 Writer 스레드가 종료되지 않도록 한다.
+			Log.w("LinkOutboundQueue_notifyFailed()", WRITER.getName() + " : listener failed", e);
+		}
+	}
+
+	/**
+	 * 대기열이 가득 찼을 때의 처리 방식을 설정한다.
+	 *
+	 * @param policy {@link #OVERFLOW_REJECT_NEWEST} 또는 {@link #OVERFLOW_DROP_OLDEST}
+	 */
+	void setOverflowPolicy(int policy) {
+		if (policy != OVERFLOW_REJECT_NEWEST && policy != OVERFLOW_DROP_OLDEST)
+			throw new IllegalArgumentException("Unknown overflow policy : " + policy);
+		mOverflowPolicy = policy;
+	}
+
+	/**
+	 * Lane을 열고 닫는 Gate를 설정한다.
+	 *
+	 * @param gate null이면 모든 Lane이 열린다.
+	 */
+	void setLaneGate(LaneGate gate) {
+		mLaneGate = gate;
+		onLaneOpened();
+	}
+
+	/**
+	 * 닫혀 있던 Lane이 열렸음을 알려, 기다리던 Writer 스레드를 깨운다.
+	 */
+	void onLaneOpened() {
+		LOCK.lock();
+		try {
+			NOT_EMPTY.signal();
+
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	/**
+	 * 한 차례에 해당 Lane에서 꺼내는 메세지 수를 설정한다.
+	 *
+	 * @param lane {@link #LANE_CONTROL}, {@link #LANE_INTERACTIVE}, {@link #LANE_BULK}
+	 * @param weight 1 이상
+	 */
+	void setLaneWeight(int lane, int weight) {
+		if (weight < 1)
+			throw new IllegalArgumentException("Lane weight must be positive : " + weight);
+
+		LOCK.lock();
+		try {
+			LANE_WEIGHT[lane] = weight;
+
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	int obtainPendingCount() {
+		LOCK.lock();
+		try {
+			int count = 0;
+			for (ArrayDeque<Object> lane : LANES)
+				count += lane.size();
+			return count;
+
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	/**
+	 * @param lane
+	 * @return 해당 Lane에서 전송을 기다리는 메세지 수
+	 */
+	int obtainPendingCount(int lane) {
+		LOCK.lock();
+		try {
+			return LANES[lane].size();
+
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LinkOutboundQueue [Pending=" + obtainPendingCount(LANE_CONTROL) + "/"
+				+ obtainPendingCount(LANE_INTERACTIVE) + "/" + obtainPendingCount(LANE_BULK)
+				+ ", Dropped=" + mDroppedMessages + ", Failed=" + mFailedMessages + "]";
+	}
+}
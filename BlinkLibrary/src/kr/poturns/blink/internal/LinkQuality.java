@@ -0,0 +1,257 @@
+package kr.poturns.blink.internal;
+
+/**
+ * 링크 하나의 상태를 나타내는 지표를 측정하는 클래스.
+ *
+ * <p>왕복 시간(RTT)은 Keepalive 응답으로 측정하며, TCP와 같이 이동 평균과 편차를 함께 유지한다.
+ * 손실률은 재전송한 Reliable 메세지와 응답받지 못한 Keepalive의 비율이다.
+ * 메세지 처리량은 {@link #RATE_WINDOW}마다 갱신된다.
+ *
+ * <p>{@link LinkStatistics}가 압축과 Frame 구성을 기록하는 반면, 이 클래스는 라우팅과 연결 관리에 사용된다.
+ */
+class LinkQuality {
+
+	// *** CONSTANT DECLARATION *** //
+	/**
+	 * RTT를 측정하지 못한 경우
+	 */
+	static final int RTT_UNKNOWN = -1;
+	/**
+	 * 처리량 집계 구간 (ms)
+	 */
+	static final long RATE_WINDOW = 5000;
+
+	private static final float RTT_ALPHA = 0.125f;
+	private static final float RTT_BETA = 0.25f;
+
+	/**
+	 * 외부에 전달하기 위한 복사본. {@link kr.poturns.blink.db.JsonManager}로 JSON 변환된다.
+	 */
+	static class Snapshot {
+		String Address;
+		int RttMillis;
+		int RttVarianceMillis;
+		float LossRate;
+		long BytesSent;
+		long BytesReceived;
+		long MessagesSent;
+		long MessagesReceived;
+		float SendRate;
+		float ReceiveRate;
+		long Retransmissions;
+		long IdleMillis;
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final String ADDRESS;
+
+	private long mBytesSent;
+	private long mBytesReceived;
+	private long mMessagesSent;
+	private long mMessagesReceived;
+
+	private long mReliableSent;
+	private long mRetransmissions;
+	private long mProbesSent;
+	private long mProbesAnswered;
+	private boolean isProbeOutstanding;
+	/** 마지막 응답 이후 응답받지 못한 채 다음 Keepalive를 보낸 횟수 */
+	private int mConsecutiveMisses;
+
+	/** 이동 평균 RTT (ms). 측정 전에는 음수 */
+	private float mSmoothedRtt = RTT_UNKNOWN;
+	private float mRttVariance;
+
+	private long mLastReceivedAt;
+	private long mLastProbeAt;
+
+	private long mWindowStart;
+	private long mWindowSent;
+	private long mWindowReceived;
+	/** 직전 집계 구간의 초당 메세지 수 */
+	private float mSendRate;
+	private float mReceiveRate;
+
+	LinkQuality(String address) {
+		ADDRESS = address;
+		mLastReceivedAt = mWindowStart = System.currentTimeMillis();
+	}
+
+	/**
+	 * Frame 또는 메세지를 보낸 것을 기록한다.
+	 *
+	 * @param bytes 알 수 없는 경우 0
+	 * @param messages 담긴 BlinkMessage 수. 제어 Frame은 0
+	 */
+	synchronized void onSent(int bytes, int messages) {
+		long now = System.currentTimeMillis();
+		rollWindow(now);
+		mBytesSent += bytes;
+		mMessagesSent += messages;
+		mWindowSent += messages;
+	}
+
+	/**
+	 * Frame 또는 메세지를 받은 것을 기록한다. 어떤 Frame이든 상대 디바이스가 살아있다는 뜻이다.
+	 *
+	 * @param bytes 알 수 없는 경우 0
+	 * @param messages 담긴 BlinkMessage 수. 제어 Frame은 0
+	 */
+	synchronized void onReceived(int bytes, int messages) {
+		long now = System.currentTimeMillis();
+		rollWindow(now);
+		mLastReceivedAt = now;
+		mBytesReceived += bytes;
+		mMessagesReceived += messages;
+		mWindowReceived += messages;
+	}
+
+	synchronized void onReliableSent() {
+		mReliableSent++;
+	}
+
+	synchronized void onRetransmitted(int count) {
+		mRetransmissions += count;
+	}
+
+	/**
+	 * Keepalive를 보낸 것을 기록한다. 이전 Keepalive의 응답을 받지 못했으면 손실로 집계된다.
+	 */
+	synchronized void onProbeSent() {
+		if (isProbeOutstanding)
+			mConsecutiveMisses++;
+		mProbesSent++;
+		mLastProbeAt = System.currentTimeMillis();
+		isProbeOutstanding = true;
+	}
+
+	/**
+	 * Keepalive 응답으로 측정한 RTT를 반영한다.
+	 *
+	 * @param rttNanos
+	 */
+	synchronized void onProbeAnswered(long rttNanos) {
+		if (isProbeOutstanding) {
+			isProbeOutstanding = false;
+			mProbesAnswered++;
+		}
+		// 늦게 도착한 응답이라도 상대 디바이스가 살아있다는 뜻이다.
+		mConsecutiveMisses = 0;
+
+		float sample = rttNanos / 1000000f;
+		if (sample < 0)
+			return;
+
+		if (mSmoothedRtt < 0) {
+			mSmoothedRtt = sample;
+			mRttVariance = sample / 2;
+
+		} else {
+			mRttVariance += RTT_BETA * (Math.abs(mSmoothedRtt - sample) - mRttVariance);
+			mSmoothedRtt += RTT_ALPHA * (sample - mSmoothedRtt);
+		}
+	}
+
+	/**
+	 * @return 측정하지 못한 경우 {@link #RTT_UNKNOWN}.
+	 */
+	synchronized int obtainRttMillis() {
+		return (mSmoothedRtt < 0)? RTT_UNKNOWN : Math.round(mSmoothedRtt);
+	}
+
+	/**
+	 * 재전송하거나 응답받지 못한 비율을 반환한다. 응답을 기다리는 중인 Keepalive는 제외한다.
+	 *
+	 * @return 0 ~ 1
+	 */
+	synchronized float obtainLossRate() {
+		long attempts = mReliableSent + mProbesSent;
+		if (attempts == 0)
+			return 0f;
+
+		long missed = mProbesSent - mProbesAnswered - (isProbeOutstanding? 1 : 0);
+		return Math.min(1f, (float) (mRetransmissions + Math.max(0, missed)) / attempts);
+	}
+
+	/**
+	 * 마지막으로 받은 후 지난 시간 (ms)을 반환한다.
+	 *
+	 * @param now
+	 * @return
+	 */
+	synchronized long obtainIdleMillis(long now) {
+		return now - mLastReceivedAt;
+	}
+
+	/**
+	 * 응답을 기다리는 Keepalive를 보낸 후 지난 시간 (ms)을 반환한다.
+	 *
+	 * @param now
+	 * @return 기다리는 Keepalive가 없으면 -1.
+	 */
+	synchronized long obtainUnansweredMillis(long now) {
+		return isProbeOutstanding? now - mLastProbeAt : -1;
+	}
+
+	/**
+	 * 마지막 응답 이후 응답받지 못한 Keepalive의 수를 반환한다. 응답을 기다리는 중인 Keepalive는 제외한다.
+	 *
+	 * @return
+	 */
+	synchronized int obtainConsecutiveMisses() {
+		return mConsecutiveMisses;
+	}
+
+	/**
+	 * 마지막으로 Keepalive를 보낸 후 지난 시간 (ms)을 반환한다.
+	 *
+	 * @param now
+	 * @return
+	 */
+	synchronized long obtainProbeAgeMillis(long now) {
+		return now - mLastProbeAt;
+	}
+
+	synchronized Snapshot obtainSnapshot() {
+		long now = System.currentTimeMillis();
+		rollWindow(now);
+
+		Snapshot snapshot = new Snapshot();
+		snapshot.Address = ADDRESS;
+		snapshot.RttMillis = obtainRttMillis();
+		snapshot.RttVarianceMillis = Math.round(mRttVariance);
+		snapshot.LossRate = obtainLossRate();
+		snapshot.BytesSent = mBytesSent;
+		snapshot.BytesReceived = mBytesReceived;
+		snapshot.MessagesSent = mMessagesSent;
+		snapshot.MessagesReceived = mMessagesReceived;
+		snapshot.SendRate = mSendRate;
+		snapshot.ReceiveRate = mReceiveRate;
+		snapshot.Retransmissions = mRetransmissions;
+		snapshot.IdleMillis = now - mLastReceivedAt;
+		return snapshot;
+	}
+
+	private void rollWindow(long now) {
+		long elapsed = now - mWindowStart;
+		if (elapsed < RATE_WINDOW)
+			return;
+
+		// 집계 구간 이상 아무것도 주고받지 않았으면 처리량은 0이다.
+		boolean stale = elapsed >= 2 * RATE_WINDOW;
+		mSendRate = stale? 0f : mWindowSent * 1000f / elapsed;
+		mReceiveRate = stale? 0f : mWindowReceived * 1000f / elapsed;
+		mWindowStart = now;
+		mWindowSent = 0;
+		mWindowReceived = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LinkQuality [" + ADDRESS + ", Rtt=" + obtainRttMillis() + "ms, Loss=" + obtainLossRate()
+				+ ", Out=" + mBytesSent + "B/" + mMessagesSent + ", In=" + mBytesReceived + "B/" + mMessagesReceived
+				+ ", Retransmit=" + mRetransmissions + "]";
+	}
+}
@@ -0,0 +1,186 @@
+package kr.poturns.blink.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.util.Log;
+
+/**
+ * {@link LinkFragmenter}가 나누어 보낸 조각들을 원래의 Payload로 조립하는 클래스.
+ *
+ * <p>조립 중인 메세지는 최대 {@link #MAX_ASSEMBLIES}개, 합쳐서 {@link #MAX_BUFFERED_LENGTH} Byte까지만 보관한다.
+ * 한도를 넘으면 가장 오래 조각이 오지 않은 메세지부터 버리며, {@link #ASSEMBLY_TIMEOUT} 동안 조각이 오지 않은 메세지도 버린다.
+ * 버려진 메세지의 나머지 조각은 무시된다. Reliable 메세지는 상대 디바이스가 다시 전송한다.
+ *
+ * <p>링크의 수신 스레드에서만 사용된다.
+ */
+class LinkReassembler {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "LinkReassembler";
+
+	/**
+	 * 조립할 수 있는 메세지의 최대 크기
+	 */
+	static final int MAX_MESSAGE_LENGTH = 8 * 1024 * 1024;
+
+	/**
+	 * 조립 중인 메세지들의 Buffer 크기 합의 최대값
+	 */
+	static final int MAX_BUFFERED_LENGTH = 16 * 1024 * 1024;
+
+	/**
+	 * 동시에 조립할 수 있는 메세지의 최대 개수
+	 */
+	static final int MAX_ASSEMBLIES = 8;
+
+	/**
+	 * 조각이 오지 않으면 조립 중인 메세지를 버리는 시간 (ms)
+	 */
+	static final long ASSEMBLY_TIMEOUT = 60000;
+
+	private static class Assembly {
+		final int Type;
+		final int Flags;
+		final byte[] Buffer;
+		int Received;
+		long UpdatedAt;
+
+		Assembly(int type, int flags, int length) {
+			Type = type;
+			Flags = flags;
+			Buffer = new byte[length];
+		}
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	/** 조각을 받은 순서대로 정렬된다. 가장 앞의 메세지가 가장 오래 조각이 오지 않은 메세지이다. */
+	private final LinkedHashMap<Integer, Assembly> ASSEMBLIES;
+	private final String ADDRESS;
+
+	private int mBufferedLength;
+	private long mDiscarded;
+
+	LinkReassembler(String address) {
+		ASSEMBLIES = new LinkedHashMap<Integer, Assembly>(MAX_ASSEMBLIES, 0.75f, true);
+		ADDRESS = address;
+	}
+
+	/**
+	 * 조각을 추가한다.
+	 *
+	 * @param fragment {@link LinkFrame#TYPE_FRAGMENT} Frame의 Payload
+	 * @return 마지막 조각이면 조립된 Frame. 그 외에는 null.
+	 */
+	LinkFrame add(byte[] fragment) {
+		return add(fragment, fragment.length);
+	}
+
+	/**
+	 * 배열의 앞부분에 담긴 조각을 추가한다. 조각의 내용은 복사되므로, 반환 후 배열을 재사용해도 된다.
+	 *
+	 * @param fragment {@link LinkFrame#TYPE_FRAGMENT} Frame의 Payload
+	 * @param fragmentLength
+	 * @return 마지막 조각이면 조립된 Frame. 그 외에는 null.
+	 */
+	LinkFrame add(byte[] fragment, int fragmentLength) {
+		if (fragmentLength < LinkFragmenter.HEADER_LENGTH)
+			return null;
+
+		int id = readInt(fragment, 0);
+		int total = readInt(fragment, 4);
+		int offset = readInt(fragment, 8);
+		int type = fragment[12] & 0xFF;
+		int flags = fragment[13] & 0xFF;
+		int length = fragmentLength - LinkFragmenter.HEADER_LENGTH;
+
+		long now = System.currentTimeMillis();
+		expire(now);
+
+		Assembly assembly = ASSEMBLIES.get(id);
+		if (assembly == null) {
+			// 앞 조각이 버려진 메세지의 나머지 조각은 무시한다.
+			if (offset != 0)
+				return null;
+
+			if (total <= 0 || total > MAX_MESSAGE_LENGTH || type == LinkFrame.TYPE_FRAGMENT) {
+				discard(id, "invalid length " + total);
+				return null;
+			}
+
+			evictFor(total);
+			assembly = new Assembly(type, flags, total);
+			ASSEMBLIES.put(id, assembly);
+			mBufferedLength += total;
+		}
+
+		// 하나의 링크에서 조각은 순서대로 도착한다.
+		if (offset != assembly.Received || length > total - offset || total != assembly.Buffer.length) {
+			remove(id);
+			discard(id, "unexpected offset " + offset);
+			return null;
+		}
+
+		System.arraycopy(fragment, LinkFragmenter.HEADER_LENGTH, assembly.Buffer, offset, length);
+		assembly.Received += length;
+		assembly.UpdatedAt = now;
+
+		if (assembly.Received < total)
+			return null;
+
+		remove(id);
+		return new LinkFrame(LinkFrame.VERSION, assembly.Type, assembly.Flags, assembly.Buffer);
+	}
+
+	/**
+	 * 새 메세지를 위한 공간이 생길 때까지 가장 오래 조각이 오지 않은 메세지를 버린다.
+	 */
+	private void evictFor(int length) {
+		Iterator<Map.Entry<Integer, Assembly>> iterator = ASSEMBLIES.entrySet().iterator();
+		while (iterator.hasNext()
+				&& (ASSEMBLIES.size() >= MAX_ASSEMBLIES || mBufferedLength + length > MAX_BUFFERED_LENGTH)) {
+			Map.Entry<Integer, Assembly> entry = iterator.next();
+			mBufferedLength -= entry.getValue().Buffer.length;
+			iterator.remove();
+			discard(entry.getKey(), "evicted");
+		}
+	}
+
+	private void expire(long now) {
+		Iterator<Map.Entry<Integer, Assembly>> iterator = ASSEMBLIES.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Integer, Assembly> entry = iterator.next();
+			if (now - entry.getValue().UpdatedAt < ASSEMBLY_TIMEOUT)
+				break;
+
+			mBufferedLength -= entry.getValue().Buffer.length;
+			iterator.remove();
+			discard(entry.getKey(), "expired");
+		}
+	}
+
+	private void remove(int id) {
+		Assembly assembly = ASSEMBLIES.remove(id);
+		if (assembly != null)
+			mBufferedLength -= assembly.Buffer.length;
+	}
+
+	private void discard(int id, String reason) {
+		mDiscarded++;
+		Log.w(TAG, ADDRESS + " : discard fragmented message #" + id + " (" + reason + ")");
+	}
+
+	@Override
+	public String toString() {
+		return "LinkReassembler [Assemblies=" + ASSEMBLIES.size() + ", Buffered=" + mBufferedLength
+				+ "B, Discarded=" + mDiscarded + "]";
+	}
+}
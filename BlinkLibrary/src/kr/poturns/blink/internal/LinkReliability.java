@@ -0,0 +1,476 @@
+package kr.poturns.blink.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.util.EncryptionUtil;
+import kr.poturns.blink.util.FileUtil;
+import android.util.Log;
+
+/**
+ * 상대 디바이스 하나와 주고받는 Reliable 메세지({@link BlinkMessage#isReliable()})의 상태.
+ *
+ * <p>송신 측은 메세지마다 Sequence를 붙이고 Ack를 받을 때까지 보관하며, 재전송 시간(RTO)이 지나면 다시 보낸다.
+ * RTO는 재전송되지 않은 메세지의 왕복 시간으로 계산하고, 재전송할 때마다 두 배로 늘린다.
+ * Ack를 받지 못한 메세지는 파일로 기록되어, 재연결이나 서비스 재시작 후에도 다시 전송된다.
+ * 파일은 상태가 바뀐 후 {@link #PERSIST_DELAY}마다 별도의 스레드에서 한 번에 기록되며,
+ * 링크가 끊어지거나 종료될 때는 {@link #persist()}로 바로 기록된다.
+ *
+ * <p>수신 측은 Cumulative Sequence와 그 이후에 받은 Sequence({@link #DEDUPE_WINDOW}개까지)를 기억하여
+ * 중복된 메세지를 걸러낸다. 수신 상태는 메모리에만 유지되며, 송신 측의 상태가 새로 만들어진 경우
+ * (Epoch가 바뀐 경우) 초기화된다.
+ *
+ * <p>링크가 끊어져도 상태가 유지되도록 디바이스 주소마다 하나씩 관리된다.
+ */
+class LinkReliability {
+
+	// *** CONSTANT DECLARATION *** //
+	private final static String TAG = "LinkReliability";
+
+	private static final long INITIAL_RTO = 1000;			// ms
+	private static final long MIN_RTO = 200;				// ms
+	private static final long MAX_RTO = 30000;				// ms
+
+	/**
+	 * Ack를 기다리는 메세지의 최대 개수. 초과하면 가장 오래된 메세지를 포기한다.
+	 */
+	static final int MAX_UNACKED = 256;
+	/**
+	 * 수신 측에서 Cumulative 이후로 기억하는 Sequence의 최대 개수
+	 */
+	static final int DEDUPE_WINDOW = 256;
+	/**
+	 * 상태가 바뀐 후 파일에 기록하기까지의 지연 시간 (ms). 그 사이의 변경은 한 번에 기록된다.
+	 */
+	static final long PERSIST_DELAY = 2000;
+
+	private static final HashMap<String, LinkReliability> INSTANCE_MAP = new HashMap<String, LinkReliability>();
+
+	/**
+	 * 모든 디바이스의 송신 상태를 파일에 기록하는 스레드. 기록할 것이 없으면 종료된다.
+	 */
+	private static final ScheduledThreadPoolExecutor PERSIST_EXECUTOR;
+	static {
+		PERSIST_EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "BlinkReliablePersist");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		PERSIST_EXECUTOR.setKeepAliveTime(PERSIST_DELAY * 5, TimeUnit.MILLISECONDS);
+		PERSIST_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * 해당 디바이스의 LinkReliability를 반환한다. 처음 호출될 때 기록된 파일에서 상태를 읽어온다.
+	 *
+	 * @param address
+	 * @return
+	 */
+	static LinkReliability obtain(String address) {
+		synchronized (INSTANCE_MAP) {
+			LinkReliability instance = INSTANCE_MAP.get(address);
+			if (instance == null) {
+				instance = new LinkReliability(address);
+				instance.restore();
+				INSTANCE_MAP.put(address, instance);
+			}
+			return instance;
+		}
+	}
+
+	/**
+	 * Ack를 기다리는 Reliable 메세지.
+	 */
+	static class Pending {
+		final int Sequence;
+		final BlinkMessage Message;
+
+		/** 마지막으로 전송한 시각 (ms) */
+		long SentAt;
+		/** 다시 전송해야 하는 시각 (ms). 아직 전송하지 않았으면 0. */
+		long RetransmitAt;
+		int Retransmits;
+		/** 송신 대기열에 들어가 전송을 기다리는 중 */
+		boolean Queued;
+
+		Pending(int sequence, BlinkMessage message) {
+			Sequence = sequence;
+			Message = message;
+		}
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final String ADDRESS;
+	private final File REPOSITORY;
+	private final TreeMap<Integer, Pending> UNACKED;
+	private final TreeSet<Integer> RECEIVED_ABOVE;
+
+	/** 송신 상태가 만들어질 때 정해지는 값. 상대 디바이스가 수신 상태를 초기화할지 판단한다. */
+	private long mSendEpoch;
+	private int mNextSequence;
+	private long mSmoothedRtt;
+	private long mRttVariance;
+	private long mRto;
+	private boolean isDirty;
+	private boolean isPersistScheduled;
+	private final Runnable PERSIST_TASK = new Runnable() {
+		@Override
+		public void run() {
+			persist();
+		}
+	};
+
+	private long mReceiveEpoch;
+	/** 이 값 이하의 Sequence는 모두 받았다. 수신 상태가 없으면 -1. */
+	private int mReceivedCumulative;
+
+	private LinkReliability(String address) {
+		ADDRESS = address;
+		REPOSITORY = new File(FileUtil.EXTERNAL_SYSTEM_RELIABLE_REPOSITORY_PATH,
+				EncryptionUtil.grantHashMessage(address));
+		UNACKED = new TreeMap<Integer, Pending>();
+		RECEIVED_ABOVE = new TreeSet<Integer>();
+
+		mSendEpoch = new Random().nextLong();
+		mNextSequence = 1;
+		mRto = INITIAL_RTO;
+		mReceivedCumulative = -1;
+	}
+
+	long obtainSendEpoch() {
+		return mSendEpoch;
+	}
+
+	/**
+	 * 새로 보낼 Reliable 메세지에 Sequence를 붙여 보관한다.
+	 *
+	 * @param msg
+	 * @param dropped 보관 개수를 초과하여 포기한 메세지를 담는다.
+	 * @return
+	 */
+	synchronized Pending register(BlinkMessage msg, ArrayList<BlinkMessage> dropped) {
+		Pending pending = new Pending(mNextSequence++, msg);
+		UNACKED.put(pending.Sequence, pending);
+
+		while (UNACKED.size() > MAX_UNACKED) {
+			Pending oldest = UNACKED.remove(UNACKED.firstKey());
+			Log.w(TAG, ADDRESS + " : give up #" + oldest.Sequence);
+			dropped.add(oldest.Message);
+		}
+		markDirty();
+		return pending;
+	}
+
+	/**
+	 * 메세지를 전송했음을 기록하고 재전송 시각을 정한다.
+	 *
+	 * @param pending
+	 */
+	synchronized void onSent(Pending pending) {
+		long now = System.currentTimeMillis();
+		if (pending.RetransmitAt != 0)
+			pending.Retransmits++;
+
+		long rto = Math.min(mRto << Math.min(pending.Retransmits, 8), MAX_RTO);
+		pending.SentAt = now;
+		pending.RetransmitAt = now + rto;
+		pending.Queued = false;
+	}
+
+	/**
+	 * 다시 전송하려던 메세지가 송신 대기열에서 버려졌음을 기록한다. RTO 이후에 다시 시도한다.
+	 *
+	 * @param pending
+	 */
+	synchronized void onSendFailed(Pending pending) {
+		pending.Queued = false;
+		pending.RetransmitAt = System.currentTimeMillis() + mRto;
+	}
+
+	/**
+	 * 상대 디바이스가 보낸 Ack를 처리한다.
+	 *
+	 * @param ack
+	 */
+	synchronized void onAck(LinkAck ack) {
+		long now = System.currentTimeMillis();
+
+		Iterator<Pending> iterator = UNACKED.values().iterator();
+		while (iterator.hasNext()) {
+			Pending pending = iterator.next();
+			if (pending.Sequence > ack.Cumulative)
+				break;
+			acknowledge(pending, now);
+			iterator.remove();
+		}
+
+		for (int sequence : ack.Selective) {
+			Pending pending = UNACKED.remove(sequence);
+			if (pending != null)
+				acknowledge(pending, now);
+		}
+	}
+
+	private void acknowledge(Pending pending, long now) {
+		markDirty();
+		if (pending.Retransmits > 0 || pending.SentAt == 0)
+			return;
+
+		// 재전송하지 않은 메세지의 왕복 시간만 사용한다.
+		long rtt = now - pending.SentAt;
+		if (mSmoothedRtt == 0) {
+			mSmoothedRtt = rtt;
+			mRttVariance = rtt / 2;
+
+		} else {
+			mRttVariance = (3 * mRttVariance + Math.abs(mSmoothedRtt - rtt)) / 4;
+			mSmoothedRtt = (7 * mSmoothedRtt + rtt) / 8;
+		}
+		mRto = Math.max(MIN_RTO, Math.min(MAX_RTO, mSmoothedRtt + 4 * mRttVariance));
+	}
+
+	/**
+	 * 재전송 시각이 지난 메세지를 반환한다. 반환된 메세지는 전송될 때까지 다시 반환되지 않는다.
+	 *
+	 * @return
+	 */
+	synchronized ArrayList<Pending> obtainExpired() {
+		long now = System.currentTimeMillis();
+		ArrayList<Pending> expired = new ArrayList<Pending>();
+		for (Pending pending : UNACKED.values()) {
+			if (!pending.Queued && pending.RetransmitAt != 0 && pending.RetransmitAt <= now) {
+				pending.Queued = true;
+				expired.add(pending);
+			}
+		}
+		return expired;
+	}
+
+	/**
+	 * 가장 먼저 재전송해야 하는 메세지까지 남은 시간을 반환한다.
+	 *
+	 * @return 전송된 메세지가 없으면 -1.
+	 */
+	synchronized long obtainNextRetransmitDelay() {
+		long next = Long.MAX_VALUE;
+		for (Pending pending : UNACKED.values()) {
+			if (!pending.Queued && pending.RetransmitAt != 0 && pending.RetransmitAt < next)
+				next = pending.RetransmitAt;
+		}
+		if (next == Long.MAX_VALUE)
+			return -1;
+		return Math.max(0, next - System.currentTimeMillis());
+	}
+
+	/**
+	 * Ack를 받지 못한 모든 메세지를 반환한다. 재연결 시 다시 전송하기 위해 사용된다.
+	 *
+	 * @return
+	 */
+	synchronized ArrayList<Pending> obtainForResend() {
+		for (Pending pending : UNACKED.values())
+			pending.Queued = true;
+		return new ArrayList<Pending>(UNACKED.values());
+	}
+
+	/**
+	 * 해당 메세지가 Ack를 기다리고 있는지 확인한다.
+	 *
+	 * @param msg
+	 * @return
+	 */
+	synchronized boolean isPending(BlinkMessage msg) {
+		for (Pending pending : UNACKED.values()) {
+			if (pending.Message == msg)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 상대 디바이스의 송신 Epoch를 받는다. 이전과 다르면 수신 상태를 초기화한다.
+	 *
+	 * @param epoch
+	 */
+	synchronized void onPeerEpoch(long epoch) {
+		if (epoch == mReceiveEpoch)
+			return;
+
+		mReceiveEpoch = epoch;
+		mReceivedCumulative = -1;
+		RECEIVED_ABOVE.clear();
+	}
+
+	/**
+	 * Reliable 메세지를 받았음을 기록한다.
+	 *
+	 * @param sequence
+	 * @return 처음 받은 메세지이면 true, 중복된 메세지이면 false.
+	 */
+	synchronized boolean onReceived(int sequence) {
+		if (mReceivedCumulative < 0)
+			mReceivedCumulative = sequence - 1;
+
+		if (sequence <= mReceivedCumulative || !RECEIVED_ABOVE.add(sequence))
+			return false;
+
+		while (RECEIVED_ABOVE.remove(mReceivedCumulative + 1))
+			mReceivedCumulative++;
+
+		// 윈도우를 넘어서면, 빠진 Sequence는 더 이상 기다리지 않는다.
+		while (RECEIVED_ABOVE.size() > DEDUPE_WINDOW) {
+			mReceivedCumulative = RECEIVED_ABOVE.pollFirst();
+			while (RECEIVED_ABOVE.remove(mReceivedCumulative + 1))
+				mReceivedCumulative++;
+		}
+		return true;
+	}
+
+	/**
+	 * 지금까지 받은 Sequence에 대한 Ack를 만든다.
+	 *
+	 * @return
+	 */
+	synchronized LinkAck obtainAck() {
+		int count = Math.min(RECEIVED_ABOVE.size(), LinkAck.MAX_SELECTIVE);
+		int[] selective = new int[count];
+		Iterator<Integer> iterator = RECEIVED_ABOVE.iterator();
+		for (int i = 0; i < count; i++)
+			selective[i] = iterator.next();
+		return new LinkAck(mReceivedCumulative, selective);
+	}
+
+	/**
+	 * 송신 상태가 변경되었음을 기록하고, {@link #PERSIST_DELAY} 후에 파일에 기록하도록 예약한다.
+	 */
+	private void markDirty() {
+		isDirty = true;
+		if (isPersistScheduled)
+			return;
+
+		isPersistScheduled = true;
+		PERSIST_EXECUTOR.schedule(PERSIST_TASK, PERSIST_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 송신 상태가 변경되었으면 바로 파일에 기록한다. 호출한 스레드에서 파일을 쓰므로, 링크의 송수신 스레드에서 호출하지 않는다.
+	 */
+	void persist() {
+		// 예약된 기록과 동시에 같은 파일을 쓰지 않도록 한다.
+		synchronized (REPOSITORY) {
+			write();
+		}
+	}
+
+	private void write() {
+		long epoch;
+		int nextSequence;
+		ArrayList<Pending> unacked;
+		synchronized (this) {
+			isPersistScheduled = false;
+			if (!isDirty)
+				return;
+			isDirty = false;
+			epoch = mSendEpoch;
+			nextSequence = mNextSequence;
+			unacked = new ArrayList<Pending>(UNACKED.values());
+		}
+
+		if (unacked.isEmpty()) {
+			if (REPOSITORY.exists() && !REPOSITORY.delete())
+				Log.w(TAG, "Could not delete " + REPOSITORY);
+			return;
+		}
+
+		ObjectOutputStream oos = null;
+		try {
+			REPOSITORY.getParentFile().mkdirs();
+			oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(REPOSITORY)));
+			oos.writeLong(epoch);
+			oos.writeInt(nextSequence);
+			oos.writeInt(unacked.size());
+			for (Pending pending : unacked) {
+				oos.writeInt(pending.Sequence);
+				oos.writeObject(pending.Message);
+			}
+
+		} catch (IOException e) {
+			Log.w(TAG, "Could not persist " + ADDRESS + " : " + e.getMessage());
+			synchronized (this) {
+				markDirty();
+			}
+
+		} finally {
+			if (oos != null) {
+				try {
+					oos.close();
+				} catch (IOException e) { }
+			}
+		}
+	}
+
+	/**
+	 * 파일에 기록된 송신 상태를 읽어온다.
+	 */
+	private void restore() {
+		if (!REPOSITORY.isFile())
+			return;
+
+		ObjectInputStream ois = null;
+		try {
+			ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(REPOSITORY)));
+			long epoch = ois.readLong();
+			int nextSequence = ois.readInt();
+			int count = ois.readInt();
+			for (int i = 0; i < count; i++) {
+				int sequence = ois.readInt();
+				UNACKED.put(sequence, new Pending(sequence, (BlinkMessage) ois.readObject()));
+			}
+			mSendEpoch = epoch;
+			mNextSequence = nextSequence;
+			Log.d(TAG, ADDRESS + " : restored " + count + " unacked messages");
+
+		} catch (IOException e) {
+			Log.w(TAG, "Could not restore " + ADDRESS + " : " + e.getMessage());
+			UNACKED.clear();
+
+		} catch (ClassNotFoundException e) {
+			Log.w(TAG, "Could not restore " + ADDRESS + " : " + e.getMessage());
+			UNACKED.clear();
+
+		} finally {
+			if (ois != null) {
+				try {
+					ois.close();
+				} catch (IOException e) { }
+			}
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LinkReliability [" + ADDRESS + ", Unacked=" + UNACKED.size() + ", Rto=" + mRto
+				+ "ms, ReceivedCumulative=" + mReceivedCumulative + "]";
+	}
+}
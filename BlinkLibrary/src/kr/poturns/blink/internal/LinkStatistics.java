@@ -0,0 +1,123 @@
+package kr.poturns.blink.internal;
+
+/**
+ * 링크 하나에서 주고받은 메세지의 압축률과 압축에 사용된 CPU 시간을 기록하는 클래스.
+ *
+ * <p>CPU 시간은 {@link android.os.Debug#threadCpuTimeNanos()}로 측정한 값으로,
+ * 다른 Thread의 실행이나 대기 시간은 포함되지 않는다.
+ */
+class LinkStatistics {
+
+	// *** FIELD DECLARATION *** //
+	private final String ADDRESS;
+
+	private long mSentMessages;
+	private long mCompressedMessages;
+	private long mBatchFrames;
+	private long mBatchedMessages;
+	private long mFragmentedMessages;
+	private long mFragments;
+	/** 압축된 메세지의 원래 크기 합 */
+	private long mDeflateInputBytes;
+	/** 압축된 메세지의 압축 후 크기 합 */
+	private long mDeflateOutputBytes;
+	private long mDeflateCpuNanos;
+
+	private long mReceivedMessages;
+	private long mDecompressedMessages;
+	private long mInflateOutputBytes;
+	private long mInflateCpuNanos;
+
+	LinkStatistics(String address) {
+		ADDRESS = address;
+	}
+
+	synchronized void onSent(boolean compressed) {
+		mSentMessages++;
+		if (compressed)
+			mCompressedMessages++;
+	}
+
+	/**
+	 * 여러 메세지를 하나의 Batch Frame으로 보낸 것을 기록한다.
+	 *
+	 * @param messages Batch에 담긴 메세지 수
+	 * @param compressed
+	 */
+	synchronized void onSentBatch(int messages, boolean compressed) {
+		mSentMessages += messages;
+		mBatchFrames++;
+		mBatchedMessages += messages;
+		if (compressed)
+			mCompressedMessages += messages;
+	}
+
+	/**
+	 * 하나의 메세지를 여러 조각으로 나누어 보낸 것을 기록한다.
+	 *
+	 * @param fragments 조각 수
+	 * @param compressed
+	 */
+	synchronized void onSentFragments(int fragments, boolean compressed) {
+		mSentMessages++;
+		mFragmentedMessages++;
+		mFragments += fragments;
+		if (compressed)
+			mCompressedMessages++;
+	}
+
+	/**
+	 * 압축을 시도한 결과를 기록한다. 압축 후 크기가 더 커서 원본을 보낸 경우도 포함된다.
+	 *
+	 * @param inputBytes
+	 * @param outputBytes
+	 * @param cpuNanos
+	 */
+	synchronized void onDeflated(int inputBytes, int outputBytes, long cpuNanos) {
+		mDeflateInputBytes += inputBytes;
+		mDeflateOutputBytes += outputBytes;
+		mDeflateCpuNanos += cpuNanos;
+	}
+
+	synchronized void onReceived() {
+		mReceivedMessages++;
+	}
+
+	synchronized void onInflated(int outputBytes, long cpuNanos) {
+		mDecompressedMessages++;
+		mInflateOutputBytes += outputBytes;
+		mInflateCpuNanos += cpuNanos;
+	}
+
+	/**
+	 * 압축을 시도한 메세지의 압축률 (압축 후 크기 / 원래 크기)을 반환한다.
+	 *
+	 * @return 압축한 메세지가 없을 경우 1.
+	 */
+	synchronized float obtainCompressionRatio() {
+		if (mDeflateInputBytes == 0)
+			return 1f;
+		return (float) mDeflateOutputBytes / mDeflateInputBytes;
+	}
+
+	/**
+	 * 압축과 해제에 사용한 CPU 시간 (ms)을 반환한다.
+	 *
+	 * @return
+	 */
+	synchronized long obtainCompressionCpuMillis() {
+		return (mDeflateCpuNanos + mInflateCpuNanos) / 1000000;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LinkStatistics [" + ADDRESS
+				+ ", Sent=" + mSentMessages + " (compressed " + mCompressedMessages
+				+ ", batched " + mBatchedMessages + " in " + mBatchFrames + " frames"
+				+ ", fragmented " + mFragmentedMessages + " in " + mFragments + " frames)"
+				+ ", Received=" + mReceivedMessages + " (compressed " + mDecompressedMessages + ")"
+				+ ", Ratio=" + obtainCompressionRatio()
+				+ ", Deflate=" + mDeflateInputBytes + "B->" + mDeflateOutputBytes + "B/" + (mDeflateCpuNanos / 1000) + "us"
+				+ ", Inflate=" + mInflateOutputBytes + "B/" + (mInflateCpuNanos / 1000) + "us]";
+	}
+}
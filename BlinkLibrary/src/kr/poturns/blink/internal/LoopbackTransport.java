@@ -0,0 +1,244 @@
+package kr.poturns.blink.internal;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.Charset;
+
+import kr.poturns.blink.db.JsonManager;
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+
+/**
+ * 같은 프로세스 안의 두 끝점을 Piped Stream으로 잇는 링크.
+ *
+ * <p>무선 장치 없이 여러 디바이스의 라우팅, 동기화, 처리량을 하나의 JVM에서 시험하기 위해 사용한다.
+ * 메세지는 실제 링크와 같이 JSON으로 변환되어 {@link LinkFrame} 형식으로 전송되므로,
+ * 직렬화와 Framing 비용이 포함된다. 압축과 Batch 등 Bluetooth Classic 링크의 부가 기능은 사용하지 않는다.
+ * Android Framework의 클래스를 직접 사용하지 않으며, 실패는 Log 대신 {@link #obtainSendFailureCount()}와
+ * {@link #obtainReadError()}로 확인한다.
+ *
+ * <pre>
+ * LoopbackTransport[] pair = LoopbackTransport.createPair(deviceA, listenerA, deviceB, listenerB);
+ * pair[0].open(); pair[1].open();
+ * pair[0].sendMessageToDevice(message);	// listenerB.onMessageReceived(message, deviceA)
+ * </pre>
+ */
+class LoopbackTransport implements ILinkTransport {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "LoopbackTransport";
+	private static final Charset MESSAGE_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * Pipe의 Buffer 크기. 받는 쪽이 읽지 않으면 이만큼 쓴 후 쓰기가 대기한다.
+	 */
+	static final int PIPE_SIZE = 64 * 1024;
+
+	/**
+	 * 서로 연결된 두 링크를 생성한다.
+	 *
+	 * @param deviceA 첫 번째 끝점의 디바이스
+	 * @param listenerA 첫 번째 끝점이 받은 메세지를 전달받는다.
+	 * @param deviceB 두 번째 끝점의 디바이스
+	 * @param listenerB 두 번째 끝점이 받은 메세지를 전달받는다.
+	 * @return [0] : A에서 B로 보내는 링크, [1] : B에서 A로 보내는 링크
+	 * @throws IOException
+	 */
+	static LoopbackTransport[] createPair(BlinkDevice deviceA, OnMessageReceivedListener listenerA,
+			BlinkDevice deviceB, OnMessageReceivedListener listenerB) throws IOException {
+		PipedOutputStream outA = new PipedOutputStream();
+		PipedOutputStream outB = new PipedOutputStream();
+		PipedInputStream inA = new PipedInputStream(outB, PIPE_SIZE);
+		PipedInputStream inB = new PipedInputStream(outA, PIPE_SIZE);
+
+		return new LoopbackTransport[] {
+				new LoopbackTransport(deviceB, listenerA, inA, outA),
+				new LoopbackTransport(deviceA, listenerB, inB, outB)
+		};
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	/** 상대 디바이스 */
+	private final BlinkDevice DEVICE;
+	private final OnMessageReceivedListener LISTENER;
+	private final LinkStatistics STATISTICS;
+	private final LinkQuality QUALITY;
+	private final LinkFrameReader FRAME_READER;
+	private final LinkFrameWriter FRAME_WRITER;
+	private final LinkOutboundQueue OUTBOUND_QUEUE;
+	private final Thread READER;
+
+	private final PipedInputStream INPUT;
+	private final PipedOutputStream OUTPUT;
+
+	private volatile boolean isClosed;
+	private volatile int mSendFailures;
+	/** 수신 스레드가 비정상적으로 끝난 원인. 없으면 null. */
+	private volatile IOException mReadError;
+
+	private LoopbackTransport(BlinkDevice device, OnMessageReceivedListener listener,
+			PipedInputStream in, PipedOutputStream out) {
+		DEVICE = device;
+		LISTENER = listener;
+		STATISTICS = new LinkStatistics(device.getAddress());
+		QUALITY = new LinkQuality(device.getAddress());
+		INPUT = in;
+		OUTPUT = out;
+		FRAME_READER = new LinkFrameReader(in);
+		FRAME_WRITER = new LinkFrameWriter(out);
+
+		OUTBOUND_QUEUE = new LinkOutboundQueue(TAG + "-" + device.getAddress(), LinkOutboundQueue.DEFAULT_CAPACITY,
+				new LinkOutboundQueue.Sender() {
+					@Override
+					public int send(Object obj) throws IOException {
+						writeMessage(obj);
+						return 0;
+					}
+
+					@Override
+					public long obtainFlushDelayNanos() {
+						return -1;
+					}
+
+					@Override
+					public int flush() {
+						return 0;
+					}
+				},
+				new LinkOutboundQueue.OnSendFailedListener() {
+					@Override
+					public void onSendFailed(Object obj, int reason) {
+						mSendFailures++;
+					}
+				});
+
+		READER = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readMessages();
+			}
+		}, TAG + "-" + device.getAddress() + "-Reader");
+		READER.setDaemon(true);
+	}
+
+	@Override
+	public BlinkDevice obtainDevice() {
+		return DEVICE;
+	}
+
+	@Override
+	public void open() {
+		OUTBOUND_QUEUE.start();
+		READER.start();
+	}
+
+	@Override
+	public boolean sendMessageToDevice(Object obj) {
+		return OUTBOUND_QUEUE.offer(obj);
+	}
+
+	@Override
+	public void close() {
+		if (isClosed)
+			return;
+
+		isClosed = true;
+		OUTBOUND_QUEUE.close();
+		READER.interrupt();
+
+		try {
+			OUTPUT.close();
+		} catch (IOException e) { }
+
+		try {
+			INPUT.close();
+		} catch (IOException e) { }
+	}
+
+	@Override
+	public LinkStatistics obtainStatistics() {
+		return STATISTICS;
+	}
+
+	@Override
+	public LinkQuality obtainQuality() {
+		return QUALITY;
+	}
+
+	/**
+	 * 이 링크의 송신 대기열을 반환한다. 처리량을 측정할 때는 대기열 크기 초과 시 새 메세지를 거절하도록 설정한다.
+	 *
+	 * @return
+	 */
+	LinkOutboundQueue obtainOutboundQueue() {
+		return OUTBOUND_QUEUE;
+	}
+
+	/**
+	 * 전송하지 못한 메세지의 수를 반환한다. 송신 대기열의 Writer 스레드에서만 증가한다.
+	 *
+	 * @return
+	 */
+	int obtainSendFailureCount() {
+		return mSendFailures;
+	}
+
+	/**
+	 * 링크가 닫히기 전에 수신 스레드가 끝났다면 그 원인을 반환한다.
+	 *
+	 * @return
+	 */
+	IOException obtainReadError() {
+		return mReadError;
+	}
+
+	private void writeMessage(Object obj) throws IOException {
+		if (SharedMessage.unwrap(obj) == null)
+			throw new IOException("Unsupported object : " + obj.getClass().getName());
+
+		byte[] payload = SharedMessage.encodeJson(obj);
+		FRAME_WRITER.writeFrame(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, payload);
+		STATISTICS.onSent(false);
+		QUALITY.onSent(LinkFrame.HEADER_LENGTH + payload.length, 1);
+	}
+
+	private void readMessages() {
+		try {
+			while (!isClosed) {
+				LinkFrame frame = FRAME_READER.readFrame();
+				if (frame == null)
+					continue;
+
+				BlinkMessage msg = null;
+				try {
+					if (frame.Type != LinkFrame.TYPE_BLINK_MESSAGE_JSON)
+						continue;
+
+					STATISTICS.onReceived();
+					QUALITY.onReceived(LinkFrame.HEADER_LENGTH + frame.Length, 1);
+					msg = JsonManager.gson.fromJson(new String(frame.Payload, 0, frame.Length, MESSAGE_CHARSET), BlinkMessage.class);
+
+				} finally {
+					frame.recycle();
+				}
+
+				if (msg != null && LISTENER != null)
+					LISTENER.onMessageReceived(msg, DEVICE);
+			}
+
+		} catch (IOException e) {
+			// 상대 끝점이 닫히면 Pipe가 끊어진다.
+			if (!isClosed)
+				mReadError = e;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LoopbackTransport [" + STATISTICS + ", " + OUTBOUND_QUEUE + ", SendFailures=" + mSendFailures
+				+ (mReadError == null? "" : ", ReadError=" + mReadError) + "]";
+	}
+}
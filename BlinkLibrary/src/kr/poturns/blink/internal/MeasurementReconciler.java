@@ -0,0 +1,293 @@
+package kr.poturns.blink.internal;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import kr.poturns.blink.db.JsonManager;
+import kr.poturns.blink.db.SyncDatabaseManager;
+import kr.poturns.blink.db.archive.MeasurementData;
+import kr.poturns.blink.db.archive.MeasurementDigest;
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.internal.comm.IBlinkMessagable;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Wearable과 Center 디바이스의 측정 데이터를 {@link MeasurementDigest} 트리로 비교하여,
+ * 빠져있는 데이터만 다시 전송하는 클래스.
+ *
+ * <p>MeasurementDataId 기반의 동기화로는 알 수 없는 누락(Center DB 복구, 재연결, 메시지 유실 등)을 찾기 위해 사용된다.
+ * <ol>
+ * <li>Wearable이 자신이 측정한 Measurement별 Digest를 보낸다.</li>
+ * <li>받은 쪽은 자신의 Digest와 비교하여, 다른 부분의 하위 단계 Digest를 돌려보낸다.</li>
+ * <li>가장 작은 단계(시간)까지 내려가면 Wearable이 해당 Bucket의 MeasurementData를 보낸다.</li>
+ * </ol>
+ * 데이터가 같다면 두 번의 메시지로 끝난다.
+ *
+ * <p>Wearable이 측정한 데이터는 Wearable이 원본이므로, Center에만 있는 데이터는 전송되지 않는다.
+ *
+ * <p>Center가 받은 데이터를 등록하지 못하면 {@link IBlinkMessagable#TYPE_RESPONSE_RECONCILE_FAIL}로 알리고,
+ * Wearable은 {@link #RETRY_DELAY} 후에 처음부터 다시 비교한다. 비교가 성공하면 재시도 횟수는 초기화된다.
+ */
+class MeasurementReconciler {
+
+	private final static String TAG = "MeasurementReconciler";
+
+	private final static String SOURCE_APPLICATION = "kr.poturns.blink.internal.MeasurementReconciler";
+
+	/**
+	 * 실패한 비교를 다시 시작하기까지의 지연 시간 (ms). 재시도할 때마다 두 배가 된다.
+	 */
+	final static long RETRY_DELAY = 30000;
+	/**
+	 * 연속으로 이만큼 실패하면 다음 동기화 때까지 다시 시도하지 않는다.
+	 */
+	final static int MAX_RETRIES = 3;
+
+	// *** FIELD DECLARATION *** //
+	private final BlinkLocalService OPERATOR_CONTEXT;
+	private final MessageProcessor MESSAGE_PROCESSOR;
+	private final Gson GSON;
+	/**
+	 * 비교를 다시 시작하는 스레드. 비교는 DB를 조회하므로 Main 스레드에서 수행하지 않는다.
+	 */
+	private final ScheduledThreadPoolExecutor RETRY_EXECUTOR;
+
+	/** 연속으로 실패한 횟수 */
+	private int mRetryCount;
+
+	MeasurementReconciler(BlinkLocalService context, MessageProcessor processor) {
+		OPERATOR_CONTEXT = context;
+		MESSAGE_PROCESSOR = processor;
+		GSON = JsonManager.gson;
+		RETRY_EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "BlinkReconcileRetry");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		RETRY_EXECUTOR.setKeepAliveTime(RETRY_DELAY, TimeUnit.MILLISECONDS);
+		RETRY_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Center 디바이스와 측정 데이터 비교를 시작한다. Wearable 디바이스에서 호출된다.
+	 *
+	 * @param centerDevice
+	 */
+	void startReconcile(BlinkDevice centerDevice) {
+		if (centerDevice == null || centerDevice == BlinkDevice.HOST)
+			return;
+
+		SyncDatabaseManager mSyncDatabaseManager = new SyncDatabaseManager(OPERATOR_CONTEXT);
+		DigestMessage mDigestMessage = new DigestMessage();
+		mDigestMessage.Level = 0;
+		mDigestMessage.Nodes = mSyncDatabaseManager.obtainMeasurementDigest(BlinkDevice.HOST);
+
+		Log.d(TAG, "startReconcile : " + mDigestMessage.Nodes.size() + " measurement(s)");
+		send(centerDevice, IBlinkMessagable.TYPE_REQUEST_RECONCILE_DIGEST, GSON.toJson(mDigestMessage));
+	}
+
+	/**
+	 * 상대 디바이스로부터 받은 Digest를 현재 디바이스의 Digest와 비교하여 다음 단계를 진행한다.
+	 *
+	 * @param blinkMessage
+	 */
+	void handleDigest(BlinkMessage blinkMessage) {
+		BlinkDevice peer = BlinkDevice.load(blinkMessage.getSourceAddress());
+		DigestMessage received = GSON.fromJson(blinkMessage.getMessage(), DigestMessage.class);
+		if (received == null)
+			return;
+
+		List<MeasurementDigest> parents = filterIntegrity(received.Parents);
+		List<MeasurementDigest> nodes = filterIntegrity(received.Nodes);
+		SyncDatabaseManager mSyncDatabaseManager = new SyncDatabaseManager(OPERATOR_CONTEXT);
+
+		// 가장 작은 단계까지 비교가 끝나고, 데이터를 요청받은 경우
+		if (received.Level > MeasurementDigest.LEVEL_LEAF) {
+			sendMeasurementData(peer, mSyncDatabaseManager, parents);
+			return;
+		}
+
+		List<MeasurementDigest> mine = (received.Level == 0)?
+				mSyncDatabaseManager.obtainMeasurementDigest(nodes, 0) :
+				mSyncDatabaseManager.obtainMeasurementDigest(parents, received.Level);
+		List<MeasurementDigest> different = obtainDifference(mine, nodes);
+
+		Log.d(TAG, "handleDigest : level=" + received.Level + ", different=" + different.size());
+		if (different.isEmpty()) {
+			send(peer, IBlinkMessagable.TYPE_RESPONSE_RECONCILE_SUCCESS, "");
+			return;
+		}
+
+		DigestMessage mDigestMessage = new DigestMessage();
+		mDigestMessage.Level = received.Level + 1;
+		mDigestMessage.Parents = different;
+
+		if (received.Level == MeasurementDigest.LEVEL_LEAF) {
+			// 데이터의 원본을 가진 Wearable이 직접 보내고, Center는 Wearable에게 요청한다.
+			if (!isCenterDevice()) {
+				sendMeasurementData(peer, mSyncDatabaseManager, different);
+				return;
+			}
+			mDigestMessage.Nodes = new ArrayList<MeasurementDigest>();
+
+		} else {
+			mDigestMessage.Nodes = mSyncDatabaseManager.obtainMeasurementDigest(different, mDigestMessage.Level);
+		}
+
+		send(peer, IBlinkMessagable.TYPE_REQUEST_RECONCILE_DIGEST, GSON.toJson(mDigestMessage));
+	}
+
+	/**
+	 * Wearable로부터 받은 누락된 MeasurementData를 등록한다. Center 디바이스에서 호출된다.
+	 *
+	 * @param blinkMessage
+	 */
+	void handleData(BlinkMessage blinkMessage) {
+		Type MeasurementDataType = new TypeToken<ArrayList<MeasurementData>>() {}.getType();
+		ArrayList<MeasurementData> mMeasurementDataList = GSON.fromJson(blinkMessage.getMessage(), MeasurementDataType);
+
+		final BlinkDevice peer = BlinkDevice.load(blinkMessage.getSourceAddress());
+		if (mMeasurementDataList == null || !isCenterDevice()) {
+			send(peer, IBlinkMessagable.TYPE_RESPONSE_RECONCILE_SUCCESS, "");
+			return;
+		}
+
+		Log.d(TAG, "handleData : " + mMeasurementDataList.size() + " row(s)");
+		SyncCoordinator.getInstance(OPERATOR_CONTEXT).submit(peer, mMeasurementDataList,
+				new SyncCoordinator.CommitCallback() {
+					@Override
+					public void onCommitted(int maxMeasurementDataId) {
+						send(peer, IBlinkMessagable.TYPE_RESPONSE_RECONCILE_SUCCESS, "");
+					}
+
+					@Override
+					public void onFailed() {
+						Log.w(TAG, "handleData failed : " + peer.getAddress());
+						send(peer, IBlinkMessagable.TYPE_RESPONSE_RECONCILE_FAIL, "");
+					}
+				});
+	}
+
+	/**
+	 * 비교가 끝났음을 기록한다. Wearable 디바이스에서 호출된다.
+	 *
+	 * @param blinkMessage
+	 */
+	synchronized void handleSuccess(BlinkMessage blinkMessage) {
+		mRetryCount = 0;
+	}
+
+	/**
+	 * Center가 데이터를 등록하지 못했으므로, 잠시 후에 비교를 처음부터 다시 시작한다. Wearable 디바이스에서 호출된다.
+	 * <br>등록되지 않은 데이터는 Digest가 여전히 다르므로 다시 전송된다.
+	 *
+	 * @param blinkMessage
+	 */
+	synchronized void handleFailure(BlinkMessage blinkMessage) {
+		final BlinkDevice peer = BlinkDevice.load(blinkMessage.getSourceAddress());
+		if (mRetryCount >= MAX_RETRIES) {
+			Log.w(TAG, "Give up reconcile : " + peer.getAddress());
+			mRetryCount = 0;
+			return;
+		}
+
+		long delay = RETRY_DELAY << mRetryCount++;
+		Log.w(TAG, "Reconcile failed : " + peer.getAddress() + ", retry in " + delay + "ms");
+		RETRY_EXECUTOR.schedule(new Runnable() {
+			@Override
+			public void run() {
+				startReconcile(peer);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 주어진 Bucket에 속한 MeasurementData를 상대 디바이스로 전송한다.
+	 *
+	 * @param peer
+	 * @param mSyncDatabaseManager
+	 * @param buckets
+	 */
+	private void sendMeasurementData(BlinkDevice peer, SyncDatabaseManager mSyncDatabaseManager,
+			List<MeasurementDigest> buckets) {
+		List<MeasurementData> mMeasurementDataList = mSyncDatabaseManager.obtainMeasurementDataInDigest(buckets);
+
+		Log.d(TAG, "sendMeasurementData : " + mMeasurementDataList.size() + " row(s)");
+		send(peer, IBlinkMessagable.TYPE_REQUEST_RECONCILE_DATA, GSON.toJson(mMeasurementDataList));
+	}
+
+	private void send(BlinkDevice peer, int type, String message) {
+		BlinkMessage mBlinkMessage = new BlinkMessage.Builder()
+				.setDestinationDevice(peer)
+				.setDestinationApplication(SOURCE_APPLICATION)
+				.setSourceDevice(BlinkDevice.HOST)
+				.setSourceApplication(SOURCE_APPLICATION)
+				.setMessage(message)
+				.setType(type)
+				.setCode(0).build();
+		MESSAGE_PROCESSOR.sendBlinkMessageTo(mBlinkMessage, peer);
+	}
+
+	private boolean isCenterDevice() {
+		BlinkDevice center = ServiceKeeper.getInstance(OPERATOR_CONTEXT).obtainCurrentCenterDevice();
+		return center != null && BlinkDevice.HOST.getAddress().equals(center.getAddress());
+	}
+
+	/**
+	 * 두 디바이스의 Digest 중 일치하지 않거나, 한 쪽에만 있는 Digest를 얻는다.
+	 *
+	 * @param mine
+	 * @param theirs
+	 * @return
+	 */
+	private static List<MeasurementDigest> obtainDifference(List<MeasurementDigest> mine,
+			List<MeasurementDigest> theirs) {
+		HashMap<String, MeasurementDigest> mDigestMap = new HashMap<String, MeasurementDigest>();
+		for (MeasurementDigest digest : mine)
+			mDigestMap.put(digest.obtainNodeKey(), digest);
+
+		List<MeasurementDigest> different = new ArrayList<MeasurementDigest>();
+		for (MeasurementDigest digest : theirs) {
+			MeasurementDigest local = mDigestMap.remove(digest.obtainNodeKey());
+			if (!digest.isSame(local))
+				different.add(digest);
+		}
+		different.addAll(mDigestMap.values());
+		return different;
+	}
+
+	private static List<MeasurementDigest> filterIntegrity(List<MeasurementDigest> list) {
+		List<MeasurementDigest> result = new ArrayList<MeasurementDigest>();
+		if (list != null) {
+			for (MeasurementDigest digest : list) {
+				if (digest != null && digest.checkIntegrity())
+					result.add(digest);
+			}
+		}
+		return result;
+	}
+
+
+
+	/**
+	 * 디바이스간에 주고받는 Digest 메시지.
+	 * <br>Parents는 상위 단계에서 일치하지 않았던 Digest이며, Nodes는 Parents에 속한 Level 단계의 Digest이다.
+	 */
+	private static class DigestMessage {
+		int Level;
+		List<MeasurementDigest> Parents;
+		List<MeasurementDigest> Nodes;
+	}
+}
@@ -0,0 +1,323 @@
+package kr.poturns.blink.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import android.util.Log;
+
+/**
+ * 받은 BlinkMessage를 Type별로 등록된 Handler에게 전달하는 클래스.
+ *
+ * <p>Handler는 등록할 때 실행될 Lane을 정한다.
+ * <li>{@link #LANE_INLINE} : 링크의 수신 스레드에서 바로 실행한다. 연결, 라우팅, 함수 실행(Intent 발송) 등
+ * 블로킹하지 않는 짧은 메세지에 사용한다.</li>
+ * <li>{@link #LANE_QUERY} : 크기가 제한된 Thread Pool에서 실행한다. 데이터 조회, 어플리케이션 Callback에 사용한다.</li>
+ * <li>{@link #LANE_SYNC} : 하나의 스레드에서 받은 순서대로 실행한다. DB 동기화에 사용한다.</li>
+ *
+ * <p>Lane은 모든 링크가 공유하므로, 대기열이 찼다고 수신 스레드를 멈추면 다른 링크와
+ * 같은 링크의 Ack, Credit, Keepalive까지 읽지 못하게 된다. 따라서 대기열의 크기는 제한하지 않고,
+ * 전송 속도는 링크별로 {@link LinkFlowControl}이 조절한다. 받는 쪽은 Handler가 반환한 후에 Credit을 돌려주므로,
+ * 링크 하나가 대기열에 쌓을 수 있는 메세지 수는 그 링크의 Credit Window를 넘지 않는다.
+ *
+ * <p>Type별 대기 시간과 처리 시간을 집계한다. 집계는 링크 지표와 함께 어플리케이션에 제공되고,
+ * 서비스가 종료될 때 Log로 남는다.
+ */
+class MessageDispatcher {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "MessageDispatcher";
+
+	static final int LANE_INLINE = 0;
+	static final int LANE_QUERY = 1;
+	static final int LANE_SYNC = 2;
+
+	private static final int QUERY_POOL_SIZE = 2;
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	/**
+	 * 대기열에 쌓인 메세지가 이 수의 배수를 넘을 때마다 경고를 남긴다.
+	 * 흐름 제어를 하지 않는 링크(이전 버전, GATT)가 처리 속도보다 빠르게 보내고 있다는 뜻이다.
+	 */
+	static final int QUEUE_WARNING_DEPTH = 128;
+
+	/**
+	 * 처리 시간이 이보다 길면 경고를 남긴다 (ms).
+	 */
+	static final long SLOW_HANDLER_MILLIS = 500;
+
+	/**
+	 * 등록된 Type의 메세지를 처리한다. 등록할 때 정한 Lane의 스레드에서 호출된다.
+	 */
+	interface MessageHandler {
+		void handleMessage(BlinkMessage message, BlinkDevice fromDevice);
+	}
+
+	/**
+	 * 메세지 Type별 처리 통계.
+	 */
+	static class TypeMetrics {
+		final AtomicLong Count = new AtomicLong();
+		final AtomicLong Failures = new AtomicLong();
+		/** Lane의 대기열에서 기다린 시간의 합 (ns) */
+		final AtomicLong WaitNanos = new AtomicLong();
+		/** Handler의 처리 시간의 합 (ns) */
+		final AtomicLong HandleNanos = new AtomicLong();
+		final AtomicLong MaxHandleNanos = new AtomicLong();
+
+		void record(long waitNanos, long handleNanos, boolean failed) {
+			Count.incrementAndGet();
+			if (failed)
+				Failures.incrementAndGet();
+			WaitNanos.addAndGet(waitNanos);
+			HandleNanos.addAndGet(handleNanos);
+
+			long max;
+			while (handleNanos > (max = MaxHandleNanos.get())
+					&& !MaxHandleNanos.compareAndSet(max, handleNanos));
+		}
+
+		TypeSnapshot obtainSnapshot() {
+			TypeSnapshot snapshot = new TypeSnapshot();
+			snapshot.Count = Count.get();
+			snapshot.Failures = Failures.get();
+			long count = Math.max(1, snapshot.Count);
+			snapshot.AvgWaitMicros = WaitNanos.get() / count / 1000;
+			snapshot.AvgHandleMicros = HandleNanos.get() / count / 1000;
+			snapshot.MaxHandleMicros = MaxHandleNanos.get() / 1000;
+			return snapshot;
+		}
+
+		@Override
+		public String toString() {
+			long count = Math.max(1, Count.get());
+			return "count=" + Count.get() + ", failures=" + Failures.get()
+					+ ", avgWait=" + (WaitNanos.get() / count / 1000) + "us"
+					+ ", avgHandle=" + (HandleNanos.get() / count / 1000) + "us"
+					+ ", maxHandle=" + (MaxHandleNanos.get() / 1000) + "us";
+		}
+	}
+
+	/**
+	 * 어플리케이션에 제공하기 위한 Type별 처리 통계의 복사본.
+	 */
+	static class TypeSnapshot {
+		long Count;
+		long Failures;
+		long AvgWaitMicros;
+		long AvgHandleMicros;
+		long MaxHandleMicros;
+	}
+
+	/**
+	 * 어플리케이션에 제공하기 위한 Lane의 대기열 상태와 Type별 처리 통계의 복사본.
+	 */
+	static class Snapshot {
+		int QueryQueueDepth;
+		int SyncQueueDepth;
+		HashMap<Integer, TypeSnapshot> Types;
+	}
+
+	private static final ConcurrentHashMap<Integer, TypeMetrics> METRICS_MAP = new ConcurrentHashMap<Integer, TypeMetrics>();
+
+	private static ThreadPoolExecutor sQueryExecutor;
+	private static ThreadPoolExecutor sSyncExecutor;
+
+	private static synchronized ThreadPoolExecutor obtainExecutor(int lane) {
+		if (lane == LANE_QUERY) {
+			if (sQueryExecutor == null)
+				sQueryExecutor = createExecutor("BlinkQuery", QUERY_POOL_SIZE);
+			return sQueryExecutor;
+		}
+
+		if (sSyncExecutor == null)
+			sSyncExecutor = createExecutor("BlinkSync", 1);
+		return sSyncExecutor;
+	}
+
+	private static ThreadPoolExecutor createExecutor(final String name, int poolSize) {
+		// 대기열이 가득 차 수신 스레드를 멈추는 일이 없도록 크기를 제한하지 않는다.
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+				KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger COUNT = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, name + "-" + COUNT.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		// 하나의 스레드만 사용하는 Lane은 스레드가 다시 생성되어도 순서가 유지된다.
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Lane의 대기열에 쌓여있는 메세지 수를 반환한다.
+	 *
+	 * @param lane
+	 * @return
+	 */
+	static int obtainQueueDepth(int lane) {
+		if (lane == LANE_INLINE)
+			return 0;
+		return obtainExecutor(lane).getQueue().size();
+	}
+
+	/**
+	 * Lane의 대기열 상태와 메세지 Type별 처리 통계의 복사본을 반환한다.
+	 *
+	 * @return
+	 */
+	static Snapshot obtainSnapshot() {
+		Snapshot snapshot = new Snapshot();
+		snapshot.QueryQueueDepth = obtainQueueDepth(LANE_QUERY);
+		snapshot.SyncQueueDepth = obtainQueueDepth(LANE_SYNC);
+		snapshot.Types = new HashMap<Integer, TypeSnapshot>();
+		for (Map.Entry<Integer, TypeMetrics> entry : METRICS_MAP.entrySet())
+			snapshot.Types.put(entry.getKey(), entry.getValue().obtainSnapshot());
+		return snapshot;
+	}
+
+	/**
+	 * Lane의 대기열 상태와 Type별 처리 통계를 문자열로 반환한다.
+	 *
+	 * @return
+	 */
+	static String dumpMetrics() {
+		StringBuilder builder = new StringBuilder("MessageDispatcher [query=")
+				.append(obtainQueueDepth(LANE_QUERY)).append(", sync=")
+				.append(obtainQueueDepth(LANE_SYNC)).append(']');
+		for (Map.Entry<Integer, TypeMetrics> entry : METRICS_MAP.entrySet())
+			builder.append("\n  type ").append(entry.getKey()).append(" : ").append(entry.getValue());
+		return builder.toString();
+	}
+
+	private static TypeMetrics obtainTypeMetrics(int type) {
+		TypeMetrics metrics = METRICS_MAP.get(type);
+		if (metrics == null) {
+			TypeMetrics created = new TypeMetrics();
+			metrics = METRICS_MAP.putIfAbsent(type, created);
+			if (metrics == null)
+				metrics = created;
+		}
+		return metrics;
+	}
+
+	private static class Registration {
+		final int Lane;
+		final MessageHandler Handler;
+
+		Registration(int lane, MessageHandler handler) {
+			Lane = lane;
+			Handler = handler;
+		}
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final HashMap<Integer, Registration> HANDLER_MAP;
+
+	MessageDispatcher() {
+		HANDLER_MAP = new HashMap<Integer, Registration>();
+	}
+
+	/**
+	 * 메세지 Type에 Handler를 등록한다. 같은 Type에 이미 등록된 Handler는 대체된다.
+	 * <br>등록은 메세지를 받기 전에 마쳐야 한다.
+	 *
+	 * @param type {@link kr.poturns.blink.internal.comm.IBlinkMessagable}의 TYPE 상수
+	 * @param lane {@link #LANE_INLINE}, {@link #LANE_QUERY}, {@link #LANE_SYNC}
+	 * @param handler
+	 */
+	void register(int type, int lane, MessageHandler handler) {
+		HANDLER_MAP.put(type, new Registration(lane, handler));
+	}
+
+	/**
+	 * 메세지를 Type에 등록된 Handler에게 전달한다. {@link #LANE_INLINE}이 아니면 기다리지 않고 바로 반환한다.
+	 *
+	 * @param message
+	 * @param fromDevice
+	 * @return 등록된 Handler가 없으면 false.
+	 */
+	boolean dispatch(BlinkMessage message, BlinkDevice fromDevice) {
+		return dispatch(message, fromDevice, null);
+	}
+
+	/**
+	 * 메세지를 Type에 등록된 Handler에게 전달하고, 처리가 끝나면 onCompleted를 호출한다.
+	 *
+	 * @param message
+	 * @param fromDevice
+	 * @param onCompleted Handler가 반환하거나, 실패하거나, 대기열에 넣지 못한 경우에 호출된다. null 가능.
+	 * @return 등록된 Handler가 없으면 false. 이 경우 onCompleted는 호출되지 않는다.
+	 */
+	boolean dispatch(final BlinkMessage message, final BlinkDevice fromDevice, final Runnable onCompleted) {
+		final Registration registration = HANDLER_MAP.get(message.getType());
+		if (registration == null)
+			return false;
+
+		final TypeMetrics metrics = obtainTypeMetrics(message.getType());
+		final long queuedAt = System.nanoTime();
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				long startedAt = System.nanoTime();
+				boolean failed = true;
+				try {
+					registration.Handler.handleMessage(message, fromDevice);
+					failed = false;
+
+				} catch (RuntimeException e) {
+					Log.e(TAG, "Handler error : type=" + message.getType(), e);
+
+				} finally {
+					long handleNanos = System.nanoTime() - startedAt;
+					metrics.record(startedAt - queuedAt, handleNanos, failed);
+
+					if (handleNanos > TimeUnit.MILLISECONDS.toNanos(SLOW_HANDLER_MILLIS))
+						Log.w(TAG, "Slow handler : type=" + message.getType() + ", "
+								+ TimeUnit.NANOSECONDS.toMillis(handleNanos) + "ms");
+
+					if (onCompleted != null)
+						onCompleted.run();
+				}
+			}
+		};
+
+		if (registration.Lane == LANE_INLINE) {
+			task.run();
+			return true;
+		}
+
+		try {
+			ThreadPoolExecutor executor = obtainExecutor(registration.Lane);
+			executor.execute(task);
+
+			int depth = executor.getQueue().size();
+			if (depth > 0 && depth % QUEUE_WARNING_DEPTH == 0)
+				Log.w(TAG, "Queue is growing : lane=" + registration.Lane + ", depth=" + depth
+						+ ", type=" + message.getType());
+
+		} catch (RejectedExecutionException e) {
+			metrics.record(0, 0, true);
+			Log.w(TAG, "Rejected : type=" + message.getType() + ", " + e.getMessage());
+			if (onCompleted != null)
+				onCompleted.run();
+		}
+		return true;
+	}
+}
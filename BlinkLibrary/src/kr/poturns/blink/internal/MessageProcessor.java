@@ -7,11 +7,13 @@ import java.util.HashSet;
 import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.SyncDatabaseManager;
 import kr.poturns.blink.db.archive.BlinkAppInfo;
+import kr.poturns.blink.db.archive.CallbackData;
 import kr.poturns.blink.db.archive.Function;
 import kr.poturns.blink.db.archive.MeasurementData;
 import kr.poturns.blink.internal.comm.BlinkDevice;
 import kr.poturns.blink.internal.comm.BlinkMessage;
 import kr.poturns.blink.internal.comm.BlinkMessage.Builder;
+import kr.poturns.blink.internal.comm.BlinkSupportBinder;
 import kr.poturns.blink.internal.comm.IBlinkMessagable;
 import android.content.Intent;
 import android.util.Log;
@@ -35,16 +37,29 @@ import com.google.gson.reflect.TypeToken;
  * @since 2014.07.12
  * 
  */
-public class MessageProcessor {
+public class MessageProcessor implements ILinkTransport.OnMessageReceivedListener {
 
 	private final BlinkLocalService OPERATOR_CONTEXT;
 	private final ServiceKeeper SERVICE_KEEPER;
+	private final MeasurementReconciler RECONCILER;
+	private final MessageDispatcher DISPATCHER;
 
-	private boolean Synchronizing = false;
+	private volatile boolean Synchronizing = false;
 
 	public MessageProcessor(BlinkLocalBaseService context) {
 		OPERATOR_CONTEXT = (BlinkLocalService) context;
 		SERVICE_KEEPER = ServiceKeeper.getInstance(context);
+		RECONCILER = new MeasurementReconciler(OPERATOR_CONTEXT, this);
+		DISPATCHER = new MessageDispatcher();
+		registerHandlers();
+	}
+
+	/**
+	 * 링크가 받은 메세지를 {@link #acceptBlinkMessage(BlinkMessage, BlinkDevice)}로 처리한다.
+	 */
+	@Override
+	public void onMessageReceived(BlinkMessage message, BlinkDevice fromDevice) {
+		acceptBlinkMessage(message, fromDevice);
 	}
 
 	/**
@@ -62,6 +77,33 @@ public class MessageProcessor {
 	 */
 	public void acceptBlinkMessage(BlinkMessage blinkMessage,
 			BlinkDevice fromDevice) {
+		acceptBlinkMessage(blinkMessage, fromDevice, null);
+	}
+
+	/**
+	 * 수신한 메세지를 처리하고, 처리가 끝나면 onProcessed를 호출한다.
+	 * <br>현재 디바이스가 목적지이면 Handler가 반환한 후에, 다른 디바이스로 넘기는 메세지는 넘긴 직후에 호출된다.
+	 * 
+	 * @param blinkMessage
+	 * @param fromDevice
+	 * @param onProcessed null 가능. 링크의 흐름 제어 Credit을 돌려주는 데 사용된다.
+	 */
+	void acceptBlinkMessage(BlinkMessage blinkMessage, BlinkDevice fromDevice, Runnable onProcessed) {
+		// Handler에게 전달된 경우, Handler의 처리가 끝난 후에 호출된다.
+		boolean deferred = false;
+		try {
+			deferred = routeBlinkMessage(blinkMessage, fromDevice, onProcessed);
+
+		} finally {
+			if (!deferred && onProcessed != null)
+				onProcessed.run();
+		}
+	}
+
+	/**
+	 * @return 메세지가 Handler에게 전달되어 onProcessed의 호출을 넘겼으면 true.
+	 */
+	private boolean routeBlinkMessage(BlinkMessage blinkMessage, BlinkDevice fromDevice, Runnable onProcessed) {
 		Log.d("acceptBlinkMessage", "accept start!!");
 		Log.d("acceptBlinkMessage", "Message target MacAddr="+blinkMessage.getDestinationAddress().toString());
 		
@@ -76,189 +118,19 @@ public class MessageProcessor {
 		}
 		if (blinkMessage.getDestinationAddress().equals(currentAddress)) {
 			// Message의 최종목적지가 현재 디바이스일때
-
-			// Reponse하기 위한 BlinkMessage의 정보를 세팅한다.
-			BlinkMessage.Builder builder_success = new Builder();
-			builder_success.setDestinationDevice(BlinkDevice.load(blinkMessage
-					.getSourceAddress()));// 이 시점에서 못불러오는 경우는 없는가??
-			builder_success.setDestinationApplication(blinkMessage
-					.getSourceApplication());
-			builder_success.setCode(blinkMessage.getCode());
-
-			int blinkMessage_type = blinkMessage.getType();
-			
-			if (blinkMessage_type == IBlinkMessagable.TYPE_ACCEPT_CONNECTION) {
-				BlinkDevice device = BlinkDevice.load(blinkMessage.getSourceAddress());
-				// 연결 성립시, 상대의 디바이스로 자신의  BlinkDevice를 넣어 Identity 동기화 요청 메세지를 전송한다.
-				SERVICE_KEEPER.transferSystemSync(device, IBlinkMessagable.TYPE_REQUEST_IDENTITY_SYNC);
-				
-			} else if (blinkMessage_type == IBlinkMessagable.TYPE_REQUEST_BlinkAppInfo_SYNC) {
-				// 동기화 시작할때 Sync 플래그를 true로, 끝날 때 false로 설정하여 추가 동기화를 막는다.
-				Log.i("Blink", "TYPE_REQUEST_BlinkAppInfo_SYNC");
-				setSynchronizing(true);
-				builder_success
-						.setType(IBlinkMessagable.TYPE_RESPONSE_BlinkAppInfo_SYNC_SUCCESS);
-				SyncDatabaseManager syncDatabaseManager = new SyncDatabaseManager(
-						OPERATOR_CONTEXT);
-				String jsonRequestMessage = blinkMessage.getMessage();
-				Type BlinkAppInfoType = new TypeToken<ArrayList<BlinkAppInfo>>() {
-				}.getType();
-				ArrayList<BlinkAppInfo> ret = new Gson().fromJson(
-						jsonRequestMessage, BlinkAppInfoType);
-				if (BlinkDevice.HOST.getAddress()
-						.contentEquals(
-								SERVICE_KEEPER.obtainCurrentCenterDevice()
-										.getAddress())) {
-					syncDatabaseManager.center.syncBlinkDatabase(ret);
-				} else {
-					syncDatabaseManager.wearable.syncBlinkDatabase(ret);
-				}
-
-				ArrayList<BlinkAppInfo> mergedBlinkAppInfoList = new ArrayList<BlinkAppInfo>();
-				mergedBlinkAppInfoList = syncDatabaseManager.obtainBlinkApp();
-				String jsonResponseMessage = JsonManager
-						.obtainJsonBlinkAppInfo(mergedBlinkAppInfoList);
-				builder_success.setMessage(jsonResponseMessage);
-				BlinkMessage successBlinkMessage = builder_success.build();
-				sendBroadCast(successBlinkMessage);
-
-				setSynchronizing(false);
-			}
-			// 동기화 시작할때 Sync 플래그를 true로, 끝날 때 false로 설정하여 추가 동기화를 막는다.
-			if (blinkMessage_type == IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC) {
-				setSynchronizing(true);
-				Log.i("acceptBlinkMessage", "TYPE_REQUEST_MEASUREMENTDATA_SYNC");
-				builder_success
-						.setType(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_SUCCESS);
-				SyncDatabaseManager syncDatabaseManager = new SyncDatabaseManager(
-						OPERATOR_CONTEXT);
-
-				String jsonRequestMessage = blinkMessage.getMessage();
-				Type MeasurementDataType = new TypeToken<ArrayList<MeasurementData>>() {
-				}.getType();
-				ArrayList<MeasurementData> ret = new Gson().fromJson(
-						jsonRequestMessage, MeasurementDataType);
-
-				if (BlinkDevice.HOST.getAddress()
-						.contentEquals(
-								SERVICE_KEEPER.obtainCurrentCenterDevice()
-										.getAddress())) {
-					builder_success.setMessage(""
-							+ syncDatabaseManager.center
-									.insertMeasurementData(ret));
-				} else {
-					builder_success.setMessage("");
-				}
-
-				BlinkMessage successBlinkMessage = builder_success.build();
-				sendBlinkMessageTo(successBlinkMessage,
-						BlinkDevice.load(blinkMessage.getSourceAddress()));
-				setSynchronizing(false);
-			} else if (blinkMessage_type == IBlinkMessagable.TYPE_REQUEST_FUNCTION) {//
-				Log.i("acceptBlinkMessage", "TYPE_REQUEST_FUNCTION");
-				// call back
-				Function function = JsonManager.obtainJsonFunction(blinkMessage
-						.getMessage());
-				startFunction(function);
-				builder_success
-						.setType(IBlinkMessagable.TYPE_RESPONSE_FUNCTION_SUCCESS);
-				builder_success.setMessage("");
-				BlinkMessage successBlinkMessage = builder_success.build();
-				sendBlinkMessageTo(successBlinkMessage,
-						BlinkDevice.load(blinkMessage.getSourceAddress()));
-			} else if (blinkMessage_type == IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA) {//
-				Log.i("acceptBlinkMessage", "TYPE_REQUEST_MEASUREMENTDATA");
-				String message = OPERATOR_CONTEXT
-						.receiveMessageFromProcessor(blinkMessage.getMessage());
-				builder_success.setMessage(message);
-				builder_success
-						.setType(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS);
-				BlinkMessage successBlinkMessage = builder_success.build();
-				sendBlinkMessageTo(successBlinkMessage,
-						BlinkDevice.load(blinkMessage.getSourceAddress()));
-			} else if (blinkMessage_type == IBlinkMessagable.TYPE_REQUEST_IDENTITY_SYNC) {//
-				BlinkDevice device = blinkMessage.getMessage(BlinkDevice.class);
-				ServiceKeeper.getInstance(OPERATOR_CONTEXT).handleIdentitySync(
-						device);
-
-			} else if (blinkMessage_type == IBlinkMessagable.TYPE_REQUEST_NETWORK_SYNC) {
-				JsonArray mJsonArray = new JsonParser().parse(
-						blinkMessage.getMessage()).getAsJsonArray();
-
-				HashSet<BlinkDevice> mHashSet = new HashSet<BlinkDevice>();
-				Gson gson = new Gson();
-				for (JsonElement element : mJsonArray)
-					mHashSet.add(gson.fromJson(element, BlinkDevice.class));
-
-				BlinkDevice device = BlinkDevice.load(blinkMessage
-						.getSourceAddress());
-				ServiceKeeper.getInstance(OPERATOR_CONTEXT).handleNetworkSync(
-						mHashSet, device.getGroupID());
-
-				ServiceKeeper
-						.getInstance(OPERATOR_CONTEXT)
-						.transferSystemSync(device,
-								IBlinkMessagable.TYPE_REQUEST_BlinkAppInfo_SYNC);
-
-			}/*
-			 * -> 일단 fromdevice로 보내면 되겠네 if (i am main) { BlinkDevice = } else
-			 * if (i am wearable) {
-			 * 
-			 * }
-			 */
-			/* 위 까지는 TYPE_REQUEST에 대한 처리 */
-			// Sync 플래그를 false로 변경하여 동기화 요청을 할 수 있도록 한다.
-			if (blinkMessage_type == IBlinkMessagable.TYPE_RESPONSE_BlinkAppInfo_SYNC_SUCCESS) {
-				Log.i("Blink", "TYPE_RESPONSE_BlinkAppInfo_SYNC_SUCCESS");
-				SyncDatabaseManager syncDatabaseManager = new SyncDatabaseManager(
-						OPERATOR_CONTEXT);
-				String jsonResponseMessage = blinkMessage.getMessage();
-				ArrayList<BlinkAppInfo> mergedBlinkAppInfo = JsonManager
-						.obtainJsonBlinkAppInfo(jsonResponseMessage);
-				if (BlinkDevice.HOST.getAddress()
-						.contentEquals(
-								SERVICE_KEEPER.obtainCurrentCenterDevice()
-										.getAddress())) {
-					syncDatabaseManager.center
-							.syncBlinkDatabase(mergedBlinkAppInfo);
-				} else {
-					syncDatabaseManager.wearable
-							.syncBlinkDatabase(mergedBlinkAppInfo);
-				}
-				setSynchronizing(false);
-			} else if (blinkMessage_type == IBlinkMessagable.TYPE_RESPONSE_IDENTITY_SUCCESS) {
-
-			} else if (blinkMessage_type == IBlinkMessagable.TYPE_RESPONSE_FUNCTION_SUCCESS) {
-				Log.i("acceptBlinkMessage", "TYPE_RESPONSE_FUNCTION_SUCCESS");
-				SERVICE_KEEPER.obtainBinder().callbackData(
-						blinkMessage.getCode(), blinkMessage.getMessage(),
-						true, blinkMessage.getDestinationApplication());
-			} else if (blinkMessage_type == IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS) {
-				Log.i("acceptBlinkMessage",
-						"TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS");
-				if (SERVICE_KEEPER.obtainBinder() == null)
-					Log.i("Blink", "binder nul1!!");
-				SERVICE_KEEPER.obtainBinder().callbackData(
-						blinkMessage.getCode(), blinkMessage.getMessage(),
-						true, blinkMessage.getDestinationApplication());
-			}
-			// Sync 플래그를 false로 변경하여 동기화 요청을 할 수 있도록 한다.
-			else if (blinkMessage_type == IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_SUCCESS) {
-				Log.i("acceptBlinkMessage",
-						"TYPE_RESPONSE_MEASUREMENTDATA_SYNC_SUCCESS");
-				SyncDatabaseManager syncDatabaseManager = new SyncDatabaseManager(
-						OPERATOR_CONTEXT);
-				syncDatabaseManager.wearable.syncMeasurementDatabase(
-						SERVICE_KEEPER.obtainCurrentCenterDevice(),
-						Integer.parseInt(blinkMessage.getMessage()));
-				setSynchronizing(false);
-			}
+			if (DISPATCHER.dispatch(blinkMessage, fromDevice, onProcessed))
+				return true;
+			Log.d("acceptBlinkMessage", "No handler : " + blinkMessage.getType());
 
 		} else { // message의 최종 목적지가 현재 디바이스가 아니여서 다른 디바이스로 Pass해야 할 때
-			if (BlinkDevice.load(blinkMessage.getDestinationAddress())
-					.isConnected()) {
-				Log.i("AcceptBlinkMessage", "Toss to OtherDevice");
-				sendBlinkMessageTo(blinkMessage, BlinkDevice.load(blinkMessage.getDestinationAddress()));
+			BlinkDevice nextHop = obtainNextHop(blinkMessage.getDestinationAddress());
+			// 받은 디바이스에게 되돌려 보내는 경로는 라우팅 테이블이 갱신되는 중이므로 사용하지 않는다.
+			if (nextHop != null && !nextHop.equals(fromDevice)) {
+				Log.i("AcceptBlinkMessage", "Toss to OtherDevice : " + nextHop.getAddress());
+				SERVICE_KEEPER.sendMessageToDevice(nextHop, blinkMessage);
+				
+				if (SERVICE_KEEPER.accountForwarding(blinkMessage))
+					adviseShortcut(blinkMessage);
 			//	Toast.makeText(SERVICE_KEEPER, text, duration)
 
 			} else {
@@ -294,6 +166,7 @@ public class MessageProcessor {
 
 				String failMessage = "";
 				builder.setMessage(failMessage);
+				builder.setCode(blinkMessage.getCode());
 
 				BlinkMessage failBlinkMessage = builder.build();
 				sendBlinkMessageTo(failBlinkMessage,
@@ -301,6 +174,368 @@ public class MessageProcessor {
 
 			}
 		}
+		return false;
+	}
+
+	/**
+	 * 메세지 Type별 Handler와 실행될 Lane을 등록한다.
+	 * <br>DB를 변경하는 동기화 메세지는 순서대로 처리되도록 {@link MessageDispatcher#LANE_SYNC}에서,
+	 * 조회와 어플리케이션 Callback은 {@link MessageDispatcher#LANE_QUERY}에서 처리한다.
+	 */
+	private void registerHandlers() {
+		// *** 제어 메세지 *** //
+		DISPATCHER.register(IBlinkMessagable.TYPE_ACCEPT_CONNECTION, MessageDispatcher.LANE_INLINE,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						BlinkDevice device = BlinkDevice.load(message.getSourceAddress());
+						// 연결 성립시, 상대의 디바이스로 자신의  BlinkDevice를 넣어 Identity 동기화 요청 메세지를 전송한다.
+						SERVICE_KEEPER.transferSystemSync(device, IBlinkMessagable.TYPE_REQUEST_IDENTITY_SYNC);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_IDENTITY_SYNC, MessageDispatcher.LANE_INLINE,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						BlinkDevice device = message.getMessage(BlinkDevice.class);
+						SERVICE_KEEPER.handleIdentitySync(device);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_ROUTE_UPDATE, MessageDispatcher.LANE_INLINE,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						SERVICE_KEEPER.handleRouteUpdate(fromDevice, message.getMessage());
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_SHORTCUT_LINK, MessageDispatcher.LANE_INLINE,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						Log.i("acceptBlinkMessage", "TYPE_REQUEST_SHORTCUT_LINK");
+						SERVICE_KEEPER.handleShortcutAdvice(message.getMessage(BlinkDevice.class));
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_RECONCILE_SUCCESS, MessageDispatcher.LANE_INLINE,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						Log.i("acceptBlinkMessage", "TYPE_RESPONSE_RECONCILE_SUCCESS");
+						RECONCILER.handleSuccess(message);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_RECONCILE_FAIL, MessageDispatcher.LANE_INLINE,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						Log.i("acceptBlinkMessage", "TYPE_RESPONSE_RECONCILE_FAIL");
+						RECONCILER.handleFailure(message);
+					}
+				});
+
+		// *** 조회, 함수 실행, Callback *** //
+		// 함수 실행은 Intent를 보내고 응답을 송신 대기열에 넣을 뿐이므로, 조회를 기다리지 않도록 바로 처리한다.
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_FUNCTION, MessageDispatcher.LANE_INLINE,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						handleFunctionRequest(message);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA, MessageDispatcher.LANE_QUERY,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						handleMeasurementDataRequest(message);
+					}
+				});
+		MessageDispatcher.MessageHandler callbackHandler = new MessageDispatcher.MessageHandler() {
+			@Override
+			public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+				handleCallbackResponse(message);
+			}
+		};
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_FUNCTION_SUCCESS, MessageDispatcher.LANE_QUERY, callbackHandler);
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS, MessageDispatcher.LANE_QUERY, callbackHandler);
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_FUNCTION_FAIL, MessageDispatcher.LANE_QUERY, callbackHandler);
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_FAIL, MessageDispatcher.LANE_QUERY, callbackHandler);
+
+		// *** DB 동기화 *** //
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_NETWORK_SYNC, MessageDispatcher.LANE_SYNC,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						handleNetworkSync(message);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_BlinkAppInfo_SYNC, MessageDispatcher.LANE_SYNC,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						handleBlinkAppInfoSyncRequest(message);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_BlinkAppInfo_SYNC_SUCCESS, MessageDispatcher.LANE_SYNC,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						handleBlinkAppInfoSyncResponse(message);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC, MessageDispatcher.LANE_SYNC,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						handleMeasurementDataSyncRequest(message);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_SUCCESS, MessageDispatcher.LANE_SYNC,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						handleMeasurementDataSyncResponse(message);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_FAIL, MessageDispatcher.LANE_SYNC,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						Log.i("acceptBlinkMessage",
+								"TYPE_RESPONSE_MEASUREMENTDATA_SYNC_FAIL");
+						OPERATOR_CONTEXT.mSyncScheduler.notifySyncFailed(
+								BlinkDevice.load(message.getSourceAddress()));
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_RECONCILE_DIGEST, MessageDispatcher.LANE_SYNC,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						Log.i("acceptBlinkMessage", "TYPE_REQUEST_RECONCILE_DIGEST");
+						RECONCILER.handleDigest(message);
+					}
+				});
+		DISPATCHER.register(IBlinkMessagable.TYPE_REQUEST_RECONCILE_DATA, MessageDispatcher.LANE_SYNC,
+				new MessageDispatcher.MessageHandler() {
+					@Override
+					public void handleMessage(BlinkMessage message, BlinkDevice fromDevice) {
+						Log.i("acceptBlinkMessage", "TYPE_REQUEST_RECONCILE_DATA");
+						RECONCILER.handleData(message);
+					}
+				});
+	}
+
+	/**
+	 * 받은 요청 메세지에 대한 응답 메세지의 목적지와 Code를 설정한 Builder를 반환한다.
+	 * 
+	 * @param blinkMessage
+	 * @return
+	 */
+	private BlinkMessage.Builder obtainResponseBuilder(BlinkMessage blinkMessage) {
+		// Reponse하기 위한 BlinkMessage의 정보를 세팅한다.
+		BlinkMessage.Builder builder_success = new Builder();
+		builder_success.setDestinationDevice(BlinkDevice.load(blinkMessage
+				.getSourceAddress()));// 이 시점에서 못불러오는 경우는 없는가??
+		builder_success.setDestinationApplication(blinkMessage
+				.getSourceApplication());
+		builder_success.setCode(blinkMessage.getCode());
+		return builder_success;
+	}
+
+	private void handleBlinkAppInfoSyncRequest(BlinkMessage blinkMessage) {
+		// 동기화 시작할때 Sync 플래그를 true로, 끝날 때 false로 설정하여 추가 동기화를 막는다.
+		Log.i("Blink", "TYPE_REQUEST_BlinkAppInfo_SYNC");
+		setSynchronizing(true);
+		BlinkMessage.Builder builder_success = obtainResponseBuilder(blinkMessage);
+		builder_success
+				.setType(IBlinkMessagable.TYPE_RESPONSE_BlinkAppInfo_SYNC_SUCCESS);
+		SyncDatabaseManager syncDatabaseManager = new SyncDatabaseManager(
+				OPERATOR_CONTEXT);
+		String jsonRequestMessage = blinkMessage.getMessage();
+		Type BlinkAppInfoType = new TypeToken<ArrayList<BlinkAppInfo>>() {
+		}.getType();
+		ArrayList<BlinkAppInfo> ret = JsonManager.gson.fromJson(
+				jsonRequestMessage, BlinkAppInfoType);
+		if (BlinkDevice.HOST.getAddress()
+				.contentEquals(
+						SERVICE_KEEPER.obtainCurrentCenterDevice()
+								.getAddress())) {
+			syncDatabaseManager.center.syncBlinkDatabase(ret);
+		} else {
+			syncDatabaseManager.wearable.syncBlinkDatabase(ret);
+		}
+
+		ArrayList<BlinkAppInfo> mergedBlinkAppInfoList = new ArrayList<BlinkAppInfo>();
+		mergedBlinkAppInfoList = syncDatabaseManager.obtainBlinkApp();
+		String jsonResponseMessage = JsonManager
+				.obtainJsonBlinkAppInfo(mergedBlinkAppInfoList);
+		builder_success.setMessage(jsonResponseMessage);
+		BlinkMessage successBlinkMessage = builder_success.build();
+		sendBroadCast(successBlinkMessage);
+
+		setSynchronizing(false);
+	}
+
+	private void handleMeasurementDataSyncRequest(BlinkMessage blinkMessage) {
+		// 동기화 시작할때 Sync 플래그를 true로, 끝날 때 false로 설정하여 추가 동기화를 막는다.
+		Log.i("acceptBlinkMessage", "TYPE_REQUEST_MEASUREMENTDATA_SYNC");
+		BlinkMessage.Builder builder_success = obtainResponseBuilder(blinkMessage);
+		builder_success
+				.setType(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_SUCCESS);
+
+		String jsonRequestMessage = blinkMessage.getMessage();
+		Type MeasurementDataType = new TypeToken<ArrayList<MeasurementData>>() {
+		}.getType();
+		ArrayList<MeasurementData> ret = JsonManager.gson.fromJson(
+				jsonRequestMessage, MeasurementDataType);
+
+		if (BlinkDevice.HOST.getAddress()
+				.contentEquals(
+						SERVICE_KEEPER.obtainCurrentCenterDevice()
+								.getAddress())) {
+			// DB 등록은 SyncCoordinator의 Writer Thread에서 처리하고, 등록이 끝나면 응답한다.
+			final BlinkDevice sourceDevice = BlinkDevice
+					.load(blinkMessage.getSourceAddress());
+			final BlinkMessage.Builder builder_response = builder_success;
+			SyncCoordinator.getInstance(OPERATOR_CONTEXT).submit(
+					sourceDevice, ret,
+					new SyncCoordinator.CommitCallback() {
+						@Override
+						public void onCommitted(int maxMeasurementDataId) {
+							builder_response.setMessage(""
+									+ maxMeasurementDataId);
+							sendBlinkMessageTo(builder_response.build(),
+									sourceDevice);
+						}
+
+						@Override
+						public void onFailed() {
+							builder_response
+									.setType(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_FAIL);
+							builder_response.setMessage("");
+							sendBlinkMessageTo(builder_response.build(),
+									sourceDevice);
+						}
+					});
+		} else {
+			builder_success.setMessage("");
+			BlinkMessage successBlinkMessage = builder_success.build();
+			sendBlinkMessageTo(successBlinkMessage,
+					BlinkDevice.load(blinkMessage.getSourceAddress()));
+		}
+	}
+
+	private void handleFunctionRequest(BlinkMessage blinkMessage) {
+		Log.i("acceptBlinkMessage", "TYPE_REQUEST_FUNCTION");
+		// call back
+		Function function = JsonManager.obtainJsonFunction(blinkMessage
+				.getMessage());
+		startFunction(function);
+		BlinkMessage.Builder builder_success = obtainResponseBuilder(blinkMessage);
+		builder_success
+				.setType(IBlinkMessagable.TYPE_RESPONSE_FUNCTION_SUCCESS);
+		builder_success.setMessage("");
+		BlinkMessage successBlinkMessage = builder_success.build();
+		sendBlinkMessageTo(successBlinkMessage,
+				BlinkDevice.load(blinkMessage.getSourceAddress()));
+	}
+
+	private void handleMeasurementDataRequest(BlinkMessage blinkMessage) {
+		Log.i("acceptBlinkMessage", "TYPE_REQUEST_MEASUREMENTDATA");
+		String message = OPERATOR_CONTEXT
+				.receiveMessageFromProcessor(blinkMessage.getMessage());
+		BlinkMessage.Builder builder_success = obtainResponseBuilder(blinkMessage);
+		builder_success.setMessage(message);
+		builder_success
+				.setType(IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS);
+		BlinkMessage successBlinkMessage = builder_success.build();
+		sendBlinkMessageTo(successBlinkMessage,
+				BlinkDevice.load(blinkMessage.getSourceAddress()));
+	}
+
+	private void handleNetworkSync(BlinkMessage blinkMessage) {
+		JsonArray mJsonArray = new JsonParser().parse(
+				blinkMessage.getMessage()).getAsJsonArray();
+
+		HashSet<BlinkDevice> mHashSet = new HashSet<BlinkDevice>();
+		Gson gson = JsonManager.gson;
+		for (JsonElement element : mJsonArray)
+			mHashSet.add(gson.fromJson(element, BlinkDevice.class));
+
+		BlinkDevice device = BlinkDevice.load(blinkMessage
+				.getSourceAddress());
+		ServiceKeeper.getInstance(OPERATOR_CONTEXT).handleNetworkSync(
+				mHashSet, device.getGroupID());
+
+		ServiceKeeper
+				.getInstance(OPERATOR_CONTEXT)
+				.transferSystemSync(device,
+						IBlinkMessagable.TYPE_REQUEST_BlinkAppInfo_SYNC);
+	}
+
+	private void handleBlinkAppInfoSyncResponse(BlinkMessage blinkMessage) {
+		// Sync 플래그를 false로 변경하여 동기화 요청을 할 수 있도록 한다.
+		Log.i("Blink", "TYPE_RESPONSE_BlinkAppInfo_SYNC_SUCCESS");
+		SyncDatabaseManager syncDatabaseManager = new SyncDatabaseManager(
+				OPERATOR_CONTEXT);
+		String jsonResponseMessage = blinkMessage.getMessage();
+		ArrayList<BlinkAppInfo> mergedBlinkAppInfo = JsonManager
+				.obtainJsonBlinkAppInfo(jsonResponseMessage);
+		if (BlinkDevice.HOST.getAddress()
+				.contentEquals(
+						SERVICE_KEEPER.obtainCurrentCenterDevice()
+								.getAddress())) {
+			syncDatabaseManager.center
+					.syncBlinkDatabase(mergedBlinkAppInfo);
+		} else {
+			syncDatabaseManager.wearable
+					.syncBlinkDatabase(mergedBlinkAppInfo);
+			// Measurement 정보가 동기화되었으므로, 측정 데이터의 누락 여부를 확인한다.
+			RECONCILER.startReconcile(SERVICE_KEEPER
+					.obtainCurrentCenterDevice());
+		}
+		setSynchronizing(false);
+	}
+
+	private void handleMeasurementDataSyncResponse(BlinkMessage blinkMessage) {
+		// Sync 플래그를 false로 변경하여 동기화 요청을 할 수 있도록 한다.
+		Log.i("acceptBlinkMessage",
+				"TYPE_RESPONSE_MEASUREMENTDATA_SYNC_SUCCESS");
+		SyncDatabaseManager syncDatabaseManager = new SyncDatabaseManager(
+				OPERATOR_CONTEXT);
+		syncDatabaseManager.wearable.syncMeasurementDatabase(
+				SERVICE_KEEPER.obtainCurrentCenterDevice(),
+				Integer.parseInt(blinkMessage.getMessage()));
+		setSynchronizing(false);
+		OPERATOR_CONTEXT.mSyncScheduler.notifySyncCompleted(
+				BlinkDevice.load(blinkMessage.getSourceAddress()));
+	}
+
+	/**
+	 * 이 디바이스의 어플리케이션이 보낸 요청의 결과를 Callback으로 전달한다.
+	 * 
+	 * @param blinkMessage
+	 */
+	private void handleCallbackResponse(BlinkMessage blinkMessage) {
+		int blinkMessage_type = blinkMessage.getType();
+		if (blinkMessage_type == IBlinkMessagable.TYPE_RESPONSE_FUNCTION_SUCCESS) {
+			Log.i("acceptBlinkMessage", "TYPE_RESPONSE_FUNCTION_SUCCESS");
+			SERVICE_KEEPER.obtainBinder().callbackData(
+					blinkMessage.getCode(), blinkMessage.getMessage(),
+					true, blinkMessage.getDestinationApplication());
+		} else if (blinkMessage_type == IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS) {
+			Log.i("acceptBlinkMessage",
+					"TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS");
+			if (SERVICE_KEEPER.obtainBinder() == null)
+				Log.i("Blink", "binder nul1!!");
+			SERVICE_KEEPER.obtainBinder().callbackData(
+					blinkMessage.getCode(), blinkMessage.getMessage(),
+					true, blinkMessage.getDestinationApplication());
+		} else {
+			// 중간 디바이스가 요청을 전달하지 못했으므로, 응답을 기다리지 않고 실패로 알린다.
+			Log.i("acceptBlinkMessage", "TYPE_RESPONSE_FAIL : " + blinkMessage_type);
+			SERVICE_KEEPER.obtainBinder().callbackFailure(
+					blinkMessage.getCode(), CallbackData.ERROR_CONNECT_FAIL);
+		}
 	}
 
 	/**
@@ -323,8 +558,13 @@ public class MessageProcessor {
 		// if(isSynchronizing())return;
 		// }
 
-		BlinkDevice centerDevice = null;
-		if (SERVICE_KEEPER.obtainCurrentCenterDevice() != BlinkDevice.HOST) {
+		BlinkDevice nextHop = obtainNextHop(message.getDestinationAddress());
+		if (nextHop != null) {
+			// 라우팅 테이블이 알고 있는 최단 경로로 보낸다.
+			toDevice = nextHop;
+			
+		} else if (SERVICE_KEEPER.obtainCurrentCenterDevice() != BlinkDevice.HOST) {
+			BlinkDevice centerDevice = null;
 			Log.d("sendBlinkMessageTo", "i am not center");
 			centerDevice = SERVICE_KEEPER.obtainCurrentCenterDevice();
 			// Hop : Main, Node : Main
@@ -354,6 +594,46 @@ public class MessageProcessor {
 
 	}
 
+	/**
+	 * 목적지로 메세지를 전달할, 직접 연결된 디바이스를 반환한다.
+	 * 목적지와 직접 연결되어 있으면 목적지를, 아니면 라우팅 테이블의 다음 Hop을 반환한다.
+	 * 
+	 * @param destinationAddress
+	 * @return 경로가 없으면 null.
+	 */
+	private BlinkDevice obtainNextHop(String destinationAddress) {
+		if (destinationAddress == null)
+			return null;
+		
+		BlinkDevice destination = BlinkDevice.load(destinationAddress);
+		if (destination != null && destination.isConnected())
+			return destination;
+		
+		return SERVICE_KEEPER.obtainNextHopDevice(destinationAddress);
+	}
+
+	/**
+	 * 메세지를 자주 중계하는 디바이스 쌍 중, 메세지를 보낸 디바이스에게 목적지와 직접 연결하도록 요청한다.
+	 * 
+	 * @param forwarded 중계한 메세지
+	 */
+	private void adviseShortcut(BlinkMessage forwarded) {
+		BlinkDevice source = BlinkDevice.load(forwarded.getSourceAddress());
+		BlinkDevice destination = BlinkDevice.load(forwarded.getDestinationAddress());
+		if (source == null || destination == null)
+			return;
+		
+		Log.i("adviseShortcut", source.getAddress() + " >> " + destination.getAddress());
+		BlinkMessage advice = new BlinkMessage.Builder()
+									.setSourceDevice(BlinkDevice.HOST)
+									.setDestinationDevice(source)
+									.setType(IBlinkMessagable.TYPE_REQUEST_SHORTCUT_LINK)
+									.setMessage(destination)
+									.build();
+		
+		sendBlinkMessageTo(advice, source);
+	}
+
 	/**
 	 * 함수를 실행시켜주는 매소드 바인더나 MessageProcessor로부터 호출된다.
 	 * 
@@ -370,6 +650,34 @@ public class MessageProcessor {
 			OPERATOR_CONTEXT.sendBroadcast(new Intent(function.Action));
 	}
 
+	/**
+	 * 링크에서 전송하지 못한 메세지를 처리한다.
+	 * <br>이 디바이스의 어플리케이션이 보낸 요청이면 실패 콜백을 호출하고,
+	 * 측정 데이터 동기화 요청이면 동기화를 다시 예약한다. 
+	 * 다른 디바이스의 메세지를 중계하던 경우는 무시한다.
+	 * 
+	 * @param message
+	 * @param toDevice 전송하려던 디바이스
+	 */
+	void handleSendFailure(BlinkMessage message, BlinkDevice toDevice) {
+		switch (message.getType()) {
+		case IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC:
+			if (OPERATOR_CONTEXT.mSyncScheduler != null)
+				OPERATOR_CONTEXT.mSyncScheduler.notifySyncFailed(toDevice);
+			break;
+			
+		case IBlinkMessagable.TYPE_REQUEST_FUNCTION:
+		case IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA:
+			if (!BlinkDevice.HOST.getAddress().equals(message.getSourceAddress()))
+				break;
+			
+			BlinkSupportBinder mBinder = SERVICE_KEEPER.obtainBinder();
+			if (mBinder != null)
+				mBinder.callbackFailure(message.getCode(), CallbackData.ERROR_SEND_FAIL);
+			break;
+		}
+	}
+
 	public boolean isSynchronizing() {
 		return Synchronizing;
 	}
@@ -381,18 +689,22 @@ public class MessageProcessor {
 
 	/**
 	 * 현재 디바이스에서 연결된 모든 디바이스들에게 blinkMessage를 broadcast 해준다.
+	 * 메세지는 한 번만 변환되어 모든 링크에 전달된다.
 	 * 
-	 * @param blinkMessage
+	 * @param blinkMessage 전송한 후에 변경해서는 안 된다.
 	 * @author Ho.Kwon
 	 */
 	public void sendBroadCast(BlinkMessage blinkMessage) {
+		BlinkDevice[] connectedDevices = SERVICE_KEEPER.obtainConnectedDevices();
+		BlinkDevice centerDevice = SERVICE_KEEPER.obtainCurrentCenterDevice();
 
-		for (int i = 0; i < SERVICE_KEEPER.obtainConnectedDevices().length; i++) {
-			BlinkDevice toDevice = SERVICE_KEEPER.obtainConnectedDevices()[i];
-
-			if (toDevice != SERVICE_KEEPER.obtainCurrentCenterDevice()) {
-				sendBlinkMessageTo(blinkMessage, toDevice);
-			}
+		ArrayList<BlinkDevice> targets = new ArrayList<BlinkDevice>(connectedDevices.length);
+		for (BlinkDevice toDevice : connectedDevices) {
+			if (toDevice != centerDevice)
+				targets.add(toDevice);
 		}
+
+		SERVICE_KEEPER.sendMessageToDevices(
+				targets.toArray(new BlinkDevice[targets.size()]), blinkMessage);
 	}
 }
@@ -6,7 +6,6 @@ import java.util.HashMap;
 
 import kr.poturns.blink.internal.DeviceAnalyzer.Identity;
 import kr.poturns.blink.internal.comm.BlinkDevice;
-import android.bluetooth.BluetoothGatt;
 
 /**
  * Blink Network를 나타내는 클래스.<br>
@@ -84,7 +83,7 @@ class NetworkMap {
 	 * @param obj
 	 */
 	void addConnection(BlinkDevice device, Object obj) {
-		if (obj instanceof ClassicLinkThread || obj instanceof BluetoothGatt) {
+		if (obj instanceof ILinkTransport) {
 			CONNECTED_MAP.put(device, obj);
 
 			if (LINKED_LIST.add(device))
@@ -109,13 +108,8 @@ class NetworkMap {
 	 */
 	void disconnectAllConnection() {
 		for (Object obj : CONNECTED_MAP.values()) {
-			if (obj != null) {
-				if (obj instanceof BluetoothGatt)
-					((BluetoothGatt) obj).close();
-
-				else if (obj instanceof ClassicLinkThread)
-					((ClassicLinkThread) obj).destroyThread();
-			}
+			if (obj instanceof ILinkTransport)
+				((ILinkTransport) obj).close();
 		}
 	}
 
@@ -0,0 +1,144 @@
+package kr.poturns.blink.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 링크로 전송되는 메세지 내용을 Deflate로 압축/해제하는 모듈.
+ *
+ * <p>Deflater/Inflater는 생성할 때 Native 메모리를 할당하므로, 매번 생성하지 않고 Pool에서 재사용한다.
+ */
+final class PayloadCompressor {
+
+	// *** STATIC DECLARATION *** //
+	/**
+	 * Pool에 보관하는 Deflater/Inflater의 최대 개수.
+	 */
+	private static final int POOL_SIZE = 4;
+
+	private static final int BUFFER_SIZE = 1024;
+
+	private static final ArrayBlockingQueue<Deflater> DEFLATER_POOL = new ArrayBlockingQueue<Deflater>(POOL_SIZE);
+	private static final ArrayBlockingQueue<Inflater> INFLATER_POOL = new ArrayBlockingQueue<Inflater>(POOL_SIZE);
+
+	private PayloadCompressor() {
+	}
+
+	/**
+	 * 데이터를 압축한다.
+	 *
+	 * @param data
+	 * @return 압축된 데이터
+	 */
+	static byte[] deflate(byte[] data) {
+		Deflater mDeflater = DEFLATER_POOL.poll();
+		if (mDeflater == null)
+			mDeflater = new Deflater(Deflater.BEST_SPEED, true);
+
+		byte[] buffer = BufferPool.obtain(BUFFER_SIZE);
+		try {
+			mDeflater.setInput(data);
+			mDeflater.finish();
+
+			ByteArrayOutputStream mOutput = new ByteArrayOutputStream(data.length / 2 + 16);
+			while (!mDeflater.finished()) {
+				int length = mDeflater.deflate(buffer, 0, BUFFER_SIZE);
+				mOutput.write(buffer, 0, length);
+			}
+			return mOutput.toByteArray();
+
+		} finally {
+			BufferPool.release(buffer);
+			mDeflater.reset();
+			if (!DEFLATER_POOL.offer(mDeflater))
+				mDeflater.end();
+		}
+	}
+
+	/**
+	 * 배열의 일부를 압축하여 주어진 배열에 쓴다. 중간 배열을 만들지 않는다.
+	 *
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @param out
+	 * @param outOffset
+	 * @param outLimit 압축 결과의 최대 크기
+	 * @return 압축된 크기. 압축 결과가 outLimit보다 크면 -1.
+	 */
+	static int deflate(byte[] data, int offset, int length, byte[] out, int outOffset, int outLimit) {
+		Deflater mDeflater = DEFLATER_POOL.poll();
+		if (mDeflater == null)
+			mDeflater = new Deflater(Deflater.BEST_SPEED, true);
+
+		try {
+			mDeflater.setInput(data, offset, length);
+			mDeflater.finish();
+
+			int written = 0;
+			while (!mDeflater.finished()) {
+				if (written >= outLimit)
+					return -1;
+				written += mDeflater.deflate(out, outOffset + written, outLimit - written);
+			}
+			return written;
+
+		} finally {
+			mDeflater.reset();
+			if (!DEFLATER_POOL.offer(mDeflater))
+				mDeflater.end();
+		}
+	}
+
+	/**
+	 * 압축된 데이터를 해제한다.
+	 *
+	 * @param data
+	 * @param originalLength 압축하기 전 데이터의 크기
+	 * @return 해제된 데이터. 데이터가 손상되었을 경우 null.
+	 */
+	static byte[] inflate(byte[] data, int originalLength) {
+		byte[] result = new byte[originalLength];
+		return inflate(data, 0, data.length, result, originalLength)? result : null;
+	}
+
+	/**
+	 * 배열의 일부에 담긴 압축된 데이터를 주어진 배열의 앞부분에 해제한다.
+	 *
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @param out originalLength 이상의 배열
+	 * @param originalLength 압축하기 전 데이터의 크기
+	 * @return 데이터가 손상되었을 경우 false.
+	 */
+	static boolean inflate(byte[] data, int offset, int length, byte[] out, int originalLength) {
+		Inflater mInflater = INFLATER_POOL.poll();
+		if (mInflater == null)
+			mInflater = new Inflater(true);
+
+		try {
+			mInflater.setInput(data, offset, length);
+
+			int position = 0;
+			while (position < originalLength && !mInflater.finished()) {
+				int inflated = mInflater.inflate(out, position, originalLength - position);
+				if (inflated == 0 && (mInflater.needsInput() || mInflater.needsDictionary()))
+					break;
+				position += inflated;
+			}
+			return position == originalLength;
+
+		} catch (DataFormatException e) {
+			return false;
+
+		} finally {
+			mInflater.reset();
+			if (!INFLATER_POOL.offer(mInflater))
+				mInflater.end();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package kr.poturns.blink.internal;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import android.util.Log;
+
+/**
+ * 예기치 않게 끊어진 링크를 다시 연결하는 클래스.
+ *
+ * <p>{@link BlinkDevice#isAutoConnect()}가 설정된 디바이스만 대상으로 한다.
+ * n번째 시도는 {@link #BASE_DELAY} * 2^n 에서 {@link #MAX_DELAY}를 넘지 않는 지연 시간의
+ * 절반 이상, 전체 이하의 임의의 시간 뒤에 수행한다.
+ * 여러 디바이스가 같은 Center를 잃었을 때 동시에 연결을 시도하지 않도록 지연 시간을 흩뜨린다.
+ *
+ * <p>연결이 성립되거나({@link #onConnected(BlinkDevice)}), 사용자가 연결을 해제하거나({@link #cancel(BlinkDevice)}),
+ * {@link #MAX_ATTEMPTS}번 실패하면 중단한다.
+ * Bluetooth Classic 연결은 완료될 때까지 대기하므로, 하나의 스레드에서 차례대로 시도한다.
+ *
+ * <p>GATT 링크는 {@link android.bluetooth.BluetoothDevice#connectGatt}의 autoConnect로 다시 연결되므로 다루지 않는다.
+ * Classic과 LE를 모두 지원하는 디바이스도 있으므로, 디바이스의 종류가 아닌 끊어진 링크의 종류로 판단한다.
+ */
+class ReconnectManager {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "ReconnectManager";
+
+	/**
+	 * 첫 시도의 지연 시간 (ms)
+	 */
+	static final long BASE_DELAY = 1000;
+	/**
+	 * 지연 시간의 상한 (ms)
+	 */
+	static final long MAX_DELAY = 60000;
+	/**
+	 * 이만큼 실패하면 다시 연결하지 않는다.
+	 */
+	static final int MAX_ATTEMPTS = 10;
+
+	/**
+	 * 디바이스에 연결을 요청한다. 연결이 성립될 때까지 반환하지 않을 수 있다.
+	 */
+	interface Connector {
+		void connect(BlinkDevice device);
+	}
+
+	private static class Attempt {
+		final BlinkDevice Device;
+		int Count;
+
+		Attempt(BlinkDevice device) {
+			Device = device;
+		}
+	}
+
+	/**
+	 * n번째 시도의 지연 시간을 반환한다.
+	 *
+	 * @param attempt 0부터 시작
+	 * @param random
+	 * @return
+	 */
+	static long obtainDelay(int attempt, Random random) {
+		long ceiling = BASE_DELAY << Math.min(attempt, 16);
+		if (ceiling > MAX_DELAY)
+			ceiling = MAX_DELAY;
+
+		long half = ceiling / 2;
+		return half + (long) (random.nextDouble() * (ceiling - half));
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final Connector CONNECTOR;
+	private final HashMap<String, Attempt> ATTEMPT_MAP;
+	private final Random JITTER_RANDOM;
+	private ScheduledThreadPoolExecutor mExecutor;
+
+	ReconnectManager(Connector connector) {
+		CONNECTOR = connector;
+		ATTEMPT_MAP = new HashMap<String, Attempt>();
+		JITTER_RANDOM = new Random();
+	}
+
+	/**
+	 * 끊어진 디바이스에 다시 연결하도록 예약한다. 이미 예약되어 있으면 무시한다.
+	 * <br>끊어진 링크가 Bluetooth Classic 링크일 때만 예약한다.
+	 *
+	 * @param device
+	 * @param lostLink 끊어진 링크
+	 * @return 예약된 경우 true.
+	 */
+	synchronized boolean schedule(BlinkDevice device, ILinkTransport lostLink) {
+		if (device == null || !device.isAutoConnect() || !(lostLink instanceof ClassicLinkThread)
+				|| ATTEMPT_MAP.containsKey(device.getAddress()))
+			return false;
+
+		Attempt attempt = new Attempt(device);
+		ATTEMPT_MAP.put(device.getAddress(), attempt);
+		scheduleNext(attempt);
+		return true;
+	}
+
+	/**
+	 * 연결이 성립되었으므로 해당 디바이스의 시도를 중단한다.
+	 *
+	 * @param device
+	 */
+	synchronized void onConnected(BlinkDevice device) {
+		if (device != null && ATTEMPT_MAP.remove(device.getAddress()) != null)
+			Log.d(TAG, "Reconnected : " + device.getAddress());
+	}
+
+	/**
+	 * 해당 디바이스의 시도를 취소한다. 사용자가 직접 연결을 해제한 경우에 호출한다.
+	 *
+	 * @param device
+	 */
+	synchronized void cancel(BlinkDevice device) {
+		if (device != null)
+			ATTEMPT_MAP.remove(device.getAddress());
+	}
+
+	/**
+	 * 모든 시도를 취소하고 스레드를 종료한다.
+	 */
+	synchronized void cancelAll() {
+		ATTEMPT_MAP.clear();
+		if (mExecutor != null) {
+			mExecutor.shutdownNow();
+			mExecutor = null;
+		}
+	}
+
+	private void scheduleNext(final Attempt attempt) {
+		long delay = obtainDelay(attempt.Count, JITTER_RANDOM);
+		Log.d(TAG, "Schedule : " + attempt.Device.getAddress() + " #" + (attempt.Count + 1) + " in " + delay + "ms");
+
+		obtainExecutor().schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (!isPending(attempt))
+					return;
+
+				attempt.Count++;
+				try {
+					CONNECTOR.connect(attempt.Device);
+
+				} catch (RuntimeException e) {
+					Log.w(TAG, "Connect error : " + attempt.Device.getAddress(), e);
+				}
+
+				synchronized (ReconnectManager.this) {
+					// 연결되었으면 onConnected()에서 이미 제거되었다.
+					if (ATTEMPT_MAP.get(attempt.Device.getAddress()) != attempt)
+						return;
+
+					if (attempt.Count >= MAX_ATTEMPTS || !attempt.Device.isAutoConnect()) {
+						Log.w(TAG, "Give up : " + attempt.Device.getAddress() + " after " + attempt.Count + " attempts");
+						ATTEMPT_MAP.remove(attempt.Device.getAddress());
+						return;
+					}
+					scheduleNext(attempt);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized boolean isPending(Attempt attempt) {
+		return ATTEMPT_MAP.get(attempt.Device.getAddress()) == attempt;
+	}
+
+	private ScheduledThreadPoolExecutor obtainExecutor() {
+		if (mExecutor == null) {
+			mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "BlinkReconnect");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return mExecutor;
+	}
+}
@@ -0,0 +1,263 @@
+package kr.poturns.blink.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * 목적지 디바이스별로 다음 Hop, 거리(Metric), Sequence 번호를 관리하는 Distance-Vector 라우팅 테이블.
+ *
+ * <p>DSDV 방식을 따른다. 각 디바이스는 자신에 대한 경로를 짝수 Sequence로 광고하고,
+ * 경로는 더 큰 Sequence를 가진 광고, Sequence가 같으면 더 짧은 광고로 갱신된다.
+ * 이웃과의 연결이 끊어지면 그 이웃을 거치는 경로를 홀수 Sequence, {@link #METRIC_INFINITY}로 표시하여
+ * 다른 디바이스들에게 알린다. 목적지가 다시 광고하는 짝수 Sequence는 이를 덮어쓰므로 경로가 되살아난다.
+ *
+ * <p>Sequence와 거리가 같은 광고가 다른 이웃에게서 오면, 그 이웃과의 링크 RTT가 절반 이하일 때만 다음 Hop을 바꾼다.
+ *
+ * <p>광고는 변경된 경로만 전송하고, 새로 연결된 이웃에게만 전체 테이블을 보낸다.
+ * 모든 메소드는 동기화되어 있으므로 어느 스레드에서 호출해도 된다.
+ */
+class RoutingTable {
+
+	// *** CONSTANT DECLARATION *** //
+	/**
+	 * 도달할 수 없는 경로의 Metric. Blink 네트워크의 크기를 고려하여 작게 잡는다.
+	 */
+	static final int METRIC_INFINITY = 16;
+
+	/**
+	 * 광고되는 경로 하나.
+	 * NextHop은 각 디바이스에서만 의미가 있으므로 전송하지 않는다.
+	 */
+	static class Route {
+		String Destination;
+		int Metric;
+		long Sequence;
+		transient String NextHop;
+
+		Route(String destination, String nextHop, int metric, long sequence) {
+			Destination = destination;
+			NextHop = nextHop;
+			Metric = metric;
+			Sequence = sequence;
+		}
+
+		boolean isReachable() {
+			return Metric < METRIC_INFINITY;
+		}
+
+		Route copy() {
+			return new Route(Destination, NextHop, Metric, Sequence);
+		}
+
+		@Override
+		public String toString() {
+			return Destination + " via " + NextHop + " (" + Metric + ", #" + Sequence + ")";
+		}
+	}
+
+
+
+	/**
+	 * 직접 연결된 이웃과의 링크 RTT를 제공한다.
+	 */
+	interface LinkCost {
+		/**
+		 * @param neighbor
+		 * @return 측정하지 못한 경우 음수.
+		 */
+		int obtainRttMillis(String neighbor);
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final HashMap<String, Route> ROUTE_MAP;
+	private final LinkCost LINK_COST;
+
+	/** 이 디바이스가 자신에 대해 광고하는 Sequence. 항상 짝수이다. */
+	private long mSequence;
+
+	RoutingTable() {
+		this(null);
+	}
+
+	RoutingTable(LinkCost cost) {
+		ROUTE_MAP = new HashMap<String, Route>();
+		LINK_COST = cost;
+	}
+
+	/**
+	 * 목적지로 가는 다음 Hop의 주소를 반환한다.
+	 *
+	 * @param destination
+	 * @return 도달할 수 없는 목적지이면 null.
+	 */
+	synchronized String obtainNextHop(String destination) {
+		Route route = ROUTE_MAP.get(destination);
+		if (route == null || !route.isReachable())
+			return null;
+		return route.NextHop;
+	}
+
+	/**
+	 * 이웃과 직접 연결되었을 때 호출한다.
+	 *
+	 * @param hostAddress 이 디바이스의 주소
+	 * @param neighbor 연결된 이웃의 주소
+	 * @return 다른 이웃들에게 광고할 변경된 경로
+	 */
+	synchronized ArrayList<Route> onNeighborUp(String hostAddress, String neighbor) {
+		ArrayList<Route> changed = new ArrayList<Route>();
+
+		Route route = ROUTE_MAP.get(neighbor);
+		if (route == null) {
+			route = new Route(neighbor, neighbor, 1, 0);
+			ROUTE_MAP.put(neighbor, route);
+
+		} else if (route.Metric > 1 || !neighbor.equals(route.NextHop)) {
+			route.NextHop = neighbor;
+			route.Metric = 1;
+			// 끊어진 것으로 표시된 경로보다 새로운 것으로 취급한다.
+			if ((route.Sequence & 1) != 0)
+				route.Sequence++;
+
+		} else
+			return changed;
+
+		changed.add(route.copy());
+		changed.add(advanceHostRoute(hostAddress));
+		return changed;
+	}
+
+	/**
+	 * 이웃과의 연결이 끊어졌을 때 호출한다.
+	 * 그 이웃을 다음 Hop으로 사용하던 모든 경로를 도달할 수 없는 것으로 표시한다.
+	 *
+	 * @param hostAddress 이 디바이스의 주소
+	 * @param neighbor 연결이 끊어진 이웃의 주소
+	 * @return 남은 이웃들에게 광고할 변경된 경로
+	 */
+	synchronized ArrayList<Route> onNeighborDown(String hostAddress, String neighbor) {
+		ArrayList<Route> changed = new ArrayList<Route>();
+
+		for (Route route : ROUTE_MAP.values()) {
+			if (!neighbor.equals(route.NextHop) || !route.isReachable())
+				continue;
+
+			route.Metric = METRIC_INFINITY;
+			if ((route.Sequence & 1) == 0)
+				route.Sequence++;
+			changed.add(route.copy());
+		}
+
+		if (!changed.isEmpty())
+			changed.add(advanceHostRoute(hostAddress));
+		return changed;
+	}
+
+	/**
+	 * 이웃이 광고한 경로들을 테이블에 반영한다.
+	 *
+	 * @param hostAddress 이 디바이스의 주소
+	 * @param neighbor 광고를 보낸 이웃의 주소
+	 * @param advertised 이웃이 광고한 경로. Metric은 이웃으로부터의 거리이다.
+	 * @return 다른 이웃들에게 광고할 변경된 경로
+	 */
+	synchronized ArrayList<Route> update(String hostAddress, String neighbor, Iterable<Route> advertised) {
+		ArrayList<Route> changed = new ArrayList<Route>();
+
+		for (Route adv : advertised) {
+			if (adv == null || adv.Destination == null)
+				continue;
+
+			if (adv.Destination.equals(hostAddress)) {
+				// 자신이 끊어진 것으로 알려지면, 더 큰 Sequence로 다시 광고하여 경로를 되살린다.
+				if (adv.Sequence > mSequence) {
+					mSequence = adv.Sequence;
+					changed.add(advanceHostRoute(hostAddress));
+				}
+				continue;
+			}
+
+			int metric = Math.min(adv.Metric + 1, METRIC_INFINITY);
+			Route route = ROUTE_MAP.get(adv.Destination);
+
+			if (route == null) {
+				if (metric >= METRIC_INFINITY)
+					continue;
+
+				route = new Route(adv.Destination, neighbor, metric, adv.Sequence);
+				ROUTE_MAP.put(adv.Destination, route);
+				changed.add(route.copy());
+				continue;
+			}
+
+			boolean newer = adv.Sequence > route.Sequence;
+			boolean shorter = adv.Sequence == route.Sequence && metric < route.Metric;
+			// 현재 사용 중인 다음 Hop이 보낸 같은 Sequence의 광고는 거리가 늘어나도 따른다.
+			boolean sameHop = adv.Sequence == route.Sequence && neighbor.equals(route.NextHop)
+					&& metric != route.Metric;
+			boolean faster = adv.Sequence == route.Sequence && metric == route.Metric
+					&& route.isReachable() && isFaster(neighbor, route.NextHop);
+
+			if (newer || shorter || sameHop || faster) {
+				// 새 Sequence는 경로가 같더라도 전달해야, 끊어진 것으로 표시한 디바이스들이 경로를 되살릴 수 있다.
+				boolean modified = newer || metric != route.Metric || !neighbor.equals(route.NextHop);
+				route.NextHop = neighbor;
+				route.Metric = metric;
+				route.Sequence = adv.Sequence;
+
+				if (modified)
+					changed.add(route.copy());
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * 두 이웃의 링크 RTT를 비교한다. 측정값의 흔들림으로 경로가 오가지 않도록 절반 이하일 때만 빠르다고 본다.
+	 *
+	 * @param candidate
+	 * @param current
+	 * @return
+	 */
+	private boolean isFaster(String candidate, String current) {
+		if (LINK_COST == null || candidate.equals(current))
+			return false;
+
+		int candidateRtt = LINK_COST.obtainRttMillis(candidate);
+		int currentRtt = LINK_COST.obtainRttMillis(current);
+		return candidateRtt >= 0 && currentRtt >= 0 && candidateRtt * 2 <= currentRtt;
+	}
+
+	/**
+	 * 새로 연결된 이웃에게 보낼 전체 경로를 반환한다.
+	 *
+	 * @param hostAddress 이 디바이스의 주소
+	 * @return
+	 */
+	synchronized ArrayList<Route> obtainAdvertisement(String hostAddress) {
+		ArrayList<Route> routes = new ArrayList<Route>(ROUTE_MAP.size() + 1);
+		routes.add(new Route(hostAddress, hostAddress, 0, mSequence));
+		for (Route route : ROUTE_MAP.values())
+			routes.add(route.copy());
+		return routes;
+	}
+
+	/**
+	 * 모든 경로를 삭제한다.
+	 */
+	synchronized void clear() {
+		ROUTE_MAP.clear();
+	}
+
+	private Route advanceHostRoute(String hostAddress) {
+		mSequence = (mSequence | 1) + 1;
+		return new Route(hostAddress, hostAddress, 0, mSequence);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RoutingTable " + ROUTE_MAP.values();
+	}
+}
@@ -1,9 +1,12 @@
 
 package kr.poturns.blink.internal;
 
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.SyncDatabaseManager;
 import kr.poturns.blink.internal.DeviceAnalyzer.Identity;
 import kr.poturns.blink.internal.comm.BlinkDevice;
@@ -12,11 +15,11 @@ import kr.poturns.blink.internal.comm.BlinkSupportBinder;
 import kr.poturns.blink.internal.comm.IBlinkEventBroadcast;
 import kr.poturns.blink.internal.comm.IBlinkMessagable;
 import kr.poturns.blink.internal.comm.IInternalEventCallback;
-import android.bluetooth.BluetoothGatt;
 import android.content.Intent;
 import android.os.RemoteCallbackList;
 import android.util.Log;
 
+import com.google.gson.reflect.TypeToken;
 
 /**
  * 서비스가 관리하는 연결 리소스의 현황을 관리하고 접근할 수 있는 모듈.
@@ -28,6 +31,15 @@ import android.util.Log;
  */
 public class ServiceKeeper {
 
+	// *** CONSTANT DECLARATION *** //
+	/**
+	 * 직접 연결을 권고받았을 때, 이미 이만큼의 디바이스와 연결되어 있으면 연결하지 않는다.
+	 * Bluetooth Piconet의 Slave 수 제한을 고려한다.
+	 */
+	private static final int MAX_SHORTCUT_CONNECTION = 6;
+	
+	
+	
 	// *** STATIC DECLARATION *** //
 	/**
 	 * ServiceKeeper의 Singleton-인스턴스
@@ -72,6 +84,18 @@ public class ServiceKeeper {
 	 * Application의 패키지명으로 BinderCallback 객체를 관리한다.
 	 */
 	private final HashMap<String, RemoteCallbackList<IInternalEventCallback>> CALLBACK_MAP;
+	/**
+	 * 직접 연결되지 않은 디바이스에게 메세지를 전달할 다음 Hop을 관리한다.
+	 */
+	private final RoutingTable ROUTING_TABLE;
+	/**
+	 * 중계하는 메세지를 디바이스 쌍별로 집계한다.
+	 */
+	private final ShortcutAdvisor SHORTCUT_ADVISOR;
+	/**
+	 * 예기치 않게 끊어진 디바이스에 다시 연결한다.
+	 */
+	private final ReconnectManager RECONNECT_MANAGER;
 	
 	
 	/**
@@ -88,6 +112,27 @@ public class ServiceKeeper {
 		BLINK_NETWORK_MAP.put(null, new NetworkMap(null));
 		BINDER_MAP = null;
 		CALLBACK_MAP = new HashMap<String,RemoteCallbackList<IInternalEventCallback>>();
+		ROUTING_TABLE = new RoutingTable(new RoutingTable.LinkCost() {
+			@Override
+			public int obtainRttMillis(String neighbor) {
+				for (BlinkDevice device : obtainConnectedDevices()) {
+					if (device.getAddress().equals(neighbor)) {
+						LinkQuality mQuality = obtainLinkQuality(device);
+						return (mQuality == null)? LinkQuality.RTT_UNKNOWN : mQuality.obtainRttMillis();
+					}
+				}
+				return LinkQuality.RTT_UNKNOWN;
+			}
+		});
+		SHORTCUT_ADVISOR = new ShortcutAdvisor();
+		RECONNECT_MANAGER = new ReconnectManager(new ReconnectManager.Connector() {
+			@Override
+			public void connect(BlinkDevice device) {
+				BluetoothAssistant mAssistant = BluetoothAssistant.getInstance(InterDeviceManager.getInstance(KEEPER_CONTEXT));
+				if (mAssistant != null)
+					mAssistant.connectToDeviceFromClient(device);
+			}
+		});
 	}
 
 	/**
@@ -98,7 +143,9 @@ public class ServiceKeeper {
 	 */
 	void destroy() {
 		clearDiscovery();
-		
+		ROUTING_TABLE.clear();
+		SHORTCUT_ADVISOR.clear();
+		RECONNECT_MANAGER.cancelAll();
 	}
 	
 	/**
@@ -125,43 +172,28 @@ public class ServiceKeeper {
 	 * 연결이 성립되었을 경우, 해당 디바이스의 GroupID에 맞게 항목을 추가한다.
 	 * 
 	 * @param device
-	 * @param thread
+	 * @param link
 	 */
-	void addConnection(BlinkDevice device, ClassicLinkThread thread) {
+	void addConnection(BlinkDevice device, ILinkTransport link) {
 		if (device != null) {
 			// TODO : GroupID 가 복수 일 때??
 			String devGroupID = device.getGroupID();
 			if (BLINK_NETWORK_MAP.containsKey(devGroupID)) 
-				BLINK_NETWORK_MAP.get(devGroupID).addConnection(device, thread);
+				BLINK_NETWORK_MAP.get(devGroupID).addConnection(device, link);
 			
 			else {
 				NetworkMap mNetworkMap = new NetworkMap(devGroupID);
-				mNetworkMap.addConnection(device, thread);
+				mNetworkMap.addConnection(device, link);
 				
 				BLINK_NETWORK_MAP.put(devGroupID, mNetworkMap);
 			}
-		}
-	}
-	
-	/**
-	 * 연결이 성립되었을 경우, 해당 디바이스의 GroupID에 맞게 항목을 추가한다.
-	 * 
-	 * @param device
-	 * @param gatt
-	 */
-	void addConnection(BlinkDevice device, BluetoothGatt gatt) {
-		if (device != null && device.isConnected()) {
-			// TODO : GroupID 가 복수 일 때??
-			String devGroupID = device.getGroupID();
-			if (BLINK_NETWORK_MAP.containsKey(devGroupID)) 
-				BLINK_NETWORK_MAP.get(devGroupID).addConnection(device, gatt);
 			
-			else {
-				NetworkMap mNetworkMap = new NetworkMap(devGroupID);
-				mNetworkMap.addConnection(device, gatt);
-				
-				BLINK_NETWORK_MAP.put(devGroupID, mNetworkMap);
-			}
+			// 새 Sequence를 포함한 전체 경로를 새 이웃에게 보낸다.
+			String mHostAddress = BlinkDevice.HOST.getAddress();
+			ArrayList<RoutingTable.Route> mChanged = ROUTING_TABLE.onNeighborUp(mHostAddress, device.getAddress());
+			transferRoutes(device, ROUTING_TABLE.obtainAdvertisement(mHostAddress));
+			advertiseRoutes(mChanged, device);
+			RECONNECT_MANAGER.onConnected(device);
 		}
 	}
 
@@ -172,19 +204,56 @@ public class ServiceKeeper {
 	 * @return true : 제거 성공, false : 제거 못함.
 	 */
 	boolean removeConnection(BlinkDevice device) {
+		return detachConnection(device) != null;
+	}
+	
+	/**
+	 * 맵에서 해당 디바이스의 연결 객체를 제거하여 닫고, 제거한 객체를 반환한다.
+	 * 
+	 * @param device
+	 * @return 맵에 연결 객체가 없으면 null.
+	 */
+	private Object detachConnection(BlinkDevice device) {
 		if (device == null || !BLINK_NETWORK_MAP.containsKey(device.getGroupID()))
-			return false;
+			return null;
 
 		Object mConnObj = BLINK_NETWORK_MAP.get(device.getGroupID()).removeConnection(device);
 		if (mConnObj != null) {
-			if (device.isLESupported())
-				((BluetoothGatt) mConnObj).close();
-			else
-				((ClassicLinkThread) mConnObj).destroyThread();
+			if (mConnObj instanceof ILinkTransport)
+				((ILinkTransport) mConnObj).close();
 			
-			return true;
+			advertiseRoutes(ROUTING_TABLE.onNeighborDown(BlinkDevice.HOST.getAddress(), device.getAddress()), device);
 		}
-		return false;
+		return mConnObj;
+	}
+	
+	/**
+	 * 링크가 예기치 않게 끊어졌을 때 호출되어, 연결을 정리하고 다시 연결을 예약한다.
+	 * <br>사용자가 이미 연결을 해제하여 맵에 항목이 없으면 예약하지 않는다.
+	 * 
+	 * @param device
+	 * @param lostLink 끊어진 링크. 알 수 없으면 null이며, 이 경우 맵에 등록되어 있던 링크로 판단한다.
+	 * @return true : 연결이 정리됨, false : 이미 정리되어 있었음.
+	 * @see ReconnectManager
+	 */
+	boolean onLinkLost(BlinkDevice device, ILinkTransport lostLink) {
+		Object mConnObj = detachConnection(device);
+		if (mConnObj == null)
+			return false;
+		
+		if (lostLink == null && mConnObj instanceof ILinkTransport)
+			lostLink = (ILinkTransport) mConnObj;
+		RECONNECT_MANAGER.schedule(device, lostLink);
+		return true;
+	}
+	
+	/**
+	 * 사용자가 직접 연결을 해제한 경우, 예약된 재연결을 취소한다.
+	 * 
+	 * @param device
+	 */
+	void cancelReconnect(BlinkDevice device) {
+		RECONNECT_MANAGER.cancel(device);
 	}
 	
 	/**
@@ -201,6 +270,24 @@ public class ServiceKeeper {
 		return BLINK_NETWORK_MAP.get(device.getGroupID()).getConnectionObject(device);
 	}
 	
+	/**
+	 * 직접 연결된 디바이스와의 링크 지표를 반환한다.
+	 * 라우팅, Center 선출 등에서 링크의 상태를 비교할 때 사용한다.
+	 * 
+	 * @param device
+	 * @return 연결되어 있지 않으면 null.
+	 */
+	LinkQuality obtainLinkQuality(BlinkDevice device) {
+		if (device == null)
+			return null;
+		
+		NetworkMap mNetworkMap = BLINK_NETWORK_MAP.get(device.getGroupID());
+		Object mConnObj = (mNetworkMap == null)? null : mNetworkMap.getConnectionObject(device);
+		if (mConnObj instanceof ILinkTransport)
+			return ((ILinkTransport) mConnObj).obtainQuality();
+		return null;
+	}
+	
 	/**
 	 * 해당 Group에서 연결되어 있는 모든 디바이스와 연결을 해제한다.
 	 */
@@ -329,19 +416,147 @@ public class ServiceKeeper {
 		if (targetDevice == null)
 			return;
 		
-		if (targetDevice.isLESupported()) {
-			BluetoothGatt gatt = (BluetoothGatt) BLINK_NETWORK_MAP.get(targetDevice.getGroupID()).getConnectionObject(targetDevice);
-			if (gatt != null) {
-				
+		Object mConnObj = BLINK_NETWORK_MAP.get(targetDevice.getGroupID()).getConnectionObject(targetDevice);
+		if (mConnObj instanceof ILinkTransport)
+			((ILinkTransport) mConnObj).sendMessageToDevice(msg);
+	}
+
+	/**
+	 * 여러 디바이스에게 같은 메세지를 보낸다.
+	 * 메세지는 한 번만 변환되어, 모든 링크의 송신 대기열이 변환된 결과를 공유한다.
+	 * 
+	 * @param targetDevices 직접 연결된 디바이스들
+	 * @param msg 전송한 후에 변경해서는 안 된다.
+	 */
+	void sendMessageToDevices(BlinkDevice[] targetDevices, BlinkMessage msg) {
+		if (targetDevices == null || targetDevices.length == 0)
+			return;
+		
+		SharedMessage mSharedMessage = new SharedMessage(msg);
+		for (BlinkDevice device : targetDevices)
+			sendMessageToDevice(device, mSharedMessage);
+	}
+	
+	/**
+	 * 목적지 디바이스에게 메세지를 전달할, 직접 연결된 다음 Hop 디바이스를 반환한다.
+	 * 
+	 * @param destinationAddress
+	 * @return 경로를 알지 못할 경우, null.
+	 */
+	BlinkDevice obtainNextHopDevice(String destinationAddress) {
+		if (destinationAddress == null)
+			return null;
+		
+		String mNextHop = ROUTING_TABLE.obtainNextHop(destinationAddress);
+		if (mNextHop == null)
+			return null;
+		
+		BlinkDevice mDevice = BlinkDevice.load(mNextHop);
+		return (mDevice != null && mDevice.isConnected())? mDevice : null;
+	}
+	
+	/**
+	 * 이웃 디바이스가 광고한 경로를 라우팅 테이블에 반영하고, 
+	 * 변경된 경로를 나머지 이웃들에게 전달한다.
+	 * 
+	 * @param neighbor 광고를 보낸 디바이스
+	 * @param message {@link IBlinkMessagable#TYPE_REQUEST_ROUTE_UPDATE} 메세지의 내용
+	 */
+	void handleRouteUpdate(BlinkDevice neighbor, String message) {
+		if (neighbor == null || message == null)
+			return;
+		
+		Type mType = new TypeToken<ArrayList<RoutingTable.Route>>(){}.getType();
+		ArrayList<RoutingTable.Route> mRoutes = JsonManager.gson.fromJson(message, mType);
+		if (mRoutes == null)
+			return;
+		
+		String mHostAddress = BlinkDevice.HOST.getAddress();
+		ArrayList<RoutingTable.Route> mChanged = ROUTING_TABLE.update(mHostAddress, neighbor.getAddress(), mRoutes);
+		advertiseRoutes(mChanged, neighbor);
+		
+		// 자신에 대한 경로를 새로 광고하는 경우, 끊어진 경로를 알려준 이웃에게도 전달한다.
+		for (RoutingTable.Route route : mChanged) {
+			if (mHostAddress.equals(route.Destination)) {
+				transferRoutes(neighbor, mChanged);
+				break;
 			}
-			
-		} else {
-			ClassicLinkThread thread = (ClassicLinkThread) BLINK_NETWORK_MAP.get(targetDevice.getGroupID()).getConnectionObject(targetDevice);
-			
-			if (thread != null)
-				thread.sendMessageToDevice(msg);
 		}
 	}
+	
+	/**
+	 * 다른 디바이스로 중계한 메세지를 집계한다.
+	 * 
+	 * @param message
+	 * @return 메세지를 보낸 디바이스에게 목적지와 직접 연결하도록 권고해야 하면 true.
+	 * @see ShortcutAdvisor
+	 */
+	boolean accountForwarding(BlinkMessage message) {
+		return SHORTCUT_ADVISOR.onForwarded(message.getSourceAddress(), message.getDestinationAddress());
+	}
+	
+	/**
+	 * 중계하던 디바이스의 권고에 따라 해당 디바이스와 직접 연결한다.
+	 * 연결이 성립되면 라우팅 테이블이 직접 경로를 사용하므로, 이후의 메세지는 중계되지 않는다.
+	 * 
+	 * @param targetDevice (Separate-Instance)
+	 */
+	void handleShortcutAdvice(BlinkDevice targetDevice) {
+		if (targetDevice == null || targetDevice.getAddress().equals(BlinkDevice.HOST.getAddress()))
+			return;
+		
+		final BlinkDevice mDevice = BlinkDevice.update(targetDevice);
+		if (mDevice.isConnected() || obtainConnectedDevices().length >= MAX_SHORTCUT_CONNECTION)
+			return;
+		
+		final BluetoothAssistant mAssistant = BluetoothAssistant.getInstance(InterDeviceManager.getInstance(KEEPER_CONTEXT));
+		if (mAssistant == null)
+			return;
+		
+		Log.d("ServiceKeeper_handleShortcutAdvice", mDevice.getAddress());
+		// Bluetooth Classic 연결은 완료될 때까지 대기하므로, 메세지 처리 스레드에서 수행하지 않는다.
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				mAssistant.connectToDeviceFromClient(mDevice);
+			}
+		}, "ShortcutLink-" + mDevice.getAddress()).start();
+	}
+	
+	/**
+	 * 변경된 경로를 직접 연결된 디바이스들에게 전달한다.
+	 * 
+	 * @param routes
+	 * @param exceptDevice 변경의 원인이 된 디바이스. 이 디바이스에게는 전달하지 않는다.
+	 */
+	private void advertiseRoutes(ArrayList<RoutingTable.Route> routes, BlinkDevice exceptDevice) {
+		if (routes.isEmpty())
+			return;
+		
+		Log.d("ServiceKeeper_advertiseRoutes", routes.toString());
+		for (BlinkDevice device : obtainConnectedDevices()) {
+			if (!device.equals(exceptDevice))
+				transferRoutes(device, routes);
+		}
+	}
+	
+	/**
+	 * 경로 광고 메세지를 직접 연결된 디바이스에게 전송한다. 
+	 * 경로 광고는 다른 디바이스로 전달되지 않는다.
+	 * 
+	 * @param targetDevice
+	 * @param routes
+	 */
+	private void transferRoutes(BlinkDevice targetDevice, ArrayList<RoutingTable.Route> routes) {
+		BlinkMessage mBlinkMessage = new BlinkMessage.Builder()
+										.setSourceDevice(BlinkDevice.HOST)
+										.setDestinationDevice(targetDevice)
+										.setType(IBlinkMessagable.TYPE_REQUEST_ROUTE_UPDATE)
+										.setMessage(routes)
+										.build();
+		
+		sendMessageToDevice(targetDevice, mBlinkMessage);
+	}
 
 	/**
 	 * 시스템 동기화 메세지를 전송한다.
@@ -0,0 +1,103 @@
+package kr.poturns.blink.internal;
+
+import java.nio.charset.Charset;
+
+import kr.poturns.blink.db.JsonManager;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+
+/**
+ * 여러 링크로 동시에 보내는 BlinkMessage.
+ *
+ * <p>JSON Payload는 생성할 때 한 번만 변환되고, 압축된 Payload도 처음 필요할 때 한 번만 만들어진다.
+ * 모든 링크의 송신 대기열이 같은 Byte 배열을 공유하므로, 반환된 배열을 수정해서는 안 되며
+ * 생성한 후에는 원본 메세지도 변경하지 않아야 한다.
+ *
+ * <p>링크별로 ID 사전을 갖는 Binary Codec으로는 공유할 수 없으므로, 항상 JSON Frame으로 전송된다.
+ *
+ * @see ServiceKeeper#sendMessageToDevices
+ */
+final class SharedMessage {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final Charset MESSAGE_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * 송신 대기열에 들어있는 객체가 BlinkMessage이면 반환한다.
+	 *
+	 * @param obj BlinkMessage 또는 SharedMessage
+	 * @return 그 외의 객체이면 null.
+	 */
+	static BlinkMessage unwrap(Object obj) {
+		if (obj instanceof SharedMessage)
+			return ((SharedMessage) obj).Message;
+		if (obj instanceof BlinkMessage)
+			return (BlinkMessage) obj;
+		return null;
+	}
+
+	/**
+	 * 송신 대기열에 들어있는 메세지를 JSON Payload로 변환한다. SharedMessage는 변환해둔 Payload를 반환한다.
+	 *
+	 * @param obj BlinkMessage 또는 SharedMessage
+	 * @return
+	 */
+	static byte[] encodeJson(Object obj) {
+		if (obj instanceof SharedMessage)
+			return ((SharedMessage) obj).JSON_PAYLOAD;
+		return JsonManager.gson.toJson(obj).getBytes(MESSAGE_CHARSET);
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	final BlinkMessage Message;
+	private final byte[] JSON_PAYLOAD;
+
+	/** {@link LinkFrame#FLAG_DEFLATED} 형식으로 압축된 Payload */
+	private byte[] mDeflatedPayload;
+	private boolean isDeflated;
+
+	SharedMessage(BlinkMessage message) {
+		Message = message;
+		JSON_PAYLOAD = JsonManager.gson.toJson(message).getBytes(MESSAGE_CHARSET);
+	}
+
+	/**
+	 * @return 모든 링크가 공유하는 JSON Payload
+	 */
+	byte[] obtainJsonPayload() {
+		return JSON_PAYLOAD;
+	}
+
+	/**
+	 * JSON Payload를 {@link LinkFrame#FLAG_DEFLATED} 형식으로 압축하여 반환한다.
+	 * 처음 호출한 링크에서 압축하고, 이후에는 같은 결과를 반환한다.
+	 *
+	 * @return 압축해도 크기가 줄지 않는 경우 null.
+	 */
+	synchronized byte[] obtainDeflatedPayload() {
+		if (isDeflated)
+			return mDeflatedPayload;
+
+		isDeflated = true;
+		byte[] compressed = PayloadCompressor.deflate(JSON_PAYLOAD);
+		if (compressed.length + 4 >= JSON_PAYLOAD.length)
+			return null;
+
+		int length = JSON_PAYLOAD.length;
+		byte[] deflated = new byte[compressed.length + 4];
+		deflated[0] = (byte) (length >>> 24);
+		deflated[1] = (byte) (length >>> 16);
+		deflated[2] = (byte) (length >>> 8);
+		deflated[3] = (byte) length;
+		System.arraycopy(compressed, 0, deflated, 4, compressed.length);
+
+		mDeflatedPayload = deflated;
+		return deflated;
+	}
+
+	@Override
+	public String toString() {
+		return "SharedMessage [type=" + Message.getType() + ", " + JSON_PAYLOAD.length + "B]";
+	}
+}
@@ -0,0 +1,97 @@
+package kr.poturns.blink.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 이 디바이스가 중계하는 메세지를 디바이스 쌍별로 집계하여, 직접 연결이 필요한 쌍을 찾는 클래스.
+ *
+ * <p>심박수 스트리밍처럼 두 디바이스가 계속 메세지를 주고받으면서 Center를 거치는 경우,
+ * 두 디바이스가 직접 연결하면 지연 시간이 줄고 Center의 부담이 없어진다.
+ * 한 쌍이 {@link #RATE_WINDOW}동안 {@link #RATE_THRESHOLD}개 이상의 메세지를 주고받으면
+ * 직접 연결을 권고한다. 권고 후 {@link #ADVICE_INTERVAL}동안은 같은 쌍에게 다시 권고하지 않는다.
+ *
+ * <p>양방향의 메세지를 하나의 쌍으로 집계하므로, 두 디바이스가 동시에 서로에게 연결을 시도하지 않는다.
+ */
+class ShortcutAdvisor {
+
+	// *** CONSTANT DECLARATION *** //
+	/**
+	 * 집계 구간 (ms)
+	 */
+	static final long RATE_WINDOW = 10000;
+	/**
+	 * 집계 구간 동안 이만큼 중계하면 직접 연결을 권고한다.
+	 */
+	static final int RATE_THRESHOLD = 20;
+	/**
+	 * 같은 쌍에게 다시 권고하기까지의 시간 (ms). 연결이 성립되는 데 걸리는 시간보다 길어야 한다.
+	 */
+	static final long ADVICE_INTERVAL = 60000;
+	/**
+	 * 집계하는 쌍의 최대 개수. 오랫동안 중계하지 않은 쌍부터 삭제한다.
+	 */
+	static final int MAX_PAIR_COUNT = 64;
+
+	private static class PairTraffic {
+		long WindowStart;
+		int Count;
+		long AdvisedAt = -ADVICE_INTERVAL;
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final LinkedHashMap<String, PairTraffic> TRAFFIC_MAP;
+
+	ShortcutAdvisor() {
+		TRAFFIC_MAP = new LinkedHashMap<String, PairTraffic>(16, 0.75f, true) {
+			private static final long serialVersionUID = 5019437026517284751L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PairTraffic> eldest) {
+				return size() > MAX_PAIR_COUNT;
+			}
+		};
+	}
+
+	/**
+	 * 다른 디바이스로 중계한 메세지를 집계한다.
+	 *
+	 * @param sourceAddress 메세지를 보낸 디바이스
+	 * @param destinationAddress 메세지의 최종 목적지
+	 * @return 이 쌍에게 직접 연결을 권고해야 하면 true.
+	 */
+	synchronized boolean onForwarded(String sourceAddress, String destinationAddress) {
+		if (sourceAddress == null || destinationAddress == null)
+			return false;
+
+		String key = (sourceAddress.compareTo(destinationAddress) < 0)?
+				sourceAddress + "/" + destinationAddress : destinationAddress + "/" + sourceAddress;
+
+		PairTraffic traffic = TRAFFIC_MAP.get(key);
+		if (traffic == null) {
+			traffic = new PairTraffic();
+			TRAFFIC_MAP.put(key, traffic);
+		}
+
+		long now = System.currentTimeMillis();
+		if (now - traffic.WindowStart >= RATE_WINDOW) {
+			traffic.WindowStart = now;
+			traffic.Count = 0;
+		}
+
+		if (++traffic.Count < RATE_THRESHOLD || now - traffic.AdvisedAt < ADVICE_INTERVAL)
+			return false;
+
+		traffic.AdvisedAt = now;
+		return true;
+	}
+
+	/**
+	 * 집계를 초기화한다.
+	 */
+	synchronized void clear() {
+		TRAFFIC_MAP.clear();
+	}
+}
@@ -0,0 +1,257 @@
+package kr.poturns.blink.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kr.poturns.blink.db.SyncDatabaseManager;
+import kr.poturns.blink.db.archive.MeasurementData;
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import android.util.Log;
+
+/**
+ * Center 디바이스에서 여러 Wearable로부터 받은 MeasurementData를 등록하는 모듈.
+ *
+ * <p>각 연결 Thread는 받은 데이터를 큐에 넣기만 하고 바로 다음 메시지를 읽는다.
+ * 하나의 Writer Thread가 큐에 쌓인 여러 디바이스의 데이터를 모아 하나의 트랜잭션으로 등록한 뒤,
+ * 각 디바이스에 결과를 알린다.
+ *
+ * <p>디바이스별 동기화 진행 상황은 {@link SyncProgress}로 따로 관리된다.
+ */
+class SyncCoordinator {
+
+	// *** STATIC DECLARATION *** //
+	private final static String TAG = "SyncCoordinator";
+
+	/**
+	 * 큐에 쌓일 수 있는 최대 묶음 개수. 가득 차면 연결 Thread는 자리가 날 때까지 기다린다.
+	 */
+	private final static int MAX_QUEUE_SIZE = 128;
+	/**
+	 * 하나의 트랜잭션으로 등록할 최대 MeasurementData 개수.
+	 */
+	private final static int MAX_GROUP_ROWS = 4096;
+
+	/**
+	 * SyncCoordinator의 Singleton-인스턴스
+	 */
+	private static SyncCoordinator sInstance = null;
+
+	/**
+	 * SyncCoordinator의 Singleton-인스턴스를 반환한다.
+	 *
+	 * @param context ( :{@link BlinkLocalBaseService} )
+	 * @return context가 Null일 경우, 기존의 Instance를 반환한다.
+	 */
+	static synchronized SyncCoordinator getInstance(BlinkLocalBaseService context) {
+		if (sInstance == null && context != null)
+			sInstance = new SyncCoordinator(context);
+		return sInstance;
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final BlinkLocalBaseService COORDINATOR_CONTEXT;
+
+	/**
+	 * 디바이스의 주소별 동기화 진행 상황을 관리하는 Map.
+	 */
+	private final ConcurrentHashMap<String, SyncProgress> PROGRESS_MAP;
+
+	private final BlockingQueue<UploadBatch> WRITE_QUEUE;
+
+	private final Thread WRITER_THREAD;
+
+	private volatile boolean isRunning;
+
+	private SyncCoordinator(BlinkLocalBaseService context) {
+		COORDINATOR_CONTEXT = context;
+		PROGRESS_MAP = new ConcurrentHashMap<String, SyncProgress>();
+		WRITE_QUEUE = new ArrayBlockingQueue<UploadBatch>(MAX_QUEUE_SIZE);
+
+		isRunning = true;
+		WRITER_THREAD = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				SyncDatabaseManager mSyncDatabaseManager = new SyncDatabaseManager(COORDINATOR_CONTEXT);
+				while (isRunning) {
+					try {
+						writeGroup(mSyncDatabaseManager, WRITE_QUEUE.take());
+
+					} catch (InterruptedException e) {
+						// destroy()에 의해 종료된다.
+
+					} catch (RuntimeException e) {
+						Log.e(TAG, "Writer error", e);
+					}
+				}
+			}
+		}, "BlinkSyncWriter");
+		WRITER_THREAD.setDaemon(true);
+		WRITER_THREAD.start();
+	}
+
+	/**
+	 * Writer Thread를 종료한다. 큐에 남아있는 데이터는 등록되지 않는다.
+	 */
+	void destroy() {
+		isRunning = false;
+		WRITER_THREAD.interrupt();
+
+		synchronized (SyncCoordinator.class) {
+			sInstance = null;
+		}
+	}
+
+	/**
+	 * 디바이스로부터 받은 MeasurementData를 등록 대기열에 넣는다.
+	 * <br>등록이 끝나면 Writer Thread에서 callback이 호출된다.
+	 *
+	 * @param peer 데이터를 보낸 디바이스
+	 * @param rows
+	 * @param callback
+	 */
+	void submit(BlinkDevice peer, List<MeasurementData> rows, CommitCallback callback) {
+		if (peer == null || rows == null)
+			return;
+
+		SyncProgress progress = obtainSyncProgress(peer);
+		progress.PendingBatches.incrementAndGet();
+
+		try {
+			WRITE_QUEUE.put(new UploadBatch(progress, rows, callback));
+
+		} catch (InterruptedException e) {
+			progress.PendingBatches.decrementAndGet();
+			Thread.currentThread().interrupt();
+			if (callback != null)
+				callback.onFailed();
+		}
+	}
+
+	/**
+	 * 해당 디바이스의 동기화 진행 상황을 반환한다.
+	 *
+	 * @param peer
+	 * @return
+	 */
+	SyncProgress obtainSyncProgress(BlinkDevice peer) {
+		SyncProgress progress = PROGRESS_MAP.get(peer.getAddress());
+		if (progress == null) {
+			SyncProgress created = new SyncProgress(peer.getAddress());
+			progress = PROGRESS_MAP.putIfAbsent(peer.getAddress(), created);
+			if (progress == null)
+				progress = created;
+		}
+		return progress;
+	}
+
+	/**
+	 * 큐에서 꺼낸 첫 묶음과, 이어서 쌓여있는 묶음들을 하나의 트랜잭션으로 등록한다.
+	 *
+	 * @param mSyncDatabaseManager
+	 * @param first
+	 */
+	private void writeGroup(SyncDatabaseManager mSyncDatabaseManager, UploadBatch first) {
+		ArrayList<UploadBatch> mGroup = new ArrayList<UploadBatch>();
+		mGroup.add(first);
+
+		int rows = first.ROWS.size();
+		UploadBatch next;
+		while (rows < MAX_GROUP_ROWS && (next = WRITE_QUEUE.poll()) != null) {
+			mGroup.add(next);
+			rows += next.ROWS.size();
+		}
+
+		List<List<MeasurementData>> mBatchList = new ArrayList<List<MeasurementData>>(mGroup.size());
+		for (UploadBatch batch : mGroup)
+			mBatchList.add(batch.ROWS);
+
+		long started = System.currentTimeMillis();
+		int[] results = mSyncDatabaseManager.center.insertMeasurementDataGroup(mBatchList);
+		Log.d(TAG, "Committed " + mGroup.size() + " batch(es), " + rows + " row(s) in "
+				+ (System.currentTimeMillis() - started) + "ms");
+
+		for (int i = 0; i < mGroup.size(); i++) {
+			UploadBatch batch = mGroup.get(i);
+			batch.PROGRESS.PendingBatches.decrementAndGet();
+
+			if (results[i] < 0) {
+				batch.PROGRESS.FailedBatches++;
+				if (batch.CALLBACK != null)
+					batch.CALLBACK.onFailed();
+
+			} else {
+				batch.PROGRESS.onCommitted(batch.ROWS.size(), results[i]);
+				if (batch.CALLBACK != null)
+					batch.CALLBACK.onCommitted(results[i]);
+			}
+		}
+	}
+
+
+
+	/**
+	 * 등록이 끝났을 때 Writer Thread에서 호출되는 Callback.
+	 */
+	interface CommitCallback {
+		/**
+		 * @param maxMeasurementDataId 등록한 묶음에서 가장 큰 (보낸 디바이스의) MeasurementDataId
+		 */
+		void onCommitted(int maxMeasurementDataId);
+
+		void onFailed();
+	}
+
+	/**
+	 * 디바이스 하나의 동기화 진행 상황.
+	 * <br>Writer Thread에서만 변경되며, 다른 Thread에서 읽을 수 있다.
+	 */
+	static class SyncProgress {
+		final String Address;
+
+		/** 등록을 기다리는 묶음의 개수 */
+		final AtomicInteger PendingBatches = new AtomicInteger();
+		/** 등록된 묶음의 개수 */
+		volatile int CommittedBatches;
+		/** 등록에 실패한 묶음의 개수 */
+		volatile int FailedBatches;
+		/** 받아서 처리한 MeasurementData 개수 */
+		volatile long CommittedRows;
+		/** 등록된 데이터 중 가장 큰 (보낸 디바이스의) MeasurementDataId */
+		volatile int LastMeasurementDataId;
+		/** 마지막으로 등록된 시간 */
+		volatile long LastCommitTime;
+
+		SyncProgress(String address) {
+			Address = address;
+		}
+
+		private void onCommitted(int rows, int maxMeasurementDataId) {
+			CommittedBatches++;
+			CommittedRows += rows;
+			if (LastMeasurementDataId < maxMeasurementDataId)
+				LastMeasurementDataId = maxMeasurementDataId;
+			LastCommitTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * 디바이스 하나로부터 받은 MeasurementData 묶음.
+	 */
+	private static class UploadBatch {
+		final SyncProgress PROGRESS;
+		final List<MeasurementData> ROWS;
+		final CommitCallback CALLBACK;
+
+		UploadBatch(SyncProgress progress, List<MeasurementData> rows, CommitCallback callback) {
+			PROGRESS = progress;
+			ROWS = rows;
+			CALLBACK = callback;
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package kr.poturns.blink.internal;
+
+import java.util.HashMap;
+
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * ContentObserver로부터 발생하는 MeasurementData 동기화 요청을 모아서 처리하는 스케줄러.
+ *
+ * <p>측정 데이터가 등록될 때마다 동기화를 바로 수행하지 않고,
+ * 첫 요청 이후 {@link #setMaxLatency(long)} 만큼 기다리거나
+ * 요청이 {@link #setMaxBatchSize(int)} 개 만큼 쌓였을 때 한 번에 동기화를 수행한다.
+ *
+ * <p>상대 디바이스마다 동시에 하나의 동기화만 진행하며,
+ * 동기화가 진행 중일 때 들어온 요청은 하나로 합쳐져 동기화가 끝난 후에 처리된다.
+ *
+ * <p>동기화할 데이터를 DB에서 읽고 JSON으로 변환하는 작업이 UI 스레드에서 실행되지 않도록,
+ * 스케줄러 전용 스레드의 Looper를 사용한다. 모든 상태는 이 Looper 스레드에서만 변경된다.
+ */
+class SyncScheduler extends Handler {
+
+	// *** CONSTANT DECLARATION *** //
+	private final static String TAG = "SyncScheduler";
+
+	/**
+	 * 첫 요청 이후 동기화를 수행하기까지 기다리는 기본 최대 시간
+	 */
+	public final static long DEFAULT_MAX_LATENCY = 30000;		// ms
+	/**
+	 * 즉시 동기화를 수행하게 되는 기본 요청 개수
+	 */
+	public final static int DEFAULT_MAX_BATCH_SIZE = 60;
+	/**
+	 * 동기화 응답을 기다리는 최대 시간. 이 시간이 지나면 진행 중인 동기화를 실패로 간주한다.
+	 */
+	private final static long SYNC_TIMEOUT = 60000;				// ms
+
+	private final static int MSG_REQUEST = 0x1;
+	private final static int MSG_FLUSH = 0x2;
+	private final static int MSG_COMPLETE = 0x3;
+	private final static int MSG_TIMEOUT = 0x4;
+	private final static int MSG_FAIL = 0x5;
+	private final static int MSG_CANCEL = 0x6;
+	private final static int MSG_DESTROY = 0x7;
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final BlinkLocalService SCHEDULER_CONTEXT;
+	/**
+	 * 스케줄러의 Looper를 실행하는 스레드. {@link #destroy()}에서 종료된다.
+	 */
+	private final HandlerThread SCHEDULER_THREAD;
+
+	/**
+	 * 상대 디바이스의 주소별 동기화 상태를 관리하는 HashMap.
+	 */
+	private final HashMap<String, PeerState> PEER_STATE_MAP;
+
+	private long mMaxLatency;
+	private int mMaxBatchSize;
+
+	public SyncScheduler(BlinkLocalService context) {
+		this(context, startSchedulerThread());
+	}
+
+	private SyncScheduler(BlinkLocalService context, HandlerThread thread) {
+		super(thread.getLooper());
+
+		SCHEDULER_CONTEXT = context;
+		SCHEDULER_THREAD = thread;
+		PEER_STATE_MAP = new HashMap<String, PeerState>();
+
+		mMaxLatency = DEFAULT_MAX_LATENCY;
+		mMaxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	}
+
+	/**
+	 * 해당 디바이스로의 동기화를 요청한다.
+	 * <br>요청은 바로 수행되지 않고, 최대 지연 시간 또는 최대 요청 개수 조건을 만족할 때 수행된다.
+	 *
+	 * @param peer
+	 */
+	void requestSync(BlinkDevice peer) {
+		if (peer != null)
+			obtainMessage(MSG_REQUEST, peer.getAddress()).sendToTarget();
+	}
+
+	/**
+	 * 해당 디바이스와 진행 중이던 동기화가 완료되었음을 알린다.
+	 * <br>동기화 중에 쌓인 요청이 있다면, 조건에 맞게 다음 동기화를 예약한다.
+	 *
+	 * @param peer
+	 */
+	void notifySyncCompleted(BlinkDevice peer) {
+		if (peer != null)
+			obtainMessage(MSG_COMPLETE, peer.getAddress()).sendToTarget();
+	}
+
+	/**
+	 * 해당 디바이스와 진행 중이던 동기화가 실패했음을 알린다.
+	 * <br>응답을 받지 못한 것과 같이 처리되어, 다시 동기화를 예약한다.
+	 *
+	 * @param peer
+	 */
+	void notifySyncFailed(BlinkDevice peer) {
+		if (peer != null)
+			obtainMessage(MSG_FAIL, peer.getAddress()).sendToTarget();
+	}
+
+	/**
+	 * 예약된 모든 동기화를 취소한다.
+	 */
+	void cancelAll() {
+		removeCallbacksAndMessages(null);
+		// 상태는 Looper 스레드에서 비운다.
+		sendEmptyMessage(MSG_CANCEL);
+	}
+
+	/**
+	 * 예약된 모든 동기화를 취소하고, 스케줄러 스레드를 종료한다.
+	 * <br>이후의 요청은 무시된다.
+	 */
+	void destroy() {
+		removeCallbacksAndMessages(null);
+		sendEmptyMessage(MSG_DESTROY);
+	}
+
+	@Override
+	public void handleMessage(Message msg) {
+		switch (msg.what) {
+		case MSG_REQUEST: {
+			PeerState state = obtainPeerState((String) msg.obj);
+			if (state.Pending++ == 0)
+				state.FirstRequestTime = SystemClock.elapsedRealtime();
+
+			schedule(state);
+		} break;
+
+		case MSG_FLUSH:
+			flush((PeerState) msg.obj);
+			break;
+
+		case MSG_COMPLETE: {
+			PeerState state = obtainPeerState((String) msg.obj);
+			removeMessages(MSG_TIMEOUT, state);
+			state.InFlight = false;
+
+			schedule(state);
+		} break;
+
+		case MSG_FAIL:
+		case MSG_TIMEOUT: {
+			PeerState state = (msg.what == MSG_FAIL)?
+					obtainPeerState((String) msg.obj) : (PeerState) msg.obj;
+			Log.w(TAG, "Sync failed : " + state.Address);
+			removeMessages(MSG_TIMEOUT, state);
+
+			// 응답을 받지 못한 데이터는 다음 동기화에 다시 포함되므로, 요청을 하나 남겨둔다.
+			state.InFlight = false;
+			if (state.Pending++ == 0)
+				state.FirstRequestTime = SystemClock.elapsedRealtime();
+
+			schedule(state);
+		} break;
+
+		case MSG_CANCEL:
+			PEER_STATE_MAP.clear();
+			break;
+
+		case MSG_DESTROY:
+			PEER_STATE_MAP.clear();
+			SCHEDULER_THREAD.quit();
+			break;
+		}
+	}
+
+	/**
+	 * 상태에 따라 동기화를 즉시 수행하거나, 남은 지연 시간 이후로 예약한다.
+	 * 동기화가 진행 중이라면 아무것도 하지 않는다. (요청은 합쳐진다.)
+	 *
+	 * @param state
+	 */
+	private void schedule(PeerState state) {
+		if (state.InFlight || state.Pending == 0)
+			return;
+
+		removeMessages(MSG_FLUSH, state);
+
+		long elapsed = SystemClock.elapsedRealtime() - state.FirstRequestTime;
+		if (state.Pending >= mMaxBatchSize || elapsed >= mMaxLatency)
+			flush(state);
+		else
+			sendMessageDelayed(obtainMessage(MSG_FLUSH, state), mMaxLatency - elapsed);
+	}
+
+	/**
+	 * 쌓여있는 요청들을 하나의 동기화로 수행한다.
+	 *
+	 * @param state
+	 */
+	private void flush(PeerState state) {
+		if (state.InFlight || state.Pending == 0)
+			return;
+
+		removeMessages(MSG_FLUSH, state);
+
+		Log.i(TAG, "Flush " + state.Pending + " request(s) to " + state.Address);
+		int coalesced = state.Pending;
+		state.Pending = 0;
+
+		BlinkDevice peer = BlinkDevice.load(state.Address);
+		if (SCHEDULER_CONTEXT.transferMeasurementDataSync(peer)) {
+			state.InFlight = true;
+			sendMessageDelayed(obtainMessage(MSG_TIMEOUT, state), SYNC_TIMEOUT);
+
+		} else {
+			Log.d(TAG, "Nothing to sync (" + coalesced + " request(s) dropped)");
+		}
+	}
+
+	private static HandlerThread startSchedulerThread() {
+		HandlerThread thread = new HandlerThread(TAG);
+		thread.start();
+		return thread;
+	}
+
+	private PeerState obtainPeerState(String address) {
+		PeerState state = PEER_STATE_MAP.get(address);
+		if (state == null) {
+			state = new PeerState(address);
+			PEER_STATE_MAP.put(address, state);
+		}
+		return state;
+	}
+
+
+
+	// *** Getter & Setter *** //
+	public long getMaxLatency() {
+		return mMaxLatency;
+	}
+
+	/**
+	 * 첫 요청 이후 동기화를 수행하기까지 기다리는 최대 시간을 설정한다. (ms)
+	 *
+	 * @param maxLatency
+	 */
+	public void setMaxLatency(long maxLatency) {
+		if (maxLatency >= 0)
+			mMaxLatency = maxLatency;
+	}
+
+	public int getMaxBatchSize() {
+		return mMaxBatchSize;
+	}
+
+	/**
+	 * 최대 지연 시간을 기다리지 않고 즉시 동기화를 수행하게 되는 요청 개수를 설정한다.
+	 *
+	 * @param maxBatchSize
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		if (maxBatchSize > 0)
+			mMaxBatchSize = maxBatchSize;
+	}
+
+
+
+	/**
+	 * 상대 디바이스 하나에 대한 동기화 상태.
+	 */
+	private static class PeerState {
+		final String Address;
+
+		/** 아직 처리되지 않은 요청의 개수 */
+		int Pending;
+		/** 처리되지 않은 요청 중 첫 요청이 들어온 시간 */
+		long FirstRequestTime;
+		/** 응답을 기다리는 동기화가 있는지 여부 */
+		boolean InFlight;
+
+		PeerState(String address) {
+			Address = address;
+		}
+	}
+}
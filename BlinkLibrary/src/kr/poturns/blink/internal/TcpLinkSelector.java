@@ -0,0 +1,469 @@
+package kr.poturns.blink.internal;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import android.util.Log;
+
+/**
+ * 모든 {@link TcpTransport}의 Socket 입출력을 하나의 Selector 스레드에서 처리하는 모듈.
+ *
+ * <p>TCP 연결은 Bluetooth 링크에서 LinkCapability를 교환할 때 알게 된 주소로 맺는다.
+ * Bluetooth 연결을 요청한 쪽이 상대의 주소로 TCP 연결을 열고, 상대가 알려준 Token을 담은
+ * {@link LinkFrame#TYPE_TCP_HELLO} Frame을 먼저 보낸다. 받는 쪽은 {@link #expect(long, TcpTransport)}로
+ * 등록해둔 Token과 일치하는 링크에 연결을 붙이며, 일치하지 않으면 연결을 끊는다.
+ *
+ * <p>읽기와 쓰기에는 Pool에서 꺼낸 Direct Buffer를 사용한다.
+ * Buffer와 SelectionKey는 Selector 스레드에서만 다루며, 다른 스레드의 요청은 {@link #execute(Runnable)}로 넘긴다.
+ */
+class TcpLinkSelector implements Runnable {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "TcpLinkSelector";
+
+	/**
+	 * Pool에서 꺼내는 Direct Buffer 하나의 크기
+	 */
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Pool에 보관하는 Direct Buffer의 최대 개수. 이보다 많이 사용된 Buffer는 반환될 때 버려진다.
+	 */
+	static final int MAX_POOLED_BUFFERS = 16;
+
+	/**
+	 * 연결을 받은 후 HELLO Frame을 기다리는 시간 (ms)
+	 */
+	static final long HELLO_TIMEOUT = 10000;
+
+
+
+	// *** STATIC DECLARATION *** //
+	private static TcpLinkSelector sInstance = null;
+
+	/**
+	 * TcpLinkSelector의 Singleton-인스턴스를 반환한다. Selector 스레드는 처음 사용될 때 시작된다.
+	 *
+	 * @return
+	 */
+	static synchronized TcpLinkSelector getInstance() {
+		if (sInstance == null)
+			sInstance = new TcpLinkSelector();
+		return sInstance;
+	}
+
+	/**
+	 * 다른 디바이스가 연결할 수 있는 현재 디바이스의 IPv4 주소를 반환한다.
+	 *
+	 * @return 사설망 주소가 없으면 null.
+	 */
+	static String obtainLocalAddress() {
+		try {
+			Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+			while (interfaces != null && interfaces.hasMoreElements()) {
+				NetworkInterface networkInterface = interfaces.nextElement();
+				if (!networkInterface.isUp() || networkInterface.isLoopback())
+					continue;
+
+				Enumeration<InetAddress> addresses = networkInterface.getInetAddresses();
+				while (addresses.hasMoreElements()) {
+					InetAddress address = addresses.nextElement();
+					if (address instanceof Inet4Address && address.isSiteLocalAddress())
+						return address.getHostAddress();
+				}
+			}
+		} catch (SocketException e) {
+			Log.w(TAG, "obtainLocalAddress : " + e);
+		}
+		return null;
+	}
+
+	/**
+	 * HELLO Frame을 기다리는 연결.
+	 */
+	private static class Handshake {
+		final LinkFrameDecoder DECODER = new LinkFrameDecoder();
+		final long AcceptedAt = System.currentTimeMillis();
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final ConcurrentLinkedQueue<Runnable> TASKS;
+	/** 연결을 기다리는 링크. Key는 HELLO Frame의 Token. */
+	private final ConcurrentHashMap<Long, TcpTransport> EXPECTED;
+	/** Selector 스레드에서만 사용된다. */
+	private final ArrayDeque<ByteBuffer> BUFFER_POOL;
+
+	private Selector mSelector;
+	private Thread mThread;
+
+	private ServerSocketChannel mServerChannel;
+	private volatile int mListeningPort = -1;
+
+	private TcpLinkSelector() {
+		TASKS = new ConcurrentLinkedQueue<Runnable>();
+		EXPECTED = new ConcurrentHashMap<Long, TcpTransport>();
+		BUFFER_POOL = new ArrayDeque<ByteBuffer>(MAX_POOLED_BUFFERS);
+	}
+
+	private synchronized Selector obtainSelector() throws IOException {
+		if (mSelector == null) {
+			mSelector = Selector.open();
+			mThread = new Thread(this, TAG);
+			mThread.setDaemon(true);
+			mThread.start();
+		}
+		return mSelector;
+	}
+
+	/**
+	 * 해당 Port에서 연결을 받기 시작한다. 이미 받고 있으면 현재 Port를 반환한다.
+	 *
+	 * @param port 0이면 사용 가능한 Port를 할당받는다.
+	 * @return 연결을 받는 Port
+	 * @throws IOException
+	 */
+	synchronized int listen(int port) throws IOException {
+		if (mServerChannel != null)
+			return mListeningPort;
+
+		final Selector selector = obtainSelector();
+		final ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.configureBlocking(false);
+			channel.socket().setReuseAddress(true);
+			channel.socket().bind(new InetSocketAddress(port));
+
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		mServerChannel = channel;
+		mListeningPort = channel.socket().getLocalPort();
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					channel.register(selector, SelectionKey.OP_ACCEPT);
+				} catch (ClosedChannelException e) {
+					// stopListening()이 먼저 호출되었다.
+				}
+			}
+		});
+
+		Log.d(TAG, "LISTEN : " + mListeningPort);
+		return mListeningPort;
+	}
+
+	/**
+	 * 연결 받기를 중지한다. 이미 연결된 링크는 유지된다.
+	 */
+	synchronized void stopListening() {
+		if (mServerChannel == null)
+			return;
+
+		try {
+			mServerChannel.close();
+		} catch (IOException e) { }
+
+		mServerChannel = null;
+		mListeningPort = -1;
+	}
+
+	/**
+	 * 연결을 받고 있는 Port를 반환한다.
+	 *
+	 * @return 연결을 받고 있지 않으면 -1.
+	 */
+	int obtainListeningPort() {
+		return mListeningPort;
+	}
+
+	/**
+	 * 해당 Token으로 들어올 연결을 링크에 붙이도록 등록한다.
+	 *
+	 * @param token
+	 * @param link
+	 */
+	void expect(long token, TcpTransport link) {
+		EXPECTED.put(token, link);
+	}
+
+	/**
+	 * 등록한 Token을 취소한다.
+	 *
+	 * @param token
+	 */
+	void cancel(long token) {
+		EXPECTED.remove(token);
+	}
+
+	/**
+	 * 상대 디바이스의 주소로 연결을 열고, 연결되면 해당 Token의 HELLO Frame을 보낸다.
+	 *
+	 * @param link
+	 * @param address
+	 * @param token 상대 디바이스가 알려준 Token
+	 */
+	void connect(final TcpTransport link, final InetSocketAddress address, final long token) {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				SocketChannel channel = null;
+				try {
+					channel = SocketChannel.open();
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+
+					SelectionKey key = channel.register(mSelector, 0, link);
+					link.attach(channel, key);
+					link.sendHello(token);
+
+					if (channel.connect(address))
+						link.onConnected();
+					else
+						key.interestOps(SelectionKey.OP_CONNECT);
+
+				} catch (IOException e) {
+					Log.w(TAG, "connect " + address + " : " + e);
+					close(channel);
+					link.onClosed();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Selector 스레드에서 작업을 수행하도록 요청한다.
+	 *
+	 * @param task
+	 */
+	void execute(Runnable task) {
+		try {
+			Selector selector = obtainSelector();
+			TASKS.add(task);
+			selector.wakeup();
+
+		} catch (IOException e) {
+			Log.e(TAG, "Selector is not available : " + e);
+		}
+	}
+
+	/**
+	 * Selector 스레드에서 호출된다.
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				mSelector.select(HELLO_TIMEOUT);
+
+			} catch (IOException e) {
+				Log.e(TAG, "select : " + e);
+				return;
+			}
+
+			Runnable task;
+			while ((task = TASKS.poll()) != null) {
+				try {
+					task.run();
+
+				} catch (RuntimeException e) {
+					// 한 링크의 오류로 Selector 스레드가 종료되지 않도록 한다.
+					Log.e(TAG, "task : " + e);
+				}
+			}
+
+			Iterator<SelectionKey> iterator = mSelector.selectedKeys().iterator();
+			while (iterator.hasNext()) {
+				SelectionKey key = iterator.next();
+				iterator.remove();
+				try {
+					handleKey(key);
+
+				} catch (CancelledKeyException e) {
+					// 처리 중에 링크가 종료되었다.
+				}
+			}
+
+			expireHandshakes();
+		}
+	}
+
+	private void handleKey(SelectionKey key) {
+		if (!key.isValid())
+			return;
+
+		Object attachment = key.attachment();
+		try {
+			if (key.isAcceptable()) {
+				accept((ServerSocketChannel) key.channel());
+				return;
+			}
+
+			TcpTransport link = (attachment instanceof TcpTransport)? (TcpTransport) attachment : null;
+			if (key.isConnectable() && link != null) {
+				if (((SocketChannel) key.channel()).finishConnect())
+					link.onConnected();
+				return;
+			}
+
+			if (key.isReadable()) {
+				if (attachment instanceof Handshake)
+					readHandshake(key, (Handshake) attachment);
+				else if (link != null)
+					read(key, link);
+			}
+
+			if (key.isValid() && key.isWritable() && link != null)
+				link.onWritable();
+
+		} catch (IOException e) {
+			Log.w(TAG, "I/O : " + e);
+			key.cancel();
+			close(key.channel());
+			// HELLO Frame을 받은 후에는 링크가 붙어 있다.
+			if (key.attachment() instanceof TcpTransport)
+				((TcpTransport) key.attachment()).onClosed();
+		}
+	}
+
+	private void accept(ServerSocketChannel server) throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null)
+			return;
+
+		try {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			channel.register(mSelector, SelectionKey.OP_READ, new Handshake());
+
+		} catch (IOException e) {
+			close(channel);
+		}
+	}
+
+	private void readHandshake(SelectionKey key, Handshake handshake) throws IOException {
+		SocketChannel channel = (SocketChannel) key.channel();
+		ByteBuffer buffer = acquireBuffer();
+		try {
+			if (channel.read(buffer) < 0)
+				throw new IOException("Closed before hello");
+			buffer.flip();
+
+			LinkFrame frame = handshake.DECODER.decode(buffer);
+			if (frame == null)
+				return;
+
+			TcpTransport link = null;
+			if (frame.Type == LinkFrame.TYPE_TCP_HELLO && frame.Payload.length == 8)
+				link = EXPECTED.remove(readLong(frame.Payload));
+
+			if (link == null)
+				throw new IOException("Unexpected hello from " + channel.socket().getInetAddress());
+
+			key.attach(link);
+			link.attach(channel, key);
+			link.onConnected();
+
+			// HELLO Frame에 이어서 도착한 Byte들
+			if (buffer.hasRemaining())
+				link.onReadable(buffer);
+
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	private void read(SelectionKey key, TcpTransport link) throws IOException {
+		SocketChannel channel = (SocketChannel) key.channel();
+		ByteBuffer buffer = acquireBuffer();
+		try {
+			int length;
+			while ((length = channel.read(buffer)) > 0) {
+				buffer.flip();
+				link.onReadable(buffer);
+				buffer.clear();
+			}
+
+			if (length < 0)
+				throw new IOException("Closed by peer");
+
+		} finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	private void expireHandshakes() {
+		long now = System.currentTimeMillis();
+		for (SelectionKey key : mSelector.keys()) {
+			Object attachment = key.attachment();
+			if (attachment instanceof Handshake && now - ((Handshake) attachment).AcceptedAt > HELLO_TIMEOUT) {
+				key.cancel();
+				close(key.channel());
+			}
+		}
+	}
+
+	/**
+	 * Pool에서 비어있는 Direct Buffer를 꺼낸다. Selector 스레드에서만 호출된다.
+	 *
+	 * @return
+	 */
+	ByteBuffer acquireBuffer() {
+		ByteBuffer buffer = BUFFER_POOL.poll();
+		if (buffer == null)
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		return buffer;
+	}
+
+	/**
+	 * Buffer를 Pool에 반환한다. Selector 스레드에서만 호출된다.
+	 *
+	 * @param buffer
+	 */
+	void releaseBuffer(ByteBuffer buffer) {
+		buffer.clear();
+		if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS)
+			BUFFER_POOL.offer(buffer);
+	}
+
+	private static void close(java.nio.channels.Channel channel) {
+		if (channel == null)
+			return;
+
+		try {
+			channel.close();
+		} catch (IOException e) { }
+	}
+
+	private static long readLong(byte[] buffer) {
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = (value << 8) | (buffer[i] & 0xFF);
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "TcpLinkSelector [Port=" + mListeningPort + ", Expected=" + EXPECTED.size() + "]";
+	}
+}
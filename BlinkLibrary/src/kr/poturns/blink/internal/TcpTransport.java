@@ -0,0 +1,447 @@
+package kr.poturns.blink.internal;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import kr.poturns.blink.db.JsonManager;
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import android.util.Log;
+
+/**
+ * Wi-Fi 등 IP 네트워크의 TCP 연결로 BlinkMessage를 주고받는 링크.
+ *
+ * <p>Bluetooth 링크보다 대역폭이 크므로 대량의 MeasurementData 동기화나 큰 조회 결과를 보내는 데 사용한다.
+ * {@link ClassicLinkThread}는 상대 디바이스도 TCP 연결을 지원하면 이 링크를 함께 열고,
+ * 큰 메세지만 이 링크로 보낸다. 연결되기 전이거나 연결이 끊긴 경우에는 {@link #sendMessageToDevice(Object)}가
+ * false를 반환하므로, 호출한 쪽에서 Bluetooth 링크로 보내면 된다.
+ *
+ * <p>Socket 입출력은 {@link TcpLinkSelector}의 Selector 스레드에서 수행하고,
+ * 받은 메세지는 링크별 전달 스레드에서 {@link ILinkTransport.OnMessageReceivedListener}로 전달한다.
+ * 메세지는 JSON으로 변환되어 {@link LinkFrame} 형식으로 전송된다.
+ *
+ * <p>같은 LAN의 다른 디바이스가 읽거나 바꿀 수 없도록, HELLO Frame 이후의 Payload는 {@link LinkCipher}로 암호화하고 인증한다.
+ * 키는 Bluetooth 링크에서 LinkCapability와 함께 교환한다. 인증에 실패한 Frame을 받으면 연결을 끊는다.
+ *
+ * <p>연결이 끊기면 Socket에 모두 쓰이지 않은 메세지는 {@link LinkOutboundQueue.OnSendFailedListener}로 알린다.
+ * Socket에 모두 쓰였지만 상대가 받기 전에 끊긴 메세지는 알 수 없으므로, Reliable 메세지는 이 링크로 보내지 않는다.
+ */
+class TcpTransport implements ILinkTransport {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final String TAG = "TcpTransport";
+	private static final Charset MESSAGE_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * Socket에 쓰이기를 기다리는 Byte 수의 최대값. 넘으면 새 메세지를 받지 않는다.
+	 */
+	static final int MAX_QUEUED_BYTES = 32 * 1024 * 1024;
+
+	private static class Outgoing {
+		/** 전송하는 메세지. HELLO Frame이면 null. */
+		final Object Message;
+		final ByteBuffer Data;
+		/** 쓰기 Buffer에서 이 메세지의 마지막 Byte 다음 위치 */
+		int End;
+
+		Outgoing(Object message, byte[] data) {
+			Message = message;
+			Data = ByteBuffer.wrap(data);
+		}
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final TcpLinkSelector SELECTOR;
+	private final BlinkDevice DEVICE;
+	/** 보내는 쪽은 WRITE_QUEUE의 Lock 안에서, 받는 쪽은 전달 스레드에서 사용한다. */
+	private final LinkCipher CIPHER;
+	private final OnMessageReceivedListener LISTENER;
+	private final LinkOutboundQueue.OnSendFailedListener FAILURE_LISTENER;
+	private final LinkStatistics STATISTICS;
+	private final LinkQuality QUALITY;
+	private final ExecutorService DELIVERY;
+
+	/** Socket에 쓰이기를 기다리는 메세지. 자신을 Lock으로 사용한다. */
+	private final ArrayDeque<Outgoing> WRITE_QUEUE;
+	private final AtomicBoolean WRITE_REQUESTED;
+	private final Runnable WRITE_TASK;
+	private int mQueuedBytes;
+
+	// Selector 스레드에서만 사용된다.
+	private final LinkFrameDecoder DECODER;
+	/** 현재 쓰기 Buffer에 마지막 Byte까지 담긴 메세지 */
+	private final ArrayList<Outgoing> BUFFERED;
+	private SocketChannel mChannel;
+	private SelectionKey mKey;
+	private ByteBuffer mWriteBuffer;
+
+	private volatile boolean isConnected;
+	private volatile boolean isClosed;
+
+	/**
+	 * @param selector
+	 * @param device 상대 디바이스
+	 * @param cipher Frame의 Payload를 암호화한다.
+	 * @param listener 받은 메세지를 전달받는다.
+	 * @param failureListener 보내지 못한 메세지를 전달받는다.
+	 */
+	TcpTransport(TcpLinkSelector selector, BlinkDevice device, LinkCipher cipher,
+			OnMessageReceivedListener listener, LinkOutboundQueue.OnSendFailedListener failureListener) {
+		SELECTOR = selector;
+		DEVICE = device;
+		CIPHER = cipher;
+		LISTENER = listener;
+		FAILURE_LISTENER = failureListener;
+		STATISTICS = new LinkStatistics(device.getAddress());
+		QUALITY = new LinkQuality(device.getAddress());
+		DECODER = new LinkFrameDecoder();
+		BUFFERED = new ArrayList<Outgoing>();
+		WRITE_QUEUE = new ArrayDeque<Outgoing>();
+		WRITE_REQUESTED = new AtomicBoolean(false);
+		WRITE_TASK = new Runnable() {
+			@Override
+			public void run() {
+				WRITE_REQUESTED.set(false);
+				flushWrites();
+			}
+		};
+
+		final String name = TAG + "-" + device.getAddress();
+		DELIVERY = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public BlinkDevice obtainDevice() {
+		return DEVICE;
+	}
+
+	/**
+	 * 연결은 {@link TcpLinkSelector}가 맺으므로, 아무것도 하지 않는다.
+	 */
+	@Override
+	public void open() {
+	}
+
+	/**
+	 * TCP 연결이 성립되어 메세지를 보낼 수 있는지 여부를 반환한다.
+	 *
+	 * @return
+	 */
+	boolean isConnected() {
+		return isConnected && !isClosed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <br>연결되기 전이거나 연결이 끊긴 경우에도 false를 반환한다.
+	 */
+	@Override
+	public boolean sendMessageToDevice(Object obj) {
+		if (SharedMessage.unwrap(obj) == null || !isConnected())
+			return false;
+
+		byte[] payload;
+		try {
+			payload = SharedMessage.encodeJson(obj);
+
+		} catch (IOException e) {
+			Log.w(TAG, DEVICE.getAddress() + " : " + e.getMessage());
+			return false;
+		}
+
+		int length = payload.length + LinkCipher.TAG_LENGTH;
+		if (length > LinkFrame.MAX_PAYLOAD_LENGTH)
+			return false;
+
+		synchronized (WRITE_QUEUE) {
+			int frameLength = LinkFrame.HEADER_LENGTH + length;
+			if (isClosed || (!WRITE_QUEUE.isEmpty() && mQueuedBytes + frameLength > MAX_QUEUED_BYTES))
+				return false;
+
+			// 받는 쪽이 쓰인 순서대로 복호화하므로, Queue에 넣는 순서대로 암호화한다.
+			byte[] frame;
+			try {
+				frame = LinkFrameWriter.encode(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, CIPHER.seal(payload));
+
+			} catch (GeneralSecurityException e) {
+				Log.w(TAG, DEVICE.getAddress() + " : " + e.getMessage());
+				return false;
+
+			} catch (IOException e) {
+				Log.w(TAG, DEVICE.getAddress() + " : " + e.getMessage());
+				return false;
+			}
+
+			WRITE_QUEUE.add(new Outgoing(obj, frame));
+			mQueuedBytes += frame.length;
+		}
+
+		if (WRITE_REQUESTED.compareAndSet(false, true))
+			SELECTOR.execute(WRITE_TASK);
+		return true;
+	}
+
+	@Override
+	public void close() {
+		if (isClosed)
+			return;
+
+		isClosed = true;
+		SELECTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				onClosed();
+			}
+		});
+	}
+
+	@Override
+	public LinkStatistics obtainStatistics() {
+		return STATISTICS;
+	}
+
+	@Override
+	public LinkQuality obtainQuality() {
+		return QUALITY;
+	}
+
+
+
+	// *** SELECTOR THREAD *** //
+	/**
+	 * Socket을 링크에 붙인다.
+	 *
+	 * @param channel
+	 * @param key
+	 */
+	void attach(SocketChannel channel, SelectionKey key) {
+		mChannel = channel;
+		mKey = key;
+		if (isClosed)
+			onClosed();
+	}
+
+	/**
+	 * 연결을 연 쪽에서, 연결되면 가장 먼저 보낼 HELLO Frame을 넣는다.
+	 *
+	 * @param token
+	 * @throws IOException
+	 */
+	void sendHello(long token) throws IOException {
+		byte[] payload = new byte[8];
+		for (int i = 7; i >= 0; i--, token >>>= 8)
+			payload[i] = (byte) token;
+
+		byte[] frame = LinkFrameWriter.encode(LinkFrame.TYPE_TCP_HELLO, 0, payload);
+		synchronized (WRITE_QUEUE) {
+			WRITE_QUEUE.addFirst(new Outgoing(null, frame));
+			mQueuedBytes += frame.length;
+		}
+	}
+
+	void onConnected() throws IOException {
+		if (isClosed) {
+			onClosed();
+			return;
+		}
+
+		Log.d(TAG, DEVICE.getAddress() + " : CONNECTED " + mChannel.socket().getRemoteSocketAddress());
+		isConnected = true;
+		mKey.interestOps(SelectionKey.OP_READ);
+		onWritable();
+	}
+
+	private void flushWrites() {
+		if (mKey == null || !mKey.isValid() || !isConnected)
+			return;
+
+		try {
+			onWritable();
+
+		} catch (IOException e) {
+			Log.w(TAG, DEVICE.getAddress() + " : " + e);
+			onClosed();
+		}
+	}
+
+	/**
+	 * Socket에 더 쓸 수 있을 때 호출된다. Socket이 가득 차면 쓰기 가능 이벤트를 기다린다.
+	 *
+	 * @throws IOException
+	 */
+	void onWritable() throws IOException {
+		while (true) {
+			if (mWriteBuffer == null) {
+				ByteBuffer buffer = SELECTOR.acquireBuffer();
+				fill(buffer);
+				buffer.flip();
+
+				if (!buffer.hasRemaining()) {
+					SELECTOR.releaseBuffer(buffer);
+					mKey.interestOps(SelectionKey.OP_READ);
+					return;
+				}
+				mWriteBuffer = buffer;
+			}
+
+			mChannel.write(mWriteBuffer);
+			if (mWriteBuffer.hasRemaining()) {
+				mKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+
+			SELECTOR.releaseBuffer(mWriteBuffer);
+			mWriteBuffer = null;
+			for (Outgoing outgoing : BUFFERED) {
+				if (outgoing.Message != null) {
+					STATISTICS.onSent(false);
+					QUALITY.onSent(outgoing.Data.limit(), 1);
+				}
+			}
+			BUFFERED.clear();
+		}
+	}
+
+	/**
+	 * 대기 중인 메세지를 쓰기 Buffer가 찰 때까지 복사한다. 큰 메세지는 여러 Buffer에 나누어 담긴다.
+	 */
+	private void fill(ByteBuffer buffer) {
+		synchronized (WRITE_QUEUE) {
+			while (buffer.hasRemaining() && !WRITE_QUEUE.isEmpty()) {
+				Outgoing outgoing = WRITE_QUEUE.peek();
+				ByteBuffer source = outgoing.Data;
+				int length = Math.min(buffer.remaining(), source.remaining());
+
+				int limit = source.limit();
+				source.limit(source.position() + length);
+				buffer.put(source);
+				source.limit(limit);
+				mQueuedBytes -= length;
+
+				if (!source.hasRemaining()) {
+					WRITE_QUEUE.poll();
+					outgoing.End = buffer.position();
+					BUFFERED.add(outgoing);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Socket에서 읽은 Byte들을 Frame으로 조립한다.
+	 *
+	 * @param buffer 읽기 모드의 Buffer
+	 * @throws StreamCorruptedException
+	 */
+	void onReadable(ByteBuffer buffer) throws StreamCorruptedException {
+		while (buffer.hasRemaining()) {
+			LinkFrame frame = DECODER.decode(buffer);
+			if (frame != null)
+				deliver(frame);
+		}
+	}
+
+	private void deliver(final LinkFrame frame) {
+		if (frame.Type != LinkFrame.TYPE_BLINK_MESSAGE_JSON) {
+			Log.w(TAG, "Unknown frame type : " + frame.Type);
+			return;
+		}
+
+		try {
+			DELIVERY.execute(new Runnable() {
+				@Override
+				public void run() {
+					byte[] payload;
+					try {
+						payload = CIPHER.open(frame.Payload);
+
+					} catch (GeneralSecurityException e) {
+						// 이후의 Frame도 복호화할 수 없다.
+						Log.w(TAG, DEVICE.getAddress() + " : " + e.getMessage());
+						close();
+						return;
+					}
+
+					STATISTICS.onReceived();
+					QUALITY.onReceived(LinkFrame.HEADER_LENGTH + frame.Payload.length, 1);
+					BlinkMessage msg = JsonManager.gson.fromJson(
+							new String(payload, MESSAGE_CHARSET), BlinkMessage.class);
+					if (msg != null && LISTENER != null)
+						LISTENER.onMessageReceived(msg, DEVICE);
+				}
+			});
+
+		} catch (RejectedExecutionException e) {
+			// 링크가 종료되었다.
+		}
+	}
+
+	/**
+	 * 연결이 끊기거나 링크가 종료되었을 때 호출된다. 상대에게 모두 쓰이지 않은 메세지를 실패로 알린다.
+	 */
+	void onClosed() {
+		boolean wasConnected = isConnected;
+		isClosed = true;
+		isConnected = false;
+		DELIVERY.shutdown();
+
+		if (mKey != null)
+			mKey.cancel();
+		if (mChannel != null) {
+			try {
+				mChannel.close();
+			} catch (IOException e) { }
+		}
+
+		ArrayList<Outgoing> failed = new ArrayList<Outgoing>();
+		if (mWriteBuffer != null) {
+			for (Outgoing outgoing : BUFFERED) {
+				if (outgoing.End > mWriteBuffer.position())
+					failed.add(outgoing);
+			}
+			SELECTOR.releaseBuffer(mWriteBuffer);
+			mWriteBuffer = null;
+		}
+		BUFFERED.clear();
+
+		synchronized (WRITE_QUEUE) {
+			failed.addAll(WRITE_QUEUE);
+			WRITE_QUEUE.clear();
+			mQueuedBytes = 0;
+		}
+
+		if (wasConnected || !failed.isEmpty())
+			Log.d(TAG, DEVICE.getAddress() + " : CLOSED " + STATISTICS + ", failed=" + failed.size());
+
+		for (Outgoing outgoing : failed) {
+			if (outgoing.Message != null && FAILURE_LISTENER != null)
+				FAILURE_LISTENER.onSendFailed(outgoing.Message, LinkOutboundQueue.FAILURE_CLOSED);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TcpTransport [" + DEVICE.getAddress() + ", Connected=" + isConnected + ", " + STATISTICS + "]";
+	}
+}
@@ -20,6 +20,11 @@ import android.os.Parcel;
 import android.os.ParcelUuid;
 import android.os.Parcelable;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
 /**
  * Blink 서비스의 블루투스 디바이스들을 관리하기 위한 기본 객체.
  * 
@@ -228,6 +233,13 @@ public class BlinkDevice implements Parcelable, Serializable,
 
 	private long Timestamp;
 
+	// Link-dependent : 이 디바이스에서 측정한 값이므로 다른 디바이스로 전송하지 않는다.
+	/**
+	 * 직접 연결된 링크의 RTT (ms). 측정하지 못한 경우 -1.
+	 */
+	private transient int LinkRtt = -1;
+	private transient float LinkLossRate;
+
 	private BlinkDevice(String address) {
 		Address = address;
 		Name = null;
@@ -271,6 +283,9 @@ public class BlinkDevice implements Parcelable, Serializable,
 		Discovered = bools[4];
 
 		Timestamp = parcel.readLong();
+
+		LinkRtt = parcel.readInt();
+		LinkLossRate = parcel.readFloat();
 	}
 
 	BlinkDevice(BluetoothDevice device) {
@@ -375,6 +390,9 @@ public class BlinkDevice implements Parcelable, Serializable,
 				BlinkSupported, Connected, Discovered });
 
 		dest.writeLong(Timestamp);
+
+		dest.writeInt(LinkRtt);
+		dest.writeFloat(LinkLossRate);
 	}
 
 	@Override
@@ -511,8 +529,116 @@ public class BlinkDevice implements Parcelable, Serializable,
 		return Timestamp;
 	}
 
+	/**
+	 * @return 직접 연결된 링크의 RTT (ms). 측정하지 못한 경우 -1.
+	 */
+	public int getLinkRtt() {
+		return LinkRtt;
+	}
+
+	/**
+	 * @return 직접 연결된 링크에서 재전송하거나 응답받지 못한 비율 (0 ~ 1).
+	 */
+	public float getLinkLossRate() {
+		return LinkLossRate;
+	}
+
+	public void setLinkQuality(int rtt, float lossRate) {
+		LinkRtt = rtt;
+		LinkLossRate = lossRate;
+	}
+
 	public boolean isCenterDevice() {
 		return Identity >= DeviceAnalyzer.Identity.PROXY.ordinal();
 	}
 
+	// *** JSON DECLARATION *** //
+	/**
+	 * BlinkDevice를 Reflection 없이 JSON으로 변환하는 TypeAdapter.
+	 * <br>필드 이름은 기존 Gson 변환과 같다. 읽어들인 객체는 Cache에 등록되지 않은 별도의 인스턴스이다.
+	 */
+	public static final class GsonAdapter extends TypeAdapter<BlinkDevice> {
+
+		@Override
+		public void write(JsonWriter out, BlinkDevice value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			out.name("Address").value(value.Address);
+			out.name("Name").value(value.Name);
+			out.name("Type").value(value.Type);
+			if (value.Uuids != null) {
+				out.name("Uuids").beginArray();
+				for (String uuid : value.Uuids)
+					out.value(uuid);
+				out.endArray();
+			}
+			out.name("Identity").value(value.Identity);
+			out.name("IdentityPoint").value(value.IdentityPoint);
+			out.name("GroupID").value(value.GroupID);
+			out.name("AutoConnect").value(value.AutoConnect);
+			out.name("SecureConnect").value(value.SecureConnect);
+			out.name("BlinkSupported").value(value.BlinkSupported);
+			out.name("Connected").value(value.Connected);
+			out.name("Discovered").value(value.Discovered);
+			out.name("Timestamp").value(value.Timestamp);
+			out.endObject();
+		}
+
+		@Override
+		public BlinkDevice read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+
+			BlinkDevice value = new BlinkDevice((String) null);
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					continue;
+				}
+
+				if ("Address".equals(name)) {
+					value.Address = in.nextString();
+				} else if ("Name".equals(name)) {
+					value.Name = in.nextString();
+				} else if ("Type".equals(name)) {
+					value.Type = in.nextInt();
+				} else if ("Uuids".equals(name)) {
+					in.beginArray();
+					while (in.hasNext())
+						value.Uuids.add(in.nextString());
+					in.endArray();
+				} else if ("Identity".equals(name)) {
+					value.Identity = in.nextInt();
+				} else if ("IdentityPoint".equals(name)) {
+					value.IdentityPoint = in.nextInt();
+				} else if ("GroupID".equals(name)) {
+					value.GroupID = in.nextString();
+				} else if ("AutoConnect".equals(name)) {
+					value.AutoConnect = in.nextBoolean();
+				} else if ("SecureConnect".equals(name)) {
+					value.SecureConnect = in.nextBoolean();
+				} else if ("BlinkSupported".equals(name)) {
+					value.BlinkSupported = in.nextBoolean();
+				} else if ("Connected".equals(name)) {
+					value.Connected = in.nextBoolean();
+				} else if ("Discovered".equals(name)) {
+					value.Discovered = in.nextBoolean();
+				} else if ("Timestamp".equals(name)) {
+					value.Timestamp = in.nextLong();
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return value;
+		}
+	}
 }
@@ -4,8 +4,9 @@ import java.io.Serializable;
 
 import android.bluetooth.BluetoothAdapter;
 
+import kr.poturns.blink.db.JsonManager;
+
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 /**
  * implements {@link IBlinkMessagable}<br>
@@ -29,7 +30,7 @@ public class BlinkMessage implements Serializable, IBlinkMessagable {
 	
 
 	// *** FIELD DECLARATION *** //
-	private static final Gson JSON_CREATOR = new GsonBuilder().setPrettyPrinting().create();
+	private static final Gson JSON_CREATOR = JsonManager.gson;
 	
 	private String SourceAddress;
 	private String SourceApplication;
@@ -45,12 +46,66 @@ public class BlinkMessage implements Serializable, IBlinkMessagable {
 	
 	private String message;
 	
+	/**
+	 * 링크 계층에서 압축한 메세지 내용. 압축되지 않은 메세지는 null이다.
+	 */
+	private byte[] CompressedMessage;
+	private int OriginalLength;
+	
 	private BlinkMessage() {
 		Type = 0;
 		Code = 0;
 		Reliable = false;
 		Timestamp = 0;
 	}
+	
+	private BlinkMessage(BlinkMessage other) {
+		SourceAddress = other.SourceAddress;
+		SourceApplication = other.SourceApplication;
+		DestinationAddress = other.DestinationAddress;
+		DestinationApplication = other.DestinationApplication;
+		Type = other.Type;
+		Code = other.Code;
+		Reliable = other.Reliable;
+		Timestamp = other.Timestamp;
+		message = other.message;
+	}
+	
+	/**
+	 * 메세지 내용을 압축된 데이터로 대체한 복사본을 반환한다.
+	 * <br>같은 메세지가 여러 디바이스로 전송될 수 있으므로, 원본은 변경하지 않는다.
+	 * 
+	 * @param compressed
+	 * @param originalLength 압축하기 전 메세지 내용의 크기 (Byte)
+	 * @return
+	 */
+	public BlinkMessage obtainCompressed(byte[] compressed, int originalLength) {
+		BlinkMessage mBlinkMessage = new BlinkMessage(this);
+		mBlinkMessage.message = null;
+		mBlinkMessage.CompressedMessage = compressed;
+		mBlinkMessage.OriginalLength = originalLength;
+		return mBlinkMessage;
+	}
+	
+	/**
+	 * 다른 디바이스에서 만들어진 메세지를 복원할 때, 원래의 생성 시간을 설정한다.
+	 * 
+	 * @param timestamp
+	 */
+	void restoreTimestamp(long timestamp) {
+		Timestamp = timestamp;
+	}
+	
+	/**
+	 * 압축이 해제된 메세지 내용을 설정한다.
+	 * 
+	 * @param message
+	 */
+	public void restoreMessage(String message) {
+		this.message = message;
+		CompressedMessage = null;
+		OriginalLength = 0;
+	}
 
 	/**
 	 * BLE에서 사용할 수 있는 Message로 변환한다.
@@ -289,4 +344,16 @@ public class BlinkMessage implements Serializable, IBlinkMessagable {
 	public int getCode() {
 	    return Code;
     }
+
+	public boolean isCompressed() {
+		return CompressedMessage != null;
+	}
+
+	public byte[] getCompressedMessage() {
+		return CompressedMessage;
+	}
+
+	public int getOriginalLength() {
+		return OriginalLength;
+	}
 }
@@ -0,0 +1,668 @@
+package kr.poturns.blink.internal.comm;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * {@link BlinkMessage}를 Binary 형식으로 변환하는 Codec.
+ *
+ * <p>JSON으로 변환할 때와 달리 필드 이름을 쓰지 않으며,
+ * <li>MAC 주소는 6 Byte로,</li>
+ * <li>Type, Code, Timestamp는 ZigZag Varint로,</li>
+ * <li>패키지명과 MeasurementKey는 링크별로 합의된 ID로</li>
+ * 변환된다. 메세지 내용은 MeasurementData 목록과 {@link kr.poturns.blink.db.archive.DatabaseMessage}의 경우
+ * 필드별로 나누어 저장하고, 그 외에는 UTF-8 문자열로 저장한다.
+ *
+ * <p>ID 사전은 처음 사용될 때 정의와 함께 전송되므로, 하나의 링크에서 순서대로 전달되는 메세지에만 사용할 수 있다.
+ * 링크마다 새로운 Codec을 생성해야 하며, 인코딩과 디코딩은 각각 하나의 Thread에서만 호출되어야 한다.
+ */
+public class BlinkMessageCodec {
+
+	// *** CONSTANT DECLARATION *** //
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/** 최근에 읽은 MAC 주소 문자열을 보관하는 개수 */
+	private static final int ADDRESS_CACHE_SIZE = 8;
+
+	/** 한 방향에서 정의할 수 있는 ID의 최대 개수. 넘치는 문자열은 매번 그대로 전송한다. */
+	private static final int MAX_DICTIONARY_SIZE = 1024;
+
+	private static final int ADDRESS_NULL = 0;
+	private static final int ADDRESS_MAC = 1;
+	private static final int ADDRESS_STRING = 2;
+
+	private static final int SECTION_NULL = 0;
+	private static final int SECTION_STRING = 1;
+	private static final int SECTION_MEASUREMENT_DATA = 2;
+	private static final int SECTION_DATABASE_MESSAGE = 3;
+
+	private static final int FLAG_RELIABLE = 0x1;
+
+	/** MeasurementData 목록의 필드. 순서대로 Bitmask의 각 Bit에 대응된다. */
+	private static final String[] MEASUREMENT_DATA_INT_FIELDS = { "MeasurementId", "MeasurementDataId", "GroupId" };
+	private static final String[] MEASUREMENT_DATA_STRING_FIELDS = { "Data", "DateTime" };
+	private static final String MEASUREMENT_DATA_KEY_FIELD = "MeasurementKey";
+
+	/** DatabaseMessage의 필드 */
+	private static final String DATABASE_MESSAGE_TYPE = "Type";
+	private static final String DATABASE_MESSAGE_OBJECT = "mJsonObject";
+	private static final String[] DATABASE_MESSAGE_STRING_FIELDS = { "Condition", "DateTimeFrom", "DateTimeTo", "data" };
+	private static final String DATABASE_MESSAGE_CONTAIN_TYPE = "ContainType";
+
+
+
+	// *** FIELD DECLARATION *** //
+	/** 상대 디바이스에게 정의한 문자열과 ID */
+	private final HashMap<String, Integer> OUTBOUND_DICTIONARY;
+	/** 상대 디바이스로부터 정의받은 ID와 문자열. ID는 1부터 시작한다. */
+	private final ArrayList<String> INBOUND_DICTIONARY;
+	private final JsonParser PARSER;
+	/** 인코딩 Buffer. 메세지마다 재사용한다. */
+	private final Output OUTPUT;
+	/** 최근에 읽은 MAC 주소의 48-bit 값과 문자열. 같은 디바이스의 주소를 매번 새로 만들지 않는다. */
+	private final long[] ADDRESS_CACHE_KEYS;
+	private final String[] ADDRESS_CACHE_VALUES;
+	private int mAddressCacheNext;
+
+	public BlinkMessageCodec() {
+		OUTBOUND_DICTIONARY = new HashMap<String, Integer>();
+		INBOUND_DICTIONARY = new ArrayList<String>();
+		INBOUND_DICTIONARY.add(null);
+		PARSER = new JsonParser();
+		OUTPUT = new Output();
+		ADDRESS_CACHE_KEYS = new long[ADDRESS_CACHE_SIZE];
+		ADDRESS_CACHE_VALUES = new String[ADDRESS_CACHE_SIZE];
+	}
+
+	/**
+	 * BlinkMessage를 Binary로 변환한다.
+	 *
+	 * @param msg
+	 * @return
+	 */
+	public byte[] encode(BlinkMessage msg) {
+		encodeInPlace(msg);
+		return OUTPUT.toByteArray();
+	}
+
+	/**
+	 * BlinkMessage를 Binary로 변환하여 Codec의 Buffer에 담는다. 새 배열을 할당하지 않는다.
+	 * <br>결과는 {@link #obtainEncodedBuffer()}의 앞부분에 있으며, 다음 변환 전까지만 유효하다.
+	 *
+	 * @param msg
+	 * @return 변환된 길이
+	 */
+	public int encodeInPlace(BlinkMessage msg) {
+		Output out = OUTPUT;
+		out.reset();
+		out.writeByte(msg.isReliable()? FLAG_RELIABLE : 0);
+		writeAddress(out, msg.getSourceAddress());
+		writeAddress(out, msg.getDestinationAddress());
+		writeInterned(out, msg.getSourceApplication());
+		writeInterned(out, msg.getDestinationApplication());
+		out.writeSignedVarint(msg.getType());
+		out.writeSignedVarint(msg.getCode());
+		out.writeSignedVarint(msg.getTimestamp());
+		writeSection(out, msg.getType(), msg.getMessage());
+		return out.size();
+	}
+
+	/**
+	 * @return {@link #encodeInPlace(BlinkMessage)}의 결과를 담은 Buffer. 변환된 길이보다 길 수 있다.
+	 */
+	public byte[] obtainEncodedBuffer() {
+		return OUTPUT.array();
+	}
+
+	/**
+	 * Binary를 BlinkMessage로 변환한다.
+	 *
+	 * @param data
+	 * @return
+	 * @throws IllegalArgumentException 데이터가 손상되었거나, 정의받지 않은 ID가 사용된 경우
+	 */
+	public BlinkMessage decode(byte[] data) {
+		return decode(data, 0, data.length);
+	}
+
+	/**
+	 * 배열의 일부를 BlinkMessage로 변환한다.
+	 *
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @return
+	 * @throws IllegalArgumentException 데이터가 손상되었거나, 정의받지 않은 ID가 사용된 경우
+	 */
+	public BlinkMessage decode(byte[] data, int offset, int length) {
+		Input in = new Input(data, offset, offset + length);
+		int flags = in.readByte();
+		String source = readAddress(in);
+		String destination = readAddress(in);
+		String sourceApplication = readInterned(in);
+		String destinationApplication = readInterned(in);
+
+		BlinkMessage msg = new BlinkMessage.Builder()
+				.setSourceApplication(sourceApplication)
+				.setDestinationApplication(destinationApplication)
+				.setType((int) in.readSignedVarint())
+				.setCode((int) in.readSignedVarint())
+				.setReliable((flags & FLAG_RELIABLE) != 0)
+				.build();
+		msg.setSourceAddress(source);
+		msg.setDestinationAddress(destination);
+		msg.restoreTimestamp(in.readSignedVarint());
+		msg.restoreMessage(readSection(in));
+		return msg;
+	}
+
+
+
+	// *** ADDRESS / DICTIONARY *** //
+	private static void writeAddress(Output out, String address) {
+		if (address == null) {
+			out.writeByte(ADDRESS_NULL);
+
+		} else if (isMacAddress(address)) {
+			out.writeByte(ADDRESS_MAC);
+			for (int i = 0; i < 6; i++)
+				out.writeByte((hexValue(address.charAt(i * 3)) << 4) | hexValue(address.charAt(i * 3 + 1)));
+
+		} else {
+			out.writeByte(ADDRESS_STRING);
+			out.writeString(address);
+		}
+	}
+
+	/**
+	 * "00:11:22:AA:BB:CC" 형식 (대문자)인지 확인한다.
+	 */
+	private static boolean isMacAddress(String address) {
+		if (address.length() != 17)
+			return false;
+
+		for (int i = 0; i < 17; i++) {
+			char c = address.charAt(i);
+			if ((i % 3 == 2)? c != ':' : hexValue(c) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static int hexValue(char c) {
+		if (c >= '0' && c <= '9')
+			return c - '0';
+		if (c >= 'A' && c <= 'F')
+			return c - 'A' + 10;
+		return -1;
+	}
+
+	private String readAddress(Input in) {
+		int kind = in.readByte();
+		if (kind == ADDRESS_NULL)
+			return null;
+		if (kind == ADDRESS_STRING)
+			return in.readString();
+		if (kind != ADDRESS_MAC)
+			throw new IllegalArgumentException("Unknown address kind : " + kind);
+
+		// Cache의 빈 자리(0)와 구분하기 위해 49번째 Bit를 설정한다.
+		long key = 1L << 48;
+		for (int i = 0; i < 6; i++)
+			key |= (long) in.readByte() << (40 - i * 8);
+
+		for (int i = 0; i < ADDRESS_CACHE_SIZE; i++) {
+			if (ADDRESS_CACHE_KEYS[i] == key)
+				return ADDRESS_CACHE_VALUES[i];
+		}
+
+		char[] chars = new char[17];
+		for (int i = 0; i < 6; i++) {
+			int b = (int) (key >>> (40 - i * 8)) & 0xFF;
+			chars[i * 3] = HEX_DIGITS[b >>> 4];
+			chars[i * 3 + 1] = HEX_DIGITS[b & 0xF];
+			if (i < 5)
+				chars[i * 3 + 2] = ':';
+		}
+
+		String address = new String(chars);
+		ADDRESS_CACHE_KEYS[mAddressCacheNext] = key;
+		ADDRESS_CACHE_VALUES[mAddressCacheNext] = address;
+		mAddressCacheNext = (mAddressCacheNext + 1) % ADDRESS_CACHE_SIZE;
+		return address;
+	}
+
+	/**
+	 * 문자열을 ID로 쓴다.
+	 * <br>Varint의 최하위 Bit가 1이면 ID의 정의이며 문자열이 이어진다. ID 0의 정의는 사전에 저장하지 않는다.
+	 * <br>Varint가 0이면 null이다.
+	 */
+	private void writeInterned(Output out, String value) {
+		if (value == null) {
+			out.writeVarint(0);
+			return;
+		}
+
+		Integer id = OUTBOUND_DICTIONARY.get(value);
+		if (id != null) {
+			out.writeVarint(id << 1);
+
+		} else if (OUTBOUND_DICTIONARY.size() < MAX_DICTIONARY_SIZE) {
+			int newId = OUTBOUND_DICTIONARY.size() + 1;
+			OUTBOUND_DICTIONARY.put(value, newId);
+			out.writeVarint((newId << 1) | 1);
+			out.writeString(value);
+
+		} else {
+			out.writeVarint(1);
+			out.writeString(value);
+		}
+	}
+
+	private String readInterned(Input in) {
+		int value = (int) in.readVarint();
+		if (value == 0)
+			return null;
+
+		int id = value >>> 1;
+		if ((value & 1) == 0) {
+			if (id >= INBOUND_DICTIONARY.size())
+				throw new IllegalArgumentException("Undefined id : " + id);
+			return INBOUND_DICTIONARY.get(id);
+		}
+
+		String defined = in.readString();
+		if (id == 0)
+			return defined;
+		if (id != INBOUND_DICTIONARY.size())
+			throw new IllegalArgumentException("Out of order id : " + id);
+		INBOUND_DICTIONARY.add(defined);
+		return defined;
+	}
+
+
+
+	// *** MESSAGE SECTION *** //
+	/**
+	 * 메세지 Type에 따라 메세지 내용을 필드별로 나누어 쓴다.
+	 * <br>내용이 예상한 형식과 다르면 (변환 후 같은 JSON으로 복원되지 않으면) 문자열로 쓴다.
+	 */
+	private void writeSection(Output out, int type, String message) {
+		if (message == null) {
+			out.writeByte(SECTION_NULL);
+			return;
+		}
+
+		try {
+			switch (type) {
+			case IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC:
+			case IBlinkMessagable.TYPE_REQUEST_RECONCILE_DATA:
+			case IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS:
+				JsonArray rows = asMeasurementDataArray(message);
+				if (rows != null) {
+					out.writeByte(SECTION_MEASUREMENT_DATA);
+					writeMeasurementData(out, rows);
+					return;
+				}
+				break;
+
+			case IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA:
+				JsonObject query = asDatabaseMessage(message);
+				if (query != null) {
+					out.writeByte(SECTION_DATABASE_MESSAGE);
+					writeDatabaseMessage(out, query);
+					return;
+				}
+				break;
+			}
+
+		} catch (JsonParseException e) {
+			// 문자열로 쓴다.
+		}
+
+		out.writeByte(SECTION_STRING);
+		out.writeString(message);
+	}
+
+	private String readSection(Input in) {
+		int section = in.readByte();
+		switch (section) {
+		case SECTION_NULL:
+			return null;
+		case SECTION_STRING:
+			return in.readString();
+		case SECTION_MEASUREMENT_DATA:
+			return readMeasurementData(in).toString();
+		case SECTION_DATABASE_MESSAGE:
+			return readDatabaseMessage(in).toString();
+		default:
+			throw new IllegalArgumentException("Unknown section : " + section);
+		}
+	}
+
+	/**
+	 * 메세지 내용이 MeasurementData의 필드만 가진 객체의 배열이면 반환한다.
+	 */
+	private JsonArray asMeasurementDataArray(String message) {
+		JsonElement element = PARSER.parse(message);
+		if (!element.isJsonArray())
+			return null;
+
+		JsonArray array = element.getAsJsonArray();
+		for (JsonElement row : array) {
+			if (!row.isJsonObject())
+				return null;
+
+			for (Entry<String, JsonElement> field : row.getAsJsonObject().entrySet()) {
+				String name = field.getKey();
+				if (MEASUREMENT_DATA_KEY_FIELD.equals(name) || contains(MEASUREMENT_DATA_STRING_FIELDS, name)) {
+					if (!isString(field.getValue()))
+						return null;
+				} else if (!contains(MEASUREMENT_DATA_INT_FIELDS, name) || !isInt(field.getValue())) {
+					return null;
+				}
+			}
+		}
+		return array;
+	}
+
+	private void writeMeasurementData(Output out, JsonArray rows) {
+		out.writeVarint(rows.size());
+		for (JsonElement element : rows) {
+			JsonObject row = element.getAsJsonObject();
+
+			int mask = 0;
+			int bit = 0;
+			for (String name : MEASUREMENT_DATA_INT_FIELDS) {
+				if (row.has(name))
+					mask |= 1 << bit;
+				bit++;
+			}
+			for (String name : MEASUREMENT_DATA_STRING_FIELDS) {
+				if (row.has(name))
+					mask |= 1 << bit;
+				bit++;
+			}
+			if (row.has(MEASUREMENT_DATA_KEY_FIELD))
+				mask |= 1 << bit;
+			out.writeByte(mask);
+
+			for (String name : MEASUREMENT_DATA_INT_FIELDS) {
+				if (row.has(name))
+					out.writeSignedVarint(row.get(name).getAsInt());
+			}
+			for (String name : MEASUREMENT_DATA_STRING_FIELDS) {
+				if (row.has(name))
+					out.writeString(row.get(name).getAsString());
+			}
+			if (row.has(MEASUREMENT_DATA_KEY_FIELD))
+				writeInterned(out, row.get(MEASUREMENT_DATA_KEY_FIELD).getAsString());
+		}
+	}
+
+	private JsonArray readMeasurementData(Input in) {
+		int count = (int) in.readVarint();
+		JsonArray rows = new JsonArray();
+		for (int i = 0; i < count; i++) {
+			JsonObject row = new JsonObject();
+			int mask = in.readByte();
+
+			int bit = 0;
+			for (String name : MEASUREMENT_DATA_INT_FIELDS) {
+				if ((mask & (1 << bit++)) != 0)
+					row.addProperty(name, (int) in.readSignedVarint());
+			}
+			for (String name : MEASUREMENT_DATA_STRING_FIELDS) {
+				if ((mask & (1 << bit++)) != 0)
+					row.addProperty(name, in.readString());
+			}
+			if ((mask & (1 << bit)) != 0)
+				row.addProperty(MEASUREMENT_DATA_KEY_FIELD, readInterned(in));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * 메세지 내용이 DatabaseMessage의 형식이면 반환한다.
+	 */
+	private JsonObject asDatabaseMessage(String message) {
+		JsonElement element = PARSER.parse(message);
+		if (!element.isJsonObject())
+			return null;
+
+		JsonObject root = element.getAsJsonObject();
+		for (Entry<String, JsonElement> field : root.entrySet()) {
+			if (DATABASE_MESSAGE_TYPE.equals(field.getKey())) {
+				if (!isInt(field.getValue()))
+					return null;
+			} else if (!DATABASE_MESSAGE_OBJECT.equals(field.getKey()) || !field.getValue().isJsonObject()) {
+				return null;
+			}
+		}
+
+		if (!root.has(DATABASE_MESSAGE_TYPE) || !root.has(DATABASE_MESSAGE_OBJECT))
+			return null;
+
+		for (Entry<String, JsonElement> field : root.getAsJsonObject(DATABASE_MESSAGE_OBJECT).entrySet()) {
+			String name = field.getKey();
+			if (DATABASE_MESSAGE_CONTAIN_TYPE.equals(name)) {
+				if (!isInt(field.getValue()))
+					return null;
+			} else if (!contains(DATABASE_MESSAGE_STRING_FIELDS, name) || !isString(field.getValue())) {
+				return null;
+			}
+		}
+		return root;
+	}
+
+	private void writeDatabaseMessage(Output out, JsonObject root) {
+		out.writeSignedVarint(root.get(DATABASE_MESSAGE_TYPE).getAsInt());
+		JsonObject fields = root.getAsJsonObject(DATABASE_MESSAGE_OBJECT);
+
+		int mask = 0;
+		for (int i = 0; i < DATABASE_MESSAGE_STRING_FIELDS.length; i++) {
+			if (fields.has(DATABASE_MESSAGE_STRING_FIELDS[i]))
+				mask |= 1 << i;
+		}
+		if (fields.has(DATABASE_MESSAGE_CONTAIN_TYPE))
+			mask |= 1 << DATABASE_MESSAGE_STRING_FIELDS.length;
+		out.writeByte(mask);
+
+		for (String name : DATABASE_MESSAGE_STRING_FIELDS) {
+			if (fields.has(name))
+				out.writeString(fields.get(name).getAsString());
+		}
+		if (fields.has(DATABASE_MESSAGE_CONTAIN_TYPE))
+			out.writeSignedVarint(fields.get(DATABASE_MESSAGE_CONTAIN_TYPE).getAsInt());
+	}
+
+	private JsonObject readDatabaseMessage(Input in) {
+		JsonObject root = new JsonObject();
+		root.addProperty(DATABASE_MESSAGE_TYPE, (int) in.readSignedVarint());
+
+		JsonObject fields = new JsonObject();
+		int mask = in.readByte();
+		for (int i = 0; i < DATABASE_MESSAGE_STRING_FIELDS.length; i++) {
+			if ((mask & (1 << i)) != 0)
+				fields.addProperty(DATABASE_MESSAGE_STRING_FIELDS[i], in.readString());
+		}
+		if ((mask & (1 << DATABASE_MESSAGE_STRING_FIELDS.length)) != 0)
+			fields.addProperty(DATABASE_MESSAGE_CONTAIN_TYPE, (int) in.readSignedVarint());
+
+		root.add(DATABASE_MESSAGE_OBJECT, fields);
+		return root;
+	}
+
+	private static boolean contains(String[] names, String name) {
+		for (String candidate : names) {
+			if (candidate.equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isString(JsonElement element) {
+		return element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+	}
+
+	/**
+	 * 정수로 변환해도 같은 JSON으로 복원되는 값인지 확인한다. (예: "1.0"은 해당되지 않는다.)
+	 */
+	private static boolean isInt(JsonElement element) {
+		if (!element.isJsonPrimitive())
+			return false;
+
+		JsonPrimitive primitive = element.getAsJsonPrimitive();
+		if (!primitive.isNumber())
+			return false;
+
+		try {
+			String text = primitive.getAsString();
+			return String.valueOf(Integer.parseInt(text)).equals(text);
+
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+
+
+	// *** BINARY I/O *** //
+	private static class Output extends ByteArrayOutputStream {
+		Output() {
+			super(256);
+		}
+
+		void writeByte(int value) {
+			write(value & 0xFF);
+		}
+
+		void writeVarint(long value) {
+			while ((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		void writeSignedVarint(long value) {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+
+		/**
+		 * UTF-8로 변환하여 쓴다. 중간 배열을 만들지 않으며, 짝이 맞지 않는 Surrogate는 '?'로 쓴다.
+		 */
+		void writeString(String value) {
+			int length = value.length();
+			writeVarint(utf8Length(value));
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+				if (c < 0x80) {
+					write(c);
+
+				} else if (c < 0x800) {
+					write(0xC0 | (c >> 6));
+					write(0x80 | (c & 0x3F));
+
+				} else if (Character.isHighSurrogate(c) && i + 1 < length
+						&& Character.isLowSurrogate(value.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, value.charAt(++i));
+					write(0xF0 | (codePoint >> 18));
+					write(0x80 | ((codePoint >> 12) & 0x3F));
+					write(0x80 | ((codePoint >> 6) & 0x3F));
+					write(0x80 | (codePoint & 0x3F));
+
+				} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+					write('?');
+
+				} else {
+					write(0xE0 | (c >> 12));
+					write(0x80 | ((c >> 6) & 0x3F));
+					write(0x80 | (c & 0x3F));
+				}
+			}
+		}
+
+		byte[] array() {
+			return buf;
+		}
+
+		private static int utf8Length(String value) {
+			int length = value.length();
+			int bytes = 0;
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+				if (c < 0x80) {
+					bytes += 1;
+				} else if (c < 0x800) {
+					bytes += 2;
+				} else if (Character.isHighSurrogate(c) && i + 1 < length
+						&& Character.isLowSurrogate(value.charAt(i + 1))) {
+					bytes += 4;
+					i++;
+				} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+					bytes += 1;
+				} else {
+					bytes += 3;
+				}
+			}
+			return bytes;
+		}
+	}
+
+	private static class Input {
+		private final byte[] DATA;
+		private final int LIMIT;
+		private int mPosition;
+
+		Input(byte[] data, int offset, int limit) {
+			DATA = data;
+			LIMIT = limit;
+			mPosition = offset;
+		}
+
+		int readByte() {
+			if (mPosition >= LIMIT)
+				throw new IllegalArgumentException("Unexpected end of data");
+			return DATA[mPosition++] & 0xFF;
+		}
+
+		long readVarint() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new IllegalArgumentException("Malformed varint");
+		}
+
+		long readSignedVarint() {
+			long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		String readString() {
+			long length = readVarint();
+			if (length < 0 || length > LIMIT - mPosition)
+				throw new IllegalArgumentException("Invalid string length : " + length);
+
+			String value = new String(DATA, mPosition, (int) length, CHARSET);
+			mPosition += (int) length;
+			return value;
+		}
+	}
+}
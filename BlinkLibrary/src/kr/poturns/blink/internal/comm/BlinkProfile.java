@@ -12,13 +12,24 @@ public class BlinkProfile implements BluetoothProfile {
 	
 	public static final UUID UUID_BLINK = UUID.fromString("b7121e00-cc1d-1704-c825-0002a5d5c51b");
 	
+	/**
+	 * Blink GATT 서비스({@link #UUID_BLINK})에서 Central이 Peripheral로 데이터를 쓰는 Characteristic. (Write Without Response)
+	 */
+	public static final UUID UUID_BLINK_RX = UUID.fromString("e4de5780-1cc1-11e4-adf7-0002a5d5c51b");
+	
+	/**
+	 * Blink GATT 서비스({@link #UUID_BLINK})에서 Peripheral이 Central로 데이터를 보내는 Characteristic. (Notify)
+	 */
+	public static final UUID UUID_BLINK_TX = UUID.fromString("f9d96f80-1cc1-11e4-9ac9-0002a5d5c51b");
+	
+	/**
+	 * Notification을 설정하는 표준 Client Characteristic Configuration Descriptor
+	 */
+	public static final UUID UUID_CLIENT_CHARACTERISTIC_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+	
 	
 	
 	/*
-e4de5780-1cc1-11e4-adf7-0002a5d5c51b
-
-f9d96f80-1cc1-11e4-9ac9-0002a5d5c51b
-
 026ba640-1cc2-11e4-87d3-0002a5d5c51b
 
 098805e0-1cc2-11e4-9ac9-0002a5d5c51b
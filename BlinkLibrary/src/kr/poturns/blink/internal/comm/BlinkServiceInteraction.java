@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import kr.poturns.blink.db.BlinkDatabaseManager;
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.SqliteManager;
 import kr.poturns.blink.db.archive.App;
 import kr.poturns.blink.db.archive.BlinkAppInfo;
@@ -35,7 +36,6 @@ import android.util.Log;
 import android.widget.Toast;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 /**
@@ -74,7 +74,7 @@ public class BlinkServiceInteraction implements ServiceConnection,
 	public final Local local = new Local();
 	/** Remote device에 요청하는 객체 */
 	public final Remote remote = new Remote();
-	Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	Gson gson = JsonManager.gson;
 
 	boolean isRegisteredReceiver = false;
 
@@ -1115,7 +1115,8 @@ public class BlinkServiceInteraction implements ServiceConnection,
 		}
 
 		/**
-		 * 타겟 어플리케이션에 단일 데이터를 전송한다.
+		 * 타겟 어플리케이션에 단일 데이터를 전송한다. <br>
+		 * requestCode가 음수이면 전송하지 않고 {@link kr.poturns.blink.db.archive.CallbackData#ERROR_SEND_FAIL}로 콜백한다.
 		 * 
 		 * @param targetBlinkAppInfo
 		 *            : 전송할 타겟 어플리케이션
@@ -1184,6 +1185,23 @@ public class BlinkServiceInteraction implements ServiceConnection,
 		return !(devices == null || devices.length == 0);
 	}
 	
+	/**
+	 * 직접 연결된 디바이스와의 링크 지표를 JSON으로 받아온다.
+	 * 받은 메세지의 처리 지표는 Dispatcher 항목에 함께 담긴다.
+	 * 
+	 * @param device
+	 * @return 연결되어 있지 않으면 null.
+	 */
+	public String obtainLinkStatistics(BlinkDevice device) {
+		try {
+			if (mInternalOperationSupport != null)
+				return mInternalOperationSupport.obtainLinkStatistics(device);
+		
+		} catch (RemoteException e) { }
+		
+		return null;
+	}
+	
 	/**
 	 * 사용자의 권한으로 본 디바이스에 Main Identity를 부여한다.
 	 * @param enable
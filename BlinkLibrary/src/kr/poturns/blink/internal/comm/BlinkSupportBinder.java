@@ -1,9 +1,9 @@
 package kr.poturns.blink.internal.comm;
 
 import java.io.ByteArrayOutputStream;
-import java.util.HashMap;
 import java.util.List;
 
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.SqliteManager;
 import kr.poturns.blink.db.SyncDatabaseManager;
 import kr.poturns.blink.db.archive.App;
@@ -27,7 +27,6 @@ import android.os.RemoteException;
 import android.util.Log;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 /**
  * 서비스에 어떻게 요청할 지 정하며 Log를 남긴다.<br>
@@ -68,16 +67,21 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 	 */
 
 	int requestPolicy = REQUEST_TYPE_DUAL_DEVICE;
-	Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	Gson gson = JsonManager.gson;
 
 	SyncDatabaseManager mBlinkDatabaseManager;
 	BlinkDevice mBlinkDevice;
 
 	/**
-	 * 어플리케이션에 돌려줘야 할 콜백 데이터를 가지고 있는 해쉬맵</br> 요청코드별로 가지고 있으며 후에 다른 디바이스로부터 데이터가
-	 * 오면 내부에서 검색한 데이터와 합치기 위해 임시 저장해둔다.
+	 * 외부 디바이스로 보낸 요청의 테이블</br> 요청 ID별로 콜백 데이터를 가지고 있으며 후에 다른 디바이스로부터 데이터가
+	 * 오면 내부에서 검색한 데이터와 합쳐서 돌려준다. 응답이 오지 않으면 기한이 지난 후 에러코드와 함께 돌려준다.
 	 */
-	HashMap<Integer, CallbackData> CALLBACK_DATA_MAP = new HashMap<Integer, CallbackData>();
+	final RequestTable REQUEST_TABLE = new RequestTable(new RequestTable.OnCompletedListener() {
+		@Override
+		public void onCompleted(int requestCode, String packageName, CallbackData data) {
+			dispatchCallback(requestCode, packageName, data);
+		}
+	});
 
 	public BlinkSupportBinder(BlinkLocalService context) throws Exception {
 		super(context);
@@ -128,41 +132,98 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 	}
 
 	/**
-	 * 클라이언트로 콜백해주는 매소드이다. <br>
-	 * {@link BlinkSupportBinder#registerCallback(IInternalEventCallback)}을 통헤
-	 * 어플리케이션에서 등록한 콜백을 호출해준다.
+	 * 외부 디바이스로부터 받은 데이터를 클라이언트로 콜백해주는 매소드이다. <br>
+	 * 요청에 대한 응답이면 요청 테이블에서 해당 요청을 찾아 완료하고, 이미 완료되었거나 기한이 지난 요청의 응답은 버린다.
+	 * 그 외에는 다른 디바이스의 어플리케이션이 직접 보낸 데이터이므로 그대로 전달한다.
 	 * 
 	 * @param responseCode
-	 *            : 어플리케이션으로부터 받은 requestCode와 동일한 값으로 어떤 요청인지 구분하기 위한 값
+	 *            : 요청할 때 발급한 요청 ID(음수), 또는 데이터를 보낸 어플리케이션의 requestCode(0 이상)
 	 * @param data
 	 *            : 외부 디바이스로부터 온 데이터
 	 * @param result
 	 *            : 통신이 정상적으로 되었는지 결과
 	 */
 	public void callbackData(int responseCode, String data, boolean result,String packageName) {
+		if (RequestTable.isRequestId(responseCode)) {
+			if (!REQUEST_TABLE.complete(responseCode, data, result))
+				Log.w(TAG, "Discard late or unknown response : " + responseCode);
+			return;
+		}
+
+		CallbackData mCallbackData = new CallbackData();
+		mCallbackData.OutDeviceData = data;
+		mCallbackData.Result = result;
+		dispatchCallback(responseCode, packageName, mCallbackData);
+	}
+
+	/**
+	 * 요청이 실패했음을 클라이언트로 콜백해준다. <br>
+	 * 내부 디바이스에서 검색한 데이터가 있으면 함께 전달한다.
+	 * 
+	 * @param requestId
+	 *            : 요청할 때 발급한 요청 ID
+	 * @param resultDetail
+	 *            : {@link CallbackData}의 ERROR 상수
+	 */
+	public void callbackFailure(int requestId, int resultDetail) {
+		if (!REQUEST_TABLE.fail(requestId, resultDetail))
+			Log.w(TAG, "Discard failure of unknown request : " + requestId);
+	}
+
+	/**
+	 * {@link BlinkSupportBinder#registerCallback(IInternalEventCallback)}을 통헤
+	 * 어플리케이션에서 등록한 콜백을 호출해준다.
+	 * 
+	 * @param requestCode
+	 *            : 어플리케이션으로부터 받은 requestCode와 동일한 값으로 어떤 요청인지 구분하기 위한 값
+	 * @param packageName
+	 * @param mCallbackData
+	 */
+	private void dispatchCallback(int requestCode, String packageName, CallbackData mCallbackData) {
 		ServiceKeeper mServiceKeeper = ServiceKeeper.getInstance(CONTEXT);
 		RemoteCallbackList<IInternalEventCallback> mRemoteCallbackList = mServiceKeeper
 				.obtainRemoteCallbackList(packageName);
 		if (mRemoteCallbackList == null) {
 			return;
 		}
-		CallbackData mCallbackData = CALLBACK_DATA_MAP.get(responseCode);
-		if (mCallbackData == null) {
-			mCallbackData = new CallbackData();
-		}
-		mCallbackData.OutDeviceData = data;
-		mCallbackData.Result = result;
 
-		int N = mRemoteCallbackList.beginBroadcast();
-		for (int i = 0; i < N; i++) {
-			try {
-				mRemoteCallbackList.getBroadcastItem(i).onReceiveData(
-						responseCode, mCallbackData);
-			} catch (RemoteException e) {
-				e.printStackTrace();
+		// 응답 수신, 전송 실패, 기한 만료가 서로 다른 스레드에서 호출되므로 Broadcast가 겹치지 않도록 한다.
+		synchronized (mRemoteCallbackList) {
+			int N = mRemoteCallbackList.beginBroadcast();
+			for (int i = 0; i < N; i++) {
+				try {
+					mRemoteCallbackList.getBroadcastItem(i).onReceiveData(
+							requestCode, mCallbackData);
+				} catch (RemoteException e) {
+					e.printStackTrace();
+				}
 			}
+			mRemoteCallbackList.finishBroadcast();
 		}
-		mRemoteCallbackList.finishBroadcast();
+	}
+
+	/**
+	 * 요청을 테이블에 등록한 후 외부 디바이스로 전송한다.<br>
+	 * 대기 중인 요청이 너무 많으면 전송하지 않고 에러코드와 함께 콜백을 호출한다.
+	 */
+	private void sendRequest(BlinkMessage mBlinkMessage, BlinkDevice target,
+			int requestCode, String packageName, CallbackData mCallbackData) {
+		if (!REQUEST_TABLE.register(mBlinkMessage.getCode(), requestCode,
+				packageName, mCallbackData, RequestTable.DEFAULT_TIMEOUT)) {
+			mCallbackData.Result = false;
+			mCallbackData.ResultDetail = CallbackData.ERROR_SEND_FAIL;
+			dispatchCallback(requestCode, packageName, mCallbackData);
+			return;
+		}
+		CONTEXT.mMessageProcessor.sendBlinkMessageTo(mBlinkMessage, target);
+	}
+
+	/**
+	 * 외부 디바이스로 보내지 않고 실패한 요청의 콜백을 호출한다.
+	 */
+	private void callbackLocalFailure(int requestCode, String packageName, CallbackData mCallbackData) {
+		mCallbackData.Result = false;
+		dispatchCallback(requestCode, packageName, mCallbackData);
 	}
 
 	/**
@@ -197,8 +258,6 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 	
 		CallbackData mCallbackData = new CallbackData();
 	
-		CALLBACK_DATA_MAP.remove(requestCode);
-	
 		try {
 			// FIXME 라이브러리에 등록되지 않은 클래스일 경우
 			// 클래스 인스턴스가 생성되지 않음.
@@ -224,23 +283,21 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 						.setSourceApplication(packageName)
 						.setMessage(gson.toJson(mDatabaseMessage))
 						.setType(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA)
-						.setCode(requestCode).build();
+						.setCode(REQUEST_TABLE.obtainRequestId()).build();
 				
 				if (requestPolicy == REQUEST_TYPE_DUAL_DEVICE) {
 					mCallbackData.InDeviceData = mBlinkDatabaseManager
 							.obtainMeasurementData(mClass, DateTimeFrom,
 									DateTimeTo, ContainType);
-					CALLBACK_DATA_MAP.put(requestCode, mCallbackData);
 				}
 				// 자기 자신이 center 디바이스면 메시지를 보내지 않고 에러코드를 설정한다.
 				if (ServiceKeeper.getInstance(CONTEXT)
 						.obtainCurrentCenterDevice().getAddress()
 						.contentEquals(mBlinkDevice.getAddress())) {
 					mCallbackData.ResultDetail = CallbackData.ERROR_CENTER_DEVICE;
-					callbackData(requestCode, null, false,packageName);
+					callbackLocalFailure(requestCode, packageName, mCallbackData);
 				} else {
-					CONTEXT.mMessageProcessor.sendBlinkMessageTo(mBlinkMessage,
-							null);
+					sendRequest(mBlinkMessage, null, requestCode, packageName, mCallbackData);
 				}
 			} else {
 				mCallbackData.ResultDetail = CallbackData.ERROR_NO_OUT_DEVICE;
@@ -248,13 +305,12 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 					mCallbackData.InDeviceData = mBlinkDatabaseManager
 							.obtainMeasurementData(mClass, DateTimeFrom,
 									DateTimeTo, ContainType);
-					CALLBACK_DATA_MAP.put(requestCode, mCallbackData);
 				}
-				callbackData(requestCode, null, false,packageName);
+				callbackLocalFailure(requestCode, packageName, mCallbackData);
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
-			callbackData(requestCode, null, false,packageName);
+			callbackLocalFailure(requestCode, packageName, mCallbackData);
 		}
 	
 	}
@@ -270,8 +326,6 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 
 		CallbackData mCallbackData = new CallbackData();
 
-		CALLBACK_DATA_MAP.remove(requestCode);
-
 		BlinkMessage mBlinkMessage;
 
 		// 자신의 디바이스가 아니고 다른곳에 MeasurementData가 존재하면
@@ -283,7 +337,6 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 					.setDateTimeFrom(DateTimeFrom).setDateTimeTo(DateTimeTo)
 					.setType(DatabaseMessage.OBTAIN_DATA_BY_ID).build();
 
-			String temp = gson.toJson(mDatabaseMessage);
 			mBlinkMessage = new BlinkMessage.Builder()
 					.setDestinationDevice((String) null)
 					.setDestinationApplication(null)
@@ -291,26 +344,22 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 					.setSourceApplication(packageName)
 					.setMessage(gson.toJson(mDatabaseMessage))
 					.setType(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA)
-					.setCode(requestCode).build();
+					.setCode(REQUEST_TABLE.obtainRequestId()).build();
 			
 			if (requestPolicy == REQUEST_TYPE_DUAL_DEVICE) {
-				CONTEXT.mMessageProcessor.sendBlinkMessageTo(mBlinkMessage,
-						null);
 				List<MeasurementData> InDeviceData = mBlinkDatabaseManager
 						.obtainMeasurementData(mMeasurementList, DateTimeFrom,
 								DateTimeTo);
 				mCallbackData.InDeviceData = gson.toJson(InDeviceData);
-				CALLBACK_DATA_MAP.put(requestCode, mCallbackData);
 			}
 			
 			// 자기 자신이 center 디바이스면 메시지를 보내지 않고 에러코드를 설정한다.
 			if (ServiceKeeper.getInstance(CONTEXT).obtainCurrentCenterDevice()
 					.getAddress().contentEquals(mBlinkDevice.getAddress())) {
 				mCallbackData.ResultDetail = CallbackData.ERROR_CENTER_DEVICE;
-				callbackData(requestCode, null, false,packageName);
+				callbackLocalFailure(requestCode, packageName, mCallbackData);
 			} else
-				CONTEXT.mMessageProcessor.sendBlinkMessageTo(mBlinkMessage,
-						null);
+				sendRequest(mBlinkMessage, null, requestCode, packageName, mCallbackData);
 			
 		} else {
 			mCallbackData.ResultDetail = CallbackData.ERROR_NO_OUT_DEVICE;
@@ -320,9 +369,8 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 						.obtainMeasurementData(mMeasurementList, DateTimeFrom,
 								DateTimeTo);
 				mCallbackData.InDeviceData = gson.toJson(InDeviceData);
-				CALLBACK_DATA_MAP.put(requestCode, mCallbackData);
 			}
-			callbackData(requestCode, null, false,packageName);
+			callbackLocalFailure(requestCode, packageName, mCallbackData);
 		}
 	}
 
@@ -335,8 +383,6 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 
 		CallbackData mCallbackData = new CallbackData();
 
-		CALLBACK_DATA_MAP.remove(requestCode);
-
 		Device device = mBlinkDatabaseManager.obtainDevice(function);
 		App app = mBlinkDatabaseManager.obtainApp(function);
 
@@ -352,17 +398,19 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 					.setSourceApplication(packageName)
 					.setMessage(gson.toJson(function))
 					.setType(IBlinkMessagable.TYPE_REQUEST_FUNCTION)
-					.setCode(requestCode).build();
-			CONTEXT.mMessageProcessor.sendBlinkMessageTo(mBlinkMessage,
-					BlinkDevice.load(device.MacAddress));
+					.setCode(REQUEST_TABLE.obtainRequestId()).build();
+			sendRequest(mBlinkMessage, BlinkDevice.load(device.MacAddress),
+					requestCode, packageName, mCallbackData);
 		} else {
 			mCallbackData.ResultDetail = CallbackData.ERROR_NO_OUT_DEVICE;
-			callbackData(requestCode, null, false,packageName);
+			callbackLocalFailure(requestCode, packageName, mCallbackData);
 		}
 	}
 
 	/**
-	 * 타겟 어플리케이션에 단일 데이터를 전송한다.
+	 * 타겟 어플리케이션에 단일 데이터를 전송한다. <br>
+	 * requestCode는 그대로 전송되므로, 요청 ID와 구분되도록 0 이상이어야 한다.
+	 * 음수이면 전송하지 않고 {@link CallbackData#ERROR_SEND_FAIL}로 콜백한다.
 	 * 
 	 * @param targetBlinkAppInfo
 	 *            : 전송할 타겟 어플리케이션
@@ -375,14 +423,18 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 
 		CallbackData mCallbackData = new CallbackData();
 
-		CALLBACK_DATA_MAP.remove(requestCode);
-
 		BlinkMessage mBlinkMessage;
 
+		// requestCode가 그대로 BlinkMessage의 Code로 전송되므로, 요청 ID와 겹치는 음수는 보내지 않는다.
+		if (RequestTable.isRequestId(requestCode)) {
+			Log.w(TAG, "Reject negative requestCode : " + requestCode);
+			mCallbackData.ResultDetail = CallbackData.ERROR_SEND_FAIL;
+			callbackLocalFailure(requestCode, packageName, mCallbackData);
+		}
 		// 해당 BlinkApp이 없을 경우
-		if (!targetBlinkAppInfo.isExist) {
+		else if (!targetBlinkAppInfo.isExist) {
 			mCallbackData.ResultDetail = CallbackData.ERROR_CONNECT_FAIL;
-			callbackData(requestCode, null, false,packageName);
+			callbackLocalFailure(requestCode, packageName, mCallbackData);
 		}
 		// 타겟 디바이스가 자신이 아니면 메시지를 보낸다.
 		else if (!targetBlinkAppInfo.mDevice.MacAddress
@@ -412,7 +464,7 @@ public class BlinkSupportBinder extends ConnectionSupportBinder {
 					.callbackData(requestCode, json, true,targetBlinkAppInfo.mApp.PackageName);
 			// 자기 자신에게 reponse를 보냄
 			mCallbackData.ResultDetail = CallbackData.ERROR_NO_OUT_DEVICE;
-			callbackData(requestCode, null, true,packageName);
+			dispatchCallback(requestCode, packageName, mCallbackData);
 		}
 	}
 
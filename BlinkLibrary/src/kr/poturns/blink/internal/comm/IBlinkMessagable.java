@@ -36,6 +36,14 @@ public interface IBlinkMessagable {
 	
 	static final int TYPE_REQUEST_REDIRECT_CONNECTION =2009920015;
 	
+	static final int TYPE_REQUEST_RECONCILE_DIGEST = 2009920021;
+	static final int TYPE_REQUEST_RECONCILE_DATA = 2009920022;
+	static final int TYPE_RESPONSE_RECONCILE_SUCCESS = 2009920025;
+	static final int TYPE_RESPONSE_RECONCILE_FAIL = 2009920026;
+	
+	static final int TYPE_REQUEST_ROUTE_UPDATE = 2009920031;
+	static final int TYPE_REQUEST_SHORTCUT_LINK = 2009920032;
+	
 	/**
 	 * Bluetooth Classic에서 사용할 수 있는 Message로 변환한다.
 	 * @return
@@ -0,0 +1,164 @@
+package kr.poturns.blink.internal.comm;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kr.poturns.blink.db.archive.CallbackData;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * 외부 디바이스로 보낸 요청과 그 응답을 연결하는 테이블.
+ *
+ * <p>요청마다 {@link #obtainRequestId()}로 발급한 ID를 BlinkMessage의 Code로 사용하므로,
+ * 여러 어플리케이션이 같은 requestCode를 사용해도 응답이 섞이지 않는다.
+ * 발급되는 ID는 항상 음수이므로, 어플리케이션이 정하는 requestCode(0 이상)와 구분된다.
+ * 어플리케이션의 requestCode를 그대로 전송하는 경우에는 바인더에서 음수를 거부한다.
+ *
+ * <p>요청은 응답을 받거나, 실패하거나, 기한이 지나면 완료되어 테이블에서 제거된다.
+ * 기한이 지난 요청은 {@link CallbackData#ERROR_TIMEOUT}으로 완료된다.
+ * 테이블에는 최대 {@link #MAX_PENDING}개의 요청만 보관한다.
+ */
+class RequestTable {
+
+	// *** CONSTANT DECLARATION *** //
+	/**
+	 * 응답을 기다리는 기본 시간 (ms)
+	 */
+	static final long DEFAULT_TIMEOUT = 30000;
+
+	/**
+	 * 동시에 응답을 기다릴 수 있는 최대 요청 수
+	 */
+	static final int MAX_PENDING = 128;
+
+	/**
+	 * 요청이 완료되었음을 알린다.
+	 */
+	interface OnCompletedListener {
+		/**
+		 * @param requestCode 어플리케이션이 요청할 때 사용한 requestCode
+		 * @param packageName 요청한 어플리케이션의 패키지명
+		 * @param data
+		 */
+		void onCompleted(int requestCode, String packageName, CallbackData data);
+	}
+
+	/**
+	 * 해당 Code가 이 테이블에서 발급한 요청 ID인지 확인한다.
+	 *
+	 * @param code
+	 * @return
+	 */
+	static boolean isRequestId(int code) {
+		return code < 0;
+	}
+
+	private static class PendingRequest {
+		final int RequestCode;
+		final String PackageName;
+		final CallbackData Data;
+		Runnable Timeout;
+
+		PendingRequest(int requestCode, String packageName, CallbackData data) {
+			RequestCode = requestCode;
+			PackageName = packageName;
+			Data = data;
+		}
+	}
+
+
+
+	// *** FIELD DECLARATION *** //
+	private final AtomicInteger SEQUENCE;
+	private final ConcurrentHashMap<Integer, PendingRequest> PENDING_MAP;
+	private final Handler TIMEOUT_HANDLER;
+	private final OnCompletedListener LISTENER;
+
+	RequestTable(OnCompletedListener listener) {
+		SEQUENCE = new AtomicInteger();
+		PENDING_MAP = new ConcurrentHashMap<Integer, PendingRequest>();
+		TIMEOUT_HANDLER = new Handler(Looper.getMainLooper());
+		LISTENER = listener;
+	}
+
+	/**
+	 * 새 요청 ID를 발급한다. (-1 ~ Integer.MIN_VALUE 를 순환)
+	 *
+	 * @return
+	 */
+	int obtainRequestId() {
+		return -1 - (SEQUENCE.getAndIncrement() & Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 요청을 등록하고, timeout 후에 {@link CallbackData#ERROR_TIMEOUT}으로 완료되도록 예약한다.
+	 *
+	 * @param requestId {@link #obtainRequestId()}로 발급한 ID
+	 * @param requestCode
+	 * @param packageName
+	 * @param data 응답과 함께 어플리케이션에 전달할 CallbackData
+	 * @param timeout (ms)
+	 * @return 대기 중인 요청이 너무 많으면 등록하지 않고 false.
+	 */
+	boolean register(final int requestId, int requestCode, String packageName, CallbackData data, long timeout) {
+		PendingRequest request = new PendingRequest(requestCode, packageName, data);
+		request.Timeout = new Runnable() {
+			@Override
+			public void run() {
+				finish(requestId, null, false, CallbackData.ERROR_TIMEOUT);
+			}
+		};
+
+		synchronized (PENDING_MAP) {
+			if (PENDING_MAP.size() >= MAX_PENDING)
+				return false;
+			PENDING_MAP.put(requestId, request);
+		}
+		TIMEOUT_HANDLER.postDelayed(request.Timeout, timeout);
+		return true;
+	}
+
+	/**
+	 * 응답을 받은 요청을 완료한다.
+	 *
+	 * @param requestId
+	 * @param data 외부 디바이스로부터 온 데이터
+	 * @param result
+	 * @return 대기 중인 요청이 아니면 (이미 완료되었거나 기한이 지난 경우) false.
+	 */
+	boolean complete(int requestId, String data, boolean result) {
+		return finish(requestId, data, result, CallbackData.ERROR_NO);
+	}
+
+	/**
+	 * 요청을 실패로 완료한다.
+	 *
+	 * @param requestId
+	 * @param resultDetail {@link CallbackData}의 ERROR 상수
+	 * @return 대기 중인 요청이 아니면 false.
+	 */
+	boolean fail(int requestId, int resultDetail) {
+		return finish(requestId, null, false, resultDetail);
+	}
+
+	private boolean finish(int requestId, String data, boolean result, int resultDetail) {
+		PendingRequest request = PENDING_MAP.remove(requestId);
+		if (request == null)
+			return false;
+
+		TIMEOUT_HANDLER.removeCallbacks(request.Timeout);
+
+		request.Data.OutDeviceData = data;
+		request.Data.Result = result;
+		if (resultDetail != CallbackData.ERROR_NO)
+			request.Data.ResultDetail = resultDetail;
+
+		LISTENER.onCompleted(request.RequestCode, request.PackageName, request.Data);
+		return true;
+	}
+
+	int obtainPendingCount() {
+		return PENDING_MAP.size();
+	}
+}
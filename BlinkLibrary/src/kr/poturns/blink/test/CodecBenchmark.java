@@ -0,0 +1,130 @@
+package kr.poturns.blink.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import kr.poturns.blink.db.archive.MeasurementData;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.internal.comm.BlinkMessageCodec;
+import kr.poturns.blink.internal.comm.IBlinkMessagable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * MeasurementData 동기화 메세지를 기준으로 기존 전송 방식(Pretty-Printed JSON + Java 직렬화)과
+ * {@link BlinkMessageCodec}의 크기와 변환 시간을 비교한다.
+ * <br>송신 측은 MeasurementData 목록에서, 수신 측은 MeasurementData 목록까지의 시간을 측정한다.
+ */
+public class CodecBenchmark {
+
+	private static final String SOURCE_ADDRESS = "00:11:22:AA:BB:CC";
+	private static final String DESTINATION_ADDRESS = "00:11:22:DD:EE:FF";
+	private static final String APPLICATION = "kr.poturns.blink.internal.SyncScheduler";
+
+	private static final Type MEASUREMENTDATA_LIST = new TypeToken<ArrayList<MeasurementData>>() {}.getType();
+
+	/**
+	 * 비교 결과를 문자열로 반환한다.
+	 *
+	 * @param rows 메세지 하나에 담을 MeasurementData 개수
+	 * @param iterations 반복 횟수
+	 * @return
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static String run(int rows, int iterations) throws IOException, ClassNotFoundException {
+		ArrayList<MeasurementData> mMeasurementDataList = createMeasurementData(rows);
+		Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
+		Gson compactGson = new Gson();
+
+		// 기존 방식 : Pretty-Printed JSON을 담은 BlinkMessage를 ObjectOutputStream으로 전송
+		long encodeNanos = 0, decodeNanos = 0;
+		int legacySize = 0;
+		for (int i = 0; i < iterations; i++) {
+			long started = System.nanoTime();
+			BlinkMessage msg = createMessage(prettyGson.toJson(mMeasurementDataList));
+			ByteArrayOutputStream mOutput = new ByteArrayOutputStream();
+			ObjectOutputStream mObjectOutput = new ObjectOutputStream(mOutput);
+			mObjectOutput.writeObject(msg);
+			mObjectOutput.close();
+			byte[] encoded = mOutput.toByteArray();
+			encodeNanos += System.nanoTime() - started;
+			legacySize = encoded.length;
+
+			started = System.nanoTime();
+			ObjectInputStream mObjectInput = new ObjectInputStream(new ByteArrayInputStream(encoded));
+			BlinkMessage received = (BlinkMessage) mObjectInput.readObject();
+			compactGson.fromJson(received.getMessage(), MEASUREMENTDATA_LIST);
+			decodeNanos += System.nanoTime() - started;
+		}
+		long legacyEncode = encodeNanos, legacyDecode = decodeNanos;
+
+		// Binary Codec : 링크마다 하나의 송신/수신 Codec 쌍을 사용한다.
+		BlinkMessageCodec mSender = new BlinkMessageCodec();
+		BlinkMessageCodec mReceiver = new BlinkMessageCodec();
+		encodeNanos = decodeNanos = 0;
+		int firstSize = 0, binarySize = 0;
+		for (int i = 0; i < iterations; i++) {
+			long started = System.nanoTime();
+			byte[] encoded = mSender.encode(createMessage(compactGson.toJson(mMeasurementDataList)));
+			encodeNanos += System.nanoTime() - started;
+			if (i == 0)
+				firstSize = encoded.length;
+			binarySize = encoded.length;
+
+			started = System.nanoTime();
+			BlinkMessage received = mReceiver.decode(encoded);
+			compactGson.fromJson(received.getMessage(), MEASUREMENTDATA_LIST);
+			decodeNanos += System.nanoTime() - started;
+		}
+
+		return String.format(Locale.US,
+				"CodecBenchmark [rows=%d, iterations=%d]%n"
+				+ "  Legacy : %d B, encode %.3f ms, decode %.3f ms%n"
+				+ "  Binary : %d B (first %d B), encode %.3f ms, decode %.3f ms%n"
+				+ "  Size ratio : %.3f",
+				rows, iterations,
+				legacySize, legacyEncode / 1e6 / iterations, legacyDecode / 1e6 / iterations,
+				binarySize, firstSize, encodeNanos / 1e6 / iterations, decodeNanos / 1e6 / iterations,
+				(double) binarySize / legacySize);
+	}
+
+	private static BlinkMessage createMessage(String message) {
+		BlinkMessage msg = new BlinkMessage.Builder()
+				.setSourceApplication(APPLICATION)
+				.setDestinationApplication(APPLICATION)
+				.setType(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC)
+				.setMessage(message)
+				.build();
+		msg.setSourceAddress(SOURCE_ADDRESS);
+		msg.setDestinationAddress(DESTINATION_ADDRESS);
+		return msg;
+	}
+
+	private static ArrayList<MeasurementData> createMeasurementData(int rows) {
+		String[] keys = {
+				"3f2a9c41d07be6e5a1c08f4d2b6e9a17c3d5f0e1",
+				"8b1e04c7a29f6d3e5b0c71a4e8d2f96b3c0a5e7d" };
+
+		ArrayList<MeasurementData> mMeasurementDataList = new ArrayList<MeasurementData>(rows);
+		for (int i = 0; i < rows; i++) {
+			MeasurementData data = new MeasurementData();
+			data.MeasurementId = 1 + (i % keys.length);
+			data.MeasurementDataId = 1000 + i;
+			data.GroupId = i / keys.length;
+			data.MeasurementKey = keys[i % keys.length];
+			data.DateTime = String.format(Locale.US, "2014-09-24 12:%02d:%02d", (i / 60) % 60, i % 60);
+			data.Data = "{\"bpm\":" + (60 + i % 40) + ",\"DateTime\":\"" + data.DateTime + "\"}";
+			mMeasurementDataList.add(data);
+		}
+		return mMeasurementDataList;
+	}
+}
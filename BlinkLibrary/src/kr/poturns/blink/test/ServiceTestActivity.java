@@ -9,6 +9,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 import kr.poturns.blink.R;
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.SqliteManager;
 import kr.poturns.blink.db.SyncDatabaseManager;
 import kr.poturns.blink.db.archive.App;
@@ -60,7 +61,7 @@ public class ServiceTestActivity extends Activity implements OnClickListener {
 	BlinkServiceInteraction interaction;
 	IInternalOperationSupport iSupport;
 	BlinkDevice Xdevice;
-	Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	Gson gson = JsonManager.gson;
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -410,6 +411,7 @@ public class ServiceTestActivity extends Activity implements OnClickListener {
 		// exampleRemoteCall();
 		// exampleSyncDatabase();
 		// exampleDatabaseMessage();
+		// exampleCodecBenchmark();
 	}
 
 	public void exampleShowActivity() {
@@ -417,6 +419,14 @@ public class ServiceTestActivity extends Activity implements OnClickListener {
 		interaction.openControlActivity();
 	}
 
+	private void exampleCodecBenchmark() {
+		try {
+			Log.i(tag, CodecBenchmark.run(100, 50));
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
 	private void exampleDatabaseMessage() {
 		// TODO Auto-generated method stub
 		DatabaseMessage mDatabaseMessage = new DatabaseMessage.Builder()
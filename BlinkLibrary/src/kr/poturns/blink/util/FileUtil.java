@@ -65,6 +65,12 @@ public final class FileUtil {
 	/** 탐색한 디바이스에 관한 정보를 남겨두는 디렉토리 경로 */
 	public static final String EXTERNAL_SYSTEM_DEVICE_REPOSITORY_PATH = EXTERNAL_SYSTEM_DIRECTORY_PATH
 			+ File.separatorChar + EXTERNAL_SYSTEM_DEVICE_REPOSITORY_NAME;
+
+	/** Ack를 받지 못한 Reliable 메세지를 남겨두는 디렉토리 이름 */
+	public static final String EXTERNAL_SYSTEM_RELIABLE_REPOSITORY_NAME = "reliable";
+	/** Ack를 받지 못한 Reliable 메세지를 남겨두는 디렉토리 경로 */
+	public static final String EXTERNAL_SYSTEM_RELIABLE_REPOSITORY_PATH = EXTERNAL_SYSTEM_DIRECTORY_PATH
+			+ File.separatorChar + EXTERNAL_SYSTEM_RELIABLE_REPOSITORY_NAME;
 	private static final String TAG = "FileUtil";
 
 	/**
@@ -110,7 +116,8 @@ public final class FileUtil {
 	private static void createSubDirectory(File root) {
 		// System의 하위 디렉토리들을 생성한다.
 		if (root.getPath().equals(EXTERNAL_SYSTEM_DIRECTORY_PATH)) {
-			final String[] detailNames = new String[] { EXTERNAL_SYSTEM_DEVICE_REPOSITORY_NAME };
+			final String[] detailNames = new String[] { EXTERNAL_SYSTEM_DEVICE_REPOSITORY_NAME,
+					EXTERNAL_SYSTEM_RELIABLE_REPOSITORY_NAME };
 			for (final String path : detailNames) {
 				File externalSubFile = new File(root, path);
 				if (externalSubFile.mkdirs() || externalSubFile.isDirectory()) {
@@ -131,6 +138,7 @@ public final class FileUtil {
 	 *            {@link FileUtil#EXTERNAL_ARCHIVE_DIRECTORY_NAME}</li> <li>
 	 *            {@link FileUtil#EXTERNAL_PREF_DIRECTORY_NAME}</li><br>
 	 *            <li>{@link FileUtil#EXTERNAL_SYSTEM_DEVICE_REPOSITORY_NAME}</li>
+	 *            <li>{@link FileUtil#EXTERNAL_SYSTEM_RELIABLE_REPOSITORY_NAME}</li>
 	 * <br>
 	 *            위의 리스트 중 하나가 인자로 들어와야 한다.<br>
 	 * 
@@ -146,6 +154,9 @@ public final class FileUtil {
 		} else if (EXTERNAL_SYSTEM_DEVICE_REPOSITORY_NAME.equals(name)) {
 			return new File(EXTERNAL_SYSTEM_DEVICE_REPOSITORY_PATH);
 
+		} else if (EXTERNAL_SYSTEM_RELIABLE_REPOSITORY_NAME.equals(name)) {
+			return new File(EXTERNAL_SYSTEM_RELIABLE_REPOSITORY_PATH);
+
 		} else if (EXTERNAL_ARCHIVE_DIRECTORY_NAME.equals(name)) {
 			return new File(EXTERNAL_ARCHIVE_DIRECTORY_PATH);
 
@@ -0,0 +1,202 @@
+package kr.poturns.blink.internal;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.internal.comm.IBlinkMessagable;
+import kr.poturns.blink.util.FileUtil;
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * 가상의 상대 디바이스와 연결된 두 {@link GattLink} 사이에서 메세지를 주고받는다.
+ *
+ * <p>{@link FakeChannel}은 GATT 스택처럼 Packet을 별도의 스레드에서 상대 링크에 전달하고,
+ * 전달이 끝나면 보낸 링크의 완료 콜백을 호출한다.
+ */
+public class GattLinkTest extends TestCase {
+
+	private static final long RECEIVE_TIMEOUT = 5000;
+
+	/**
+	 * 상대 링크에 Packet을 전달하는 가상의 GATT 스택.
+	 */
+	private static class FakeChannel implements GattLink.PacketChannel {
+		/** GATT 콜백 스레드 */
+		private final ExecutorService STACK = Executors.newSingleThreadExecutor();
+		final AtomicInteger PACKET_COUNT = new AtomicInteger();
+		/** 남은 횟수만큼 스택이 바쁜 것처럼 Packet을 거절한다. */
+		final AtomicInteger BUSY_COUNT = new AtomicInteger();
+		final AtomicBoolean DISCONNECTED = new AtomicBoolean();
+
+		GattLink mOwner;
+		GattLink mPeer;
+
+		@Override
+		public boolean dispatchPacket(final byte[] packet) throws IOException {
+			if (DISCONNECTED.get())
+				throw new IOException("disconnected");
+			if (BUSY_COUNT.getAndDecrement() > 0)
+				return false;
+
+			PACKET_COUNT.incrementAndGet();
+			STACK.execute(new Runnable() {
+				@Override
+				public void run() {
+					mPeer.onPacket(packet);
+					mOwner.onWriteCompleted(BluetoothGatt.GATT_SUCCESS);
+				}
+			});
+			return true;
+		}
+
+		@Override
+		public boolean hasCompletionCallback() {
+			return true;
+		}
+
+		@Override
+		public void disconnect() {
+			DISCONNECTED.set(true);
+			STACK.shutdown();
+		}
+	}
+
+	private static class ReceivedQueue implements ILinkTransport.OnMessageReceivedListener {
+		final LinkedBlockingQueue<BlinkMessage> QUEUE = new LinkedBlockingQueue<BlinkMessage>();
+
+		@Override
+		public void onMessageReceived(BlinkMessage message, BlinkDevice fromDevice) {
+			QUEUE.offer(message);
+		}
+
+		BlinkMessage poll() throws InterruptedException {
+			return QUEUE.poll(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private FakeChannel mCentralChannel;
+	private FakeChannel mPeripheralChannel;
+	private ReceivedQueue mCentralReceived;
+	private ReceivedQueue mPeripheralReceived;
+	private GattLink mCentral;
+	private GattLink mPeripheral;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// BlinkDevice는 외부 저장소의 Repository에 저장된다.
+		FileUtil.createExternalDirectory();
+
+		mCentralChannel = new FakeChannel();
+		mPeripheralChannel = new FakeChannel();
+		mCentralReceived = new ReceivedQueue();
+		mPeripheralReceived = new ReceivedQueue();
+
+		mCentral = new GattLink(BlinkDevice.load("00:11:22:33:44:01"), mCentralChannel, mCentralReceived);
+		mPeripheral = new GattLink(BlinkDevice.load("00:11:22:33:44:02"), mPeripheralChannel, mPeripheralReceived);
+
+		mCentralChannel.mOwner = mCentral;
+		mCentralChannel.mPeer = mPeripheral;
+		mPeripheralChannel.mOwner = mPeripheral;
+		mPeripheralChannel.mPeer = mCentral;
+
+		mCentral.open();
+		mPeripheral.open();
+		mCentral.onNotificationEnabled(true);
+		mPeripheral.onNotificationEnabled(true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mCentral.close();
+		mPeripheral.close();
+		super.tearDown();
+	}
+
+	private static BlinkMessage createMessage(int type, String message) {
+		return new BlinkMessage.Builder()
+				.setSourceDevice("00:11:22:33:44:01")
+				.setDestinationDevice("00:11:22:33:44:02")
+				.setType(type)
+				.setMessage(message)
+				.build();
+	}
+
+	private static String createText(int length) {
+		StringBuilder builder = new StringBuilder(length);
+		while (builder.length() < length)
+			builder.append("HeartBeat=").append(builder.length() % 97).append(';');
+		return builder.toString();
+	}
+
+	public void testSmallMessage() throws Exception {
+		assertTrue(mCentral.sendMessageToDevice(createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, "hello")));
+
+		BlinkMessage received = mPeripheralReceived.poll();
+		assertNotNull(received);
+		assertEquals(IBlinkMessagable.TYPE_REQUEST_FUNCTION, received.getType());
+		assertEquals("hello", received.getMessage());
+		assertEquals("00:11:22:33:44:01", received.getSourceAddress());
+	}
+
+	/**
+	 * 여러 Packet으로 나뉘는 메세지는 압축되어 전송되고, 받은 쪽에서 원래대로 복원된다.
+	 */
+	public void testLargeMessageIsCompressed() throws Exception {
+		String text = createText(16 * 1024);
+		assertTrue(mPeripheral.sendMessageToDevice(createMessage(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA, text)));
+
+		BlinkMessage received = mCentralReceived.poll();
+		assertNotNull(received);
+		assertEquals(text, received.getMessage());
+
+		int uncompressedPackets = text.length() / (GattPacketizer.DEFAULT_PACKET_SIZE - GattPacketizer.HEADER_LENGTH);
+		assertTrue(mPeripheralChannel.PACKET_COUNT.get() < uncompressedPackets);
+	}
+
+	public void testMessagesArriveInOrder() throws Exception {
+		for (int i = 0; i < 20; i++)
+			assertTrue(mCentral.sendMessageToDevice(createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION,
+					i + ":" + createText(i * 10))));
+
+		for (int i = 0; i < 20; i++) {
+			BlinkMessage received = mPeripheralReceived.poll();
+			assertNotNull(received);
+			assertTrue(received.getMessage().startsWith(i + ":"));
+		}
+	}
+
+	public void testBothDirections() throws Exception {
+		assertTrue(mCentral.sendMessageToDevice(createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, "ping")));
+		assertTrue(mPeripheral.sendMessageToDevice(createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, "pong")));
+
+		assertEquals("ping", mPeripheralReceived.poll().getMessage());
+		assertEquals("pong", mCentralReceived.poll().getMessage());
+	}
+
+	/**
+	 * 스택이 바빠 Packet을 거절하면, 잠시 후 같은 Packet을 다시 보낸다.
+	 */
+	public void testBusyStackRetries() throws Exception {
+		mCentralChannel.BUSY_COUNT.set(10);
+		assertTrue(mCentral.sendMessageToDevice(createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, createText(100))));
+
+		BlinkMessage received = mPeripheralReceived.poll();
+		assertNotNull(received);
+		assertEquals(createText(100), received.getMessage());
+	}
+
+	public void testCloseDisconnectsChannel() throws Exception {
+		mCentral.close();
+		assertTrue(mCentralChannel.DISCONNECTED.get());
+		assertFalse(mPeripheralChannel.DISCONNECTED.get());
+	}
+}
@@ -0,0 +1,170 @@
+package kr.poturns.blink.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * {@link GattPacketizer}의 나누기와 조립을 확인한다.
+ */
+public class GattPacketizerTest extends TestCase {
+
+	private static final String ADDRESS = "00:11:22:33:44:55";
+
+	private GattPacketizer mSender;
+	private GattPacketizer mReceiver;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mSender = new GattPacketizer(ADDRESS);
+		mReceiver = new GattPacketizer(ADDRESS);
+	}
+
+	private static byte[] createPayload(int length, long seed) {
+		byte[] payload = new byte[length];
+		new Random(seed).nextBytes(payload);
+		return payload;
+	}
+
+	/**
+	 * 마지막 Packet을 넣기 전까지는 Frame이 나오지 않아야 한다.
+	 */
+	private LinkFrame assemble(ArrayList<byte[]> packets) {
+		for (int i = 0; i < packets.size() - 1; i++)
+			assertNull(mReceiver.add(packets.get(i)));
+		return mReceiver.add(packets.get(packets.size() - 1));
+	}
+
+	public void testRoundTrip() {
+		int[] packetSizes = { GattPacketizer.FIRST_HEADER_LENGTH + 1, GattPacketizer.DEFAULT_PACKET_SIZE, 182, 509 };
+		int[] lengths = { 0, 1, 13, 14, 100, 4096 };
+
+		for (int packetSize : packetSizes) {
+			for (int length : lengths) {
+				byte[] payload = createPayload(length, packetSize * 31 + length);
+				ArrayList<byte[]> packets = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON,
+						LinkFrame.FLAG_DEFLATED, payload, packetSize);
+
+				for (byte[] packet : packets)
+					assertTrue(packet.length <= packetSize);
+
+				LinkFrame frame = assemble(packets);
+				assertNotNull("PacketSize=" + packetSize + ", Length=" + length, frame);
+				assertEquals(LinkFrame.TYPE_BLINK_MESSAGE_JSON, frame.Type);
+				assertTrue(frame.hasFlag(LinkFrame.FLAG_DEFLATED));
+				assertTrue(Arrays.equals(payload, frame.Payload));
+			}
+		}
+	}
+
+	/**
+	 * 6 bit Sequence가 한 바퀴 돌아도 연속된 Packet으로 받아야 한다.
+	 */
+	public void testSequenceWrapAround() {
+		byte[] payload = createPayload(GattPacketizer.DEFAULT_PACKET_SIZE * 200, 7);
+		ArrayList<byte[]> packets = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, payload,
+				GattPacketizer.DEFAULT_PACKET_SIZE);
+		assertTrue(packets.size() > GattPacketizer.SEQUENCE_MASK + 1);
+
+		LinkFrame frame = assemble(packets);
+		assertNotNull(frame);
+		assertTrue(Arrays.equals(payload, frame.Payload));
+	}
+
+	public void testMissedPacketDiscardsMessage() {
+		byte[] first = createPayload(100, 1);
+		byte[] second = createPayload(100, 2);
+		ArrayList<byte[]> lost = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, first,
+				GattPacketizer.DEFAULT_PACKET_SIZE);
+		ArrayList<byte[]> next = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, second,
+				GattPacketizer.DEFAULT_PACKET_SIZE);
+
+		lost.remove(2);
+		for (byte[] packet : lost)
+			assertNull(mReceiver.add(packet));
+
+		// 다음 메세지는 첫 Packet부터 다시 조립된다.
+		LinkFrame frame = assemble(next);
+		assertNotNull(frame);
+		assertTrue(Arrays.equals(second, frame.Payload));
+	}
+
+	public void testOutOfOrderPacketDiscardsMessage() {
+		byte[] payload = createPayload(100, 3);
+		ArrayList<byte[]> packets = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, payload,
+				GattPacketizer.DEFAULT_PACKET_SIZE);
+
+		byte[] swapped = packets.get(1);
+		packets.set(1, packets.get(2));
+		packets.set(2, swapped);
+		for (byte[] packet : packets)
+			assertNull(mReceiver.add(packet));
+
+		packets = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, payload, GattPacketizer.DEFAULT_PACKET_SIZE);
+		LinkFrame frame = assemble(packets);
+		assertNotNull(frame);
+		assertTrue(Arrays.equals(payload, frame.Payload));
+	}
+
+	/**
+	 * 마지막 Packet을 받기 전에 새 메세지가 시작되면 이전 메세지는 버린다.
+	 */
+	public void testInterruptedMessage() {
+		ArrayList<byte[]> first = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, createPayload(100, 4),
+				GattPacketizer.DEFAULT_PACKET_SIZE);
+		byte[] payload = createPayload(50, 5);
+		ArrayList<byte[]> second = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, payload,
+				GattPacketizer.DEFAULT_PACKET_SIZE);
+
+		assertNull(mReceiver.add(first.get(0)));
+		assertNull(mReceiver.add(first.get(1)));
+
+		LinkFrame frame = assemble(second);
+		assertNotNull(frame);
+		assertTrue(Arrays.equals(payload, frame.Payload));
+	}
+
+	public void testOversizeLengthRejected() {
+		byte[] packet = new byte[GattPacketizer.DEFAULT_PACKET_SIZE];
+		int length = LinkReassembler.MAX_MESSAGE_LENGTH + 1;
+		packet[0] = (byte) (GattPacketizer.HEADER_FIRST | GattPacketizer.HEADER_LAST);
+		packet[1] = (byte) (length >>> 24);
+		packet[2] = (byte) (length >>> 16);
+		packet[3] = (byte) (length >>> 8);
+		packet[4] = (byte) length;
+		packet[5] = (byte) LinkFrame.TYPE_BLINK_MESSAGE_JSON;
+
+		assertNull(mReceiver.add(packet));
+	}
+
+	/**
+	 * Header의 Length보다 많은 Data를 받으면 버린다.
+	 */
+	public void testOverflowRejected() {
+		ArrayList<byte[]> packets = mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, createPayload(10, 6),
+				GattPacketizer.DEFAULT_PACKET_SIZE);
+		assertEquals(1, packets.size());
+
+		byte[] packet = packets.get(0);
+		byte[] padded = Arrays.copyOf(packet, packet.length + 5);
+		assertNull(mReceiver.add(padded));
+	}
+
+	public void testTruncatedHeaderRejected() {
+		assertNull(mReceiver.add(null));
+		assertNull(mReceiver.add(new byte[0]));
+		assertNull(mReceiver.add(new byte[] { (byte) (GattPacketizer.HEADER_FIRST | GattPacketizer.HEADER_LAST), 0 }));
+	}
+
+	public void testPacketSizeTooSmall() {
+		try {
+			mSender.split(LinkFrame.TYPE_BLINK_MESSAGE_JSON, 0, new byte[1], GattPacketizer.FIRST_HEADER_LENGTH);
+			fail();
+
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package kr.poturns.blink.internal;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * TCP 연결 양쪽 끝의 {@link LinkCipher}가 서로의 Payload를 복호화하는지 확인한다.
+ */
+public class LinkCipherTest extends TestCase {
+
+	private byte[] mKeyA;
+	private byte[] mKeyB;
+	private LinkCipher mCipherA;
+	private LinkCipher mCipherB;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mKeyA = LinkCipher.obtainKey();
+		mKeyB = LinkCipher.obtainKey();
+		mCipherA = new LinkCipher(mKeyA, mKeyB);
+		mCipherB = new LinkCipher(mKeyB, mKeyA);
+	}
+
+	private static byte[] payload(int length, int seed) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+			data[i] = (byte) (i * 31 + seed);
+		return data;
+	}
+
+	public void testRoundTripBothDirections() throws GeneralSecurityException {
+		for (int i = 0; i < 3; i++) {
+			byte[] data = payload(100 + i, i);
+			byte[] sealed = mCipherA.seal(data);
+			assertEquals(data.length + LinkCipher.TAG_LENGTH, sealed.length);
+			assertTrue(Arrays.equals(data, mCipherB.open(sealed)));
+
+			byte[] reply = payload(40000, i);
+			assertTrue(Arrays.equals(reply, mCipherA.open(mCipherB.seal(reply))));
+		}
+	}
+
+	public void testEmptyPayload() throws GeneralSecurityException {
+		assertEquals(0, mCipherB.open(mCipherA.seal(new byte[0])).length);
+	}
+
+	/**
+	 * 같은 내용이라도 Sequence가 다르면 다르게 암호화된다.
+	 */
+	public void testSameDataEncryptsDifferently() throws GeneralSecurityException {
+		byte[] data = payload(64, 0);
+		byte[] first = mCipherA.seal(data);
+		byte[] second = mCipherA.seal(data);
+		assertFalse(Arrays.equals(first, second));
+		assertFalse(Arrays.equals(data, Arrays.copyOf(first, data.length)));
+	}
+
+	/**
+	 * 두 방향은 서로 다른 키를 사용한다.
+	 */
+	public void testDirectionsUseDifferentKeys() throws GeneralSecurityException {
+		byte[] data = payload(64, 0);
+		assertFalse(Arrays.equals(mCipherA.seal(data), mCipherB.seal(data)));
+	}
+
+	public void testTamperedPayloadRejected() throws GeneralSecurityException {
+		byte[] sealed = mCipherA.seal(payload(64, 0));
+		sealed[10] ^= 1;
+		try {
+			mCipherB.open(sealed);
+			fail();
+
+		} catch (GeneralSecurityException expected) {
+		}
+	}
+
+	public void testReplayedFrameRejected() throws GeneralSecurityException {
+		byte[] sealed = mCipherA.seal(payload(64, 0));
+		mCipherB.open(sealed);
+		try {
+			mCipherB.open(sealed);
+			fail();
+
+		} catch (GeneralSecurityException expected) {
+		}
+	}
+
+	public void testReorderedFrameRejected() throws GeneralSecurityException {
+		mCipherA.seal(payload(64, 0));
+		byte[] second = mCipherA.seal(payload(64, 1));
+		try {
+			mCipherB.open(second);
+			fail();
+
+		} catch (GeneralSecurityException expected) {
+		}
+	}
+
+	/**
+	 * 키를 모르는 디바이스는 Frame을 만들 수 없다.
+	 */
+	public void testOtherKeyRejected() throws GeneralSecurityException {
+		LinkCipher other = new LinkCipher(LinkCipher.obtainKey(), mKeyB);
+		try {
+			mCipherB.open(other.seal(payload(64, 0)));
+			fail();
+
+		} catch (GeneralSecurityException expected) {
+		}
+	}
+
+	public void testInvalidKeysRejected() {
+		byte[][][] pairs = { { mKeyA, null }, { mKeyA, new byte[LinkCipher.KEY_LENGTH - 1] }, { mKeyA, mKeyA.clone() } };
+		for (byte[][] pair : pairs) {
+			try {
+				new LinkCipher(pair[0], pair[1]);
+				fail();
+
+			} catch (GeneralSecurityException expected) {
+			}
+		}
+	}
+}
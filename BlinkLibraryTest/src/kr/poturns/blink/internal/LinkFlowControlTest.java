@@ -0,0 +1,122 @@
+package kr.poturns.blink.internal;
+
+import junit.framework.TestCase;
+
+/**
+ * 연결된 두 디바이스의 {@link LinkFlowControl} 사이에서 Credit을 주고받는다.
+ */
+public class LinkFlowControlTest extends TestCase {
+
+	private static final String ADDRESS = "00:11:22:33:44:55";
+	private static final int LANE = LinkOutboundQueue.LANE_BULK;
+
+	private int[] mWindow;
+	private LinkFlowControl mSender;
+	private LinkFlowControl mReceiver;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mWindow = LinkFlowControl.obtainHostWindow();
+		mSender = new LinkFlowControl(ADDRESS);
+		mReceiver = new LinkFlowControl(ADDRESS);
+		mSender.enable(mWindow, mWindow);
+		mReceiver.enable(mWindow, mWindow);
+	}
+
+	/**
+	 * Credit이 남아 있는 동안 보내고, 보낸 수를 반환한다.
+	 */
+	private int sendAll(boolean delivered) {
+		int sent = 0;
+		while (mSender.isOpen(LANE)) {
+			mSender.onSent(LANE);
+			if (delivered)
+				mReceiver.onReceived(LANE);
+			sent++;
+		}
+		return sent;
+	}
+
+	private boolean grant(LinkFlowControl from, LinkFlowControl to) {
+		byte[] payload = from.obtainGrant();
+		return to.onGranted(payload, 0, payload.length);
+	}
+
+	public void testControlLaneIsNotCredited() {
+		for (int i = 0; i < 100; i++)
+			mSender.onSent(LinkOutboundQueue.LANE_CONTROL);
+		assertTrue(mSender.isOpen(LinkOutboundQueue.LANE_CONTROL));
+	}
+
+	public void testWindowStallsLane() {
+		assertEquals(mWindow[LANE], sendAll(true));
+		assertFalse(mSender.isOpen(LANE));
+		assertTrue(mSender.obtainStalledMillis(System.currentTimeMillis()) >= 0);
+	}
+
+	public void testProcessedMessagesReopenLane() {
+		sendAll(true);
+		for (int i = 0; i < mWindow[LANE] - 1; i++)
+			mReceiver.onProcessed(LANE);
+		// 처리를 기다리는 메세지가 없으면 바로 돌려준다.
+		assertTrue(mReceiver.onProcessed(LANE));
+
+		assertTrue(grant(mReceiver, mSender));
+		assertEquals(-1, mSender.obtainStalledMillis(System.currentTimeMillis()));
+		assertEquals(mWindow[LANE], sendAll(true));
+	}
+
+	/**
+	 * Credit Frame은 누적 값이므로, 버려지거나 두 번 반영되어도 Credit이 늘어나지 않는다.
+	 */
+	public void testGrantIsCumulative() {
+		sendAll(true);
+		mReceiver.onProcessed(LANE);
+		byte[] first = mReceiver.obtainGrant();
+		mReceiver.onProcessed(LANE);
+		byte[] second = mReceiver.obtainGrant();
+
+		// 첫 Credit Frame은 버려지고, 두 번째 Credit Frame이 두 번 도착했다.
+		assertTrue(mSender.onGranted(second, 0, second.length));
+		assertFalse(mSender.onGranted(second, 0, second.length));
+		assertFalse(mSender.onGranted(first, 0, first.length));
+		assertEquals(2, sendAll(true));
+	}
+
+	/**
+	 * 받는 쪽에서 버려진 메세지의 Credit은 동기화로 돌려받는다.
+	 */
+	public void testSyncRecoversLostMessages() {
+		mSender.onSent(LANE);
+		mReceiver.onReceived(LANE);
+		int lost = sendAll(false);
+		assertEquals(mWindow[LANE] - 1, lost);
+
+		mReceiver.onProcessed(LANE);
+		grant(mReceiver, mSender);
+		assertEquals(1, sendAll(false));
+
+		byte[] sync = mSender.obtainSync();
+		assertTrue(mReceiver.onSync(sync, 0, sync.length));
+		assertTrue(grant(mReceiver, mSender));
+		assertEquals(mWindow[LANE], sendAll(true));
+	}
+
+	/**
+	 * 버려진 메세지가 없으면 동기화해도 Credit이 늘어나지 않는다.
+	 */
+	public void testSyncWithoutLossKeepsWindow() {
+		sendAll(true);
+		byte[] sync = mSender.obtainSync();
+		assertTrue(mReceiver.onSync(sync, 0, sync.length));
+		assertFalse(grant(mReceiver, mSender));
+		assertFalse(mSender.isOpen(LANE));
+	}
+
+	public void testMalformedPayloadIgnored() {
+		sendAll(true);
+		assertFalse(mSender.onGranted(new byte[3], 0, 3));
+		assertFalse(mReceiver.onSync(new byte[3], 0, 3));
+	}
+}
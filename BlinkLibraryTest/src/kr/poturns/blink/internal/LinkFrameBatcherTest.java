@@ -0,0 +1,76 @@
+package kr.poturns.blink.internal;
+
+import junit.framework.TestCase;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.internal.comm.IBlinkMessagable;
+
+/**
+ * {@link LinkFrameBatcher#obtainPriority(BlinkMessage)}가 메세지 Type을 올바른 Lane에 배정하는지 확인한다.
+ */
+public class LinkFrameBatcherTest extends TestCase {
+
+	private static int priorityOf(int type) {
+		return LinkFrameBatcher.obtainPriority(new BlinkMessage.Builder().setType(type).build());
+	}
+
+	private static void assertPriority(int expected, int... types) {
+		for (int type : types)
+			assertEquals("type=" + type, expected, priorityOf(type));
+	}
+
+	/**
+	 * 흐름 제어를 받지 않는 Lane에는 수신 스레드에서 바로 처리되는 메세지만 들어간다.
+	 */
+	public void testControlPriority() {
+		assertPriority(LinkFrameBatcher.PRIORITY_CONTROL,
+				IBlinkMessagable.TYPE_ACCEPT_CONNECTION,
+				IBlinkMessagable.TYPE_REQUEST_IDENTITY_SYNC,
+				IBlinkMessagable.TYPE_RESPONSE_IDENTITY_SUCCESS,
+				IBlinkMessagable.TYPE_RESPONSE_IDENTITY_SYNC_FAIL,
+				IBlinkMessagable.TYPE_REQUEST_REDIRECT_CONNECTION,
+				IBlinkMessagable.TYPE_REQUEST_ROUTE_UPDATE,
+				IBlinkMessagable.TYPE_REQUEST_SHORTCUT_LINK);
+	}
+
+	public void testNormalPriority() {
+		assertPriority(LinkFrameBatcher.PRIORITY_NORMAL,
+				IBlinkMessagable.TYPE_REQUEST_FUNCTION,
+				IBlinkMessagable.TYPE_RESPONSE_FUNCTION_SUCCESS,
+				IBlinkMessagable.TYPE_RESPONSE_FUNCTION_FAIL,
+				IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA,
+				IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SUCCESS,
+				IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_FAIL,
+				IBlinkMessagable.TYPE_REQUEST_NETWORK_SYNC);
+	}
+
+	/**
+	 * 동기화와 Reconcile 메세지는 대량 전송 Lane으로 보내, 함수 실행 요청보다 앞서지 않도록 한다.
+	 */
+	public void testBulkPriority() {
+		assertPriority(LinkFrameBatcher.PRIORITY_BULK,
+				IBlinkMessagable.TYPE_REQUEST_BlinkAppInfo_SYNC,
+				IBlinkMessagable.TYPE_RESPONSE_BlinkAppInfo_SYNC_SUCCESS,
+				IBlinkMessagable.TYPE_RESPONSE_BlinkAppInfo_SYNC_FAIL,
+				IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC,
+				IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_SUCCESS,
+				IBlinkMessagable.TYPE_RESPONSE_MEASUREMENTDATA_SYNC_FAIL,
+				IBlinkMessagable.TYPE_REQUEST_RECONCILE_DIGEST,
+				IBlinkMessagable.TYPE_REQUEST_RECONCILE_DATA,
+				IBlinkMessagable.TYPE_RESPONSE_RECONCILE_SUCCESS,
+				IBlinkMessagable.TYPE_RESPONSE_RECONCILE_FAIL);
+	}
+
+	/**
+	 * 알 수 없는 Type은 흐름 제어를 받는다.
+	 */
+	public void testUnknownTypeIsCredited() {
+		assertPriority(LinkFrameBatcher.PRIORITY_NORMAL, 0x7FFF);
+	}
+
+	public void testLaneOfMessage() {
+		BlinkMessage sync = new BlinkMessage.Builder()
+				.setType(IBlinkMessagable.TYPE_REQUEST_RECONCILE_DATA).build();
+		assertEquals(LinkOutboundQueue.LANE_BULK, LinkOutboundQueue.obtainLane(sync));
+		assertEquals(LinkOutboundQueue.LANE_CONTROL, LinkOutboundQueue.obtainLane(new Object()));
+	}
+}
@@ -0,0 +1,141 @@
+package kr.poturns.blink.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * {@link LinkQuality}의 RTT 이동 평균과 손실률 계산을 확인한다.
+ */
+public class LinkQualityTest extends TestCase {
+
+	private static final String ADDRESS = "00:11:22:33:44:55";
+
+	private LinkQuality mQuality;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mQuality = new LinkQuality(ADDRESS);
+	}
+
+	private void answerProbe(long rttMillis) {
+		mQuality.onProbeSent();
+		mQuality.onProbeAnswered(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+	}
+
+	public void testRttUnknownBeforeFirstSample() {
+		assertEquals(LinkQuality.RTT_UNKNOWN, mQuality.obtainRttMillis());
+		assertEquals(LinkQuality.RTT_UNKNOWN, mQuality.obtainSnapshot().RttMillis);
+		assertEquals(0f, mQuality.obtainLossRate());
+	}
+
+	public void testFirstSampleSetsRtt() {
+		answerProbe(100);
+
+		LinkQuality.Snapshot snapshot = mQuality.obtainSnapshot();
+		assertEquals(100, snapshot.RttMillis);
+		assertEquals(50, snapshot.RttVarianceMillis);
+	}
+
+	/**
+	 * SRTT += 1/8 * (R - SRTT), RTTVAR += 1/4 * (|SRTT - R| - RTTVAR)
+	 */
+	public void testSmoothedRtt() {
+		answerProbe(100);
+		answerProbe(200);
+
+		// RTTVAR = 50 + (100 - 50) / 4, SRTT = 100 + (200 - 100) / 8
+		LinkQuality.Snapshot snapshot = mQuality.obtainSnapshot();
+		assertEquals(113, snapshot.RttMillis);
+		assertEquals(63, snapshot.RttVarianceMillis);
+
+		answerProbe(100);
+		// RTTVAR = 62.5 + (12.5 - 62.5) / 4, SRTT = 112.5 + (100 - 112.5) / 8 = 110.9
+		snapshot = mQuality.obtainSnapshot();
+		assertEquals(111, snapshot.RttMillis);
+		assertEquals(50, snapshot.RttVarianceMillis);
+	}
+
+	public void testRttConvergesToStableSample() {
+		answerProbe(500);
+		for (int i = 0; i < 100; i++)
+			answerProbe(20);
+
+		assertEquals(20, mQuality.obtainRttMillis());
+	}
+
+	/**
+	 * 시계가 되돌아가 음수로 측정된 RTT는 반영하지 않지만, 응답은 받은 것으로 기록한다.
+	 */
+	public void testNegativeSampleIgnored() {
+		answerProbe(100);
+		mQuality.onProbeSent();
+		mQuality.onProbeAnswered(-1);
+
+		assertEquals(100, mQuality.obtainRttMillis());
+		assertEquals(0f, mQuality.obtainLossRate());
+	}
+
+	/**
+	 * 응답을 기다리는 Keepalive는 손실로 집계하지 않는다.
+	 */
+	public void testOutstandingProbeIsNotLoss() {
+		mQuality.onProbeSent();
+		assertEquals(0f, mQuality.obtainLossRate());
+		assertTrue(mQuality.obtainUnansweredMillis(System.currentTimeMillis()) >= 0);
+
+		mQuality.onProbeAnswered(TimeUnit.MILLISECONDS.toNanos(10));
+		assertEquals(-1, mQuality.obtainUnansweredMillis(System.currentTimeMillis()));
+	}
+
+	public void testMissedProbesCountAsLoss() {
+		// 4번 보내고 첫 3번은 응답받지 못함. 마지막 하나는 기다리는 중.
+		for (int i = 0; i < 4; i++)
+			mQuality.onProbeSent();
+		assertEquals(3f / 4, mQuality.obtainLossRate());
+		assertEquals(3, mQuality.obtainConsecutiveMisses());
+
+		mQuality.onProbeAnswered(TimeUnit.MILLISECONDS.toNanos(10));
+		assertEquals(3f / 4, mQuality.obtainLossRate());
+		assertEquals(0, mQuality.obtainConsecutiveMisses());
+	}
+
+	public void testRetransmissionsCountAsLoss() {
+		for (int i = 0; i < 10; i++)
+			mQuality.onReliableSent();
+		mQuality.onRetransmitted(2);
+		answerProbe(10);
+		answerProbe(10);
+
+		// (재전송 2 + 손실 Keepalive 0) / (Reliable 10 + Keepalive 2)
+		assertEquals(2f / 12, mQuality.obtainLossRate());
+		assertEquals(2, mQuality.obtainSnapshot().Retransmissions);
+	}
+
+	public void testLossRateIsCapped() {
+		mQuality.onReliableSent();
+		mQuality.onRetransmitted(5);
+		assertEquals(1f, mQuality.obtainLossRate());
+	}
+
+	public void testTrafficCounters() {
+		mQuality.onSent(100, 1);
+		mQuality.onSent(LinkFrame.HEADER_LENGTH, 0);
+		mQuality.onReceived(200, 2);
+
+		LinkQuality.Snapshot snapshot = mQuality.obtainSnapshot();
+		assertEquals(ADDRESS, snapshot.Address);
+		assertEquals(100 + LinkFrame.HEADER_LENGTH, snapshot.BytesSent);
+		assertEquals(1, snapshot.MessagesSent);
+		assertEquals(200, snapshot.BytesReceived);
+		assertEquals(2, snapshot.MessagesReceived);
+	}
+
+	public void testIdleMillis() {
+		long now = System.currentTimeMillis();
+		mQuality.onReceived(0, 0);
+		assertTrue(mQuality.obtainIdleMillis(now + 1000) >= 1000 - 50);
+		assertTrue(mQuality.obtainIdleMillis(now + 1000) <= 1000 + 50);
+	}
+}
@@ -0,0 +1,213 @@
+package kr.poturns.blink.internal;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import kr.poturns.blink.internal.comm.BlinkDevice;
+import kr.poturns.blink.internal.comm.BlinkMessage;
+import kr.poturns.blink.internal.comm.IBlinkMessagable;
+import kr.poturns.blink.util.FileUtil;
+
+/**
+ * {@link LoopbackTransport}로 연결된 디바이스 사이에서 메세지를 주고받는다.
+ */
+public class LoopbackTransportTest extends TestCase {
+
+	private static final long RECEIVE_TIMEOUT = 5000;
+
+	private static final String ADDRESS_A = "00:11:22:33:55:01";
+	private static final String ADDRESS_B = "00:11:22:33:55:02";
+	private static final String ADDRESS_C = "00:11:22:33:55:03";
+
+	private static class ReceivedQueue implements ILinkTransport.OnMessageReceivedListener {
+		final LinkedBlockingQueue<BlinkMessage> QUEUE = new LinkedBlockingQueue<BlinkMessage>();
+		final LinkedBlockingQueue<BlinkDevice> FROM = new LinkedBlockingQueue<BlinkDevice>();
+
+		@Override
+		public void onMessageReceived(BlinkMessage message, BlinkDevice fromDevice) {
+			FROM.offer(fromDevice);
+			QUEUE.offer(message);
+		}
+
+		BlinkMessage poll() throws InterruptedException {
+			return QUEUE.poll(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 자신에게 온 메세지는 받고, 다른 디바이스로 가는 메세지는 다음 링크로 넘기는 중계 디바이스.
+	 */
+	private static class RelayNode extends ReceivedQueue {
+		private final String ADDRESS;
+		volatile LoopbackTransport mNext;
+
+		RelayNode(String address) {
+			ADDRESS = address;
+		}
+
+		@Override
+		public void onMessageReceived(BlinkMessage message, BlinkDevice fromDevice) {
+			if (ADDRESS.equals(message.getDestinationAddress()))
+				super.onMessageReceived(message, fromDevice);
+			else
+				mNext.sendMessageToDevice(message);
+		}
+	}
+
+	private BlinkDevice mDeviceA;
+	private BlinkDevice mDeviceB;
+	private BlinkDevice mDeviceC;
+	private final ArrayList<LoopbackTransport> mTransports = new ArrayList<LoopbackTransport>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// BlinkDevice는 외부 저장소의 Repository에 저장된다.
+		FileUtil.createExternalDirectory();
+
+		mDeviceA = BlinkDevice.load(ADDRESS_A);
+		mDeviceB = BlinkDevice.load(ADDRESS_B);
+		mDeviceC = BlinkDevice.load(ADDRESS_C);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (LoopbackTransport transport : mTransports)
+			transport.close();
+		mTransports.clear();
+		super.tearDown();
+	}
+
+	private LoopbackTransport[] connect(BlinkDevice deviceA, ILinkTransport.OnMessageReceivedListener listenerA,
+			BlinkDevice deviceB, ILinkTransport.OnMessageReceivedListener listenerB) throws Exception {
+		LoopbackTransport[] pair = LoopbackTransport.createPair(deviceA, listenerA, deviceB, listenerB);
+		for (LoopbackTransport transport : pair) {
+			mTransports.add(transport);
+			transport.open();
+		}
+		return pair;
+	}
+
+	private static BlinkMessage createMessage(String from, String to, String message) {
+		return new BlinkMessage.Builder()
+				.setSourceDevice(from)
+				.setDestinationDevice(to)
+				.setType(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC)
+				.setMessage(message)
+				.build();
+	}
+
+	public void testBothDirections() throws Exception {
+		ReceivedQueue receivedA = new ReceivedQueue();
+		ReceivedQueue receivedB = new ReceivedQueue();
+		LoopbackTransport[] pair = connect(mDeviceA, receivedA, mDeviceB, receivedB);
+
+		assertEquals(mDeviceB, pair[0].obtainDevice());
+		assertEquals(mDeviceA, pair[1].obtainDevice());
+
+		assertTrue(pair[0].sendMessageToDevice(createMessage(ADDRESS_A, ADDRESS_B, "A to B")));
+		assertTrue(pair[1].sendMessageToDevice(createMessage(ADDRESS_B, ADDRESS_A, "B to A")));
+
+		BlinkMessage received = receivedB.poll();
+		assertNotNull(received);
+		assertEquals("A to B", received.getMessage());
+		assertEquals(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC, received.getType());
+		assertEquals(mDeviceA, receivedB.FROM.poll());
+
+		received = receivedA.poll();
+		assertNotNull(received);
+		assertEquals("B to A", received.getMessage());
+		assertEquals(mDeviceB, receivedA.FROM.poll());
+	}
+
+	/**
+	 * Pipe의 Buffer보다 많은 메세지를 보내도 순서대로 모두 도착한다.
+	 */
+	public void testSyncBurstArrivesInOrder() throws Exception {
+		ReceivedQueue receivedB = new ReceivedQueue();
+		LoopbackTransport[] pair = connect(mDeviceA, new ReceivedQueue(), mDeviceB, receivedB);
+
+		StringBuilder data = new StringBuilder();
+		while (data.length() < 1024)
+			data.append("{\"HeartBeat\":").append(data.length()).append('}');
+
+		int count = LinkOutboundQueue.DEFAULT_CAPACITY / 2;
+		for (int i = 0; i < count; i++)
+			assertTrue(pair[0].sendMessageToDevice(createMessage(ADDRESS_A, ADDRESS_B, i + ":" + data)));
+
+		for (int i = 0; i < count; i++) {
+			BlinkMessage received = receivedB.poll();
+			assertNotNull("#" + i, received);
+			assertTrue(received.getMessage().startsWith(i + ":"));
+		}
+		assertEquals(0, pair[0].obtainSendFailureCount());
+	}
+
+	public void testMessageLargerThanPipe() throws Exception {
+		ReceivedQueue receivedB = new ReceivedQueue();
+		LoopbackTransport[] pair = connect(mDeviceA, new ReceivedQueue(), mDeviceB, receivedB);
+
+		StringBuilder data = new StringBuilder();
+		while (data.length() < LoopbackTransport.PIPE_SIZE * 3)
+			data.append(data.length() % 10);
+
+		assertTrue(pair[0].sendMessageToDevice(createMessage(ADDRESS_A, ADDRESS_B, data.toString())));
+
+		BlinkMessage received = receivedB.poll();
+		assertNotNull(received);
+		assertEquals(data.toString(), received.getMessage());
+	}
+
+	/**
+	 * A - B - C로 연결되어 있을 때, B가 A의 메세지를 C에게 전달한다.
+	 */
+	public void testRelayThroughMiddleDevice() throws Exception {
+		ReceivedQueue receivedA = new ReceivedQueue();
+		RelayNode relayB = new RelayNode(ADDRESS_B);
+		ReceivedQueue receivedC = new ReceivedQueue();
+
+		LoopbackTransport[] ab = connect(mDeviceA, receivedA, mDeviceB, relayB);
+		LoopbackTransport[] bc = connect(mDeviceB, relayB, mDeviceC, receivedC);
+		relayB.mNext = bc[0];
+
+		assertTrue(ab[0].sendMessageToDevice(createMessage(ADDRESS_A, ADDRESS_C, "A to C")));
+		assertTrue(ab[0].sendMessageToDevice(createMessage(ADDRESS_A, ADDRESS_B, "A to B")));
+
+		BlinkMessage received = receivedC.poll();
+		assertNotNull(received);
+		assertEquals("A to C", received.getMessage());
+		assertEquals(ADDRESS_A, received.getSourceAddress());
+		assertEquals(mDeviceB, receivedC.FROM.poll());
+
+		received = relayB.poll();
+		assertNotNull(received);
+		assertEquals("A to B", received.getMessage());
+		assertTrue(receivedC.QUEUE.isEmpty());
+	}
+
+	/**
+	 * BlinkMessage가 아닌 객체는 실패로 기록되고, 다음 메세지는 정상적으로 전송된다.
+	 */
+	public void testUnsupportedObjectCountedAsFailure() throws Exception {
+		ReceivedQueue receivedB = new ReceivedQueue();
+		LoopbackTransport[] pair = connect(mDeviceA, new ReceivedQueue(), mDeviceB, receivedB);
+
+		assertTrue(pair[0].sendMessageToDevice("not a message"));
+		assertTrue(pair[0].sendMessageToDevice(createMessage(ADDRESS_A, ADDRESS_B, "after failure")));
+
+		BlinkMessage received = receivedB.poll();
+		assertNotNull(received);
+		assertEquals("after failure", received.getMessage());
+		assertEquals(1, pair[0].obtainSendFailureCount());
+	}
+
+	public void testClosedTransportRejectsMessages() throws Exception {
+		LoopbackTransport[] pair = connect(mDeviceA, new ReceivedQueue(), mDeviceB, new ReceivedQueue());
+
+		pair[0].close();
+		assertFalse(pair[0].sendMessageToDevice(createMessage(ADDRESS_A, ADDRESS_B, "closed")));
+		assertNull(pair[0].obtainReadError());
+	}
+}
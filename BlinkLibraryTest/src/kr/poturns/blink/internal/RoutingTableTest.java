@@ -0,0 +1,192 @@
+package kr.poturns.blink.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * A - B - C 로 연결된 네트워크에서 A의 {@link RoutingTable}이 이웃의 연결과 광고를 반영하는지 확인한다.
+ */
+public class RoutingTableTest extends TestCase {
+
+	private static final String HOST = "00:11:22:33:44:0A";
+	private static final String NEIGHBOR_B = "00:11:22:33:44:0B";
+	private static final String REMOTE_C = "00:11:22:33:44:0C";
+	private static final String NEIGHBOR_D = "00:11:22:33:44:0D";
+
+	private RoutingTable mTable;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mTable = new RoutingTable();
+	}
+
+	private static RoutingTable.Route adv(String destination, int metric, long sequence) {
+		return new RoutingTable.Route(destination, null, metric, sequence);
+	}
+
+	private ArrayList<RoutingTable.Route> advertise(String neighbor, RoutingTable.Route... routes) {
+		return mTable.update(HOST, neighbor, Arrays.asList(routes));
+	}
+
+	private static RoutingTable.Route find(ArrayList<RoutingTable.Route> routes, String destination) {
+		for (RoutingTable.Route route : routes) {
+			if (destination.equals(route.Destination))
+				return route;
+		}
+		return null;
+	}
+
+	/**
+	 * B를 통해 C까지의 경로(Sequence 4, 거리 2)를 만든다.
+	 */
+	private void connectThroughB() {
+		mTable.onNeighborUp(HOST, NEIGHBOR_B);
+		advertise(NEIGHBOR_B, adv(NEIGHBOR_B, 0, 2), adv(REMOTE_C, 1, 4));
+	}
+
+	private RoutingTable.Route obtainRoute(String destination) {
+		return find(mTable.obtainAdvertisement(HOST), destination);
+	}
+
+	public void testNeighborUp() {
+		ArrayList<RoutingTable.Route> changed = mTable.onNeighborUp(HOST, NEIGHBOR_B);
+		assertEquals(NEIGHBOR_B, mTable.obtainNextHop(NEIGHBOR_B));
+		assertEquals(1, find(changed, NEIGHBOR_B).Metric);
+
+		RoutingTable.Route host = find(changed, HOST);
+		assertEquals(0, host.Metric);
+		assertEquals(0, host.Sequence & 1);
+		assertTrue(host.Sequence > 0);
+
+		// 이미 직접 연결된 이웃이면 광고할 것이 없다.
+		assertTrue(mTable.onNeighborUp(HOST, NEIGHBOR_B).isEmpty());
+	}
+
+	public void testLearnRouteThroughNeighbor() {
+		connectThroughB();
+		assertEquals(NEIGHBOR_B, mTable.obtainNextHop(REMOTE_C));
+		assertEquals(2, obtainRoute(REMOTE_C).Metric);
+		assertNull(mTable.obtainNextHop(NEIGHBOR_D));
+	}
+
+	public void testUnreachableNewDestinationIgnored() {
+		mTable.onNeighborUp(HOST, NEIGHBOR_B);
+		assertTrue(advertise(NEIGHBOR_B, adv(REMOTE_C, RoutingTable.METRIC_INFINITY, 5)).isEmpty());
+		assertNull(obtainRoute(REMOTE_C));
+	}
+
+	/**
+	 * 이웃과의 연결이 끊어지면 그 이웃을 거치는 경로는 홀수 Sequence로 도달할 수 없게 표시된다.
+	 */
+	public void testNeighborDown() {
+		connectThroughB();
+		ArrayList<RoutingTable.Route> changed = mTable.onNeighborDown(HOST, NEIGHBOR_B);
+
+		assertNull(mTable.obtainNextHop(NEIGHBOR_B));
+		assertNull(mTable.obtainNextHop(REMOTE_C));
+
+		RoutingTable.Route broken = find(changed, REMOTE_C);
+		assertEquals(RoutingTable.METRIC_INFINITY, broken.Metric);
+		assertEquals(5, broken.Sequence);
+		assertNotNull(find(changed, HOST));
+
+		// 이미 끊어진 경로는 다시 알리지 않는다.
+		assertTrue(mTable.onNeighborDown(HOST, NEIGHBOR_B).isEmpty());
+	}
+
+	public void testNeighborUpAfterDown() {
+		connectThroughB();
+		mTable.onNeighborDown(HOST, NEIGHBOR_B);
+		ArrayList<RoutingTable.Route> changed = mTable.onNeighborUp(HOST, NEIGHBOR_B);
+
+		assertEquals(NEIGHBOR_B, mTable.obtainNextHop(NEIGHBOR_B));
+		// 끊어진 것으로 표시한 홀수 Sequence보다 새로운 짝수 Sequence가 된다.
+		assertEquals(0, find(changed, NEIGHBOR_B).Sequence & 1);
+		assertTrue(find(changed, NEIGHBOR_B).Sequence > 1);
+	}
+
+	/**
+	 * 끊어진 경로는 목적지가 다시 광고한 더 큰 짝수 Sequence로만 되살아난다.
+	 */
+	public void testHealingThroughEvenSequence() {
+		connectThroughB();
+		mTable.onNeighborDown(HOST, NEIGHBOR_B);
+		mTable.onNeighborUp(HOST, NEIGHBOR_D);
+
+		// 끊어지기 전의 광고는 반영되지 않는다.
+		assertTrue(advertise(NEIGHBOR_D, adv(REMOTE_C, 1, 4)).isEmpty());
+		assertNull(mTable.obtainNextHop(REMOTE_C));
+
+		ArrayList<RoutingTable.Route> changed = advertise(NEIGHBOR_D, adv(REMOTE_C, 2, 6));
+		assertEquals(NEIGHBOR_D, mTable.obtainNextHop(REMOTE_C));
+		assertEquals(3, find(changed, REMOTE_C).Metric);
+		assertEquals(6, find(changed, REMOTE_C).Sequence);
+	}
+
+	/**
+	 * 다른 디바이스가 이 디바이스를 끊어진 것으로 알리면, 더 큰 짝수 Sequence로 다시 광고한다.
+	 */
+	public void testHostRouteReadvertised() {
+		mTable.onNeighborUp(HOST, NEIGHBOR_B);
+		ArrayList<RoutingTable.Route> changed = advertise(NEIGHBOR_B,
+				adv(HOST, RoutingTable.METRIC_INFINITY, 9));
+
+		RoutingTable.Route host = find(changed, HOST);
+		assertEquals(10, host.Sequence);
+		assertEquals(0, host.Metric);
+		assertEquals(10, obtainRoute(HOST).Sequence);
+
+		// 이미 다시 광고한 Sequence이면 무시한다.
+		assertTrue(advertise(NEIGHBOR_B, adv(HOST, RoutingTable.METRIC_INFINITY, 9)).isEmpty());
+	}
+
+	/**
+	 * 현재 다음 Hop이 보낸 같은 Sequence의 광고는 거리가 늘어나도 따른다.
+	 */
+	public void testCurrentNextHopFollowedWhenMetricGrows() {
+		connectThroughB();
+		ArrayList<RoutingTable.Route> changed = advertise(NEIGHBOR_B, adv(REMOTE_C, 3, 4));
+
+		assertEquals(NEIGHBOR_B, mTable.obtainNextHop(REMOTE_C));
+		assertEquals(4, find(changed, REMOTE_C).Metric);
+		assertEquals(4, obtainRoute(REMOTE_C).Metric);
+	}
+
+	public void testOtherNeighborNeedsShorterRoute() {
+		connectThroughB();
+		mTable.onNeighborUp(HOST, NEIGHBOR_D);
+
+		// 같은 Sequence에서 더 긴 경로는 무시한다.
+		assertTrue(advertise(NEIGHBOR_D, adv(REMOTE_C, 2, 4)).isEmpty());
+		assertEquals(NEIGHBOR_B, mTable.obtainNextHop(REMOTE_C));
+
+		ArrayList<RoutingTable.Route> changed = advertise(NEIGHBOR_D, adv(REMOTE_C, 0, 4));
+		assertEquals(NEIGHBOR_D, mTable.obtainNextHop(REMOTE_C));
+		assertEquals(1, find(changed, REMOTE_C).Metric);
+	}
+
+	/**
+	 * 거리가 같으면 RTT가 절반 이하인 이웃으로만 다음 Hop을 바꾼다.
+	 */
+	public void testFasterNeighborWithSameMetric() {
+		final int[] rtt = { 100, 60 };
+		mTable = new RoutingTable(new RoutingTable.LinkCost() {
+			@Override
+			public int obtainRttMillis(String neighbor) {
+				return NEIGHBOR_B.equals(neighbor)? rtt[0] : rtt[1];
+			}
+		});
+		connectThroughB();
+		mTable.onNeighborUp(HOST, NEIGHBOR_D);
+
+		assertTrue(advertise(NEIGHBOR_D, adv(REMOTE_C, 1, 4)).isEmpty());
+		assertEquals(NEIGHBOR_B, mTable.obtainNextHop(REMOTE_C));
+
+		rtt[1] = 50;
+		assertFalse(advertise(NEIGHBOR_D, adv(REMOTE_C, 1, 4)).isEmpty());
+		assertEquals(NEIGHBOR_D, mTable.obtainNextHop(REMOTE_C));
+	}
+}
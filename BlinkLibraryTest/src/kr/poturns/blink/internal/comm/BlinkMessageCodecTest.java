@@ -0,0 +1,157 @@
+package kr.poturns.blink.internal.comm;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.google.gson.JsonParser;
+
+/**
+ * {@link BlinkMessageCodec}의 변환과 링크별 ID 사전을 확인한다.
+ *
+ * <p>두 Codec은 하나의 링크 양쪽 끝에 해당한다. 보내는 쪽의 결과를 받는 쪽이 같은 순서로 변환해야 한다.
+ */
+public class BlinkMessageCodecTest extends TestCase {
+
+	private static final String ADDRESS_A = "00:11:22:33:44:AA";
+	private static final String ADDRESS_B = "00:11:22:33:44:BB";
+	private static final String PACKAGE_A = "kr.poturns.blink.demo.fitnessapp";
+	private static final String PACKAGE_B = "kr.poturns.blink.demo.healthmanager";
+
+	private BlinkMessageCodec mSender;
+	private BlinkMessageCodec mReceiver;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mSender = new BlinkMessageCodec();
+		mReceiver = new BlinkMessageCodec();
+	}
+
+	private static BlinkMessage createMessage(int type, String message) {
+		return new BlinkMessage.Builder()
+				.setSourceDevice(ADDRESS_A)
+				.setDestinationDevice(ADDRESS_B)
+				.setSourceApplication(PACKAGE_A)
+				.setDestinationApplication(PACKAGE_B)
+				.setType(type)
+				.setCode(-7)
+				.setReliable(true)
+				.setMessage(message)
+				.build();
+	}
+
+	private BlinkMessage roundTrip(BlinkMessage msg) {
+		return mReceiver.decode(mSender.encode(msg));
+	}
+
+	private static void assertSameJson(String expected, String actual) {
+		JsonParser parser = new JsonParser();
+		assertEquals(parser.parse(expected), parser.parse(actual));
+	}
+
+	public void testHeaderRoundTrip() {
+		BlinkMessage msg = createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, "안녕 😀");
+		BlinkMessage decoded = roundTrip(msg);
+
+		assertEquals(ADDRESS_A, decoded.getSourceAddress());
+		assertEquals(ADDRESS_B, decoded.getDestinationAddress());
+		assertEquals(PACKAGE_A, decoded.getSourceApplication());
+		assertEquals(PACKAGE_B, decoded.getDestinationApplication());
+		assertEquals(IBlinkMessagable.TYPE_REQUEST_FUNCTION, decoded.getType());
+		assertEquals(-7, decoded.getCode());
+		assertEquals(msg.getTimestamp(), decoded.getTimestamp());
+		assertTrue(decoded.isReliable());
+		assertEquals(msg.getMessage(), decoded.getMessage());
+	}
+
+	public void testNullFields() {
+		BlinkMessage decoded = roundTrip(new BlinkMessage.Builder()
+				.setType(IBlinkMessagable.TYPE_REQUEST_NETWORK_SYNC).build());
+
+		assertNull(decoded.getSourceAddress());
+		assertNull(decoded.getSourceApplication());
+		assertNull(decoded.getMessage());
+		assertFalse(decoded.isReliable());
+	}
+
+	public void testMeasurementDataSection() {
+		String rows = "[{\"MeasurementId\":3,\"GroupId\":1,\"Data\":\"72\",\"DateTime\":\"2014-09-23 10:00:00\","
+				+ "\"MeasurementKey\":\"key-1\"},{\"MeasurementId\":3,\"Data\":\"75\",\"MeasurementKey\":\"key-1\"}]";
+		BlinkMessage decoded = roundTrip(createMessage(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC, rows));
+		assertSameJson(rows, decoded.getMessage());
+	}
+
+	public void testDatabaseMessageSection() {
+		String query = "{\"Type\":2,\"mJsonObject\":{\"Condition\":\"HeartBeat\",\"ContainType\":1}}";
+		BlinkMessage decoded = roundTrip(createMessage(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA, query));
+		assertSameJson(query, decoded.getMessage());
+	}
+
+	/**
+	 * 예상한 형식이 아닌 내용은 문자열로 그대로 전달된다.
+	 */
+	public void testIrregularContentKeptAsString() {
+		String[] messages = { "not json", "[{\"Data\":1.5}]", "{\"Unknown\":true}" };
+		for (String message : messages) {
+			BlinkMessage decoded = roundTrip(createMessage(IBlinkMessagable.TYPE_REQUEST_MEASUREMENTDATA_SYNC, message));
+			assertEquals(message, decoded.getMessage());
+		}
+	}
+
+	/**
+	 * 한 번 정의된 패키지명은 이후 ID로만 전송된다.
+	 */
+	public void testDictionaryShrinksLaterMessages() {
+		BlinkMessage msg = createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, "x");
+		byte[] first = mSender.encode(msg);
+		byte[] second = mSender.encode(msg);
+		assertTrue(second.length < first.length - PACKAGE_A.length());
+
+		assertEquals(PACKAGE_A, mReceiver.decode(first).getSourceApplication());
+		assertEquals(PACKAGE_A, mReceiver.decode(second).getSourceApplication());
+	}
+
+	/**
+	 * ID의 정의를 담은 Frame이 버려지면, 이후 그 ID를 사용하는 메세지는 변환할 수 없다.
+	 */
+	public void testLostDefinitionDesyncs() {
+		BlinkMessage msg = createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, "x");
+		mSender.encode(msg);
+		byte[] next = mSender.encode(msg);
+
+		try {
+			mReceiver.decode(next);
+			fail();
+
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	/**
+	 * 정의를 읽기 전에 실패한 Frame 이후에는 새 정의의 순서가 맞지 않는다.
+	 */
+	public void testOutOfOrderDefinition() {
+		mSender.encode(createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, "x"));
+		byte[] next = mSender.encode(new BlinkMessage.Builder()
+				.setSourceApplication("kr.poturns.blink.demo.visualizer")
+				.setType(IBlinkMessagable.TYPE_REQUEST_FUNCTION).build());
+
+		try {
+			mReceiver.decode(next);
+			fail();
+
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testTruncatedDataRejected() {
+		byte[] encoded = mSender.encode(createMessage(IBlinkMessagable.TYPE_REQUEST_FUNCTION, "truncated"));
+		try {
+			new BlinkMessageCodec().decode(Arrays.copyOf(encoded, encoded.length - 3));
+			fail();
+
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
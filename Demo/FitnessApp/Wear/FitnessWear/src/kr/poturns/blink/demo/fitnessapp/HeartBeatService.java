@@ -1,5 +1,6 @@
 package kr.poturns.blink.demo.fitnessapp;
 
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.archive.BlinkAppInfo;
 import kr.poturns.blink.internal.comm.BlinkServiceInteraction;
 import kr.poturns.blink.internal.comm.IInternalOperationSupport;
@@ -16,7 +17,6 @@ import android.os.IBinder;
 import android.util.Log;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 /**
  * 심장박동수를 측정하는 서비스 <br>
@@ -33,7 +33,7 @@ public class HeartBeatService extends Service implements SensorEventListener {
 	IInternalOperationSupport mIInternalOperationSupport;
 	private SensorManager mSensorManager;
 	private Sensor mHeartbeatSensor;
-	private Gson mGson = new GsonBuilder().setPrettyPrinting().create();
+	private Gson mGson = JsonManager.gson;
 	private long mPrevMeasureTime = 0;
 
 	/** intent action */
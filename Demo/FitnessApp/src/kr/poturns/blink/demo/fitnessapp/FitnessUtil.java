@@ -12,8 +12,8 @@ import java.io.StreamCorruptedException;
 import java.util.Calendar;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.schema.Inbody;
 import android.content.Context;
 
@@ -50,7 +50,7 @@ public class FitnessUtil {
 	public static final Inbody readInBodyFromFile(Context context)
 			throws StreamCorruptedException, IOException,
 			ClassNotFoundException {
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		Gson gson = JsonManager.gson;
 		FileInputStream fis = null;
 		BufferedInputStream bis = null;
 		ObjectInputStream ois = null;
@@ -72,7 +72,7 @@ public class FitnessUtil {
 	/** InBody 데이터를 저장한다 */
 	public static boolean saveInBodyFile(Context context, Inbody obj)
 			throws IOException {
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		Gson gson = JsonManager.gson;
 		boolean state = false;
 		FileOutputStream fos = null;
 		BufferedOutputStream bos = null;
@@ -3,8 +3,8 @@ package kr.poturns.blink.demo.fitnessapp;
 import java.util.Random;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.archive.BlinkAppInfo;
 import kr.poturns.blink.internal.comm.BlinkServiceInteraction;
 import kr.poturns.blink.internal.comm.IInternalOperationSupport;
@@ -89,7 +89,7 @@ public class HeartBeatService extends Service {
 		private static final int REQUEST_CODE = 1;
 		/** remote app package name */
 		private static final String REMOTE_APP_PACKAGE_NAME = "kr.poturns.blink.demo.visualizer";
-		private Gson mGson = new GsonBuilder().setPrettyPrinting().create();
+		private Gson mGson = JsonManager.gson;
 
 		@Override
 		public void run() {
@@ -1,4 +1,5 @@
 package kr.poturns.blink.demo.healthmanager;
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.archive.BlinkAppInfo;
 import kr.poturns.blink.db.archive.CallbackData;
 import kr.poturns.blink.internal.comm.BlinkServiceInteraction;
@@ -11,13 +12,12 @@ import android.util.Log;
 import android.widget.Toast;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 public class HealthManagerApplication extends Application {
 	public static int RESPONSE_CODE_INBODY_DATA = 0x00;
 	
 	private BlinkServiceInteraction mBlinkServiceInteraction;
-	Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	Gson gson = JsonManager.gson;
 	@Override
 	public void onCreate() {
 		Log.i("Demo", "HealthManagerApplication onCreate");
@@ -1,8 +1,8 @@
 package kr.poturns.demo.inbody;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
+import kr.poturns.blink.db.JsonManager;
 import kr.poturns.blink.db.archive.BlinkAppInfo;
 import kr.poturns.blink.internal.comm.BlinkServiceInteraction;
 import kr.poturns.blink.internal.comm.IInternalOperationSupport;
@@ -147,7 +147,7 @@ public class InbodyDetailActivity extends ListActivity {
 
 		final int REQUEST_CODE = 0;
 		final String REMOTE_APP_PACKAGE_NAME = "kr.poturns.blink.demo.healthmanager";
-		Gson mGson = new GsonBuilder().setPrettyPrinting().create();
+		Gson mGson = JsonManager.gson;
 
 		if (mIInternalOperationSupport != null) {
 			for (BlinkAppInfo info : mInteraction.local.obtainBlinkAppAll()) {